@@ -10,14 +10,13 @@ import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 @SupportedAnnotationTypes("net.ildar.wurm.annotations.BotInfo")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 public class BotInfoProcessor extends AbstractProcessor {
     private List<AnnotatedBot> annotatedBots = new ArrayList<>();
+    private Map<String, String> botClassByAbbreviation = new HashMap<>();
     private Elements elementUtils;
     private Filer filer;
     private Messager messager;
@@ -51,6 +50,11 @@ public class BotInfoProcessor extends AbstractProcessor {
                         return true;
                     }
                     BotInfo annotationObject = typeElement.getAnnotation(BotInfo.class);
+                    String otherBot = botClassByAbbreviation.put(annotationObject.abbreviation(), typeElement.getQualifiedName().toString());
+                    if (otherBot != null) {
+                        error(annotatedElement, "Сокращение \"%s\" уже используется ботом %s", annotationObject.abbreviation(), otherBot);
+                        return true;
+                    }
                     annotatedBots.add(new AnnotatedBot(annotationObject, typeElement.getQualifiedName().toString()));
                     updatedBotList = true;
                 }
@@ -64,17 +68,40 @@ public class BotInfoProcessor extends AbstractProcessor {
                     addLine(writer, "");
                     addLine(writer, "import java.util.*;");
                     addLine(writer, "");
+                    addLine(writer, "/**");
+                    addLine(writer, " * The bots found by BotInfoProcessor, indexed by abbreviation and class name.");
+                    addLine(writer, " * The bot classes are loaded by BotRegistration on their first use");
+                    addLine(writer, " */");
                     addLine(writer, "class BotRegistrationProvider {");
-                    addLine(writer, "   static List<BotRegistration> getBotList() {");
-                    addLine(writer, "       List<BotRegistration> registrations = new ArrayList<>();");
-                    addLine(writer, "       try {");
+                    StringJoiner abbreviations = new StringJoiner("|");
+                    annotatedBots.forEach(annotatedBot -> abbreviations.add(annotatedBot.botInfo.abbreviation()));
+                    addLine(writer, String.format("   static final String ABBREVIATIONS = \"%s\";", prepareDescription(abbreviations.toString())));
+                    addLine(writer, "   private static final List<BotRegistration> registrations = new ArrayList<>();");
+                    addLine(writer, "   private static final Map<String, BotRegistration> byAbbreviation = new HashMap<>();");
+                    addLine(writer, "   private static final Map<String, BotRegistration> byClassName = new HashMap<>();");
+                    addLine(writer, "");
+                    addLine(writer, "   static {");
                     for(AnnotatedBot annotatedBot : annotatedBots) {
-                        addLine(writer, String.format("         registrations.add(new BotRegistration(Class.forName(\"%s\"), \"%s\", \"%s\"));", annotatedBot.botClass, prepareDescription(annotatedBot.botInfo.description()), annotatedBot.botInfo.abbreviation()));
+                        addLine(writer, String.format("       add(new BotRegistration(\"%s\", \"%s\", \"%s\"));", annotatedBot.botClass, prepareDescription(annotatedBot.botInfo.description()), annotatedBot.botInfo.abbreviation()));
                     }
-                    addLine(writer, "       } catch (ClassNotFoundException e) {");
-                    addLine(writer, "           e.printStackTrace();");
-                    addLine(writer, "       }");
-                    addLine(writer, "       return registrations;");
+                    addLine(writer, "   }");
+                    addLine(writer, "");
+                    addLine(writer, "   private static void add(BotRegistration registration) {");
+                    addLine(writer, "       registrations.add(registration);");
+                    addLine(writer, "       byAbbreviation.put(registration.getAbbreviation(), registration);");
+                    addLine(writer, "       byClassName.put(registration.getBotClassName(), registration);");
+                    addLine(writer, "   }");
+                    addLine(writer, "");
+                    addLine(writer, "   static List<BotRegistration> getBotList() {");
+                    addLine(writer, "       return Collections.unmodifiableList(registrations);");
+                    addLine(writer, "   }");
+                    addLine(writer, "");
+                    addLine(writer, "   static BotRegistration getByAbbreviation(String abbreviation) {");
+                    addLine(writer, "       return byAbbreviation.get(abbreviation);");
+                    addLine(writer, "   }");
+                    addLine(writer, "");
+                    addLine(writer, "   static BotRegistration getByClassName(String className) {");
+                    addLine(writer, "       return byClassName.get(className);");
                     addLine(writer, "   }");
                     addLine(writer, "}");
                 }
@@ -0,0 +1,59 @@
+#!/usr/bin/env python3
+"""Compares two JMH json result files, the benchmarks are matched by name and parameters.
+Exits with 1 if any benchmark got slower than the threshold."""
+import argparse
+import json
+import sys
+
+
+def load(path):
+    with open(path) as f:
+        results = {}
+        for result in json.load(f):
+            params = ",".join("%s=%s" % item for item in sorted(result.get("params", {}).items()))
+            name = result["benchmark"].rsplit(".", 2)
+            key = ".".join(name[-2:]) + ("(" + params + ")" if params else "")
+            results[key] = result
+        return results
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__)
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=10.0,
+                        help="the allowed slowdown in percent, 10 by default")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+    regressions = 0
+    print("%-70s %14s %14s %9s" % ("Benchmark", "Baseline", "Current", "Change"))
+    for key in sorted(set(baseline) | set(current)):
+        if key not in current:
+            print("%-70s %14s" % (key, "removed"))
+            continue
+        now = current[key]["primaryMetric"]
+        unit = now["scoreUnit"]
+        if key not in baseline:
+            print("%-70s %14s %14.3f %9s %s" % (key, "new", now["score"], "", unit))
+            continue
+        before = baseline[key]["primaryMetric"]
+        if before["scoreUnit"] != unit or before["score"] == 0:
+            print("%-70s %14s" % (key, "not comparable"))
+            continue
+        change = (now["score"] - before["score"]) / before["score"] * 100
+        # the time per operation should go down, the throughput should go up
+        slowdown = -change if current[key]["mode"] == "thrpt" else change
+        regressed = slowdown > args.threshold
+        regressions += regressed
+        print("%-70s %14.3f %14.3f %+8.1f%% %s%s" % (key, before["score"], now["score"], change, unit,
+                                                    "  REGRESSION" if regressed else ""))
+    if regressions:
+        print("%d benchmarks are more than %.0f%% slower" % (regressions, args.threshold))
+        return 1
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,41 @@
+package net.ildar.wurm;
+
+import net.ildar.wurm.headless.HeadlessClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Utils#getAreaCoordinates()} in every direction the player can face
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AreaCoordinatesBenchmark {
+    @Param({"0", "90", "180", "270"})
+    public float rotation;
+
+    private HeadlessClient client;
+
+    @Setup
+    public void setUp() {
+        client = new HeadlessClient("Benchmark");
+        client.setConsoleSink(line -> {});
+        client.setPlayerPosition(1024 * 4 + 2, 1024 * 4 + 2);
+        client.getPlayer().setRotation(rotation, 0);
+        client.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop();
+    }
+
+    @Benchmark
+    public int[][] getAreaCoordinates() {
+        return Utils.getAreaCoordinates();
+    }
+}
@@ -0,0 +1,96 @@
+package net.ildar.wurm;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Chat#onMessage(String, Object, boolean)} replaying the recorded event lines of chat-corpus.txt
+ * to the processors of a typical session: the assistant, a miner, a crafter and the action slots.
+ * "rules" registers the processors with {@link Chat.MatchRule}, matched together in one pass over the line,
+ * "filters" registers the same phrases as the contains lambdas checked one by one, as the bots did before the rules
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatDispatchBenchmark {
+    private static final String TAB = ":Event";
+    //the phrases of one processor each
+    private static final String[][] PHRASES = {
+            {"you will start dispelling", "You start to cast ", "you will start casting"},
+            {"You cast ", "You fail to channel the ", "You must not move "},
+            {"until you can cast Wisdom of Vynora again."},
+            {"you will start drinking"},
+            {"The water is refreshing and it cools you down", "You are so bloated you cannot bring yourself to drink any thing"},
+            {"You start to pick the lock", "you will start picking lock"},
+            {"You fail to pick the lock"},
+            {"You pick the lock of"},
+            {"you will start attaching lock", "You lock the "},
+            {"is not locked."},
+            {"you will start cleaning."},
+            {"You will start praying", "You start to pray", "you will start praying"},
+            {"you will start burning", "You fuel the"},
+            {"You start to sacrifice", "you will start sacrificing"},
+            {"You mine "},
+            {"The cave walls sound hollow"},
+            {"You create"},
+            {"You improve the"},
+            {"You find"},
+            {"You make a lot of errors and need to take a break"},
+            {"You are too far away"},
+            {"You're too busy"},
+            {"You start "},
+    };
+
+    @Param({"rules", "filters"})
+    public String dispatch;
+
+    private final List<Chat.MessageProcessor> processors = new ArrayList<>();
+    private String[] corpus;
+    private int calls;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ChatDispatchBenchmark.class.getResourceAsStream("chat-corpus.txt"), StandardCharsets.UTF_8))) {
+            corpus = reader.lines().filter(line -> !line.isEmpty()).toArray(String[]::new);
+        }
+        for (String[] phrases : PHRASES) {
+            if (dispatch.equals("rules"))
+                processors.add(Chat.registerMessageProcessor(TAB, Chat.MatchRule.contains(phrases), () -> calls++));
+            else
+                processors.add(Chat.registerMessageProcessor(TAB, message -> {
+                    for (String phrase : phrases)
+                        if (message.contains(phrase))
+                            return true;
+                    return false;
+                }, () -> calls++));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        processors.forEach(Chat::unregisterMessageProcessor);
+        processors.clear();
+    }
+
+    /**
+     * One pass over the corpus
+     */
+    @Benchmark
+    public void replayCorpus(Blackhole blackhole) {
+        for (String line : corpus)
+            Chat.onMessage(TAB, line, false);
+        blackhole.consume(calls);
+    }
+}
@@ -0,0 +1,39 @@
+package net.ildar.wurm;
+
+import net.ildar.wurm.headless.HeadlessClient;
+import net.ildar.wurm.headless.HeadlessInventory;
+import net.ildar.wurm.headless.HeadlessItem;
+
+/**
+ * The headless client with a synthetic inventory of about 10k lines:
+ * 20 bags with 5 bags of 99 items each on the top level, the tools at the end of the last bag
+ */
+class InventoryFixture {
+    private static final String[] NAMES = {"stone brick", "iron lump", "log", "plank", "shaft", "nails", "rock shards",
+            "dirt", "clay", "cotton", "wemp fibre", "rope", "leather", "small nail", "large nail", "charcoal"};
+    private static final int BAGS = 20;
+    private static final int INNER_BAGS = 5;
+    private static final int ITEMS = 99;
+
+    static HeadlessClient start() {
+        HeadlessClient client = new HeadlessClient("Benchmark");
+        client.setConsoleSink(line -> {});
+        HeadlessInventory inventory = client.getInventory();
+        HeadlessItem last = null;
+        for (int i = 0; i < BAGS; i++) {
+            HeadlessItem bag = HeadlessItem.create("backpack", 50).setContainer(true);
+            for (int j = 0; j < INNER_BAGS; j++) {
+                HeadlessItem innerBag = HeadlessItem.create("satchel", 50).setContainer(true);
+                for (int k = 0; k < ITEMS; k++)
+                    innerBag.add(HeadlessItem.create(NAMES[(i + j + k) % NAMES.length], k));
+                bag.add(innerBag);
+                last = innerBag;
+            }
+            inventory.add(bag);
+        }
+        inventory.add(last, HeadlessItem.create("pickaxe", 40));
+        inventory.add(last, HeadlessItem.create("shovel", 30));
+        client.start();
+        return client;
+    }
+}
@@ -0,0 +1,55 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import net.ildar.wurm.headless.HeadlessClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The item searches of {@link Utils} in the inventory of {@link InventoryFixture},
+ * by the walk of the tree and by the {@link InventoryIndex}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventorySearchBenchmark {
+    @Param({"tree", "index"})
+    public String lookup;
+
+    private HeadlessClient client;
+
+    @Setup
+    public void setUp() {
+        client = InventoryFixture.start();
+        boolean indexed = lookup.equals("index");
+        InventoryIndex.setHooked(indexed);
+        InventoryIndex.setEnabled(indexed);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop();
+        InventoryIndex.setEnabled(false);
+        InventoryIndex.setHooked(false);
+    }
+
+    @Benchmark
+    public InventoryMetaItem getInventoryItem() {
+        return Utils.getInventoryItem("pickaxe");
+    }
+
+    @Benchmark
+    public List<InventoryMetaItem> getInventoryItems() {
+        return Utils.getInventoryItems("nail");
+    }
+
+    @Benchmark
+    public InventoryMetaItem locateToolItem() {
+        return Utils.locateToolItem("shovel");
+    }
+}
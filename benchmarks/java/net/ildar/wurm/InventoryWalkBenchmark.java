@@ -0,0 +1,91 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+import com.wurmonline.client.renderer.gui.WurmTreeList;
+import net.ildar.wurm.headless.HeadlessClient;
+import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full walk of the inventory tree of {@link InventoryFixture}.
+ * {@link #walkUncachedReflection} is the walk before the reflection handles were cached, kept as the reference
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryWalkBenchmark {
+    private HeadlessClient client;
+    private InventoryListComponent listComponent;
+
+    @Setup
+    public void setUp() {
+        client = InventoryFixture.start();
+        listComponent = client.getInventory().getListComponent();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop();
+    }
+
+    @Benchmark
+    public List<InventoryMetaItem> walkReflectionCache() {
+        return Utils.getSelectedItems(listComponent, true, true);
+    }
+
+    @Benchmark
+    public List<InventoryMetaItem> walkUncachedReflection() throws Exception {
+        WurmTreeList<?> itemList = ReflectionUtil.getPrivateField(listComponent,
+                ReflectionUtil.getField(listComponent.getClass(), "itemList"));
+        Object rootNode = ReflectionUtil.getPrivateField(itemList,
+                ReflectionUtil.getField(itemList.getClass(), "rootNode"));
+        return uncachedWalk(uncachedChildren(rootNode), true, true);
+    }
+
+    private static List<Object> uncachedChildren(Object node) throws NoSuchFieldException, IllegalAccessException {
+        return new ArrayList<>(ReflectionUtil.getPrivateField(node,
+                ReflectionUtil.getField(node.getClass(), "children")));
+    }
+
+    //Utils.getSelectedItems(List, boolean, boolean) before the reflection cache
+    private static List<InventoryMetaItem> uncachedWalk(List<Object> nodes, boolean getAll, boolean recursive) throws Exception {
+        List<InventoryMetaItem> selItems = new ArrayList<>();
+        for (Object currentNode : nodes) {
+            boolean isSelected = ReflectionUtil.getPrivateField(currentNode,
+                    ReflectionUtil.getField(currentNode.getClass(), "isSelected"));
+            List<Object> children = uncachedChildren(currentNode);
+            Object lineItem = ReflectionUtil.getPrivateField(currentNode,
+                    ReflectionUtil.getField(currentNode.getClass(), "item"));
+            InventoryMetaItem item = ReflectionUtil.getPrivateField(lineItem,
+                    ReflectionUtil.getField(lineItem.getClass(), "item"));
+            if (item == null) continue;
+            boolean isContainer = ReflectionUtil.getPrivateField(lineItem,
+                    ReflectionUtil.getField(lineItem.getClass(), "isContainer"));
+            boolean isInventoryGroup = ReflectionUtil.getPrivateField(lineItem,
+                    ReflectionUtil.getField(lineItem.getClass(), "isInventoryGroup"));
+            if (children.size() > 0) {
+                if (isContainer && !isInventoryGroup && (getAll || isSelected)) {
+                    Object firstChildrenLineItem = ReflectionUtil.getPrivateField(children.get(0),
+                            ReflectionUtil.getField(children.get(0).getClass(), "item"));
+                    InventoryMetaItem firstChildrenItem = ReflectionUtil.getPrivateField(firstChildrenLineItem,
+                            ReflectionUtil.getField(firstChildrenLineItem.getClass(), "item"));
+                    if (firstChildrenItem == null || firstChildrenItem.getId() != item.getId())
+                        selItems.add(item);
+                    if (recursive || getAll)
+                        selItems.addAll(uncachedWalk(children, true, true));
+                } else
+                    selItems.addAll(uncachedWalk(children, getAll || isSelected, recursive));
+            } else if (!isInventoryGroup && (getAll || isSelected))
+                selItems.add(item);
+        }
+        return selItems;
+    }
+}
@@ -0,0 +1,58 @@
+package net.ildar.wurm.bot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CollisionCache#refresh()} on the maps of {@link PathingFixture}:
+ * the full rebuild of the cache, the update after the player stepped to the next tile and the refresh without changes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollisionCacheBenchmark {
+    @Param({"open", "maze"})
+    public String map;
+
+    private PathingFixture fixture;
+    private CollisionCache cache;
+    private boolean stepped;
+
+    @Setup
+    public void setUp() {
+        fixture = new PathingFixture(map);
+        cache = new CollisionCache();
+        cache.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.client.stop();
+    }
+
+    @Benchmark
+    public CollisionCache rebuild() {
+        cache.terrainTime = 0;
+        cache.refresh();
+        return cache;
+    }
+
+    @Benchmark
+    public CollisionCache step() {
+        stepped = !stepped;
+        float x = PathingFixture.START * 4 + 2 + (stepped ? 4 : 0);
+        fixture.client.setPlayerPosition(x, PathingFixture.START * 4 + 2);
+        cache.refresh();
+        return cache;
+    }
+
+    @Benchmark
+    public CollisionCache unchanged() {
+        cache.refresh();
+        return cache;
+    }
+}
@@ -0,0 +1,63 @@
+package net.ildar.wurm.bot;
+
+import net.ildar.wurm.Utils.Vec2i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The path searches of {@link PathingBot} on the maps of {@link PathingFixture}.
+ * {@link #aStar} is the bare tile search, {@link #findPath} adds the terrain check and the smoothing of the path,
+ * {@link #findPathCached} is the repeated search answered by the path cache,
+ * {@link #clusterPlan} is the route over the clusters used by the long walks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathingBenchmark {
+    @Param({"open", "maze"})
+    public String map;
+
+    private PathingFixture fixture;
+    private PathingBot bot;
+
+    @Setup
+    public void setUp() {
+        fixture = new PathingFixture(map);
+        bot = new PathingBot();
+        bot.collisionCache.refresh();
+        bot.clusterGraph.update(bot.collisionCache);
+        if (aStar() == null)
+            throw new IllegalStateException("The goal can't be reached on the " + map + " map");
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.client.stop();
+    }
+
+    @Benchmark
+    public ArrayList<Vec2i> aStar() {
+        return bot.pathSearch.find(bot.collisionCache, PathingFixture.START, PathingFixture.START, fixture.goalX, fixture.goalY);
+    }
+
+    @Benchmark
+    public ArrayList<Vec2i> findPath() {
+        bot.pathCache.clear();
+        return bot.findPath(fixture.goalX, fixture.goalY);
+    }
+
+    @Benchmark
+    public ArrayList<Vec2i> findPathCached() {
+        return bot.findPath(fixture.goalX, fixture.goalY);
+    }
+
+    @Benchmark
+    public ClusterGraph.Route clusterPlan() {
+        return bot.clusterGraph.plan(bot.collisionCache, PathingFixture.START, PathingFixture.START, fixture.goalX, fixture.goalY);
+    }
+}
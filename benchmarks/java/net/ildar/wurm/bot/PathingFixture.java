@@ -0,0 +1,99 @@
+package net.ildar.wurm.bot;
+
+import com.wurmonline.mesh.Tiles;
+import net.ildar.wurm.headless.HeadlessClient;
+import net.ildar.wurm.headless.ScriptedTerrain;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * The headless client with the terrain of the path searches, filling the whole collision cache around the player.
+ * "open" is a field with scattered blocked tiles, the goal is 240 tiles away on both axes.
+ * "maze" is a perfect maze of one tile wide corridors, the worst case of the search, the goal is in the far corner
+ */
+class PathingFixture {
+    static final int START = 1024;
+    private static final int MINS = START - CollisionCache.pvsRadius;
+    private static final int CELLS = CollisionCache.pvsDiameter / 2;
+    private static final long SEED = 42;
+
+    final HeadlessClient client;
+    final int goalX;
+    final int goalY;
+
+    PathingFixture(String map) {
+        client = new HeadlessClient("Benchmark");
+        client.setConsoleSink(line -> {});
+        ScriptedTerrain terrain = client.getTerrain();
+        switch (map) {
+            case "open":
+                scatter(terrain);
+                goalX = START + 240;
+                goalY = START + 240;
+                break;
+            case "maze":
+                carveMaze(terrain);
+                goalX = MINS + 2 * (CELLS - 1);
+                goalY = MINS + 2 * (CELLS - 1);
+                break;
+            default:
+                throw new IllegalArgumentException(map);
+        }
+        client.setPlayerPosition(START * 4 + 2, START * 4 + 2);
+        client.start();
+    }
+
+    private static void scatter(ScriptedTerrain terrain) {
+        Random random = new Random(SEED);
+        terrain.setDefaultTile(Tiles.Tile.TILE_GRASS);
+        for (int y = MINS; y < MINS + CollisionCache.pvsDiameter; y++)
+            for (int x = MINS; x < MINS + CollisionCache.pvsDiameter; x++)
+                if (random.nextInt(100) < 6 && Math.abs(x - START) > 1 && Math.abs(y - START) > 1)
+                    terrain.setTile(x, y, Tiles.Tile.TILE_LAVA, (byte) 0);
+        terrain.setTile(START + 240, START + 240, Tiles.Tile.TILE_GRASS, (byte) 0);
+    }
+
+    /**
+     * The cells are the tiles with even offsets from the corner of the cache, the walls between them are knocked down
+     * by the depth first search from the cell of the player
+     */
+    private static void carveMaze(ScriptedTerrain terrain) {
+        Random random = new Random(SEED);
+        terrain.setDefaultTile(Tiles.Tile.TILE_LAVA);
+        boolean[] visited = new boolean[CELLS * CELLS];
+        Deque<Integer> stack = new ArrayDeque<>();
+        int start = (START - MINS) / 2 * CELLS + (START - MINS) / 2;
+        visited[start] = true;
+        stack.push(start);
+        open(terrain, start % CELLS, start / CELLS, 0, 0);
+        int[] dx = {1, -1, 0, 0};
+        int[] dy = {0, 0, 1, -1};
+        while (!stack.isEmpty()) {
+            int cell = stack.peek();
+            int x = cell % CELLS;
+            int y = cell / CELLS;
+            int first = random.nextInt(4);
+            boolean moved = false;
+            for (int i = 0; i < 4 && !moved; i++) {
+                int d = (first + i) % 4;
+                int nx = x + dx[d];
+                int ny = y + dy[d];
+                if (nx < 0 || ny < 0 || nx >= CELLS || ny >= CELLS || visited[ny * CELLS + nx])
+                    continue;
+                visited[ny * CELLS + nx] = true;
+                open(terrain, x, y, dx[d], dy[d]);
+                open(terrain, nx, ny, 0, 0);
+                stack.push(ny * CELLS + nx);
+                moved = true;
+            }
+            if (!moved)
+                stack.pop();
+        }
+    }
+
+    private static void open(ScriptedTerrain terrain, int cellX, int cellY, int dx, int dy) {
+        terrain.setTile(MINS + 2 * cellX + dx, MINS + 2 * cellY + dy, Tiles.Tile.TILE_GRASS, (byte) 0);
+    }
+}
@@ -0,0 +1,64 @@
+package net.ildar.wurm.bot;
+
+import net.ildar.wurm.BotController;
+import net.ildar.wurm.headless.HeadlessClient;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The task loop of {@link RMIBot}, the time from handing a task to the bot thread until it has run.
+ * The remote calls of the master and the clients end up here, so this is the local part of their latency
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RMIBotBenchmark {
+    private static final int BURST = 16;
+
+    private HeadlessClient client;
+    private RMIBot bot;
+
+    @Setup
+    public void setUp() {
+        client = new HeadlessClient("Benchmark");
+        client.setConsoleSink(line -> {});
+        client.start();
+        client.command("rmi", "on");
+        bot = BotController.getInstance().getInstance(RMIBot.class);
+        if (bot == null)
+            throw new IllegalStateException("RMIBot didn't start");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.stop();
+    }
+
+    @Benchmark
+    public void oneshotRoundTrip() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        bot.execute(done::countDown);
+        done.await();
+    }
+
+    @Benchmark
+    public void scheduledRoundTrip() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        bot.schedule(done::countDown, 0);
+        done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void oneshotBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++)
+            bot.execute(done::countDown);
+        done.await();
+    }
+}
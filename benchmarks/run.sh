@@ -0,0 +1,23 @@
+#!/bin/sh
+# Runs the benchmarks and writes the results to results.json, the arguments are passed to JMH.
+# The client jars are not packed into benchmarks.jar, they are taken from CLIENT_LOCATION(the WurmLauncher folder).
+#   mvn -pl benchmarks -am package
+#   benchmarks/run.sh [benchmark regex] [-p param=value...]
+#   benchmarks/compare.py benchmarks/baseline.json results.json
+# benchmarks/baseline.json is the reference, recorded with "-f 1 -wi 3 -w 1s -i 5 -r 1s" on Temurin JDK 17.0.9,
+# Linux on one vCPU of a Xeon server, with minimal stand-ins for the client classes instead of the client jars.
+# Results of another machine, JDK or client are not comparable with it, record a baseline of your own there:
+#   RESULTS=baseline.json benchmarks/run.sh -f 1 -wi 3 -w 1s -i 5 -r 1s
+set -e
+dir=$(dirname "$0")
+: "${CLIENT_LOCATION:=C:/Program Files (x86)/Steam/steamapps/common/Wurm Unlimited/WurmLauncher}"
+: "${RESULTS:=results.json}"
+case "$(uname -s)" in
+    CYGWIN*|MINGW*|MSYS*) sep=';' ;;
+    *) sep=':' ;;
+esac
+cp="$dir/target/benchmarks.jar"
+for jar in client client-patched common javassist modlauncher; do
+    cp="$cp$sep$CLIENT_LOCATION/$jar.jar"
+done
+exec java -cp "$cp" org.openjdk.jmh.Main -rf json -rff "$RESULTS" "$@"
@@ -0,0 +1,196 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The action queue of the player on the server side.
+ * The sent actions are queued up to the max action number, started one after another and finished after their duration,
+ * with the same event messages the server sends: "You start ...", the result of the action and "You're too busy to do that."
+ * The events are posted to the ":Event" tab of {@link Chat} by the tick thread, never from the thread that sent the action
+ */
+public class ActionSimulator {
+    public static final String TOO_BUSY = "You're too busy to do that.";
+    private static final long DEFAULT_DURATION = 3000;
+
+    private final Map<Short, Script> scripts = new HashMap<>();
+    private final Deque<Action> queue = new ArrayDeque<>();
+    private final List<String> pendingEvents = new ArrayList<>();
+    private final Map<String, Integer> completedByName = new TreeMap<>();
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("[HH:mm:ss] ");
+    private int maxActions = 3;
+    private double speed = 1;
+    //the time the running action ends
+    private long finishTime;
+    private long sent;
+    private long rejected;
+    private long completed;
+
+    /**
+     * Set the duration and the messages of the action, the actions without the script last 3 seconds
+     * @param outcome returns the message of the finished action, can return null
+     */
+    public synchronized ActionSimulator script(PlayerAction action, long durationMillis, Function<Action, String> outcome) {
+        scripts.put(action.getId(), new Script(durationMillis, outcome));
+        return this;
+    }
+
+    public synchronized ActionSimulator setMaxActions(int maxActions) {
+        this.maxActions = maxActions;
+        return this;
+    }
+
+    public synchronized int getMaxActions() {
+        return maxActions;
+    }
+
+    /**
+     * @param speed 10 makes the actions 10 times shorter
+     */
+    public synchronized ActionSimulator setSpeed(double speed) {
+        this.speed = speed;
+        return this;
+    }
+
+    synchronized void send(PlayerAction action, long source, long[] targets) {
+        if (action == PlayerAction.STOP) {
+            queue.clear();
+            return;
+        }
+        for (long target : targets) {
+            sent++;
+            if (queue.size() >= maxActions) {
+                rejected++;
+                pendingEvents.add(TOO_BUSY);
+                continue;
+            }
+            queue.addLast(new Action(action, source, target));
+            if (queue.size() == 1)
+                start(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Post the message to the event tab on the next tick
+     */
+    synchronized void event(String message) {
+        pendingEvents.add(message);
+    }
+
+    /**
+     * Finish the actions that are due and post the events, called by the tick thread
+     */
+    void tick() {
+        List<String> events;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (!queue.isEmpty() && now >= finishTime) {
+                Action action = queue.pollFirst();
+                finish(action);
+                if (!queue.isEmpty())
+                    start(finishTime);
+            }
+            if (pendingEvents.isEmpty())
+                return;
+            events = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+        }
+        String time = timeFormat.format(new Date());
+        for (String event : events)
+            Chat.onMessage(":Event", time + event, false);
+    }
+
+    private void start(long startTime) {
+        Action action = queue.peekFirst();
+        Script script = scripts.get(action.action.getId());
+        long duration = script != null ? script.duration : DEFAULT_DURATION;
+        finishTime = startTime + (long) (duration / speed);
+        pendingEvents.add("You start to " + action.getName() + ".");
+    }
+
+    private void finish(Action action) {
+        completed++;
+        completedByName.merge(action.getName(), 1, Integer::sum);
+        Script script = scripts.get(action.action.getId());
+        String message = script != null && script.outcome != null
+                ? script.outcome.apply(action)
+                : "You finish " + action.getName() + ".";
+        if (message != null)
+            pendingEvents.add(message);
+    }
+
+    /**
+     * @return the part of the running action that is done, from 0.01 to 1. Zero if no action is running
+     */
+    public synchronized float getProgress() {
+        if (queue.isEmpty())
+            return 0;
+        Action action = queue.peekFirst();
+        Script script = scripts.get(action.action.getId());
+        long duration = (long) ((script != null ? script.duration : DEFAULT_DURATION) / speed);
+        long left = finishTime - System.currentTimeMillis();
+        if (duration <= 0)
+            return 1;
+        return Math.max(0.01f, Math.min(1, 1 - (float) left / duration));
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    public synchronized long getCompletedCount() {
+        return completed;
+    }
+
+    /**
+     * @return the number of the finished actions by the name of the action
+     */
+    public synchronized Map<String, Integer> getCompletedByName() {
+        return new TreeMap<>(completedByName);
+    }
+
+    public synchronized void reset() {
+        queue.clear();
+        pendingEvents.clear();
+        completedByName.clear();
+        sent = rejected = completed = 0;
+    }
+
+    public static class Action {
+        public final PlayerAction action;
+        public final long source;
+        public final long target;
+
+        private Action(PlayerAction action, long source, long target) {
+            this.action = action;
+            this.source = source;
+            this.target = target;
+        }
+
+        public String getName() {
+            return action.getName().toLowerCase();
+        }
+    }
+
+    private static class Script {
+        private final long duration;
+        private final Function<Action, String> outcome;
+
+        private Script(long duration, Function<Action, String> outcome) {
+            this.duration = duration;
+            this.outcome = outcome;
+        }
+    }
+}
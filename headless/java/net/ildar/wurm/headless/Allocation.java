@@ -0,0 +1,82 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.shared.util.ModelName;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the instances of the client classes without running their constructors.
+ * The constructors of the client need the running game(OpenGL, options, the connection),
+ * so the fakes are allocated empty and only the fields read by the bots are filled in
+ */
+class Allocation {
+    private static final Object unsafe;
+    private static final Method allocateInstance;
+
+    //sun.misc.Unsafe is looked up reflectively, it is not visible to the compiler on the newer JDKs
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The field initializers of the class don't run either, all fields are null or zero
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T allocate(Class<T> cls) {
+        try {
+            return (T) allocateInstance.invoke(unsafe, cls);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Couldn't allocate " + cls.getName(), e);
+        }
+    }
+
+    /**
+     * The declared type of the field, looked up in the class and its superclasses
+     */
+    static Class<?> fieldType(Class<?> cls, String name) throws NoSuchFieldException {
+        for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name).getType();
+            } catch (NoSuchFieldException ignored) {
+            }
+        }
+        throw new NoSuchFieldException(cls.getName() + "." + name);
+    }
+
+    /**
+     * A new map that fits the declared type of the client field
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Map<K, V> newMap(Class<?> type) {
+        if (type.isInterface() || type.isAssignableFrom(ConcurrentHashMap.class))
+            return new ConcurrentHashMap<>();
+        try {
+            return (Map<K, V>) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't create the map of type " + type.getName(), e);
+        }
+    }
+
+    /**
+     * @return null if the model name can't be created in this client
+     */
+    static ModelName modelName(String name) {
+        try {
+            return ModelName.class.getConstructor(String.class).newInstance(name);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
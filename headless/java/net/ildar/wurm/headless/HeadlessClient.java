@@ -0,0 +1,191 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.mesh.Tiles;
+import net.ildar.wurm.BotController;
+import net.ildar.wurm.ConsoleBuffer;
+import net.ildar.wurm.OutboundBatcher;
+import net.ildar.wurm.SpatialIndex;
+import net.ildar.wurm.WindowRegistry;
+import net.ildar.wurm.WurmHelper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stand-in for the running game client, so the bots can run unmodified in a plain JVM.
+ * The heads up display, the world, the player, the server connection and the inventory are faked,
+ * the terrain, the items, the creatures and the durations of the actions are set by the script.
+ * A tick thread does the work of the game loop: finishes the actions, posts the events to the chat,
+ * sends the batched server calls and prints the console.
+ * Usage:
+ * <pre>
+ * HeadlessClient client = new HeadlessClient("Tester");
+ * client.getPlayer().setDamage(0.2f);
+ * client.getInventory().add(HeadlessItem.create("cotton", 20));
+ * client.getInventory().add(client.getInventory().getBody(), HeadlessItem.create("Cut", 0).setDamage(10));
+ * client.getActions().script(PlayerAction.FIRSTAID, 5000, action -> "You bandage the wound.");
+ * client.start();
+ * client.command("h", "on");
+ * </pre>
+ * The bots that need the select bar, the crafting, the paper doll or the caves don't run headless
+ */
+public class HeadlessClient {
+    private static final long TICK_INTERVAL = 10;
+
+    private final AtomicLong nextId = new AtomicLong(2000000);
+    private final ActionSimulator actions = new ActionSimulator();
+    private final HeadlessInventory inventory = new HeadlessInventory();
+    private final ScriptedTerrain terrain = ScriptedTerrain.create(Tiles.Tile.TILE_GRASS);
+    private final HeadlessPlayer player;
+    private final HeadlessConnection connection;
+    private final HeadlessWorld world;
+    private final HeadlessHud hud;
+    private volatile Consumer<String> consoleSink = System.out::println;
+    private Thread tickThread;
+
+    public HeadlessClient(String playerName) {
+        player = HeadlessPlayer.create(playerName);
+        connection = HeadlessConnection.create(actions, inventory);
+        world = HeadlessWorld.create(player, terrain, connection);
+        hud = HeadlessHud.create(world, inventory, actions);
+    }
+
+    public ActionSimulator getActions() {
+        return actions;
+    }
+
+    public HeadlessInventory getInventory() {
+        return inventory;
+    }
+
+    public ScriptedTerrain getTerrain() {
+        return terrain;
+    }
+
+    public HeadlessPlayer getPlayer() {
+        return player;
+    }
+
+    public HeadlessWorld getWorld() {
+        return world;
+    }
+
+    public HeadlessHud getHud() {
+        return hud;
+    }
+
+    /**
+     * @param consoleSink receives the lines printed to the console, System.out by default
+     */
+    public void setConsoleSink(Consumer<String> consoleSink) {
+        this.consoleSink = consoleSink;
+    }
+
+    /**
+     * @param x the position in meters, the tile is x / 4
+     */
+    public void setPlayerPosition(float x, float y) {
+        player.setPosition(x, y, terrain.getInterpolatedHeight(x, y));
+    }
+
+    /**
+     * Put the item to the ground item map and run the hooks injected into its initialize(), like the client does
+     */
+    public HeadlessGroundItem addGroundItem(String name, String model, float x, float y) {
+        HeadlessGroundItem item = HeadlessGroundItem.create(nextId.incrementAndGet(), name, model, x, y);
+        connection.getGroundItems().put(item.getId(), item);
+        SpatialIndex.onGroundItemInitialized(item);
+        return item;
+    }
+
+    public void removeGroundItem(long id) {
+        connection.getGroundItems().remove(id);
+    }
+
+    public HeadlessCreature addCreature(String name, String model, float x, float y) {
+        HeadlessCreature creature = HeadlessCreature.create(nextId.incrementAndGet(), name, model, x, y);
+        connection.getCreatures().put(creature.getId(), creature);
+        return creature;
+    }
+
+    public void removeCreature(long id) {
+        connection.getCreatures().remove(id);
+    }
+
+    /**
+     * Post the message to the event tab of the chat on the next tick, like the server does
+     */
+    public void event(String message) {
+        actions.event(message);
+    }
+
+    /**
+     * Run the console command of the bots, like the "bot" command of the game console
+     */
+    public void command(String... args) {
+        BotController.getInstance().handleInput(args);
+    }
+
+    /**
+     * Point {@link WurmHelper#hud} at this client and start the tick thread
+     */
+    public synchronized void start() {
+        if (tickThread != null)
+            return;
+        WurmHelper.hud = hud;
+        tickThread = new Thread(this::tickLoop, "headless-tick");
+        tickThread.setDaemon(true);
+        tickThread.start();
+    }
+
+    /**
+     * Stop all bots and the tick thread
+     */
+    public synchronized void stop() {
+        if (tickThread == null)
+            return;
+        command("off");
+        tickThread.interrupt();
+        try {
+            tickThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tickThread = null;
+        tick();
+    }
+
+    private void tickLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            tick();
+            try {
+                Thread.sleep(TICK_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * One frame of the game loop, called by the tick thread. Can be called directly while the client is not started
+     */
+    public void tick() {
+        try {
+            actions.tick();
+            hud.getCreationWindow().updateProgress();
+            OutboundBatcher.lock();
+            try {
+                OutboundBatcher.drain();
+            } finally {
+                OutboundBatcher.unlock();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        ConsoleBuffer.beginFrame();
+        WindowRegistry.onGameTick(hud);
+        SpatialIndex.onGameTick(hud);
+        for (String line = ConsoleBuffer.poll(); line != null; line = ConsoleBuffer.poll())
+            consoleSink.accept(line);
+    }
+}
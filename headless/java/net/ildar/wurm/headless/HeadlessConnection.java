@@ -0,0 +1,77 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.comm.ServerConnectionListenerClass;
+import com.wurmonline.client.comm.SimpleServerConnectionClass;
+import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.BotController;
+import net.ildar.wurm.BotMetrics;
+import net.ildar.wurm.JfrEvents;
+import net.ildar.wurm.Utils;
+
+import java.util.Map;
+
+/**
+ * The server connection of the headless client.
+ * The actions go to the {@link ActionSimulator} and the moved items are moved in the {@link HeadlessInventory} right away.
+ * The listener keeps the maps of the ground items, creatures and structures in its client fields, where the bots read them
+ */
+public class HeadlessConnection extends SimpleServerConnectionClass {
+    private ActionSimulator actions;
+    private HeadlessInventory inventory;
+    private ServerConnectionListenerClass listener;
+    private Map<Long, Object> groundItems;
+    private Map<Long, Object> creatures;
+    private Map<Long, Object> structures;
+
+    static HeadlessConnection create(ActionSimulator actions, HeadlessInventory inventory) {
+        HeadlessConnection connection = Allocation.allocate(HeadlessConnection.class);
+        connection.actions = actions;
+        connection.inventory = inventory;
+        connection.listener = Allocation.allocate(ServerConnectionListenerClass.class);
+        connection.groundItems = connection.listenerMap("groundItems");
+        connection.creatures = connection.listenerMap("creatures");
+        connection.structures = connection.listenerMap("structures");
+        return connection;
+    }
+
+    private Map<Long, Object> listenerMap(String field) {
+        try {
+            Map<Long, Object> map = Allocation.newMap(Allocation.fieldType(ServerConnectionListenerClass.class, field));
+            Utils.setField(listener, field, map);
+            return map;
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set the " + field + " of the connection listener", e);
+        }
+    }
+
+    Map<Long, Object> getGroundItems() {
+        return groundItems;
+    }
+
+    Map<Long, Object> getCreatures() {
+        return creatures;
+    }
+
+    Map<Long, Object> getStructures() {
+        return structures;
+    }
+
+    //the hooks injected into the client connection by the mod
+    @Override
+    public void sendAction(long source, long[] targets, PlayerAction action) {
+        JfrEvents.onSendAction();
+        BotMetrics.onSendAction();
+        BotController.getInstance().getActionSlots().onSendAction();
+        actions.send(action, source, targets);
+    }
+
+    @Override
+    public void sendMoveSomeItems(long targetId, long[] itemIds) {
+        inventory.move(targetId, itemIds);
+    }
+
+    @Override
+    public ServerConnectionListenerClass getServerConnectionListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,44 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.renderer.gui.CreationWindow;
+import net.ildar.wurm.Utils;
+
+/**
+ * The creation window of the headless client, only the action progress is there.
+ * The bots wait for the "progress" of the "progressBar" to drop to zero before sending more actions,
+ * so the progress of the running action is copied to the client field on every tick.
+ * The crafting itself(the combine action of the creation window) is not simulated
+ */
+public class HeadlessCreationWindow extends CreationWindow {
+    private ActionSimulator actions;
+    private Object progressBar;
+
+    static HeadlessCreationWindow create(ActionSimulator actions) {
+        HeadlessCreationWindow window = Allocation.allocate(HeadlessCreationWindow.class);
+        window.actions = actions;
+        try {
+            window.progressBar = Allocation.allocate(Allocation.fieldType(CreationWindow.class, "progressBar"));
+            Utils.setField(window, "progressBar", window.progressBar);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set the progress bar of the creation window", e);
+        }
+        return window;
+    }
+
+    void updateProgress() {
+        try {
+            Utils.setField(progressBar, "progress", actions.getProgress());
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int getActionInUse() {
+        return actions.getQueuedCount();
+    }
+
+    @Override
+    public void decreaseActionInUse() {
+    }
+}
@@ -0,0 +1,135 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.renderer.CreatureData;
+import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
+import com.wurmonline.shared.util.ModelName;
+import net.ildar.wurm.Utils;
+
+/**
+ * A creature near the headless player, with the creature data in the "creature" field like in the client.
+ * The position can be changed by the script while the bots are running
+ */
+public class HeadlessCreature extends CreatureCellRenderable {
+    private long id;
+    private String name;
+    private ModelName modelName;
+    private byte kingdomId;
+    private volatile float x;
+    private volatile float y;
+    private volatile float health;
+    private Data data;
+
+    static HeadlessCreature create(long id, String name, String model, float x, float y) {
+        HeadlessCreature creature = Allocation.allocate(HeadlessCreature.class);
+        creature.id = id;
+        creature.name = name;
+        creature.modelName = Allocation.modelName(model);
+        creature.x = x;
+        creature.y = y;
+        creature.health = 1;
+        creature.data = Allocation.allocate(Data.class);
+        creature.data.hoverText = name;
+        try {
+            Utils.setField(creature, "creature", creature.data);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set the data of the creature", e);
+        }
+        return creature;
+    }
+
+    public HeadlessCreature setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public HeadlessCreature setKingdomId(byte kingdomId) {
+        this.kingdomId = kingdomId;
+        return this;
+    }
+
+    /**
+     * @param health from 0 to 1
+     */
+    public HeadlessCreature setHealth(float health) {
+        this.health = health;
+        return this;
+    }
+
+    /**
+     * @param hoverText the text of the creature data, like "fat, starving" or the name of the owner for pets
+     */
+    public HeadlessCreature setHoverText(String hoverText) {
+        data.hoverText = hoverText;
+        return this;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getHoverName() {
+        return name;
+    }
+
+    @Override
+    public ModelName getModelName() {
+        return modelName;
+    }
+
+    @Override
+    public CreatureData getCreatureData() {
+        return data;
+    }
+
+    @Override
+    public byte getKingdomId() {
+        return kingdomId;
+    }
+
+    @Override
+    public boolean isControlled() {
+        return false;
+    }
+
+    @Override
+    public boolean isItem() {
+        return false;
+    }
+
+    @Override
+    public float getPercentHealth() {
+        return health;
+    }
+
+    @Override
+    public float getXPos() {
+        return x;
+    }
+
+    @Override
+    public float getYPos() {
+        return y;
+    }
+
+    @Override
+    public float getHPos() {
+        return 0;
+    }
+
+    @Override
+    public int getLayer() {
+        return 0;
+    }
+
+    static class Data extends CreatureData {
+        private volatile String hoverText;
+
+        @Override
+        public String getHoverText() {
+            return hoverText;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.renderer.GroundItemData;
+import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
+import com.wurmonline.shared.util.ModelName;
+import net.ildar.wurm.Utils;
+
+/**
+ * An item lying on the ground near the headless player, with the item data in the "item" field like in the client
+ */
+public class HeadlessGroundItem extends GroundItemCellRenderable {
+    private Data data;
+
+    static HeadlessGroundItem create(long id, String name, String model, float x, float y) {
+        Data data = Allocation.allocate(Data.class);
+        data.id = id;
+        data.name = name;
+        data.modelName = Allocation.modelName(model);
+        data.x = x;
+        data.y = y;
+        HeadlessGroundItem item = Allocation.allocate(HeadlessGroundItem.class);
+        item.data = data;
+        try {
+            Utils.setField(item, "item", data);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set the data of the ground item", e);
+        }
+        return item;
+    }
+
+    public GroundItemData getData() {
+        return data;
+    }
+
+    @Override
+    public long getId() {
+        return data.id;
+    }
+
+    @Override
+    public String getHoverName() {
+        return data.name;
+    }
+
+    @Override
+    public float getXPos() {
+        return data.x;
+    }
+
+    @Override
+    public float getYPos() {
+        return data.y;
+    }
+
+    @Override
+    public float getHPos() {
+        return 0;
+    }
+
+    @Override
+    public int getLayer() {
+        return 0;
+    }
+
+    static class Data extends GroundItemData {
+        private long id;
+        private String name;
+        private ModelName modelName;
+        private float x;
+        private float y;
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getHoverText() {
+            return name;
+        }
+
+        @Override
+        public String getDescription() {
+            return "";
+        }
+
+        @Override
+        public ModelName getModelName() {
+            return modelName;
+        }
+
+        @Override
+        public float getX() {
+            return x;
+        }
+
+        @Override
+        public float getY() {
+            return y;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.game.World;
+import com.wurmonline.client.renderer.gui.*;
+import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Utils;
+
+/**
+ * The heads up display of the headless client, set to {@link net.ildar.wurm.WurmHelper#hud}.
+ * Only the inventory and the creation windows are there, the bots using the select bar
+ * or the paper doll get null from them and don't run headless
+ */
+public class HeadlessHud extends HeadsUpDisplay {
+    private HeadlessWorld world;
+    private HeadlessInventory inventory;
+    private HeadlessCreationWindow creationWindow;
+
+    static HeadlessHud create(HeadlessWorld world, HeadlessInventory inventory, ActionSimulator actions) {
+        HeadlessHud hud = Allocation.allocate(HeadlessHud.class);
+        hud.world = world;
+        hud.inventory = inventory;
+        hud.creationWindow = HeadlessCreationWindow.create(actions);
+        MindLogic mindLogic = Allocation.allocate(MindLogic.class);
+        mindLogic.actions = actions;
+        try {
+            Utils.setField(hud, "mindLogicCalculator", mindLogic);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set the mind logic calculator", e);
+        }
+        allocateConsole(hud);
+        return hud;
+    }
+
+    /**
+     * The bots write the command hints to the input line of the console, an empty console swallows them
+     */
+    private static void allocateConsole(HeadlessHud hud) {
+        try {
+            Class<?> consoleType = Allocation.fieldType(HeadsUpDisplay.class, "consoleComponent");
+            Object console = Allocation.allocate(consoleType);
+            Utils.setField(console, "inputField", Allocation.allocate(Allocation.fieldType(consoleType, "inputField")));
+            Utils.setField(hud, "consoleComponent", console);
+        } catch (IllegalAccessException | NoSuchFieldException | IllegalStateException e) {
+            //the hints are not printed
+        }
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public InventoryWindow getInventoryWindow() {
+        return inventory.getWindow();
+    }
+
+    @Override
+    public SelectBar getSelectBar() {
+        return null;
+    }
+
+    @Override
+    public HeadlessCreationWindow getCreationWindow() {
+        return creationWindow;
+    }
+
+    @Override
+    public PaperDollInventory getPaperDollInventory() {
+        return null;
+    }
+
+    /**
+     * The selected items of the inventory, there are no other windows to point at
+     */
+    @Override
+    public long[] getCommandTargetsFrom(int x, int y) {
+        return inventory.getListComponent().getSelectedCommandTargets();
+    }
+
+    //through the connection like in the client, so the hooks of the sent actions see them
+    @Override
+    public void sendAction(PlayerAction action, long target) {
+        world.getServerConnection().sendAction(0, new long[]{target}, action);
+    }
+
+    @Override
+    public void sendAction(PlayerAction action, long[] targets) {
+        world.getServerConnection().sendAction(0, targets, action);
+    }
+
+    @Override
+    public void addOnscreenMessage(String message, float r, float g, float b, byte d) {
+        Utils.consolePrint(message);
+    }
+
+    static class MindLogic extends MindLogicCalculator {
+        private ActionSimulator actions;
+
+        @Override
+        public int getMaxNumberOfActions() {
+            return actions.getMaxActions();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+import com.wurmonline.client.renderer.gui.InventoryWindow;
+import com.wurmonline.client.renderer.gui.WurmTreeList;
+import net.ildar.wurm.Utils;
+
+import java.util.*;
+
+/**
+ * The inventory window of the headless client.
+ * The items are kept in {@link HeadlessItem} containers and the tree of the inventory list is rebuilt from them
+ * on every change, with the same nodes and line items that the client creates, so the tree walks of {@link Utils} work unmodified.
+ * The first line of the tree is the body and the second one is the inventory, like in the client
+ */
+public class HeadlessInventory {
+    private static final String LINE_ITEM_CLASS = InventoryListComponent.class.getName() + "$InventoryTreeListItem";
+
+    //the parent of the body and the inventory, the root item of the list
+    private final HeadlessItem top = HeadlessItem.create("", 100).setContainer(true);
+    private final HeadlessItem body = HeadlessItem.create("body", 100).setContainer(true);
+    private final HeadlessItem inventory = HeadlessItem.create("inventory", 100).setContainer(true);
+    private final Set<Long> selected = new HashSet<>();
+    private final ListComponent listComponent;
+    private final Window window;
+    private final Class<?> nodeClass;
+    private final Class<?> lineItemClass;
+    private final WurmTreeList<?> itemList;
+
+    HeadlessInventory() {
+        try {
+            nodeClass = Allocation.fieldType(WurmTreeList.class, "rootNode");
+            lineItemClass = Class.forName(LINE_ITEM_CLASS);
+            itemList = Allocation.allocate(WurmTreeList.class);
+        } catch (NoSuchFieldException | ClassNotFoundException e) {
+            throw new IllegalStateException("The inventory tree of this client is not supported", e);
+        }
+        listComponent = Allocation.allocate(ListComponent.class);
+        listComponent.inventory = this;
+        window = Allocation.allocate(Window.class);
+        window.listComponent = listComponent;
+        set(listComponent, "itemList", itemList);
+        top.add(body);
+        top.add(inventory);
+        set(listComponent, "rootItem", lineItem(top, true, false, top.getBaseName()));
+        rebuild();
+    }
+
+    public InventoryWindow getWindow() {
+        return window;
+    }
+
+    public InventoryListComponent getListComponent() {
+        return listComponent;
+    }
+
+    /**
+     * The container of the top level items
+     */
+    public HeadlessItem getRoot() {
+        return inventory;
+    }
+
+    public HeadlessItem getBody() {
+        return body;
+    }
+
+    /**
+     * Put the item to the top level of the inventory
+     */
+    public HeadlessItem add(HeadlessItem item) {
+        return add(inventory, item);
+    }
+
+    public synchronized HeadlessItem add(HeadlessItem container, HeadlessItem item) {
+        container.add(item);
+        rebuild();
+        return item;
+    }
+
+    public synchronized void remove(HeadlessItem item) {
+        HeadlessItem parent = (HeadlessItem) item.getParent();
+        if (parent != null)
+            parent.remove(item);
+        selected.remove(item.getId());
+        rebuild();
+    }
+
+    public synchronized HeadlessItem find(long id) {
+        return find(Collections.singletonList(top), id);
+    }
+
+    private static HeadlessItem find(List<InventoryMetaItem> items, long id) {
+        for (InventoryMetaItem item : items) {
+            if (item.getId() == id)
+                return (HeadlessItem) item;
+            HeadlessItem found = find(item.getChildren(), id);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+
+    /**
+     * Move the items into the target container, the items that are not in the inventory are ignored
+     * @return the number of moved items
+     */
+    synchronized int move(long targetId, long[] itemIds) {
+        HeadlessItem target = find(targetId);
+        if (target == null)
+            return 0;
+        int moved = 0;
+        for (long id : itemIds) {
+            HeadlessItem item = find(id);
+            if (item == null || item == target)
+                continue;
+            target.add(item);
+            moved++;
+        }
+        if (moved > 0)
+            rebuild();
+        return moved;
+    }
+
+    public synchronized void select(HeadlessItem... items) {
+        for (HeadlessItem item : items)
+            selected.add(item.getId());
+        rebuild();
+    }
+
+    public synchronized void clearSelection() {
+        selected.clear();
+        rebuild();
+    }
+
+    synchronized long[] getSelectedIds() {
+        long[] ids = new long[selected.size()];
+        int i = 0;
+        for (long id : selected)
+            ids[i++] = id;
+        return ids;
+    }
+
+    /**
+     * Replace the tree of the list with a new one, the bots keep walking the old tree if they started already
+     */
+    private void rebuild() {
+        Object root = node(null, false, false, null);
+        List<Object> lines = children(root);
+        lines.add(itemNode(body, true));
+        lines.add(itemNode(inventory, true));
+        set(itemList, "rootNode", root);
+    }
+
+    private Object itemNode(HeadlessItem item, boolean isInventoryGroup) {
+        Object node = node(item, item.isContainer(), isInventoryGroup, item.getBaseName());
+        List<Object> children = children(node);
+        for (InventoryMetaItem child : item.getChildren())
+            children.add(itemNode((HeadlessItem) child, false));
+        return node;
+    }
+
+    private Object node(HeadlessItem item, boolean isContainer, boolean isInventoryGroup, String name) {
+        Object node = Allocation.allocate(nodeClass);
+        set(node, "children", new ArrayList<>());
+        set(node, "isSelected", item != null && selected.contains(item.getId()));
+        if (item != null)
+            set(node, "item", lineItem(item, isContainer, isInventoryGroup, name));
+        return node;
+    }
+
+    private Object lineItem(HeadlessItem item, boolean isContainer, boolean isInventoryGroup, String name) {
+        Object lineItem = Allocation.allocate(lineItemClass);
+        set(lineItem, "item", item);
+        set(lineItem, "isContainer", isContainer);
+        set(lineItem, "isInventoryGroup", isInventoryGroup);
+        set(lineItem, "itemName", name);
+        return lineItem;
+    }
+
+    private static List<Object> children(Object node) {
+        try {
+            return Utils.getField(node, "children");
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(Object target, String field, Object value) {
+        try {
+            Utils.setField(target, field, value);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException("Couldn't set " + target.getClass().getName() + "." + field, e);
+        }
+    }
+
+    static class ListComponent extends InventoryListComponent {
+        private HeadlessInventory inventory;
+
+        @Override
+        public long[] getSelectedCommandTargets() {
+            return inventory.getSelectedIds();
+        }
+    }
+
+    static class Window extends InventoryWindow {
+        private InventoryListComponent listComponent;
+
+        @Override
+        public InventoryListComponent getInventoryListComponent() {
+            return listComponent;
+        }
+    }
+}
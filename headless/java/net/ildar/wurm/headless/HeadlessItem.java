@@ -0,0 +1,172 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An item of the headless inventory, the fields are set by the script instead of the server packets
+ */
+public class HeadlessItem extends InventoryMetaItem {
+    private static final AtomicLong nextId = new AtomicLong(1000000);
+
+    private long id;
+    private String name;
+    private String customName;
+    private float quality;
+    private float damage;
+    private float weight;
+    private byte materialId;
+    private byte rarity;
+    private short temperature;
+    private boolean container;
+    private HeadlessItem parent;
+    private List<InventoryMetaItem> children;
+
+    public static HeadlessItem create(String name, float quality) {
+        return create(nextId.incrementAndGet(), name, quality);
+    }
+
+    public static HeadlessItem create(long id, String name, float quality) {
+        HeadlessItem item = Allocation.allocate(HeadlessItem.class);
+        item.id = id;
+        item.name = name;
+        item.quality = quality;
+        item.weight = 1;
+        item.children = new ArrayList<>();
+        return item;
+    }
+
+    public HeadlessItem setDamage(float damage) {
+        this.damage = damage;
+        return this;
+    }
+
+    public HeadlessItem setWeight(float weight) {
+        this.weight = weight;
+        return this;
+    }
+
+    public HeadlessItem setMaterialId(byte materialId) {
+        this.materialId = materialId;
+        return this;
+    }
+
+    public HeadlessItem setRarity(byte rarity) {
+        this.rarity = rarity;
+        return this;
+    }
+
+    public HeadlessItem setTemperature(short temperature) {
+        this.temperature = temperature;
+        return this;
+    }
+
+    public HeadlessItem setContainer(boolean container) {
+        this.container = container;
+        return this;
+    }
+
+    public HeadlessItem setCustomName(String customName) {
+        this.customName = customName;
+        return this;
+    }
+
+    public HeadlessItem setQuality(float quality) {
+        this.quality = quality;
+        return this;
+    }
+
+    /**
+     * Put the item into this container, the item is removed from its current container
+     */
+    public synchronized HeadlessItem add(HeadlessItem item) {
+        if (item.parent != null)
+            item.parent.remove(item);
+        children.add(item);
+        item.parent = this;
+        container = true;
+        return this;
+    }
+
+    public synchronized void remove(HeadlessItem item) {
+        if (children.remove(item))
+            item.parent = null;
+    }
+
+    public boolean isContainer() {
+        return container;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public String getBaseName() {
+        return name;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return customName != null ? name + " \"" + customName + "\"" : name;
+    }
+
+    @Override
+    public String getCustomName() {
+        return customName;
+    }
+
+    @Override
+    public float getQuality() {
+        return quality;
+    }
+
+    @Override
+    public float getDamage() {
+        return damage;
+    }
+
+    @Override
+    public float getWeight() {
+        return weight;
+    }
+
+    @Override
+    public byte getMaterialId() {
+        return materialId;
+    }
+
+    @Override
+    public byte getRarity() {
+        return rarity;
+    }
+
+    @Override
+    public short getTemperature() {
+        return temperature;
+    }
+
+    @Override
+    public synchronized List<InventoryMetaItem> getChildren() {
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public InventoryMetaItem getParent() {
+        return parent;
+    }
+
+    @Override
+    public long getParentId() {
+        return parent != null ? parent.id : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + id + ")";
+    }
+}
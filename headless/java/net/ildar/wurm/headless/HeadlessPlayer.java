@@ -0,0 +1,139 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.game.PlayerObj;
+import com.wurmonline.client.game.SkillSet;
+import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
+import net.ildar.wurm.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The player of the headless client. The position and the rotation are kept in the fields of the client
+ * ("xPosUsed", "yPosUsed", "hPosUsed", "xRotUsed", "yRotUsed"), because the bots move and turn the player by setting them
+ */
+public class HeadlessPlayer extends PlayerObj {
+    private String name;
+    private volatile float stamina;
+    private volatile float damage;
+    private volatile float thirst;
+    private volatile float hunger;
+    private Skills skills;
+
+    static HeadlessPlayer create(String name) {
+        HeadlessPlayer player = Allocation.allocate(HeadlessPlayer.class);
+        player.name = name;
+        player.stamina = 1;
+        player.skills = Allocation.allocate(Skills.class);
+        player.skills.values = new ConcurrentHashMap<>();
+        return player;
+    }
+
+    /**
+     * @param x the position in meters
+     */
+    public void setPosition(float x, float y, float h) {
+        set("xPosUsed", x);
+        set("yPosUsed", y);
+        set("hPosUsed", h);
+    }
+
+    /**
+     * @param xRot the direction in degrees
+     */
+    public void setRotation(float xRot, float yRot) {
+        set("xRotUsed", xRot);
+        set("yRotUsed", yRot);
+    }
+
+    float get(String field) {
+        try {
+            return Utils.getField(this, field);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void set(String field, float value) {
+        try {
+            Utils.setField(this, field, value);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param stamina from 0 to 1
+     */
+    public void setStamina(float stamina) {
+        this.stamina = stamina;
+    }
+
+    /**
+     * @param damage from 0 to 1
+     */
+    public void setDamage(float damage) {
+        this.damage = damage;
+    }
+
+    public void setThirst(float thirst) {
+        this.thirst = thirst;
+    }
+
+    public void setHunger(float hunger) {
+        this.hunger = hunger;
+    }
+
+    public void setSkill(String skill, float value) {
+        skills.values.put(skill, value);
+    }
+
+    @Override
+    public String getPlayerName() {
+        return name;
+    }
+
+    @Override
+    public float getStamina() {
+        return stamina;
+    }
+
+    @Override
+    public float getDamage() {
+        return damage;
+    }
+
+    @Override
+    public float getThirst() {
+        return thirst;
+    }
+
+    @Override
+    public float getHunger() {
+        return hunger;
+    }
+
+    @Override
+    public int getLayer() {
+        return 0;
+    }
+
+    @Override
+    public CreatureCellRenderable getCarrierCreature() {
+        return null;
+    }
+
+    @Override
+    public SkillSet getSkillSet() {
+        return skills;
+    }
+
+    static class Skills extends SkillSet {
+        private Map<String, Float> values;
+
+        @Override
+        public float getSkillValue(String skill) {
+            return values.getOrDefault(skill, 0f);
+        }
+    }
+}
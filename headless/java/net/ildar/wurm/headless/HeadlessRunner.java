@@ -0,0 +1,54 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.shared.constants.PlayerAction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a bot in the headless client from the command line, as a smoke test of the client and the bot together.
+ * The ground item getter is started like from the game console and collects the lumps lying around the player,
+ * the rock next to them must stay on the ground. Prints the console of the client and exits with 1 if the bot failed.
+ * Usage:
+ * <pre>
+ * java -cp &lt;the client jars, Main and Headless&gt; net.ildar.wurm.headless.HeadlessRunner [seconds]
+ * </pre>
+ */
+public class HeadlessRunner {
+    private static final int LUMPS = 6;
+    private static final long DEFAULT_TIME_LIMIT = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        long timeLimit = (args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TIME_LIMIT) * 1000;
+        HeadlessClient client = new HeadlessClient("Runner");
+        Set<Long> taken = ConcurrentHashMap.newKeySet();
+        client.getActions().setSpeed(10).script(PlayerAction.TAKE, 1000, action -> {
+            client.removeGroundItem(action.target);
+            taken.add(action.target);
+            return "You pick up the item.";
+        });
+        client.setPlayerPosition(400, 400);
+        List<Long> lumps = new ArrayList<>();
+        for (int i = 0; i < LUMPS; i++)
+            lumps.add(client.addGroundItem("iron lump", "model.resource.lump.iron", 399 + i % 3, 399 + i / 3).getId());
+        long rock = client.addGroundItem("rock", "model.resource.rock", 401, 401).getId();
+
+        client.start();
+        client.command("gig", "on");
+        client.command("gig", "a", "lump");
+        long start = System.currentTimeMillis();
+        while (!taken.containsAll(lumps) && System.currentTimeMillis() - start < timeLimit)
+            Thread.sleep(50);
+        long elapsed = System.currentTimeMillis() - start;
+        client.stop();
+
+        boolean passed = taken.containsAll(lumps) && !taken.contains(rock);
+        System.out.println("GroundItemGetterBot took " + lumps.stream().filter(taken::contains).count() + " of " + LUMPS
+                + " lumps in " + elapsed + "ms" + (taken.contains(rock) ? " and the rock" : "")
+                + ", " + client.getActions().getSentCount() + " actions sent, "
+                + client.getActions().getRejectedCount() + " rejected - " + (passed ? "passed" : "failed"));
+        System.exit(passed ? 0 : 1);
+    }
+}
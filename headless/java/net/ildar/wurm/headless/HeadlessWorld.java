@@ -0,0 +1,105 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.WurmClientBase;
+import com.wurmonline.client.comm.SimpleServerConnectionClass;
+import com.wurmonline.client.game.CaveDataBuffer;
+import com.wurmonline.client.game.NearTerrainDataBuffer;
+import com.wurmonline.client.game.PlayerObj;
+import com.wurmonline.client.game.World;
+import com.wurmonline.client.renderer.PickableUnit;
+
+/**
+ * The world of the headless client, the player is always on the surface.
+ * There is no client(mouse, window) and no cave buffer, the bots using them don't run headless
+ */
+public class HeadlessWorld extends World {
+    private HeadlessPlayer player;
+    private ScriptedTerrain terrain;
+    private HeadlessConnection connection;
+    private volatile PickableUnit hoveredObject;
+
+    static HeadlessWorld create(HeadlessPlayer player, ScriptedTerrain terrain, HeadlessConnection connection) {
+        HeadlessWorld world = Allocation.allocate(HeadlessWorld.class);
+        world.player = player;
+        world.terrain = terrain;
+        world.connection = connection;
+        return world;
+    }
+
+    /**
+     * Set the object under the mouse, the bots configured by "the hovered object" take their target from here
+     */
+    public void setHoveredObject(PickableUnit hoveredObject) {
+        this.hoveredObject = hoveredObject;
+    }
+
+    @Override
+    public PlayerObj getPlayer() {
+        return player;
+    }
+
+    @Override
+    public NearTerrainDataBuffer getNearTerrainBuffer() {
+        return terrain;
+    }
+
+    @Override
+    public CaveDataBuffer getCaveBuffer() {
+        return null;
+    }
+
+    @Override
+    public SimpleServerConnectionClass getServerConnection() {
+        return connection;
+    }
+
+    @Override
+    public WurmClientBase getClient() {
+        return null;
+    }
+
+    @Override
+    public PickableUnit getCurrentHoveredObject() {
+        return hoveredObject;
+    }
+
+    @Override
+    public int getPlayerLayer() {
+        return 0;
+    }
+
+    @Override
+    public float getPlayerPosX() {
+        return player.get("xPosUsed");
+    }
+
+    @Override
+    public float getPlayerPosY() {
+        return player.get("yPosUsed");
+    }
+
+    @Override
+    public float getPlayerPosH() {
+        return player.get("hPosUsed");
+    }
+
+    @Override
+    public float getPlayerRotX() {
+        return player.get("xRotUsed");
+    }
+
+    @Override
+    public float getPlayerRotY() {
+        return player.get("yRotUsed");
+    }
+
+    @Override
+    public int getPlayerCurrentTileX() {
+        return (int) Math.floor(getPlayerPosX() / 4);
+    }
+
+    @Override
+    public int getPlayerCurrentTileY() {
+        return (int) Math.floor(getPlayerPosY() / 4);
+    }
+}
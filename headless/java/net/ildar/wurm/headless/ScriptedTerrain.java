@@ -0,0 +1,87 @@
+package net.ildar.wurm.headless;
+
+import com.wurmonline.client.game.NearTerrainDataBuffer;
+import com.wurmonline.mesh.Tiles;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The terrain around the player, every tile is the default tile unless it was set.
+ * The heights are kept per tile corner, in meters like the client buffer
+ */
+public class ScriptedTerrain extends NearTerrainDataBuffer {
+    private Tiles.Tile defaultTile;
+    private Map<Long, Tiles.Tile> tiles;
+    private Map<Long, Byte> data;
+    private Map<Long, Float> heights;
+
+    static ScriptedTerrain create(Tiles.Tile defaultTile) {
+        ScriptedTerrain terrain = Allocation.allocate(ScriptedTerrain.class);
+        terrain.defaultTile = defaultTile;
+        terrain.tiles = new HashMap<>();
+        terrain.data = new HashMap<>();
+        terrain.heights = new HashMap<>();
+        return terrain;
+    }
+
+    //the hash of the long is the xor of its halves, the low bits of the coordinates are kept in the low half so the keys of the map don't collide
+    private static long key(int x, int y) {
+        return ((long) (x >> 16) << 48) | (((long) (y >> 16) & 0xFFFF) << 32) | ((x & 0xFFFF) << 16 | (y & 0xFFFF)) & 0xFFFFFFFFL;
+    }
+
+    public synchronized ScriptedTerrain setDefaultTile(Tiles.Tile tile) {
+        defaultTile = tile;
+        return this;
+    }
+
+    public synchronized ScriptedTerrain setTile(int x, int y, Tiles.Tile tile, byte tileData) {
+        tiles.put(key(x, y), tile);
+        data.put(key(x, y), tileData);
+        return this;
+    }
+
+    /**
+     * Set the tile type of the rectangle, the corners are inclusive
+     */
+    public synchronized ScriptedTerrain fill(int x1, int y1, int x2, int y2, Tiles.Tile tile) {
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+            for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++)
+                tiles.put(key(x, y), tile);
+        return this;
+    }
+
+    public synchronized ScriptedTerrain setHeight(int x, int y, float height) {
+        heights.put(key(x, y), height);
+        return this;
+    }
+
+    @Override
+    public synchronized Tiles.Tile getTileType(int x, int y) {
+        return tiles.getOrDefault(key(x, y), defaultTile);
+    }
+
+    @Override
+    public synchronized byte getData(int x, int y) {
+        return data.getOrDefault(key(x, y), (byte) 0);
+    }
+
+    @Override
+    public synchronized float getHeight(int x, int y) {
+        return heights.getOrDefault(key(x, y), 0f);
+    }
+
+    /**
+     * @param x the position in meters
+     */
+    @Override
+    public float getInterpolatedHeight(float x, float y) {
+        int tileX = (int) Math.floor(x / 4);
+        int tileY = (int) Math.floor(y / 4);
+        float fx = x / 4 - tileX;
+        float fy = y / 4 - tileY;
+        float top = getHeight(tileX, tileY) * (1 - fx) + getHeight(tileX + 1, tileY) * fx;
+        float bottom = getHeight(tileX, tileY + 1) * (1 - fx) + getHeight(tileX + 1, tileY + 1) * fx;
+        return top * (1 - fy) + bottom * fy;
+    }
+}
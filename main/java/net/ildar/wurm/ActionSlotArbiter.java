@@ -0,0 +1,363 @@
+package net.ildar.wurm;
+
+import net.ildar.wurm.bot.Bot;
+
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the server action queue of the player between the running bots.
+ * The timed actions are submitted here instead of being sent directly, and are sent while there are free slots.
+ * The urgent submissions are sent first and one slot is kept for them while the urgent work is going on,
+ * the rest of the slots are handed out to the normal and bulk work by their weights.
+ * A slot is freed when the next queued action starts, or when nothing happened for the stale timeout.
+ * The submission rejected with "You're too busy" is put back to the front of its queue and sent after a slot is freed.
+ * The submissions are picked and sent by one sender thread, so the chat callbacks of the render thread only update the slots,
+ * the actions are sent outside the lock and in the order they were put in flight.
+ * The actions sent past the arbiter, by the bots sending directly or by the player, are seen by the hook of the server connection
+ * and take their places in flight too. So their starts and rejections free their own places
+ * instead of the slots of the submissions, and a submission is put back only when it was the rejected one
+ */
+public class ActionSlotArbiter {
+    private static final Chat.MatchRule STARTED = Chat.MatchRule.startsWith("You start ");
+    private static final Chat.MatchRule TOO_BUSY = Chat.MatchRule.contains("You're too busy");
+    private static final Chat.MatchRule NOT_QUEUED = Chat.MatchRule.contains("You are too far away");
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long STALE_TIMEOUT = 20000;
+    //the slot stays reserved this long after the last urgent submission
+    private static final long URGENT_RESERVE_TIME = 60000;
+
+    private final Map<Priority, Deque<Submission>> pending = new EnumMap<>(Priority.class);
+    private final Map<Priority, Long> passes = new EnumMap<>(Priority.class);
+    //in the order they were sent, the actions sent past the arbiter have no bot
+    private final Deque<Submission> inFlight = new ArrayDeque<>();
+    //picked by the dispatch and not sent yet, they take their slots already
+    private int picked;
+    private final Map<Bot, Usage> usages = new LinkedHashMap<>();
+    //the oldest action in flight is running
+    private boolean started;
+    //the server queue was found full, nothing is sent until a slot is freed
+    private boolean full;
+    private long lastChange;
+    private long lastUrgentSubmission;
+    //set on the first submission, the sent actions are not tracked before
+    private volatile boolean processorsRegistered;
+    private boolean dispatchScheduled;
+    private ThreadPoolExecutor sender;
+    //set while the sender sends a submission, so the hook of the server connection doesn't take it for another action
+    private final ThreadLocal<Boolean> sending = new ThreadLocal<>();
+
+    ActionSlotArbiter() {
+        for (Priority priority : Priority.values()) {
+            pending.put(priority, new ArrayDeque<>());
+            passes.put(priority, 0L);
+        }
+    }
+
+    /**
+     * Send the action now if there is a free slot for it, or later when one is freed
+     * @param key the not yet sent submission of the same bot with equal key is replaced, can be null
+     */
+    public synchronized void submit(Bot bot, Priority priority, Object key, Runnable sendAction) {
+        registerProcessors();
+        Deque<Submission> queue = pending.get(priority);
+        if (key != null)
+            queue.removeIf(submission -> submission.bot == bot && key.equals(submission.key));
+        queue.addLast(new Submission(bot, priority, key, sendAction));
+        getUsage(bot).priority = priority;
+        if (priority == Priority.URGENT)
+            lastUrgentSubmission = System.currentTimeMillis();
+        scheduleDispatch();
+    }
+
+    /**
+     * Forget the not yet sent submissions of the stopped bot
+     */
+    public synchronized void removeBot(Bot bot) {
+        pending.values().forEach(queue -> queue.removeIf(submission -> submission.bot == bot));
+        usages.remove(bot);
+    }
+
+    /**
+     * Called by the hooks of the server connection on every sent action
+     */
+    public void onSendAction() {
+        if (!processorsRegistered || sending.get() != null)
+            return;
+        synchronized (this) {
+            Submission other = new Submission(null, null, null, null);
+            other.sentTime = System.currentTimeMillis();
+            inFlight.addLast(other);
+            if (inFlight.size() == 1)
+                lastChange = other.sentTime;
+        }
+    }
+
+    private void registerProcessors() {
+        if (processorsRegistered)
+            return;
+        processorsRegistered = true;
+        Chat.registerMessageProcessor(":Event", STARTED, this::onStarted);
+        Chat.registerMessageProcessor(":Event", TOO_BUSY, this::onTooBusy);
+        Chat.registerMessageProcessor(":Event", NOT_QUEUED, this::onNotQueued);
+    }
+
+    private synchronized void onStarted() {
+        if (inFlight.isEmpty()) {
+            //the queue was filled by the actions of the player, one of them has finished
+            if (full) {
+                full = false;
+                changed();
+            }
+            return;
+        }
+        if (started)
+            free(inFlight.pollFirst());
+        started = true;
+        if (BotMetrics.isEnabled() && !inFlight.isEmpty() && inFlight.peekFirst().bot != null)
+            inFlight.peekFirst().bot.getMetrics().actionConfirmed();
+        changed();
+    }
+
+    private synchronized void onTooBusy() {
+        Submission submission = inFlight.pollLast();
+        if (submission == null)
+            return;
+        Usage usage = release(submission);
+        if (submission.bot == null || !usages.containsKey(submission.bot)) {
+            //some other action was rejected, or the bot was stopped
+        } else if (++submission.attempts < MAX_ATTEMPTS) {
+            usage.requeued++;
+            pending.get(submission.priority).addFirst(submission);
+        } else {
+            usage.dropped++;
+            Utils.consolePrint("The action of " + submission.bot.getClass().getSimpleName() + " was rejected " + MAX_ATTEMPTS + " times and dropped");
+        }
+        full = true;
+        changed();
+    }
+
+    private synchronized void onNotQueued() {
+        Submission submission = inFlight.pollLast();
+        if (submission == null)
+            return;
+        release(submission).dropped++;
+        changed();
+    }
+
+    private void free(Submission submission) {
+        if (submission != null)
+            release(submission);
+        full = false;
+    }
+
+    /**
+     * @return the usage of the bot, not kept if the bot was removed already or the action was sent past the arbiter
+     */
+    private Usage release(Submission submission) {
+        Usage usage = submission.bot == null ? null : usages.get(submission.bot);
+        if (usage == null)
+            return new Usage();
+        usage.inFlight--;
+        return usage;
+    }
+
+    private void changed() {
+        lastChange = System.currentTimeMillis();
+        if (!full)
+            scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled)
+            return;
+        dispatchScheduled = true;
+        if (sender == null) {
+            sender = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "action-slots");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sender.allowCoreThreadTimeOut(true);
+        }
+        sender.execute(this::dispatchAndSend);
+    }
+
+    /**
+     * Runs on the sender thread only. The send failures are reported by the calls themselves,
+     * they can be sent later with the batch of the writer tick
+     */
+    private void dispatchAndSend() {
+        List<Submission> picked;
+        synchronized (this) {
+            dispatchScheduled = false;
+            picked = dispatch();
+        }
+        for (Submission submission : picked)
+            OutboundBatcher.submit(() -> send(submission));
+    }
+
+    /**
+     * Put the submission in flight after the actions sent before it and send it
+     */
+    private void send(Submission submission) {
+        synchronized (this) {
+            picked--;
+            submission.sentTime = System.currentTimeMillis();
+            inFlight.addLast(submission);
+            if (inFlight.size() == 1)
+                lastChange = submission.sentTime;
+        }
+        sending.set(true);
+        try {
+            submission.sendAction.run();
+        } catch (Exception e) {
+            sendFailed(submission, e);
+        } finally {
+            sending.remove();
+        }
+    }
+
+    private synchronized void sendFailed(Submission submission, Exception e) {
+        Utils.consolePrint("Couldn't send the action of " + submission.bot.getClass().getSimpleName() + " - " + e.toString());
+        if (inFlight.remove(submission)) {
+            release(submission);
+            changed();
+        }
+    }
+
+    /**
+     * @return the submissions given the slots, to be sent after releasing the lock
+     */
+    private List<Submission> dispatch() {
+        List<Submission> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        if (!inFlight.isEmpty() && now - lastChange > STALE_TIMEOUT) {
+            //the events of the actions were missed
+            inFlight.forEach(this::free);
+            inFlight.clear();
+            started = false;
+            full = false;
+            lastChange = now;
+        }
+        //the other actions are not known to have events, the ones without an answer are forgotten like the missed ones
+        Submission oldest = inFlight.peekFirst();
+        if (inFlight.removeIf(submission -> submission.bot == null && now - submission.sentTime > STALE_TIMEOUT)
+                && inFlight.peekFirst() != oldest)
+            started = false;
+        if (full)
+            return result;
+        int capacity = Math.max(1, Utils.getMaxActionNumber());
+        boolean reserveUrgent = capacity > 1 && now - lastUrgentSubmission < URGENT_RESERVE_TIME;
+        while (inFlight.size() + picked < capacity) {
+            Priority priority = nextPriority(reserveUrgent && inFlight.size() + picked == capacity - 1);
+            if (priority == null)
+                break;
+            Submission submission = pending.get(priority).pollFirst();
+            passes.put(priority, passes.get(priority) + Priority.STRIDE / priority.weight);
+            picked++;
+            Usage usage = getUsage(submission.bot);
+            usage.inFlight++;
+            usage.sent++;
+            //sent by the sender thread, the hook of the server connection doesn't know the bot
+            if (BotMetrics.isEnabled())
+                submission.bot.getMetrics().actionSent();
+            result.add(submission);
+        }
+        return result;
+    }
+
+    /**
+     * The urgent submissions always go first, the others are picked by the least pass(stride scheduling)
+     * @param urgentOnly only the slot reserved for the urgent work is left
+     */
+    private Priority nextPriority(boolean urgentOnly) {
+        if (!pending.get(Priority.URGENT).isEmpty())
+            return Priority.URGENT;
+        if (urgentOnly)
+            return null;
+        Priority next = null;
+        for (Priority priority : Priority.values()) {
+            if (priority == Priority.URGENT || pending.get(priority).isEmpty())
+                continue;
+            if (next == null || passes.get(priority) < passes.get(next))
+                next = priority;
+        }
+        if (next != null) {
+            //the idle queues must not save up passes for later
+            long minPass = passes.get(next);
+            for (Priority priority : Priority.values())
+                if (pending.get(priority).isEmpty() && passes.get(priority) < minPass)
+                    passes.put(priority, minPass);
+        }
+        return next;
+    }
+
+    private Usage getUsage(Bot bot) {
+        return usages.computeIfAbsent(bot, key -> new Usage());
+    }
+
+    public synchronized void printStatus() {
+        long others = inFlight.stream().filter(submission -> submission.bot == null).count();
+        Utils.consolePrint("Action slots: " + (inFlight.size() + picked) + "/" + Utils.getMaxActionNumber() + " in flight"
+                + (others > 0 ? "(" + others + " sent past the slots)" : "")
+                + (full ? ", the queue is full" : "")
+                + (System.currentTimeMillis() - lastUrgentSubmission < URGENT_RESERVE_TIME ? ", one slot is reserved for urgent work" : ""));
+        if (usages.isEmpty()) {
+            Utils.consolePrint("No bots have submitted actions");
+            return;
+        }
+        for (Map.Entry<Bot, Usage> entry : usages.entrySet()) {
+            Bot bot = entry.getKey();
+            Usage usage = entry.getValue();
+            long pendingCount = pending.values().stream()
+                    .flatMap(Collection::stream)
+                    .filter(submission -> submission.bot == bot)
+                    .count();
+            Utils.consolePrint(bot.getClass().getSimpleName() + "(" + usage.priority.name().toLowerCase() + "): "
+                    + usage.inFlight + " in flight, " + pendingCount + " pending, "
+                    + usage.sent + " sent, " + usage.requeued + " requeued, " + usage.dropped + " dropped");
+        }
+    }
+
+    public enum Priority {
+        //healing, drinking, praying
+        URGENT(4),
+        NORMAL(2),
+        //the long running work like mining or crafting
+        BULK(1);
+
+        private static final long STRIDE = 12;
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static class Submission {
+        private final Bot bot;
+        private final Priority priority;
+        private final Object key;
+        private final Runnable sendAction;
+        private int attempts;
+        private long sentTime;
+
+        private Submission(Bot bot, Priority priority, Object key, Runnable sendAction) {
+            this.bot = bot;
+            this.priority = priority;
+            this.key = key;
+            this.sendAction = sendAction;
+        }
+    }
+
+    private static class Usage {
+        private Priority priority = Priority.NORMAL;
+        private int inFlight;
+        private long sent;
+        private long requeued;
+        private long dropped;
+    }
+}
@@ -4,21 +4,20 @@ import net.ildar.wurm.bot.Bot;
 import net.ildar.wurm.bot.RMIBot;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BotController {
-    private static BotController instance;
-    private List<BotRegistration> botList;
-    private List<Bot> activeBots = new ArrayList<>();
+    private static final BotController instance = new BotController();
+    //the running bots by class. Changed under the lock of the controller, read without locking by the bot threads and the render hooks
+    private final Map<Class<? extends Bot>, Bot> activeBots = new ConcurrentHashMap<>();
+    private final ActionSlotArbiter actionSlots = new ActionSlotArbiter();
     private boolean gPaused = false;
 
-    public static synchronized BotController getInstance() {
-        if (instance == null)
-            instance = new BotController();
-        return instance;
+    private BotController() {
     }
 
-    private BotController() {
-        botList = BotRegistrationProvider.getBotList();
+    public static BotController getInstance() {
+        return instance;
     }
 
     public void handleInput(String data[]) {
@@ -33,6 +32,27 @@ public class BotController {
             deactivateAllBots();
             return;
         }
+        if (data[0].equals("scheduler")) {
+            if (data.length > 1)
+                BotScheduler.setEnabled(data[1].equals("on"));
+            Utils.consolePrint(BotScheduler.getStatus());
+            return;
+        }
+        if (data[0].equals("slots")) {
+            actionSlots.printStatus();
+            return;
+        }
+        if (data[0].equals("outbound")) {
+            if (data.length > 1) {
+                if (!data[1].equals("on") && !data[1].equals("off")) {
+                    Utils.consolePrint("Usage: " + WurmHelper.ConsoleCommand.bot.name() + " outbound [on|off]");
+                    return;
+                }
+                OutboundBatcher.setEnabled(data[1].equals("on"));
+            }
+            OutboundBatcher.printStatus();
+            return;
+        }
         if (data[0].equals("pause")) {
             pauseAllBots();
             Utils.writeToConsoleInputLine(WurmHelper.ConsoleCommand.bot.name() + " pause");
@@ -50,8 +70,8 @@ public class BotController {
             Utils.writeToConsoleInputLine(WurmHelper.ConsoleCommand.bot.name() + " " + data[0] + " ");
             return;
         }
-        if (isInstantiated(botClass)) {
-            Bot botInstance = getInstance(botClass);
+        Bot botInstance = getInstance(botClass);
+        if (botInstance != null) {
             if (botInstance.isInterrupted()) {
                 Utils.consolePrint(botClass.getSimpleName() + " is trying to stop");
             } else if (data[1].equals("on")) {
@@ -66,9 +86,7 @@ public class BotController {
             }
         } else {
             if (data[1].equals("on")) {
-                Bot botInstance = getInstance(botClass);
-                if (botInstance != null) {
-                    botInstance.start();
+                if (createInstance(botClass) != null) {
                     Utils.consolePrint(botClass.getSimpleName() + " is on!");
                     printBotDescription(botClass);
                 } else {
@@ -81,12 +99,22 @@ public class BotController {
         Utils.writeToConsoleInputLine(WurmHelper.ConsoleCommand.bot.name() + " " + data[0] + " ");
     }
 
-    public synchronized boolean isActive(Bot bot) {
-        return activeBots.contains(bot);
+    /**
+     * Run the steps of the bot on the shared scheduler when it is enabled and the bot has steps, otherwise run the bot on its own thread
+     */
+    private void startBot(Bot bot) {
+        if (BotScheduler.isEnabled() && bot.hasSteps())
+            bot.startScheduled();
+        else
+            bot.start();
+    }
+
+    public boolean isActive(Bot bot) {
+        return activeBots.get(bot.getClass()) == bot;
     }
 
     private synchronized void deactivateAllBots() {
-        List<Bot> bots = new ArrayList<>(activeBots); // deactivation mutates activeBots
+        List<Bot> bots = new ArrayList<>(activeBots.values()); // deactivation mutates activeBots
         bots.forEach(bot -> {
             if((bot instanceof RMIBot))
                 Utils.consolePrint(
@@ -100,16 +128,21 @@ public class BotController {
     }
 
     public synchronized void onBotInterruption(Bot bot) {
-        activeBots.remove(bot);
+        activeBots.remove(bot.getClass(), bot);
+        actionSlots.removeBot(bot);
+    }
+
+    public ActionSlotArbiter getActionSlots() {
+        return actionSlots;
     }
 
     private synchronized void pauseAllBots() {
         if (activeBots.size() > 0) {
             gPaused = !gPaused;
             if (gPaused) {
-                activeBots.forEach(Bot::setPaused);
+                activeBots.values().forEach(Bot::setPaused);
             } else {
-                activeBots.forEach(Bot::setResumed);
+                activeBots.values().forEach(Bot::setResumed);
             }
             Utils.consolePrint("All bots have been " + (gPaused ? "paused!" : "resumed!"));
         } else {
@@ -117,27 +150,36 @@ public class BotController {
         }
     }
 
-    //this method is being invoked from com.wurmonline.client.renderer.cell.GroundItemCellRenderable
-    @SuppressWarnings("WeakerAccess")
-    public synchronized boolean isInstantiated(Class<? extends Bot> botClass) {
-        return activeBots.stream().anyMatch(bot -> bot.getClass().equals(botClass));
+    public boolean isInstantiated(Class<? extends Bot> botClass) {
+        return activeBots.containsKey(botClass);
     }
 
+    /**
+     * Never blocks, safe to call from the render thread
+     * @return the running bot of the class or null
+     */
     //this method is being invoked from com.wurmonline.client.renderer.cell.GroundItemCellRenderable
-    @SuppressWarnings("WeakerAccess")
-    public synchronized <T extends Bot> T getInstance(Class<T> botClass) {
-        T instance = null;
+    @SuppressWarnings({"WeakerAccess", "unchecked"})
+    public <T extends Bot> T getInstance(Class<T> botClass) {
+        return (T) activeBots.get(botClass);
+    }
+
+    /**
+     * Create and start the bot of the class if it is not running yet
+     * @return the running bot, or null if it couldn't be created
+     */
+    private synchronized <T extends Bot> T createInstance(Class<T> botClass) {
+        T instance = getInstance(botClass);
+        if (instance != null)
+            return instance;
         try {
-            Optional<Bot> optionalBot = activeBots.stream().filter(bot -> bot.getClass().equals(botClass)).findAny();
-            if (!optionalBot.isPresent()) {
-                instance = botClass.newInstance();
-                activeBots.add(instance);
-            } else
-                //noinspection unchecked
-                instance = (T) optionalBot.get();
-        } catch (InstantiationException | IllegalAccessException | NoSuchElementException | NullPointerException e) {
+            instance = botClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
             e.printStackTrace();
+            return null;
         }
+        activeBots.put(botClass, instance);
+        startBot(instance);
         return instance;
     }
 
@@ -148,8 +190,8 @@ public class BotController {
             description = botRegistration.getDescription();
         Utils.consolePrint("=== " + botClass.getSimpleName() + " ===");
         Utils.consolePrint(description);
-        if (isInstantiated(botClass)) {
-            Bot botInstance = getInstance(botClass);
+        Bot botInstance = getInstance(botClass);
+        if (botInstance != null) {
             Utils.consolePrint(botInstance.getUsageString());
         } else {
             String abbreviation = "*";
@@ -160,25 +202,19 @@ public class BotController {
     }
 
     public String getBotUsageString() {
-        StringBuilder result = new StringBuilder("Usage: " + WurmHelper.ConsoleCommand.bot.name() + " {");
-        for (BotRegistration botRegistration : botList)
-            result.append(botRegistration.getAbbreviation()).append("|");
-        result.append("pause|off}");
-        return result.toString();
+        return "Usage: " + WurmHelper.ConsoleCommand.bot.name() + " {" + BotRegistrationProvider.ABBREVIATIONS + "|pause|off|scheduler|slots|outbound}";
     }
 
+    /**
+     * Loads the class of the bot on its first use
+     */
+    @SuppressWarnings("unchecked")
     private Class<? extends Bot> getBotClass(String abbreviation) {
-        for (BotRegistration botRegistration : botList)
-            if (botRegistration.getAbbreviation().equals(abbreviation))
-                return botRegistration.getBotClass();
-        return null;
+        BotRegistration botRegistration = BotRegistrationProvider.getByAbbreviation(abbreviation);
+        return botRegistration == null ? null : botRegistration.getBotClass();
     }
 
     public BotRegistration getBotRegistration(Class<? extends Bot> botClass) {
-        for (BotRegistration botRegistration : botList) {
-            if (botRegistration.getBotClass().equals(botClass))
-                return botRegistration;
-        }
-        return null;
+        return BotRegistrationProvider.getByClassName(botClass.getName());
     }
 }
@@ -0,0 +1,297 @@
+package net.ildar.wurm;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runtime metrics of the bots, kept per bot class so they survive the restarts of the bot.
+ * The counters and histograms are lock-free and are updated by the bot threads themselves.
+ * Off by default, then the instrumented places only check {@link #isEnabled()}.
+ * Printed with the "stats" console command and optionally written to a csv file on an interval
+ */
+public class BotMetrics {
+    private static volatile boolean enabled = false;
+    private static final Map<String, BotMetrics> metrics = new ConcurrentSkipListMap<>();
+    //the metrics of the bot running on the current thread
+    private static final ThreadLocal<BotMetrics> current = new ThreadLocal<>();
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static ScheduledExecutorService csvWriter;
+    private static ScheduledFuture<?> csvTask;
+
+    private final String name;
+    private volatile long since = System.currentTimeMillis();
+    private final LongAdder actionsSent = new LongAdder();
+    private final LongAdder actionsConfirmed = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final Histogram iterationTime = new Histogram();
+    private final Histogram sleepTime = new Histogram();
+    private final Histogram reflectionTime = new Histogram();
+
+    private BotMetrics(String name) {
+        this.name = name;
+    }
+
+    public static BotMetrics of(String name) {
+        return metrics.computeIfAbsent(name, BotMetrics::new);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        BotMetrics.enabled = enabled;
+    }
+
+    /**
+     * Attribute the reflection and sleep time of the current thread to the bot
+     * @param botMetrics null when the bot leaves the thread
+     */
+    public static void bindThread(BotMetrics botMetrics) {
+        if (botMetrics == null)
+            current.remove();
+        else
+            current.set(botMetrics);
+    }
+
+    public static BotMetrics getCurrent() {
+        return current.get();
+    }
+
+    public static long cpuTimeOfCurrentThread() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Record the time spent in a reflective call on a bot thread
+     */
+    public static void recordReflection(long startNanos) {
+        BotMetrics botMetrics = current.get();
+        if (botMetrics != null)
+            botMetrics.reflectionTime.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by the hooks of the server connection. Counts the action sent directly by a bot thread,
+     * the actions of the {@link ActionSlotArbiter} are sent by its own thread and are counted when they are put in flight
+     */
+    @SuppressWarnings("unused")
+    public static void onSendAction() {
+        if (!enabled)
+            return;
+        BotMetrics botMetrics = current.get();
+        if (botMetrics != null)
+            botMetrics.actionSent();
+    }
+
+    public void recordIteration(long nanos, long cpuNanos) {
+        iterationTime.record(nanos);
+        if (cpuNanos > 0)
+            this.cpuNanos.add(cpuNanos);
+    }
+
+    public void recordSleep(long nanos) {
+        sleepTime.record(nanos);
+    }
+
+    public void actionSent() {
+        actionsSent.increment();
+    }
+
+    public void actionConfirmed() {
+        actionsConfirmed.increment();
+    }
+
+    private void reset() {
+        since = System.currentTimeMillis();
+        actionsSent.reset();
+        actionsConfirmed.reset();
+        cpuNanos.reset();
+        iterationTime.reset();
+        sleepTime.reset();
+        reflectionTime.reset();
+    }
+
+    private double getHours() {
+        return Math.max(1, System.currentTimeMillis() - since) / 3600000.0;
+    }
+
+    public static void resetAll() {
+        metrics.values().forEach(BotMetrics::reset);
+    }
+
+    public static void printStats() {
+        Utils.consolePrint("Bot metrics are " + (enabled ? "on" : "off")
+                + (csvTask != null ? ", written to a csv file" : ""));
+        if (metrics.isEmpty()) {
+            Utils.consolePrint("No bots have run yet");
+            return;
+        }
+        for (BotMetrics m : metrics.values()) {
+            if (m.iterationTime.getCount() == 0 && m.actionsSent.sum() == 0)
+                continue;
+            double hours = m.getHours();
+            Utils.consolePrint(String.format("%s: %d iterations, cpu %.1fs(%.1f%%), actions sent %d(%.0f/h), confirmed %d(%.0f/h)",
+                    m.name, m.iterationTime.getCount(),
+                    m.cpuNanos.sum() / 1e9, m.cpuNanos.sum() / 1e6 / (hours * 3600000) * 100,
+                    m.actionsSent.sum(), m.actionsSent.sum() / hours,
+                    m.actionsConfirmed.sum(), m.actionsConfirmed.sum() / hours));
+            Utils.consolePrint("  iteration " + m.iterationTime);
+            Utils.consolePrint("  sleep " + m.sleepTime);
+            Utils.consolePrint("  reflection " + m.reflectionTime);
+        }
+    }
+
+    /**
+     * Append the metrics of all bots to the file every interval, stopped with a null file
+     */
+    public static synchronized void writeCsv(String file, long intervalSeconds) {
+        if (csvTask != null) {
+            csvTask.cancel(false);
+            csvTask = null;
+        }
+        if (file == null)
+            return;
+        if (csvWriter == null) {
+            csvWriter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "bot-metrics-csv");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        csvTask = csvWriter.scheduleAtFixedRate(() -> appendCsv(file), 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void appendCsv(String file) {
+        boolean header = !new java.io.File(file).exists();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+            if (header)
+                writer.println("time,bot,iterations,cpu_ms,actions_sent,actions_confirmed,"
+                        + "iteration_p50_us,iteration_p99_us,iteration_max_us,"
+                        + "sleep_count,sleep_p50_us,sleep_total_ms,"
+                        + "reflection_count,reflection_p99_us,reflection_total_ms");
+            long now = System.currentTimeMillis();
+            for (BotMetrics m : metrics.values()) {
+                writer.println(now + "," + m.name + "," + m.iterationTime.getCount() + "," + m.cpuNanos.sum() / 1000000 + ","
+                        + m.actionsSent.sum() + "," + m.actionsConfirmed.sum() + ","
+                        + m.iterationTime.getPercentile(50) / 1000 + "," + m.iterationTime.getPercentile(99) / 1000 + ","
+                        + m.iterationTime.getMax() / 1000 + ","
+                        + m.sleepTime.getCount() + "," + m.sleepTime.getPercentile(50) / 1000 + "," + m.sleepTime.getTotal() / 1000000 + ","
+                        + m.reflectionTime.getCount() + "," + m.reflectionTime.getPercentile(99) / 1000 + ","
+                        + m.reflectionTime.getTotal() / 1000000);
+            }
+        } catch (IOException e) {
+            Utils.consolePrint("Couldn't write the bot metrics to " + file + " - " + e.toString());
+            writeCsv(null, 0);
+        }
+    }
+
+    /**
+     * Latency histogram with logarithmic buckets of linear sub-buckets(like HdrHistogram),
+     * the recorded values are kept within about 6% from 1 microsecond to hours
+     */
+    public static class Histogram {
+        //sub-buckets per power of 2
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = 64 - SUB_BUCKET_BITS;
+        //the values are kept in microseconds
+        private static final long UNIT = 1000;
+
+        private final AtomicLongArray counts = new AtomicLongArray((BUCKETS + 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            if (nanos < 0)
+                nanos = 0;
+            counts.incrementAndGet(indexOf(nanos / UNIT));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int bucket = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> bucket) - SUB_BUCKETS;
+            return (bucket + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        //the highest value of the index, in nanoseconds
+        private static long valueOf(int index) {
+            if (index < SUB_BUCKETS)
+                return index * UNIT;
+            int bucket = index / SUB_BUCKETS - 1;
+            long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+            return (((subBucket + 1) << bucket) - 1) * UNIT;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotal() {
+            return total.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return the value in nanoseconds not exceeded by the percent of the recorded values
+         */
+        public long getPercentile(double percent) {
+            long recorded = 0;
+            for (int i = 0; i < counts.length(); i++)
+                recorded += counts.get(i);
+            if (recorded == 0)
+                return 0;
+            long threshold = Math.max(1, (long) Math.ceil(recorded * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= threshold)
+                    return Math.min(valueOf(i), getMax());
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++)
+                counts.set(i, 0);
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+
+        @Override
+        public String toString() {
+            long n = getCount();
+            if (n == 0)
+                return "n=0";
+            return String.format("n=%d avg=%s p50=%s p90=%s p99=%s max=%s total=%s", n,
+                    formatNanos(getTotal() / n), formatNanos(getPercentile(50)), formatNanos(getPercentile(90)),
+                    formatNanos(getPercentile(99)), formatNanos(getMax()), formatNanos(getTotal()));
+        }
+
+        private static String formatNanos(long nanos) {
+            if (nanos < 1000000)
+                return nanos / 1000 + "us";
+            if (nanos < 10000000000L)
+                return String.format("%.1fms", nanos / 1e6);
+            return String.format("%.1fs", nanos / 1e9);
+        }
+    }
+}
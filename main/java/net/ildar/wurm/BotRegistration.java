@@ -3,17 +3,36 @@ package net.ildar.wurm;
 import net.ildar.wurm.bot.Bot;
 
 public class BotRegistration {
-    private Class botClass;
+    private String botClassName;
     private String description;
     private String abbreviation;
+    //loaded on the first use of the bot
+    private volatile Class botClass;
 
-    public BotRegistration(Class botClass, String description, String abbreviation) {
-        this.botClass = botClass;
+    public BotRegistration(String botClassName, String description, String abbreviation) {
+        this.botClassName = botClassName;
         this.description = description;
         this.abbreviation = abbreviation;
     }
 
+    public String getBotClassName() {
+        return botClassName;
+    }
+
+    /**
+     * @return the class of the bot, null if it couldn't be loaded
+     */
     public Class getBotClass() {
+        Class botClass = this.botClass;
+        if (botClass == null) {
+            try {
+                botClass = Class.forName(botClassName);
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+                return null;
+            }
+            this.botClass = botClass;
+        }
         return botClass;
     }
 
@@ -0,0 +1,51 @@
+package net.ildar.wurm;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in execution of the bots as steps on a small shared pool instead of a platform thread per bot.
+ * A bot with steps runs one short step at a time and tells the delay to its next step,
+ * so it holds no thread while it waits. The bots without steps keep their own threads and blocking work() loops.
+ * Enabled with the BotScheduler property or "bot scheduler on", only the bots started afterwards are affected
+ */
+public class BotScheduler {
+    //the steps don't block, so a couple of threads serve all bots
+    private static final int THREADS = 2;
+    private static volatile boolean enabled = false;
+    private static ScheduledExecutorService executor;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        BotScheduler.enabled = enabled;
+    }
+
+    /**
+     * Run the step on a thread of the pool after provided delay in milliseconds
+     */
+    public static ScheduledFuture<?> schedule(Runnable step, long delay) {
+        return getExecutor().schedule(step, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(THREADS, task -> {
+                Thread thread = new Thread(task, "bot-scheduler-" + threadCounter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            //the steps of the stopped bots are cancelled, they must not stay in the queue until their time
+            pool.setRemoveOnCancelPolicy(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    public static String getStatus() {
+        return "Bot scheduler is " + (enabled ? "on" : "off") + ", the bots with steps run on a pool of " + THREADS + " threads";
+    }
+}
@@ -4,20 +4,58 @@ import com.wurmonline.shared.util.MulticolorLineSegment;
 import net.ildar.wurm.bot.GuardBot;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 
 public class Chat {
-    private static List<MessageProcessor> messageProcessors = new ArrayList<>();
+    //the processors by tab name. Replaced as a whole on every change, so the render thread reads them without locking
+    private static volatile Map<String, TabDispatcher> dispatchers = new HashMap<>();
 
     //On message in tabName: if (filter.apply(message)) callback.run()
     public static MessageProcessor registerMessageProcessor(String tabName, Function<String, Boolean> filter, Runnable callback) {
-        MessageProcessor messageProcessor = new MessageProcessor(tabName, filter, callback);
-        messageProcessors.add(messageProcessor);
+        return register(new MessageProcessor(tabName, filter, callback));
+    }
+
+    /**
+     * On message in tabName: if (rule.matches(message without time)) callback.run()
+     * The rules of all processors of a tab are checked together in one pass over the message
+     */
+    public static MessageProcessor registerMessageProcessor(String tabName, MatchRule rule, Runnable callback) {
+        return register(new MessageProcessor(tabName, rule, callback));
+    }
+
+    /**
+     * Same as above, the callback gets the matched message without time
+     */
+    public static MessageProcessor registerMessageProcessor(String tabName, MatchRule rule, Consumer<String> callback) {
+        return register(new MessageProcessor(tabName, rule, callback));
+    }
+
+    private static synchronized MessageProcessor register(MessageProcessor messageProcessor) {
+        TabDispatcher dispatcher = dispatchers.get(messageProcessor.tabName);
+        List<MessageProcessor> processors = dispatcher == null ? new ArrayList<>() : new ArrayList<>(dispatcher.processors);
+        processors.add(messageProcessor);
+        setProcessors(messageProcessor.tabName, processors);
         return messageProcessor;
     }
 
-    public static void unregisterMessageProcessor(MessageProcessor messageProcessor) {
-        messageProcessors.remove(messageProcessor);
+    public static synchronized void unregisterMessageProcessor(MessageProcessor messageProcessor) {
+        TabDispatcher dispatcher = dispatchers.get(messageProcessor.tabName);
+        if (dispatcher == null)
+            return;
+        List<MessageProcessor> processors = new ArrayList<>(dispatcher.processors);
+        if (processors.remove(messageProcessor))
+            setProcessors(messageProcessor.tabName, processors);
+    }
+
+    private static void setProcessors(String tabName, List<MessageProcessor> processors) {
+        Map<String, TabDispatcher> newDispatchers = new HashMap<>(dispatchers);
+        if (processors.isEmpty())
+            newDispatchers.remove(tabName);
+        else
+            newDispatchers.put(tabName, new TabDispatcher(processors));
+        dispatchers = newDispatchers;
     }
 
     public static void  onMessage(String context, Object input, boolean silent) {
@@ -28,10 +66,13 @@ public class Chat {
             message = (String)input;
         String messageWithoutTime = message.substring(11).trim();
         if (messageWithoutTime.isEmpty()) return;
-        messageProcessors.stream()
-                .filter(mp -> Objects.equals(mp.tabName, context))
-                .filter(mp -> mp.filter.apply(message))
-                .forEach(mp -> mp.callback.run());
+        TabDispatcher dispatcher = dispatchers.get(context);
+        if (dispatcher != null) {
+            Object event = JfrEvents.begin(JfrEvents.Type.CHAT_DISPATCH);
+            int called = dispatcher.dispatch(message, messageWithoutTime);
+            if (event != null)
+                JfrEvents.commit(event, context, called);
+        }
         switch (context) {
             case ":Combat":
                 if (input instanceof List)
@@ -69,12 +110,198 @@ public class Chat {
     public static class MessageProcessor{
         public String tabName;
         public Function<String, Boolean> filter;
+        //used instead of the filter if set
+        public MatchRule rule;
         public Runnable callback;
+        //used instead of the callback if set
+        public Consumer<String> lineCallback;
 
         public MessageProcessor(String tabName, Function<String, Boolean> filter, Runnable callback) {
             this.tabName = tabName;
             this.filter = filter;
             this.callback = callback;
         }
+
+        public MessageProcessor(String tabName, MatchRule rule, Runnable callback) {
+            this.tabName = tabName;
+            this.rule = rule;
+            this.callback = callback;
+        }
+
+        public MessageProcessor(String tabName, MatchRule rule, Consumer<String> lineCallback) {
+            this.tabName = tabName;
+            this.rule = rule;
+            this.lineCallback = lineCallback;
+        }
+    }
+
+    /**
+     * Declarative message filter, matches if any of its patterns matches.
+     * Checked against the message without the time stamp. Not to be changed after it was registered
+     */
+    public static class MatchRule {
+        private final List<String> parts = new ArrayList<>();
+        private final List<String> prefixes = new ArrayList<>();
+        private final List<Pattern> regexes = new ArrayList<>();
+
+        public static MatchRule contains(String... parts) {
+            return new MatchRule().orContains(parts);
+        }
+
+        public static MatchRule startsWith(String... prefixes) {
+            return new MatchRule().orStartsWith(prefixes);
+        }
+
+        public static MatchRule regex(String... regexes) {
+            return new MatchRule().orRegex(regexes);
+        }
+
+        public MatchRule orContains(String... parts) {
+            this.parts.addAll(Arrays.asList(parts));
+            return this;
+        }
+
+        public MatchRule orStartsWith(String... prefixes) {
+            this.prefixes.addAll(Arrays.asList(prefixes));
+            return this;
+        }
+
+        //the regex has to be found anywhere in the message, use "^" to anchor it
+        public MatchRule orRegex(String... regexes) {
+            for (String regex : regexes)
+                this.regexes.add(Pattern.compile(regex));
+            return this;
+        }
+
+        /**
+         * @return a new rule matching if this or the other rule matches
+         */
+        public MatchRule or(MatchRule other) {
+            MatchRule rule = new MatchRule();
+            rule.parts.addAll(parts);
+            rule.parts.addAll(other.parts);
+            rule.prefixes.addAll(prefixes);
+            rule.prefixes.addAll(other.prefixes);
+            rule.regexes.addAll(regexes);
+            rule.regexes.addAll(other.regexes);
+            return rule;
+        }
+
+        public boolean matches(String message) {
+            for (String part : parts)
+                if (message.contains(part))
+                    return true;
+            for (String prefix : prefixes)
+                if (message.startsWith(prefix))
+                    return true;
+            for (Pattern regex : regexes)
+                if (regex.matcher(message).find())
+                    return true;
+            return false;
+        }
+
+        //the rules with the same patterns are equal, so the rules built on every call can be used as map keys
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof MatchRule))
+                return false;
+            MatchRule other = (MatchRule) o;
+            return parts.equals(other.parts) && prefixes.equals(other.prefixes) && regexKeys().equals(other.regexKeys());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(parts, prefixes, regexKeys());
+        }
+
+        private List<String> regexKeys() {
+            List<String> keys = new ArrayList<>();
+            for (Pattern regex : regexes)
+                keys.add(regex.flags() + ":" + regex.pattern());
+            return keys;
+        }
+    }
+
+    /**
+     * The processors of one tab. The substrings and prefixes of all their rules are compiled
+     * into one automaton each, so a message is checked against all of them in one pass
+     */
+    private static final class TabDispatcher {
+        private final List<MessageProcessor> processors;
+        private final NameMatcher parts;
+        //the positions of the processors having each of the compiled names
+        private final int[][] partOwners;
+        private final NameMatcher prefixes;
+        private final int[][] prefixOwners;
+        private final Pattern[] regexes;
+        private final int[] regexOwners;
+
+        private TabDispatcher(List<MessageProcessor> processors) {
+            this.processors = processors;
+            Map<String, List<Integer>> partOwnerLists = new HashMap<>();
+            Map<String, List<Integer>> prefixOwnerLists = new HashMap<>();
+            List<Pattern> regexList = new ArrayList<>();
+            List<Integer> regexOwnerList = new ArrayList<>();
+            for (int i = 0; i < processors.size(); i++) {
+                MatchRule rule = processors.get(i).rule;
+                if (rule == null)
+                    continue;
+                for (String part : rule.parts)
+                    partOwnerLists.computeIfAbsent(part, key -> new ArrayList<>()).add(i);
+                for (String prefix : rule.prefixes)
+                    prefixOwnerLists.computeIfAbsent(prefix, key -> new ArrayList<>()).add(i);
+                for (Pattern regex : rule.regexes) {
+                    regexList.add(regex);
+                    regexOwnerList.add(i);
+                }
+            }
+            parts = NameMatcher.compile(NameMatcher.Mode.SUBSTRING, partOwnerLists.keySet());
+            partOwners = owners(parts, partOwnerLists);
+            prefixes = NameMatcher.compile(NameMatcher.Mode.PREFIX, prefixOwnerLists.keySet());
+            prefixOwners = owners(prefixes, prefixOwnerLists);
+            regexes = regexList.toArray(new Pattern[0]);
+            regexOwners = regexOwnerList.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private static int[][] owners(NameMatcher matcher, Map<String, List<Integer>> ownerLists) {
+            List<String> names = matcher.getNames();
+            int[][] owners = new int[names.size()][];
+            for (int i = 0; i < owners.length; i++)
+                owners[i] = ownerLists.get(names.get(i)).stream().mapToInt(Integer::intValue).toArray();
+            return owners;
+        }
+
+        /**
+         * @return the number of the processors called
+         */
+        private int dispatch(String message, String messageWithoutTime) {
+            boolean[] matched = new boolean[processors.size()];
+            parts.forEachMatch(messageWithoutTime, index -> {
+                for (int owner : partOwners[index])
+                    matched[owner] = true;
+            });
+            prefixes.forEachMatch(messageWithoutTime, index -> {
+                for (int owner : prefixOwners[index])
+                    matched[owner] = true;
+            });
+            for (int i = 0; i < regexes.length; i++)
+                if (!matched[regexOwners[i]] && regexes[i].matcher(messageWithoutTime).find())
+                    matched[regexOwners[i]] = true;
+            //in the order of registration, the plain filters are applied right before their callbacks as before
+            int called = 0;
+            for (int i = 0; i < processors.size(); i++) {
+                MessageProcessor processor = processors.get(i);
+                if (!(processor.rule != null ? matched[i] : processor.filter.apply(message)))
+                    continue;
+                called++;
+                if (processor.lineCallback != null)
+                    processor.lineCallback.accept(messageWithoutTime);
+                else
+                    processor.callback.run();
+            }
+            return called;
+        }
     }
 }
@@ -0,0 +1,149 @@
+package net.ildar.wurm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded buffer of the console messages between the bot threads and the console component.
+ * The messages are put to a ring buffer by any number of threads and are taken by the game tick of the console,
+ * no more than a few lines per frame, so a chatty bot can't stall the frames.
+ * The messages are formatted only when taken, the repeated lines are folded into one line with the repeat count,
+ * and the messages that didn't fit into the full buffer are dropped and counted
+ */
+public class ConsoleBuffer {
+    //power of 2
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final int LINES_PER_FRAME = 20;
+    //the folded repeats are reported after no new line came for this time
+    private static final long FOLD_REPORT_DELAY = 1000;
+
+    private static final AtomicReferenceArray<Message> slots = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    //written by the consumer only
+    private static volatile long head;
+    private static final AtomicLong unreportedDrops = new AtomicLong();
+    private static final AtomicLong drops = new AtomicLong();
+
+    //the state of the consumer
+    private static final Deque<String> pendingLines = new ArrayDeque<>();
+    private static int linesLeft = LINES_PER_FRAME;
+    private static String lastLine;
+    private static int repeats;
+    private static long lastRepeatTime;
+
+    /**
+     * Put the message to the buffer, it is formatted later by {@link String#format(String, Object...)}
+     * @param args null or empty to print the message as is. The arguments should not change until the message is printed
+     */
+    public static void add(String fmt, Object[] args) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= CAPACITY) {
+                drops.incrementAndGet();
+                unreportedDrops.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) (t & MASK), new Message(fmt, args));
+    }
+
+    /**
+     * Start the next frame of the console, called by the game tick before taking the lines
+     */
+    @SuppressWarnings("unused")
+    public static void beginFrame() {
+        linesLeft = LINES_PER_FRAME;
+    }
+
+    /**
+     * Take the next line to print. Must be called by one thread only, the game tick of the console
+     * @return null if there are no lines or the frame has printed enough lines
+     */
+    @SuppressWarnings("unused")
+    public static String poll() {
+        if (linesLeft <= 0)
+            return null;
+        long dropped = unreportedDrops.getAndSet(0);
+        if (dropped > 0)
+            return emit(dropped + " console messages were dropped");
+        while (true) {
+            String line = nextLine();
+            long now = System.currentTimeMillis();
+            if (line == null) {
+                if (repeats > 0 && now - lastRepeatTime > FOLD_REPORT_DELAY)
+                    return emit(takeRepeatsLine());
+                return null;
+            }
+            if (line.equals(lastLine)) {
+                repeats++;
+                lastRepeatTime = now;
+                continue;
+            }
+            if (repeats > 0) {
+                pendingLines.addFirst(line);
+                return emit(takeRepeatsLine());
+            }
+            lastLine = line;
+            return emit(line);
+        }
+    }
+
+    public static long getDroppedCount() {
+        return drops.get();
+    }
+
+    public static int getQueuedCount() {
+        return (int) (tail.get() - head);
+    }
+
+    private static String nextLine() {
+        while (pendingLines.isEmpty()) {
+            int index = (int) (head & MASK);
+            Message message = slots.get(index);
+            //empty, or the producer didn't finish putting the message yet
+            if (message == null)
+                return null;
+            slots.lazySet(index, null);
+            head = head + 1;
+            for (String line : message.format().split("\n"))
+                pendingLines.addLast(line);
+        }
+        return pendingLines.pollFirst();
+    }
+
+    private static String takeRepeatsLine() {
+        String line = "(the last line was repeated " + repeats + (repeats == 1 ? " time)" : " times)");
+        repeats = 0;
+        return line;
+    }
+
+    private static String emit(String line) {
+        linesLeft--;
+        return line;
+    }
+
+    private static class Message {
+        private final String fmt;
+        private final Object[] args;
+
+        private Message(String fmt, Object[] args) {
+            this.fmt = fmt;
+            this.args = args;
+        }
+
+        private String format() {
+            if (args == null || args.length == 0)
+                return fmt;
+            try {
+                return String.format(fmt, args);
+            } catch (RuntimeException e) {
+                //a bad format or a failing toString of an argument, which would throw on the render thread
+                return fmt;
+            }
+        }
+    }
+}
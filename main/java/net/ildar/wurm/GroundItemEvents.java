@@ -0,0 +1,177 @@
+package net.ildar.wurm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Spawn and despawn events of the ground items, so the bots react to the changes instead of polling the ground item map.
+ * The events are the changes found by {@link SpatialIndex} while it brings its ground items up to date,
+ * on the lookups of the index and on the polls of the subscribers. The index wakes the waiting subscribers
+ * from the render thread when it has queued the changes of a tick, the subscriber then polls and the index applies them.
+ * The new items are delivered in batches to the subscriptions with accepting filters, the filters are evaluated
+ * on the bot threads at that time only, a bot with changed filter has to subscribe again.
+ * A new subscription gets the items known at the time as spawns
+ */
+public class GroundItemEvents {
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param filter the spawned items delivered to the subscription, evaluated on the bot threads. Can be null
+     */
+    public static Subscription subscribe(Predicate<SpatialIndex.GroundItem> filter) {
+        Subscription subscription = new Subscription(filter);
+        //the changes before the subscription go to the others only
+        SpatialIndex.updateGroundItems(known -> {
+            subscriptions.add(subscription);
+            List<Event> events = new ArrayList<>();
+            for (SpatialIndex.GroundItem item : known)
+                events.add(new Event(true, item));
+            subscription.deliver(events);
+        });
+        return subscription;
+    }
+
+    public static void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    static boolean isListening() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Called by {@link SpatialIndex} with the changes it found, under its lock
+     */
+    static void publish(List<Event> events) {
+        for (Subscription subscription : subscriptions)
+            subscription.deliver(events);
+    }
+
+    /**
+     * Called by {@link SpatialIndex} from the render thread after queueing the changes, never blocks
+     */
+    static void wake() {
+        for (Subscription subscription : subscriptions)
+            subscription.wake();
+    }
+
+    public static final class Event {
+        //false if the item was removed
+        public final boolean spawned;
+        public final SpatialIndex.GroundItem item;
+
+        Event(boolean spawned, SpatialIndex.GroundItem item) {
+            this.spawned = spawned;
+            this.item = item;
+        }
+    }
+
+    /**
+     * The events of one bot and the items they left, used by one thread
+     */
+    public static class Subscription {
+        private final Predicate<SpatialIndex.GroundItem> filter;
+        private final Queue<Event> inbox = new ConcurrentLinkedQueue<>();
+        //the spawned items taken by poll() and not removed yet
+        private final Map<Long, SpatialIndex.GroundItem> items = new HashMap<>();
+        private volatile Thread waiter;
+
+        private Subscription(Predicate<SpatialIndex.GroundItem> filter) {
+            this.filter = filter;
+        }
+
+        //the despawns go to everyone, poll() drops the ones of the items it didn't take
+        private void deliver(List<Event> events) {
+            boolean delivered = false;
+            for (Event event : events) {
+                if (event.spawned && filter != null && !filter.test(event.item))
+                    continue;
+                inbox.add(event);
+                delivered = true;
+            }
+            if (delivered)
+                wake();
+        }
+
+        private void wake() {
+            Thread thread = waiter;
+            if (thread != null)
+                LockSupport.unpark(thread);
+        }
+
+        /**
+         * Take the events delivered since the last call and apply them to {@link #getItems()}
+         * @return the spawns accepted by the filter and the despawns of the items taken before, in order
+         */
+        public List<Event> poll() {
+            SpatialIndex.updateGroundItems(null);
+            List<Event> batch = new ArrayList<>();
+            Event event;
+            while ((event = inbox.poll()) != null) {
+                if (event.spawned) {
+                    items.put(event.item.getId(), event.item);
+                    batch.add(event);
+                } else if (items.remove(event.item.getId(), event.item))
+                    batch.add(event);
+            }
+            return batch;
+        }
+
+        /**
+         * Same as {@link #poll()}, waits up to provided number of milliseconds for the events if there are none
+         */
+        public List<Event> await(long timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (true) {
+                List<Event> batch = poll();
+                long left = deadline - System.nanoTime();
+                if (!batch.isEmpty() || left <= 0)
+                    return batch;
+                waiter = Thread.currentThread();
+                //the render thread queues before waking, so checking after publishing the waiter can't miss it
+                if (!SpatialIndex.hasGroundItemChanges() && inbox.isEmpty())
+                    LockSupport.parkNanos(this, left);
+                waiter = null;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        }
+
+        public Collection<SpatialIndex.GroundItem> getItems() {
+            return Collections.unmodifiableCollection(items.values());
+        }
+
+        /**
+         * @param predicate can be null
+         * @return the items within provided distance(in meters) from the point accepted by the predicate, nearest first
+         */
+        public List<SpatialIndex.GroundItem> getItemsNear(float x, float y, float distance, Predicate<SpatialIndex.GroundItem> predicate) {
+            List<SpatialIndex.GroundItem> near = new ArrayList<>();
+            for (SpatialIndex.GroundItem item : items.values())
+                if (distanceSquared(item, x, y) <= distance * distance && (predicate == null || predicate.test(item)))
+                    near.add(item);
+            near.sort(Comparator.comparingDouble(item -> distanceSquared(item, x, y)));
+            return near;
+        }
+
+        /**
+         * @return the nearest item within provided distance(in meters) from the point or null
+         */
+        public SpatialIndex.GroundItem getNearestItem(float x, float y, float distance) {
+            SpatialIndex.GroundItem nearest = null;
+            for (SpatialIndex.GroundItem item : items.values())
+                if (distanceSquared(item, x, y) <= distance * distance
+                        && (nearest == null || distanceSquared(item, x, y) < distanceSquared(nearest, x, y)))
+                    nearest = item;
+            return nearest;
+        }
+
+        private static float distanceSquared(SpatialIndex.GroundItem item, float x, float y) {
+            return (item.x - x) * (item.x - x) + (item.y - y) * (item.y - y);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Index of the items in the player's main inventory.
+ * It is kept current by the hooks on the item add/remove/update events of {@link InventoryListComponent},
+ * so the lookups by name, id or parent don't have to walk the whole inventory tree.
+ * When the hooks couldn't be installed or the index is disabled, {@link Utils} falls back to the tree walk.
+ * The full walks of a rebuild run outside of the lock taken by the hooks, the events coming meanwhile
+ * are replayed over the walked items. The found items are returned in the order of the inventory tree:
+ * a container comes right before its contents, and the siblings keep the order in which the walk found them.
+ * An item added after the last walk goes after its siblings, wherever the client has put it among them
+ */
+public class InventoryIndex {
+    private static final String INVENTORY_ROOT_NAME = "inventory";
+    private static final int MAX_REPORTED_ITEMS = 10;
+
+    private static volatile boolean enabled = true;
+    private static volatile boolean hooked = false;
+    //the index is rebuilt from a full walk on the next lookup
+    private static volatile boolean stale = true;
+    //diff the index against a full walk on every lookup
+    private static volatile boolean checkLookups = false;
+    private static long checkedLookups = 0;
+    private static long failedChecks = 0;
+    //one full walk at a time, never taken by the hooks
+    private static final Object walkLock = new Object();
+    //the events that came during the walk of a rebuild, null when no rebuild is running
+    private static List<Runnable> journal;
+
+    private static final Map<Long, InventoryMetaItem> items = new LinkedHashMap<>();
+    //the position of the item among its siblings, the new items go after them
+    private static final Map<Long, Long> positions = new HashMap<>();
+    private static long nextPosition;
+    private static final Map<Long, String> indexedNames = new HashMap<>();
+    private static final Map<Long, Long> indexedParents = new HashMap<>();
+    private static final Map<Long, Set<Long>> children = new HashMap<>();
+    private static final TreeMap<String, Set<Long>> byName = new TreeMap<>();
+    //every suffix of every indexed base name, so substring lookups become range lookups
+    private static final TreeMap<String, Set<String>> bySuffix = new TreeMap<>();
+    private static long inventoryRootId = Long.MIN_VALUE;
+
+    /**
+     * Called from preInit after the item event hooks were installed
+     */
+    static synchronized void setHooked(boolean hooked) {
+        InventoryIndex.hooked = hooked;
+        stale = true;
+    }
+
+    public static synchronized void setEnabled(boolean enabled) {
+        InventoryIndex.enabled = enabled;
+        stale = true;
+        if (!enabled)
+            clear();
+    }
+
+    public static boolean isActive() {
+        return enabled && hooked;
+    }
+
+    @SuppressWarnings("unused")
+    public static synchronized void onItemAdded(InventoryListComponent ilc, InventoryMetaItem item) {
+        if (item != null && isTracked(ilc))
+            apply(() -> index(item));
+    }
+
+    @SuppressWarnings("unused")
+    public static synchronized void onItemUpdated(InventoryListComponent ilc, InventoryMetaItem item) {
+        if (item != null && isTracked(ilc))
+            apply(() -> index(item));
+    }
+
+    @SuppressWarnings("unused")
+    public static synchronized void onItemRemoved(InventoryListComponent ilc, InventoryMetaItem item) {
+        if (item != null && isTracked(ilc))
+            apply(() -> unindex(item.getId()));
+    }
+
+    private static void apply(Runnable event) {
+        event.run();
+        if (journal != null)
+            journal.add(event);
+    }
+
+    private static boolean isTracked(InventoryListComponent ilc) {
+        if (!enabled)
+            return false;
+        if (WurmHelper.hud == null || WurmHelper.hud.getInventoryWindow() == null) {
+            //the events can't be attributed to the main inventory yet
+            stale = true;
+            return false;
+        }
+        return ilc == WurmHelper.hud.getInventoryWindow().getInventoryListComponent();
+    }
+
+    /**
+     * @return the item with provided id from the main inventory or null
+     */
+    public static InventoryMetaItem getItem(long id) {
+        prepareLookup();
+        synchronized (InventoryIndex.class) {
+            return items.get(id);
+        }
+    }
+
+    /**
+     * @return the direct children of the item with provided id
+     */
+    public static List<InventoryMetaItem> getChildren(long parentId) {
+        prepareLookup();
+        synchronized (InventoryIndex.class) {
+            return toItems(children.getOrDefault(parentId, Collections.emptySet()), false);
+        }
+    }
+
+    /**
+     * @param inventoryOnly skip the items outside of the "inventory" node(equipped ones)
+     * @return all items whose base names start with provided prefix
+     */
+    public static List<InventoryMetaItem> getItemsStartingWith(String prefix, boolean inventoryOnly) {
+        prepareLookup();
+        synchronized (InventoryIndex.class) {
+            List<Long> ids = new ArrayList<>();
+            for (Set<Long> namesakes : byName.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values())
+                ids.addAll(namesakes);
+            return toItemsInTreeOrder(ids, inventoryOnly);
+        }
+    }
+
+    /**
+     * @param inventoryOnly skip the items outside of the "inventory" node(equipped ones)
+     * @return all items whose base names contain provided string
+     */
+    public static List<InventoryMetaItem> getItemsContaining(String namePart, boolean inventoryOnly) {
+        prepareLookup();
+        synchronized (InventoryIndex.class) {
+            Set<String> names = new HashSet<>();
+            for (Set<String> suffixNames : bySuffix.subMap(namePart, true, namePart + Character.MAX_VALUE, true).values())
+                names.addAll(suffixNames);
+            List<Long> ids = new ArrayList<>();
+            for (String name : names)
+                ids.addAll(byName.get(name));
+            return toItemsInTreeOrder(ids, inventoryOnly);
+        }
+    }
+
+    /**
+     * The filter is applied outside of the lock, so it doesn't hold up the item events of the render thread
+     * @param inventoryOnly skip the items outside of the "inventory" node(equipped ones)
+     */
+    public static List<InventoryMetaItem> getItems(Predicate<InventoryMetaItem> filter, boolean inventoryOnly) {
+        prepareLookup();
+        List<InventoryMetaItem> candidates;
+        synchronized (InventoryIndex.class) {
+            candidates = toItemsInTreeOrder(new ArrayList<>(items.keySet()), inventoryOnly);
+        }
+        List<InventoryMetaItem> result = new ArrayList<>();
+        for (InventoryMetaItem item : candidates)
+            if (filter.test(item))
+                result.add(item);
+        return result;
+    }
+
+    /**
+     * Drop the index and fill it from a full inventory walk on the next lookup
+     */
+    public static void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Turn on/off the mode in which every lookup diffs the index against a full inventory walk
+     */
+    public static synchronized void toggleCheckMode() {
+        checkLookups = !checkLookups;
+        if (checkLookups) {
+            checkedLookups = 0;
+            failedChecks = 0;
+            Utils.consolePrint("Every inventory lookup is checked against a full walk now");
+        } else
+            Utils.consolePrint("Inventory lookup checks are off. %d lookups checked, %d of them found differences", checkedLookups, failedChecks);
+    }
+
+    /**
+     * Diff the index against a full walk of the inventory tree and print the differences
+     * @param verbose print the result even if no differences were found
+     * @return true if the index matches the inventory tree
+     */
+    public static boolean verify(boolean verbose) {
+        if (!isActive()) {
+            Utils.consolePrint("The inventory index is not active");
+            return false;
+        }
+        if (stale)
+            rebuild(false);
+        List<InventoryMetaItem> walkedItems = walk();
+        if (walkedItems == null)
+            return false;
+        Map<Long, InventoryMetaItem> walked = new LinkedHashMap<>();
+        for (InventoryMetaItem item : walkedItems)
+            walked.put(item.getId(), item);
+        List<String> missing = new ArrayList<>();
+        List<String> renamed = new ArrayList<>();
+        List<String> extra = new ArrayList<>();
+        synchronized (InventoryIndex.class) {
+            for (InventoryMetaItem item : walked.values()) {
+                if (!items.containsKey(item.getId()))
+                    missing.add(describe(item));
+                else if (!Objects.equals(indexedNames.get(item.getId()), baseName(item)))
+                    renamed.add(describe(item) + " indexed as \"" + indexedNames.get(item.getId()) + "\"");
+            }
+            for (InventoryMetaItem item : items.values())
+                if (!walked.containsKey(item.getId()))
+                    extra.add(describe(item));
+        }
+        boolean consistent = missing.isEmpty() && renamed.isEmpty() && extra.isEmpty();
+        if (consistent) {
+            if (verbose)
+                Utils.consolePrint("The inventory index is consistent with the inventory tree(%d items)", walked.size());
+            return true;
+        }
+        Utils.consolePrint("The inventory index differs from the inventory tree: %d missing, %d renamed, %d extra items",
+                missing.size(), renamed.size(), extra.size());
+        printItemNames("Missing", missing);
+        printItemNames("Renamed", renamed);
+        printItemNames("Extra", extra);
+        return false;
+    }
+
+    private static void printItemNames(String title, List<String> names) {
+        if (names.isEmpty())
+            return;
+        int count = Math.min(names.size(), MAX_REPORTED_ITEMS);
+        Utils.consolePrint(" " + title + ": " + String.join(", ", names.subList(0, count)) + (names.size() > count ? ", ..." : ""));
+    }
+
+    private static String describe(InventoryMetaItem item) {
+        return "\"" + baseName(item) + "\"(" + item.getId() + ")";
+    }
+
+    //called without the lock, the walks must not block the hooks
+    private static void prepareLookup() {
+        if (stale)
+            rebuild(false);
+        if (checkLookups) {
+            boolean consistent = verify(false);
+            synchronized (InventoryIndex.class) {
+                checkedLookups++;
+                if (!consistent)
+                    failedChecks++;
+            }
+            if (!consistent)
+                rebuild(true);
+        }
+    }
+
+    /**
+     * @param force rebuild even if the index is not stale
+     */
+    private static void rebuild(boolean force) {
+        synchronized (walkLock) {
+            synchronized (InventoryIndex.class) {
+                //the walk of another thread has just rebuilt the index
+                if (!stale && !force)
+                    return;
+                stale = false;
+                journal = new ArrayList<>();
+            }
+            List<InventoryMetaItem> walkedItems = walk();
+            synchronized (InventoryIndex.class) {
+                List<Runnable> events = journal;
+                journal = null;
+                clear();
+                if (walkedItems == null) {
+                    stale = true;
+                    return;
+                }
+                walkedItems.forEach(InventoryIndex::index);
+                events.forEach(Runnable::run);
+            }
+        }
+    }
+
+    /**
+     * @return all items of the inventory tree in the tree order, null if there is no inventory yet
+     */
+    private static List<InventoryMetaItem> walk() {
+        if (WurmHelper.hud == null || WurmHelper.hud.getInventoryWindow() == null)
+            return null;
+        InventoryListComponent ilc = WurmHelper.hud.getInventoryWindow().getInventoryListComponent();
+        return Utils.getSelectedItems(ilc, true, true);
+    }
+
+    private static void clear() {
+        items.clear();
+        positions.clear();
+        indexedNames.clear();
+        indexedParents.clear();
+        children.clear();
+        byName.clear();
+        bySuffix.clear();
+        inventoryRootId = Long.MIN_VALUE;
+    }
+
+    private static void index(InventoryMetaItem item) {
+        long id = item.getId();
+        if (items.containsKey(id))
+            unlink(id);
+        else
+            positions.put(id, nextPosition++);
+        items.put(id, item);
+
+        String name = baseName(item);
+        indexedNames.put(id, name);
+        Set<Long> namesakes = byName.get(name);
+        if (namesakes == null) {
+            namesakes = new LinkedHashSet<>();
+            byName.put(name, namesakes);
+            for (int i = 0; i < name.length(); i++)
+                bySuffix.computeIfAbsent(name.substring(i), suffix -> new HashSet<>()).add(name);
+        }
+        namesakes.add(id);
+
+        long parentId = item.getParentId();
+        indexedParents.put(id, parentId);
+        children.computeIfAbsent(parentId, pid -> new LinkedHashSet<>()).add(id);
+        if (name.equals(INVENTORY_ROOT_NAME) && !items.containsKey(parentId))
+            inventoryRootId = id;
+    }
+
+    private static void unindex(long id) {
+        Set<Long> childIds = children.get(id);
+        if (childIds != null)
+            for (Long childId : new ArrayList<>(childIds))
+                unindex(childId);
+        if (items.remove(id) != null) {
+            unlink(id);
+            positions.remove(id);
+        }
+        if (id == inventoryRootId)
+            inventoryRootId = Long.MIN_VALUE;
+    }
+
+    private static void unlink(long id) {
+        String name = indexedNames.remove(id);
+        if (name != null) {
+            Set<Long> namesakes = byName.get(name);
+            namesakes.remove(id);
+            if (namesakes.isEmpty()) {
+                byName.remove(name);
+                for (int i = 0; i < name.length(); i++) {
+                    String suffix = name.substring(i);
+                    Set<String> suffixNames = bySuffix.get(suffix);
+                    suffixNames.remove(name);
+                    if (suffixNames.isEmpty())
+                        bySuffix.remove(suffix);
+                }
+            }
+        }
+        Long parentId = indexedParents.remove(id);
+        if (parentId != null) {
+            Set<Long> siblings = children.get(parentId);
+            siblings.remove(id);
+            if (siblings.isEmpty())
+                children.remove(parentId);
+        }
+    }
+
+    private static boolean isInInventory(long id) {
+        Long parentId = indexedParents.get(id);
+        //the depth limit protects from the cycles in case of broken parent ids
+        for (int depth = 0; parentId != null && depth < 64; depth++) {
+            if (parentId == inventoryRootId)
+                return true;
+            parentId = indexedParents.get(parentId);
+        }
+        return false;
+    }
+
+    private static List<InventoryMetaItem> toItems(Collection<Long> ids, boolean inventoryOnly) {
+        List<InventoryMetaItem> result = new ArrayList<>();
+        if (ids == null)
+            return result;
+        for (Long id : ids)
+            if (!inventoryOnly || isInInventory(id))
+                result.add(items.get(id));
+        return result;
+    }
+
+    private static List<InventoryMetaItem> toItemsInTreeOrder(List<Long> ids, boolean inventoryOnly) {
+        Map<Long, long[]> paths = new HashMap<>();
+        for (Long id : ids)
+            paths.put(id, treePath(id));
+        ids.sort((a, b) -> comparePaths(paths.get(a), paths.get(b)));
+        return toItems(ids, inventoryOnly);
+    }
+
+    /**
+     * @return the positions among their siblings of the indexed ancestors of the item and of the item itself, the topmost first
+     */
+    private static long[] treePath(long id) {
+        Deque<Long> path = new ArrayDeque<>();
+        Long current = id;
+        //the depth limit protects from the cycles in case of broken parent ids
+        for (int depth = 0; current != null && depth < 64; depth++) {
+            Long position = positions.get(current);
+            if (position == null)
+                break;
+            path.addFirst(position);
+            current = indexedParents.get(current);
+        }
+        return path.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    //a container goes before its contents
+    private static int comparePaths(long[] a, long[] b) {
+        for (int i = 0; i < a.length && i < b.length; i++)
+            if (a[i] != b[i])
+                return Long.compare(a[i], b[i]);
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static String baseName(InventoryMetaItem item) {
+        String name = item.getBaseName();
+        return name == null ? "" : name;
+    }
+}
@@ -0,0 +1,197 @@
+package net.ildar.wurm;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Custom Java Flight Recorder events of the bots, so the bot work can be lined up with the frame hitches in one recording.
+ * The event types are created at runtime with jdk.jfr.EventFactory through reflection,
+ * so the mod still runs on the JVMs without jdk.jfr, the events are just not available there.
+ * Off by default, then {@link #begin(Type)} returns null and the callers skip the event.
+ * Usage:
+ * <pre>
+ * Object event = JfrEvents.begin(JfrEvents.Type.PATH_SEARCH);
+ * ...
+ * if (event != null)
+ *     JfrEvents.commit(event, nodesExpanded, pathLength, cached);
+ * </pre>
+ */
+public class JfrEvents {
+    private static final String CATEGORY = "WurmHelper";
+
+    private static volatile boolean enabled = false;
+    private static boolean initialized;
+    private static Object[] factories;
+    private static MethodHandle newEvent;
+    private static MethodHandle beginEvent;
+    private static MethodHandle commitEvent;
+    private static MethodHandle setField;
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false if the events are not available on this JVM
+     */
+    public static boolean setEnabled(boolean enabled) {
+        if (enabled && !initialize()) {
+            JfrEvents.enabled = false;
+            return false;
+        }
+        JfrEvents.enabled = enabled;
+        return true;
+    }
+
+    /**
+     * Start the event, the duration of the event lasts until {@link #commit(Object, Object...)}
+     * @return null if the events are off
+     */
+    public static Object begin(Type type) {
+        if (!enabled)
+            return null;
+        try {
+            Object event = newEvent.invoke(factories[type.ordinal()]);
+            beginEvent.invoke(event);
+            return event;
+        } catch (Throwable e) {
+            disable(e);
+            return null;
+        }
+    }
+
+    /**
+     * Record the event with the values of the fields of its type, in the order of the declaration
+     */
+    public static void commit(Object event, Object... values) {
+        if (event == null)
+            return;
+        try {
+            for (int i = 0; i < values.length; i++)
+                setField.invoke(event, i, values[i]);
+            commitEvent.invoke(event);
+        } catch (Throwable e) {
+            disable(e);
+        }
+    }
+
+    /**
+     * Called by the hooks of the server connection, the instant event of a sent action
+     */
+    @SuppressWarnings("unused")
+    public static void onSendAction() {
+        if (enabled)
+            commit(begin(Type.SEND_ACTION));
+    }
+
+    private static void disable(Throwable e) {
+        enabled = false;
+        Utils.consolePrint("JFR events were turned off because of an error - " + e.toString());
+        e.printStackTrace();
+    }
+
+    private static synchronized boolean initialize() {
+        if (initialized)
+            return factories != null;
+        initialized = true;
+        try {
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Constructor<?> annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            Constructor<?> valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            Class<? extends Annotation> nameAnnotation = annotationClass("jdk.jfr.Name");
+            Class<? extends Annotation> labelAnnotation = annotationClass("jdk.jfr.Label");
+            Class<? extends Annotation> categoryAnnotation = annotationClass("jdk.jfr.Category");
+            Class<? extends Annotation> descriptionAnnotation = annotationClass("jdk.jfr.Description");
+            MethodHandle create = MethodHandles.publicLookup().unreflect(eventFactoryClass.getMethod("create", List.class, List.class));
+
+            Object[] createdFactories = new Object[Type.values().length];
+            for (Type type : Type.values()) {
+                List<Object> annotations = Arrays.asList(
+                        annotationElement.newInstance(nameAnnotation, JfrEvents.class.getPackage().getName() + "." + type.name),
+                        annotationElement.newInstance(labelAnnotation, type.label),
+                        annotationElement.newInstance(descriptionAnnotation, type.description),
+                        annotationElement.newInstance(categoryAnnotation, new String[]{CATEGORY}));
+                List<Object> fields = new ArrayList<>();
+                for (Field field : type.fields) {
+                    List<Object> fieldAnnotations = Collections.singletonList(annotationElement.newInstance(labelAnnotation, field.label));
+                    fields.add(valueDescriptor.newInstance(field.type, field.name, fieldAnnotations));
+                }
+                createdFactories[type.ordinal()] = create.invoke(annotations, fields);
+            }
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            newEvent = lookup.unreflect(eventFactoryClass.getMethod("newEvent"));
+            beginEvent = lookup.unreflect(eventClass.getMethod("begin"));
+            commitEvent = lookup.unreflect(eventClass.getMethod("commit"));
+            setField = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class));
+            factories = createdFactories;
+            return true;
+        } catch (ClassNotFoundException e) {
+            Utils.consolePrint("JFR events are not available on this JVM");
+            return false;
+        } catch (Throwable e) {
+            Utils.consolePrint("Couldn't create the JFR events - " + e.toString());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationClass(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+    private static Field field(String name, Class<?> type, String label) {
+        return new Field(name, type, label);
+    }
+
+    public enum Type {
+        BOT_ITERATION("BotIteration", "Bot Iteration", "The time between the checks of the bot loop",
+                field("bot", String.class, "Bot")),
+        PATH_SEARCH("PathSearch", "Path Search", "PathingBot.findPath",
+                field("nodesExpanded", int.class, "Nodes Expanded"),
+                field("pathLength", int.class, "Path Length"),
+                field("cached", boolean.class, "Cached")),
+        COLLISION_REFRESH("CollisionRefresh", "Collision Cache Refresh", "The update of the tiles passability around the player",
+                field("rebuilt", boolean.class, "Rebuilt")),
+        INVENTORY_SCAN("InventoryScan", "Inventory Scan", "Utils.getSelectedItems over the inventory tree",
+                field("nodesVisited", int.class, "Nodes Visited"),
+                field("itemsFound", int.class, "Items Found")),
+        CHAT_DISPATCH("ChatDispatch", "Chat Dispatch", "A chat line passed to the message processors",
+                field("tab", String.class, "Tab"),
+                field("processorsCalled", int.class, "Processors Called")),
+        SEND_ACTION("SendAction", "Send Action", "An action sent to the server");
+
+        private final String name;
+        private final String label;
+        private final String description;
+        private final Field[] fields;
+
+        Type(String name, String label, String description, Field... fields) {
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+        }
+    }
+
+    private static class Field {
+        private final String name;
+        private final Class<?> type;
+        private final String label;
+
+        private Field(String name, Class<?> type, String label) {
+            this.name = name;
+            this.type = type;
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Matches item names against a set of names compiled once.
+ * A few names are checked one by one, larger sets are compiled into a trie(prefix mode)
+ * or an Aho-Corasick automaton(substring and word modes), so a name is checked against the whole set in one pass.
+ * Matching is case sensitive, like the plain {@link String#contains(CharSequence)} checks it replaces
+ */
+public class NameMatcher {
+    //up to this number of names the plain string checks are faster than the automaton
+    private static final int LINEAR_MATCH_LIMIT = 3;
+
+    private final Mode mode;
+    private final List<String> names;
+    private final Set<String> exactNames;
+    private final Automaton automaton;
+    //the names with apostrophes without them, looked for in the display names of the items. Null if there are none
+    private final NameMatcher displayNameMatcher;
+
+    private NameMatcher(Mode mode, Collection<String> names) {
+        this.mode = mode;
+        this.names = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(names)));
+        if (mode == Mode.EXACT) {
+            exactNames = new HashSet<>(this.names);
+            automaton = null;
+        } else if (this.names.size() > LINEAR_MATCH_LIMIT) {
+            exactNames = null;
+            automaton = new Automaton(this.names, mode != Mode.PREFIX);
+        } else {
+            exactNames = null;
+            automaton = null;
+        }
+        List<String> displayNames = new ArrayList<>();
+        for (String name : this.names)
+            if (name.contains("'"))
+                displayNames.add(name.replace("'", ""));
+        displayNameMatcher = displayNames.isEmpty() ? null : new NameMatcher(mode, displayNames);
+    }
+
+    public static NameMatcher compile(Mode mode, Collection<String> names) {
+        return new NameMatcher(mode, names);
+    }
+
+    public static NameMatcher compile(Mode mode, String... names) {
+        return new NameMatcher(mode, Arrays.asList(names));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    /**
+     * @return true if provided name matches any of the compiled names
+     */
+    public boolean matches(String name) {
+        if (name == null)
+            return false;
+        switch (mode) {
+            case EXACT:
+                return exactNames.contains(name);
+            case PREFIX:
+                return automaton == null ? matchesAnyLinear(name) : matchesPrefixTrie(name);
+            case SUBSTRING:
+                return automaton == null ? matchesAnyLinear(name) : matchesAutomaton(name, false);
+            case WORD:
+                return automaton == null ? matchesAnyLinear(name) : matchesAutomaton(name, true);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Same as {@link #matches(String)} on the base name of the item.
+     * The names with apostrophes are also looked for without them in the display name, like the name lookups of {@link Utils} do
+     */
+    public boolean matches(InventoryMetaItem item) {
+        return matches(item.getBaseName()) || displayNameMatcher != null && displayNameMatcher.matches(item.getDisplayName());
+    }
+
+    /**
+     * Report every compiled name that matches provided text, for the callers that have to know which ones matched.
+     * The consumer can get the same index more than once if the name occurs several times in the text
+     * @param consumer gets the indices of the matched names in {@link #getNames()}
+     */
+    public void forEachMatch(String text, IntConsumer consumer) {
+        if (text == null)
+            return;
+        if (mode == Mode.EXACT || automaton == null) {
+            for (int i = 0; i < names.size(); i++)
+                if (matchesLinear(names.get(i), text))
+                    consumer.accept(i);
+        } else if (mode == Mode.PREFIX) {
+            int state = 0;
+            for (int i = 0; ; i++) {
+                for (int index : automaton.outputs[state])
+                    consumer.accept(index);
+                if (i == text.length() || (state = automaton.next(state, text.charAt(i))) == Automaton.DEAD)
+                    break;
+            }
+        } else {
+            int state = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i > 0)
+                    state = automaton.next(state, text.charAt(i - 1));
+                for (int index : automaton.outputs[state]) {
+                    int length = names.get(index).length();
+                    if (mode == Mode.SUBSTRING || (isWordBoundary(text, i - length) && isWordBoundary(text, i)))
+                        consumer.accept(index);
+                }
+            }
+        }
+    }
+
+    private boolean matchesAnyLinear(String name) {
+        for (String n : names)
+            if (matchesLinear(n, name))
+                return true;
+        return false;
+    }
+
+    private boolean matchesLinear(String n, String text) {
+        switch (mode) {
+            case EXACT:
+                return text.equals(n);
+            case PREFIX:
+                return text.startsWith(n);
+            case SUBSTRING:
+                return text.contains(n);
+            default:
+                //an empty name would be found at the end of the text again and again
+                for (int start = text.indexOf(n); start >= 0; start = start < text.length() ? text.indexOf(n, start + 1) : -1)
+                    if (isWordBoundary(text, start) && isWordBoundary(text, start + n.length()))
+                        return true;
+                return false;
+        }
+    }
+
+    private boolean matchesPrefixTrie(String name) {
+        int state = 0;
+        for (int i = 0; ; i++) {
+            if (automaton.outputs[state].length > 0)
+                return true;
+            if (i == name.length() || (state = automaton.next(state, name.charAt(i))) == Automaton.DEAD)
+                return false;
+        }
+    }
+
+    private boolean matchesAutomaton(String name, boolean wholeWords) {
+        int state = 0;
+        for (int i = 0; i <= name.length(); i++) {
+            if (i > 0)
+                state = automaton.next(state, name.charAt(i - 1));
+            //the outputs are the indices of all names ending at this position
+            for (int index : automaton.outputs[state]) {
+                if (!wholeWords)
+                    return true;
+                if (isWordBoundary(name, i - names.get(index).length()) && isWordBoundary(name, i))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as regex "\b" - the characters around the position differ in being word characters
+     */
+    private static boolean isWordBoundary(String s, int position) {
+        boolean before = position > 0 && isWordChar(s.charAt(position - 1));
+        boolean after = position < s.length() && isWordChar(s.charAt(position));
+        return before != after;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * The trie or the Aho-Corasick automaton as a table of transitions, so every character of the text is one lookup.
+     * The characters of the names are numbered and all other characters share class 0,
+     * so a row of the table has one entry per distinct character of the names
+     */
+    private static final class Automaton {
+        private static final int DEAD = -1;
+
+        private final int[] asciiClasses = new int[128];
+        private final Map<Character, Integer> otherClasses = new HashMap<>();
+        private final int classCount;
+        //state * classCount + class -> next state, the root is state 0
+        private final int[] transitions;
+        //indices of all names ending at the state
+        private final int[][] outputs;
+
+        private Automaton(List<String> names, boolean withFailureLinks) {
+            int classes = 1;
+            int maxStates = 1;
+            for (String name : names) {
+                maxStates += name.length();
+                for (int i = 0; i < name.length(); i++) {
+                    char c = name.charAt(i);
+                    if (c < 128) {
+                        if (asciiClasses[c] == 0)
+                            asciiClasses[c] = classes++;
+                    } else if (!otherClasses.containsKey(c)) {
+                        otherClasses.put(c, classes++);
+                    }
+                }
+            }
+            classCount = classes;
+
+            int[] table = new int[maxStates * classCount];
+            Arrays.fill(table, DEAD);
+            List<Set<Integer>> pendingOutputs = new ArrayList<>();
+            pendingOutputs.add(new TreeSet<>());
+            int stateCount = 1;
+            for (int index = 0; index < names.size(); index++) {
+                String name = names.get(index);
+                int state = 0;
+                for (int i = 0; i < name.length(); i++) {
+                    int transition = state * classCount + classOf(name.charAt(i));
+                    if (table[transition] == DEAD) {
+                        table[transition] = stateCount++;
+                        pendingOutputs.add(new TreeSet<>());
+                    }
+                    state = table[transition];
+                }
+                pendingOutputs.get(state).add(index);
+            }
+
+            if (withFailureLinks) {
+                //breadth-first, so the row of the failure state is complete before the states linking to it.
+                //The missing transitions are taken from the failure state, instead of following the links while matching
+                int[] fail = new int[stateCount];
+                Deque<Integer> queue = new ArrayDeque<>();
+                for (int cls = 0; cls < classCount; cls++) {
+                    if (table[cls] == DEAD)
+                        table[cls] = 0;
+                    else
+                        queue.add(table[cls]);
+                }
+                while (!queue.isEmpty()) {
+                    int state = queue.poll();
+                    for (int cls = 0; cls < classCount; cls++) {
+                        int transition = state * classCount + cls;
+                        int failTransition = table[fail[state] * classCount + cls];
+                        if (table[transition] == DEAD) {
+                            table[transition] = failTransition;
+                        } else {
+                            int child = table[transition];
+                            fail[child] = failTransition;
+                            pendingOutputs.get(child).addAll(pendingOutputs.get(failTransition));
+                            queue.add(child);
+                        }
+                    }
+                }
+            }
+
+            transitions = Arrays.copyOf(table, stateCount * classCount);
+            outputs = new int[stateCount][];
+            for (int state = 0; state < stateCount; state++)
+                outputs[state] = pendingOutputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int classOf(char c) {
+            if (c < 128)
+                return asciiClasses[c];
+            Integer cls = otherClasses.get(c);
+            return cls == null ? 0 : cls;
+        }
+
+        private int next(int state, char c) {
+            return transitions[state * classCount + classOf(c)];
+        }
+    }
+
+    public enum Mode {
+        PREFIX,
+        SUBSTRING,
+        //the name must be surrounded by word boundaries, like "\bname\b" regex
+        WORD,
+        EXACT
+    }
+}
@@ -0,0 +1,130 @@
+package net.ildar.wurm;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the server calls of the bot threads and sends them from the writer tick of the server connection.
+ * The writer tick holds {@link Utils#serverCallLock} already, so the whole batch is sent and written to the socket
+ * under one lock acquisition instead of every bot thread contending with the writer for every action.
+ * Opt-in with the OutboundBatching property or "bot outbound on", the calls are sent at once
+ * if batching is disabled or the writer tick doesn't run.
+ * The lock methods are called by the hooks of the connection and also count the lock hold and wait times
+ */
+public class OutboundBatcher {
+    //the calls are sent at once if the writer tick didn't run for this time
+    private static final long TICK_TIMEOUT = 500;
+
+    private static volatile boolean enabled = false;
+    private static volatile long lastDrain;
+    private static final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    //guarded by the server call lock
+    private static long holdStart;
+
+    private static final LongAdder acquisitions = new LongAdder();
+    private static final LongAdder contendedAcquisitions = new LongAdder();
+    private static final LongAdder waitNanos = new LongAdder();
+    private static final LongAdder holdNanos = new LongAdder();
+    private static final LongAdder batches = new LongAdder();
+    private static final LongAdder batchedCalls = new LongAdder();
+    private static final LongAdder directCalls = new LongAdder();
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        OutboundBatcher.enabled = enabled;
+        if (!enabled)
+            flushNow();
+    }
+
+    /**
+     * Send the server call with the next writer tick
+     * @param call sends the packet through the server connection of the client
+     */
+    public static void submit(Runnable call) {
+        if (!enabled || System.currentTimeMillis() - lastDrain > TICK_TIMEOUT) {
+            //the calls queued before the tick stopped must not be lost
+            flushNow();
+            directCalls.increment();
+            call.run();
+            return;
+        }
+        queue.add(call);
+    }
+
+    private static void flushNow() {
+        if (queue.isEmpty())
+            return;
+        lock();
+        try {
+            drain();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Send the queued calls. Called by the writer tick with the server call lock held
+     */
+    @SuppressWarnings("unused")
+    public static void drain() {
+        lastDrain = System.currentTimeMillis();
+        Runnable call = queue.poll();
+        if (call == null)
+            return;
+        batches.increment();
+        do {
+            batchedCalls.increment();
+            try {
+                call.run();
+            } catch (Exception e) {
+                Utils.consolePrint("Couldn't send the server call - " + e.toString());
+                e.printStackTrace();
+            }
+        } while ((call = queue.poll()) != null);
+    }
+
+    @SuppressWarnings("unused")
+    public static void lock() {
+        ReentrantLock lock = Utils.serverCallLock;
+        if (lock.isHeldByCurrentThread()) {
+            lock.lock();
+            return;
+        }
+        if (!lock.tryLock()) {
+            long waitStart = System.nanoTime();
+            lock.lock();
+            waitNanos.add(System.nanoTime() - waitStart);
+            contendedAcquisitions.increment();
+        }
+        acquisitions.increment();
+        holdStart = System.nanoTime();
+    }
+
+    @SuppressWarnings("unused")
+    public static void unlock() {
+        ReentrantLock lock = Utils.serverCallLock;
+        if (lock.getHoldCount() == 1)
+            holdNanos.add(System.nanoTime() - holdStart);
+        lock.unlock();
+    }
+
+    public static void printStatus() {
+        long acquired = acquisitions.sum();
+        long batchCount = batches.sum();
+        Utils.consolePrint("Outbound batching is " + (enabled ? "on" : "off")
+                + (enabled && System.currentTimeMillis() - lastDrain > TICK_TIMEOUT ? ", the writer tick is not running" : ""));
+        Utils.consolePrint("Batched calls: " + batchedCalls.sum() + " in " + batchCount + " batches"
+                + (batchCount > 0 ? String.format(" (%.1f per batch)", (double) batchedCalls.sum() / batchCount) : "")
+                + ", direct calls: " + directCalls.sum() + ", queued: " + queue.size());
+        Utils.consolePrint("Server call lock: " + acquired + " acquisitions, " + contendedAcquisitions.sum() + " contended, "
+                + "waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()) + "ms, "
+                + "held " + TimeUnit.NANOSECONDS.toMillis(holdNanos.sum()) + "ms"
+                + (acquired > 0 ? String.format(" (%.1fus per acquisition)", holdNanos.sum() / 1000.0 / acquired) : ""));
+    }
+}
@@ -0,0 +1,91 @@
+package net.ildar.wurm;
+
+import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps getter/setter handles for private client fields, resolved once per class.
+ * The inventory tree walks read several fields of every node on every bot iteration,
+ * so repeating the field search and the access check for each read adds up quickly.
+ */
+public class ReflectionCache {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodType getterType = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType setterType = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<Map<String, MethodHandle>> getters = new HandleMap();
+    private static final ClassValue<Map<String, MethodHandle>> setters = new HandleMap();
+
+    /**
+     * Read the value of the field with provided name. The field is looked up in the class of the target object and its superclasses
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(Object target, String field) throws NoSuchFieldException, IllegalAccessException {
+        long start = BotMetrics.isEnabled() ? System.nanoTime() : 0;
+        MethodHandle getter = getter(target.getClass(), field);
+        try {
+            return (T) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (start != 0)
+                BotMetrics.recordReflection(start);
+        }
+    }
+
+    public static void set(Object target, String field, Object value) throws NoSuchFieldException, IllegalAccessException {
+        long start = BotMetrics.isEnabled() ? System.nanoTime() : 0;
+        MethodHandle setter = setter(target.getClass(), field);
+        try {
+            setter.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (start != 0)
+                BotMetrics.recordReflection(start);
+        }
+    }
+
+    public static MethodHandle getter(Class<?> cls, String field) throws NoSuchFieldException, IllegalAccessException {
+        Map<String, MethodHandle> classGetters = getters.get(cls);
+        MethodHandle getter = classGetters.get(field);
+        if (getter == null) {
+            getter = lookup.unreflectGetter(resolve(cls, field)).asType(getterType);
+            classGetters.put(field, getter);
+        }
+        return getter;
+    }
+
+    public static MethodHandle setter(Class<?> cls, String field) throws NoSuchFieldException, IllegalAccessException {
+        Map<String, MethodHandle> classSetters = setters.get(cls);
+        MethodHandle setter = classSetters.get(field);
+        if (setter == null) {
+            setter = lookup.unreflectSetter(resolve(cls, field)).asType(setterType);
+            classSetters.put(field, setter);
+        }
+        return setter;
+    }
+
+    private static Field resolve(Class<?> cls, String field) throws NoSuchFieldException {
+        Field f = ReflectionUtil.getField(cls, field);
+        f.setAccessible(true);
+        return f;
+    }
+
+    private static class HandleMap extends ClassValue<Map<String, MethodHandle>> {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.comm.ServerConnectionListenerClass;
+import com.wurmonline.client.renderer.CreatureData;
+import com.wurmonline.client.renderer.GroundItemData;
+import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
+import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
+import com.wurmonline.client.renderer.gui.HeadsUpDisplay;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Live tile buckets of the ground items and creatures known to the client, for the "nearest first" lookups around a point.
+ * The render thread, which changes the maps of the server connection, finds their changes on every game tick
+ * and queues them without locking: the spawned and despawned ground items and creatures, and the creatures moved to another tile.
+ * The ground item maps are only compared on the ticks their initialize() hook ran or their sizes differ,
+ * the creatures are checked every tick. A lookup applies the queued changes and searches the buckets around the point,
+ * so it costs the number of changes and the size of the result instead of the size of the maps.
+ * The changes are tracked while the lookups are made or the bots subscribe to {@link GroundItemEvents},
+ * until the render thread sends the whole map on the first tick of the tracking, the lookups read the map themselves.
+ * The added and removed ground items are published to the subscriptions of {@link GroundItemEvents}
+ */
+public class SpatialIndex {
+    //the tracking stops when there were no lookups for this time
+    private static final long IDLE_TIMEOUT = 60000;
+    //the queued changes are dropped past this count, the render thread sends the whole map again then
+    private static final int MAX_QUEUED = 10000;
+    //the farthest a creature can be from its indexed position without changing its tile
+    private static final float TILE_DIAGONAL = (float) (4 * Math.sqrt(2));
+    private static final Map<Long, GroundItem> groundItems = new HashMap<>();
+    private static final TileGrid<GroundItem> groundItemGrid = new TileGrid<>();
+    private static final Map<Long, Creature> creatures = new HashMap<>();
+    private static final TileGrid<Creature> creatureGrid = new TileGrid<>();
+    private static final MapTracker<GroundItemCellRenderable> groundItemTracker = new MapTracker<>("groundItems", false);
+    private static final MapTracker<CreatureCellRenderable> creatureTracker = new MapTracker<>("creatures", true);
+    private static volatile boolean groundItemsHooked;
+
+    static void setHooked(boolean groundItemsHooked) {
+        SpatialIndex.groundItemsHooked = groundItemsHooked;
+    }
+
+    /**
+     * Called from the render thread, never blocks
+     */
+    @SuppressWarnings("unused")
+    public static void onGroundItemInitialized(GroundItemCellRenderable renderable) {
+        groundItemTracker.changed = true;
+    }
+
+    /**
+     * Called from the render thread on every frame, never blocks
+     */
+    public static void onGameTick(HeadsUpDisplay hud) {
+        if (hud == null || hud.getWorld() == null)
+            return;
+        try {
+            ServerConnectionListenerClass sscc = hud.getWorld().getServerConnection().getServerConnectionListener();
+            if (!groundItemsHooked)
+                groundItemTracker.changed = true;
+            if (groundItemTracker.tick(sscc, GroundItemEvents.isListening()))
+                GroundItemEvents.wake();
+            creatureTracker.tick(sscc, false);
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't track the ground items and creatures - " + e.toString());
+        }
+    }
+
+    static boolean hasGroundItemChanges() {
+        return !groundItemTracker.changes.isEmpty();
+    }
+
+    /**
+     * Bring the ground items up to date, the changes are published to {@link GroundItemEvents}
+     * @param then called with the known ground items under the lock of the index, so no change is published meanwhile.
+     *             Can be null
+     */
+    static synchronized void updateGroundItems(Consumer<Collection<GroundItem>> then) {
+        syncGroundItems();
+        if (then != null)
+            then.accept(Collections.unmodifiableCollection(groundItems.values()));
+    }
+
+    /**
+     * @param filter can be null
+     * @return the ground items within provided distance(in meters) from the point accepted by the filter, nearest first
+     */
+    public static synchronized List<GroundItem> getGroundItemsNear(float x, float y, float distance, Predicate<GroundItem> filter) {
+        Map<Long, GroundItemCellRenderable> live = syncGroundItems();
+        if (live == null)
+            return new ArrayList<>();
+        return groundItemGrid.getWithin(x, y, distance, isLiveGroundItem(live, filter));
+    }
+
+    /**
+     * @param filter can be null
+     * @return the nearest ground item within provided distance(in meters) from the point accepted by the filter or null
+     */
+    public static synchronized GroundItem getNearestGroundItem(float x, float y, float distance, Predicate<GroundItem> filter) {
+        Map<Long, GroundItemCellRenderable> live = syncGroundItems();
+        if (live == null)
+            return null;
+        return groundItemGrid.getNearest(x, y, distance, isLiveGroundItem(live, filter));
+    }
+
+    /**
+     * @return the ground items on the tile
+     */
+    public static synchronized List<GroundItem> getGroundItemsOnTile(int tileX, int tileY) {
+        Map<Long, GroundItemCellRenderable> live = syncGroundItems();
+        List<GroundItem> found = new ArrayList<>();
+        if (live == null)
+            return found;
+        Predicate<GroundItem> isLive = isLiveGroundItem(live, null);
+        for (GroundItem item : groundItemGrid.getOnTile(tileX, tileY))
+            if (isLive.test(item))
+                found.add(item);
+        return found;
+    }
+
+    /**
+     * The creatures are bucketed by the tile they were on when they were indexed,
+     * so the found ones are checked and sorted by their current positions
+     * @param filter can be null
+     * @return the creatures within provided distance(in meters) from the point accepted by the filter, nearest first
+     */
+    public static synchronized List<Creature> getCreaturesNear(float x, float y, float distance, Predicate<Creature> filter) {
+        Map<Long, CreatureCellRenderable> live = syncCreatures();
+        if (live == null)
+            return new ArrayList<>();
+        float maxSqDistance = distance * distance;
+        List<Creature> found = creatureGrid.getWithin(x, y, distance + TILE_DIAGONAL,
+                creature -> creature.sqDistance(x, y) <= maxSqDistance && isLiveCreature(live, filter).test(creature));
+        found.sort(Comparator.comparingDouble(creature -> creature.sqDistance(x, y)));
+        return found;
+    }
+
+    /**
+     * @param filter can be null
+     * @return the nearest creature within provided distance(in meters) from the point accepted by the filter or null
+     */
+    public static synchronized Creature getNearestCreature(float x, float y, float distance, Predicate<Creature> filter) {
+        List<Creature> found = getCreaturesNear(x, y, distance, filter);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * @param filter can be null
+     * @return all creatures accepted by the filter
+     */
+    public static synchronized List<Creature> getCreatures(Predicate<Creature> filter) {
+        Map<Long, CreatureCellRenderable> live = syncCreatures();
+        List<Creature> found = new ArrayList<>();
+        if (live == null)
+            return found;
+        Predicate<Creature> isLive = isLiveCreature(live, filter);
+        for (Creature creature : creatures.values())
+            if (isLive.test(creature))
+                found.add(creature);
+        return found;
+    }
+
+    /**
+     * @return the creature with provided id or null
+     */
+    public static synchronized Creature getCreature(long id) {
+        Map<Long, CreatureCellRenderable> live = syncCreatures();
+        Creature creature = creatures.get(id);
+        return live != null && creature != null && isLiveCreature(live, null).test(creature) ? creature : null;
+    }
+
+    /**
+     * The item could be removed from the map after the last tick
+     */
+    private static Predicate<GroundItem> isLiveGroundItem(Map<Long, GroundItemCellRenderable> live, Predicate<GroundItem> filter) {
+        return item -> live.get(item.getId()) == item.renderable && (filter == null || filter.test(item));
+    }
+
+    private static Predicate<Creature> isLiveCreature(Map<Long, CreatureCellRenderable> live, Predicate<Creature> filter) {
+        return creature -> live.get(creature.getId()) == creature.renderable && (filter == null || filter.test(creature));
+    }
+
+    /**
+     * Apply the changes queued by the render thread, also publishes them
+     * @return the live map or null if it couldn't be read
+     */
+    private static Map<Long, GroundItemCellRenderable> syncGroundItems() {
+        List<GroundItemEvents.Event> events = GroundItemEvents.isListening() ? new ArrayList<>() : null;
+        Map<Long, GroundItemCellRenderable> live;
+        try {
+            live = getServerConnectionMap("groundItems");
+            groundItemTracker.use();
+            if (!groundItemTracker.apply(SpatialIndex::addGroundItems, SpatialIndex::removeGroundItem, null, events))
+                //the render thread hasn't sent the whole map yet
+                addGroundItems(WorldSnapshot.copyValues(live), true, events);
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't synchronize the ground items index - " + e.getMessage());
+            Utils.consolePrint(e.toString());
+            live = null;
+        }
+        if (events != null && !events.isEmpty())
+            GroundItemEvents.publish(events);
+        return live;
+    }
+
+    private static Map<Long, CreatureCellRenderable> syncCreatures() {
+        try {
+            Map<Long, CreatureCellRenderable> live = getServerConnectionMap("creatures");
+            creatureTracker.use();
+            if (!creatureTracker.apply(SpatialIndex::addCreatures, SpatialIndex::removeCreature, SpatialIndex::moveCreature, null))
+                addCreatures(WorldSnapshot.copyValues(live), true, null);
+            return live;
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't synchronize the creatures index - " + e.getMessage());
+            Utils.consolePrint(e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param all the renderables are all the map has, the other indexed items are removed
+     * @param events the spawns and the despawns are added here, can be null
+     */
+    private static void addGroundItems(Collection<GroundItemCellRenderable> renderables, boolean all, List<GroundItemEvents.Event> events) throws Exception {
+        Set<Long> ids = all ? new HashSet<>() : null;
+        for (GroundItemCellRenderable renderable : renderables) {
+            if (ids != null)
+                ids.add(renderable.getId());
+            GroundItem known = groundItems.get(renderable.getId());
+            if (known != null && known.renderable == renderable)
+                continue;
+            GroundItemData data = Utils.getField(renderable, "item");
+            GroundItem item = new GroundItem(renderable, data);
+            groundItems.put(item.getId(), item);
+            if (known != null)
+                groundItemGrid.remove(known, known.x, known.y);
+            groundItemGrid.add(item, item.x, item.y);
+            if (events != null) {
+                if (known != null)
+                    events.add(new GroundItemEvents.Event(false, known));
+                events.add(new GroundItemEvents.Event(true, item));
+            }
+        }
+        if (ids != null)
+            for (GroundItem item : new ArrayList<>(groundItems.values()))
+                if (!ids.contains(item.getId()))
+                    removeGroundItem(item.renderable, events);
+    }
+
+    private static void removeGroundItem(GroundItemCellRenderable renderable, List<GroundItemEvents.Event> events) {
+        GroundItem item = groundItems.get(renderable.getId());
+        if (item == null || item.renderable != renderable)
+            return;
+        groundItems.remove(item.getId());
+        groundItemGrid.remove(item, item.x, item.y);
+        if (events != null)
+            events.add(new GroundItemEvents.Event(false, item));
+    }
+
+    private static void addCreatures(Collection<CreatureCellRenderable> renderables, boolean all, List<GroundItemEvents.Event> events) throws Exception {
+        Set<Long> ids = all ? new HashSet<>() : null;
+        for (CreatureCellRenderable renderable : renderables) {
+            if (ids != null)
+                ids.add(renderable.getId());
+            Creature known = creatures.get(renderable.getId());
+            if (known != null && known.renderable == renderable) {
+                moveCreature(renderable);
+                continue;
+            }
+            CreatureData data = Utils.getField(renderable, "creature");
+            Creature creature = new Creature(renderable, data);
+            creatures.put(creature.getId(), creature);
+            if (known != null)
+                creatureGrid.remove(known, known.x, known.y);
+            creatureGrid.add(creature, creature.x, creature.y);
+        }
+        if (ids != null)
+            creatures.values().removeIf(creature -> {
+                if (ids.contains(creature.getId()))
+                    return false;
+                creatureGrid.remove(creature, creature.x, creature.y);
+                return true;
+            });
+    }
+
+    private static void removeCreature(CreatureCellRenderable renderable, List<GroundItemEvents.Event> events) {
+        Creature creature = creatures.get(renderable.getId());
+        if (creature == null || creature.renderable != renderable)
+            return;
+        creatures.remove(creature.getId());
+        creatureGrid.remove(creature, creature.x, creature.y);
+    }
+
+    private static void moveCreature(CreatureCellRenderable renderable) {
+        Creature creature = creatures.get(renderable.getId());
+        if (creature == null || creature.renderable != renderable)
+            return;
+        creatureGrid.remove(creature, creature.x, creature.y);
+        Creature moved = new Creature(renderable, creature.data);
+        creatures.put(moved.getId(), moved);
+        creatureGrid.add(moved, moved.x, moved.y);
+    }
+
+    static <T> Map<Long, T> getServerConnectionMap(String name) throws Exception {
+        ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
+        return Utils.getField(sscc, name);
+    }
+
+    public static final class GroundItem {
+        public final GroundItemCellRenderable renderable;
+        public final GroundItemData data;
+        public final float x;
+        public final float y;
+
+        GroundItem(GroundItemCellRenderable renderable, GroundItemData data) {
+            this.renderable = renderable;
+            this.data = data;
+            this.x = data.getX();
+            this.y = data.getY();
+        }
+
+        public long getId() {
+            return renderable.getId();
+        }
+
+        public String getName() {
+            return data.getName();
+        }
+    }
+
+    public static final class Creature {
+        public final CreatureCellRenderable renderable;
+        public final CreatureData data;
+        //the position when the creature was indexed, the creature is on the same tile still
+        public final float x;
+        public final float y;
+
+        Creature(CreatureCellRenderable renderable, CreatureData data) {
+            this.renderable = renderable;
+            this.data = data;
+            this.x = renderable.getXPos();
+            this.y = renderable.getYPos();
+        }
+
+        public long getId() {
+            return renderable.getId();
+        }
+
+        //from the current position
+        private float sqDistance(float x, float y) {
+            float dx = renderable.getXPos() - x;
+            float dy = renderable.getYPos() - y;
+            return dx * dx + dy * dy;
+        }
+    }
+
+    private enum ChangeType {
+        //the whole map, the first change of the tracking
+        ALL,
+        SPAWNED,
+        DESPAWNED,
+        MOVED
+    }
+
+    private static final class Change<R> {
+        private final ChangeType type;
+        private final R renderable;
+        private final List<R> renderables;
+        //the tracking the whole map was sent by
+        private final long generation;
+
+        private Change(ChangeType type, R renderable, List<R> renderables, long generation) {
+            this.type = type;
+            this.renderable = renderable;
+            this.renderables = renderables;
+            this.generation = generation;
+        }
+    }
+
+    private interface Adder<R> {
+        void add(Collection<R> renderables, boolean all, List<GroundItemEvents.Event> events) throws Exception;
+    }
+
+    private interface Remover<R> {
+        void remove(R renderable, List<GroundItemEvents.Event> events);
+    }
+
+    /**
+     * Finds the changes of one map of the server connection on the render thread and queues them for the lookups
+     */
+    private static final class MapTracker<R> {
+        private final String field;
+        private final boolean moving;
+        private final Queue<Change<R>> changes = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private volatile long lastUse;
+        //set by the hook of the render thread when the map may have changed
+        private volatile boolean changed = true;
+        //counts the starts of the tracking, the changes of a previous tracking are incomplete
+        private volatile long generation;
+        //set by the lookups which lost some changes
+        private volatile boolean resend;
+        //the tracking the applied whole map was sent by, used under the lock of the index
+        private long appliedGeneration = -1;
+
+        //used by the render thread only
+        private boolean tracking;
+        private Map<Long, ?> trackedMap;
+        private final Map<Long, R> seen = new HashMap<>();
+        private final Map<Long, Long> seenTiles = new HashMap<>();
+
+        private MapTracker(String field, boolean moving) {
+            this.field = field;
+            this.moving = moving;
+        }
+
+        private void use() {
+            lastUse = System.currentTimeMillis();
+        }
+
+        /**
+         * Called by the render thread
+         * @param listening the changes are needed even without lookups
+         * @return true if some changes were queued
+         */
+        private boolean tick(ServerConnectionListenerClass sscc, boolean listening) throws Exception {
+            if (!listening && System.currentTimeMillis() - lastUse > IDLE_TIMEOUT) {
+                if (tracking)
+                    stop();
+                return false;
+            }
+            Map<Long, R> live = Utils.getField(sscc, field);
+            if (live == null)
+                return false;
+            if (!tracking || live != trackedMap || resend) {
+                //a new connection has new maps
+                stop();
+                resend = false;
+                tracking = true;
+                trackedMap = live;
+                changed = false;
+                seen.putAll(live);
+                if (moving)
+                    live.forEach((id, renderable) -> seenTiles.put(id, tileOf(renderable)));
+                changes.add(new Change<>(ChangeType.ALL, null, new ArrayList<>(seen.values()), generation));
+                return true;
+            }
+            if (!moving && !changed && live.size() == seen.size())
+                return false;
+            changed = false;
+            int queuedBefore = queued.get();
+            for (Map.Entry<Long, R> entry : live.entrySet()) {
+                R renderable = entry.getValue();
+                R known = seen.put(entry.getKey(), renderable);
+                if (known != renderable) {
+                    if (known != null)
+                        offer(ChangeType.DESPAWNED, known);
+                    offer(ChangeType.SPAWNED, renderable);
+                    if (moving)
+                        seenTiles.put(entry.getKey(), tileOf(renderable));
+                } else if (moving) {
+                    long tile = tileOf(renderable);
+                    if (seenTiles.put(entry.getKey(), tile) != tile)
+                        offer(ChangeType.MOVED, renderable);
+                }
+            }
+            if (seen.size() > live.size()) {
+                Iterator<Map.Entry<Long, R>> iterator = seen.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Long, R> entry = iterator.next();
+                    if (!live.containsKey(entry.getKey())) {
+                        iterator.remove();
+                        seenTiles.remove(entry.getKey());
+                        offer(ChangeType.DESPAWNED, entry.getValue());
+                    }
+                }
+            }
+            if (queued.get() > MAX_QUEUED) {
+                //nobody takes the changes, the whole map is sent on the next tick
+                stop();
+                return false;
+            }
+            return queued.get() != queuedBefore;
+        }
+
+        private void offer(ChangeType type, R renderable) {
+            changes.add(new Change<>(type, renderable, null, generation));
+            queued.incrementAndGet();
+        }
+
+        private void stop() {
+            tracking = false;
+            trackedMap = null;
+            seen.clear();
+            seenTiles.clear();
+            changes.clear();
+            queued.set(0);
+            generation++;
+        }
+
+        private long tileOf(R renderable) {
+            CreatureCellRenderable creature = (CreatureCellRenderable) renderable;
+            return TileGrid.pack(TileGrid.toTile(creature.getXPos()), TileGrid.toTile(creature.getYPos()));
+        }
+
+        /**
+         * Called by the lookups under the lock of the index
+         * @return false if the whole map of the current tracking wasn't applied, then the index has to be filled from the map
+         */
+        private boolean apply(Adder<R> adder, Remover<R> remover, Consumer<R> mover, List<GroundItemEvents.Event> events) throws Exception {
+            Change<R> change;
+            while ((change = changes.poll()) != null) {
+                if (change.type != ChangeType.ALL) {
+                    queued.decrementAndGet();
+                    //left from a stopped tracking, the whole map of the next one replaces them
+                    if (change.generation != appliedGeneration)
+                        continue;
+                }
+                try {
+                    switch (change.type) {
+                        case ALL:
+                            adder.add(change.renderables, true, events);
+                            appliedGeneration = change.generation;
+                            break;
+                        case SPAWNED:
+                            adder.add(Collections.singletonList(change.renderable), false, events);
+                            break;
+                        case DESPAWNED:
+                            remover.remove(change.renderable, events);
+                            break;
+                        case MOVED:
+                            if (mover != null)
+                                mover.accept(change.renderable);
+                            break;
+                    }
+                } catch (Exception e) {
+                    //the change is lost, the index is filled from the map until the render thread sends the whole map again
+                    appliedGeneration = -1;
+                    resend = true;
+                    throw e;
+                }
+            }
+            return appliedGeneration == generation;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package net.ildar.wurm;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Values bucketed by the tile they are located on, for the lookups around a point.
+ * The positions are in world units(4 per tile side), the same as the positions of cell renderables.
+ * Not thread safe
+ */
+public class TileGrid<T> {
+    private final Map<Long, List<Entry<T>>> buckets = new HashMap<>();
+    private int size;
+
+    public static long pack(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    public static int toTile(float position) {
+        return (int) (position / 4);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        buckets.clear();
+        size = 0;
+    }
+
+    public void add(T value, float x, float y) {
+        buckets.computeIfAbsent(pack(toTile(x), toTile(y)), key -> new ArrayList<>(2)).add(new Entry<>(value, x, y));
+        size++;
+    }
+
+    /**
+     * Remove the value added with provided position
+     * @return true if the value was found
+     */
+    public boolean remove(T value, float x, float y) {
+        long key = pack(toTile(x), toTile(y));
+        List<Entry<T>> bucket = buckets.get(key);
+        if (bucket == null)
+            return false;
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i).value == value) {
+                bucket.remove(i);
+                if (bucket.isEmpty())
+                    buckets.remove(key);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<T> getOnTile(int tileX, int tileY) {
+        List<Entry<T>> bucket = buckets.get(pack(tileX, tileY));
+        List<T> result = new ArrayList<>(bucket == null ? 0 : bucket.size());
+        if (bucket != null)
+            for (Entry<T> entry : bucket)
+                result.add(entry.value);
+        return result;
+    }
+
+    /**
+     * @return the values within provided distance from the point, nearest first
+     */
+    public List<T> getWithin(float x, float y, float distance) {
+        return getWithin(x, y, distance, null);
+    }
+
+    /**
+     * @param filter is tested only on the values within the distance, can be null
+     * @return the values within provided distance from the point accepted by the filter, nearest first
+     */
+    public List<T> getWithin(float x, float y, float distance, Predicate<? super T> filter) {
+        float maxSqDistance = distance * distance;
+        List<Entry<T>> found = new ArrayList<>();
+        int minTileX = toTile(x - distance);
+        int maxTileX = toTile(x + distance);
+        int minTileY = toTile(y - distance);
+        int maxTileY = toTile(y + distance);
+        long tileCount = (long) (maxTileX - minTileX + 1) * (maxTileY - minTileY + 1);
+        if (tileCount > buckets.size()) {
+            //the area is larger than the number of occupied tiles
+            for (List<Entry<T>> bucket : buckets.values())
+                collect(bucket, x, y, maxSqDistance, filter, found);
+        } else {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+                for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                    List<Entry<T>> bucket = buckets.get(pack(tileX, tileY));
+                    if (bucket != null)
+                        collect(bucket, x, y, maxSqDistance, filter, found);
+                }
+        }
+        found.sort(Comparator.comparingDouble(entry -> entry.sqDistance(x, y)));
+        List<T> result = new ArrayList<>(found.size());
+        for (Entry<T> entry : found)
+            result.add(entry.value);
+        return result;
+    }
+
+    /**
+     * Search the tiles in growing rings around the point and stop as soon as no closer value can be found,
+     * so the cost depends on the distance to the nearest value instead of the whole area
+     * @param filter is tested only on the values within the distance, can be null
+     * @return the nearest value within provided distance accepted by the filter or null
+     */
+    public T getNearest(float x, float y, float distance, Predicate<? super T> filter) {
+        int centerX = toTile(x);
+        int centerY = toTile(y);
+        int maxRing = (int) Math.ceil(distance / 4) + 1;
+        if ((long) (2 * maxRing + 1) * (2 * maxRing + 1) > 4L * buckets.size()) {
+            //the occupied tiles are few compared to the area, checking all of them is cheaper
+            List<T> found = getWithin(x, y, distance, filter);
+            return found.isEmpty() ? null : found.get(0);
+        }
+        float maxSqDistance = distance * distance;
+        Entry<T> nearest = null;
+        float nearestSqDistance = Float.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int tileX = centerX - ring; tileX <= centerX + ring; tileX++) {
+                //the inner tiles of the ring rows were checked by the previous rings
+                boolean edgeColumn = tileX == centerX - ring || tileX == centerX + ring;
+                int step = edgeColumn ? 1 : 2 * ring;
+                for (int tileY = centerY - ring; tileY <= centerY + ring; tileY += step) {
+                    List<Entry<T>> bucket = buckets.get(pack(tileX, tileY));
+                    if (bucket == null)
+                        continue;
+                    for (Entry<T> entry : bucket) {
+                        float sqDistance = entry.sqDistance(x, y);
+                        if (sqDistance < nearestSqDistance && sqDistance <= maxSqDistance && (filter == null || filter.test(entry.value))) {
+                            nearest = entry;
+                            nearestSqDistance = sqDistance;
+                        }
+                    }
+                }
+            }
+            //the tiles of the next ring are at least this far from the point
+            float nextRingDistance = ring * 4;
+            if (nearest != null && nearestSqDistance <= nextRingDistance * nextRingDistance)
+                break;
+        }
+        return nearest == null ? null : nearest.value;
+    }
+
+    private static <T> void collect(List<Entry<T>> bucket, float x, float y, float maxSqDistance, Predicate<? super T> filter, List<Entry<T>> found) {
+        for (Entry<T> entry : bucket)
+            if (entry.sqDistance(x, y) <= maxSqDistance && (filter == null || filter.test(entry.value)))
+                found.add(entry);
+    }
+
+    private static final class Entry<T> {
+        final T value;
+        final float x;
+        final float y;
+
+        Entry(T value, float x, float y) {
+            this.value = value;
+            this.x = x;
+            this.y = y;
+        }
+
+        float sqDistance(float x, float y) {
+            float dx = this.x - x;
+            float dy = this.y - y;
+            return dx * dx + dy * dy;
+        }
+    }
+}
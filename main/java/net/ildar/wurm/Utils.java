@@ -7,18 +7,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 import org.gotti.wurmunlimited.modloader.classhooks.HookManager;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.SkillLogicSet;
 import com.wurmonline.client.game.World;
@@ -39,18 +34,13 @@ public class Utils {
     //used to synchronize server calls
     @SuppressWarnings("unused")
     public static ReentrantLock serverCallLock = new ReentrantLock();
-    //console messages queue
-    public static Queue<String> consoleMessages = new ConcurrentLinkedQueue<>();
     /**
-     * Print the message to the console
+     * Print the message to the console. The message is formatted later by the console, see {@link ConsoleBuffer}
      */
     public static void consolePrint(String fmt, Object... args) {
         if (fmt == null)
             return;
-        
-        fmt = args.length == 0 ? fmt : String.format(fmt, args);
-        for(String line: fmt.split("\n"))
-            consoleMessages.add(line);
+        ConsoleBuffer.add(fmt, args);
     }
 
     public static void showOnScreenMessage(String message) {
@@ -62,11 +52,11 @@ public class Utils {
     }
     
     public static <Cls, Ret> Ret getField(Cls what, String field) throws IllegalAccessException, NoSuchFieldException {
-        return ReflectionUtil.getPrivateField(what, ReflectionUtil.getField(what.getClass(), field));
+        return ReflectionCache.get(what, field);
     }
     
     public static <Cls, Field> void setField(Cls what, String field, Field value) throws IllegalAccessException, NoSuchFieldException {
-        ReflectionUtil.setPrivateField(what, ReflectionUtil.getField(what.getClass(), field), value);
+        ReflectionCache.set(what, field, value);
     }
 
     /**
@@ -108,8 +98,7 @@ public class Utils {
         try{
             float x = WurmHelper.hud.getWorld().getPlayerPosX();
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
-            float xr = ReflectionUtil.getPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xRotUsed"));
+            float xr = getField(WurmHelper.hud.getWorld().getPlayer(), "xRotUsed");
             float dx = (float)(d*Math.sin((double)xr/180*Math.PI));
             float dy = (float)(-d*Math.cos((double)xr/180*Math.PI));
             movePlayer(x+dx, y+dy);
@@ -123,8 +112,7 @@ public class Utils {
         try{
             float x = WurmHelper.hud.getWorld().getPlayerPosX();
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
-            float xr = ReflectionUtil.getPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xRotUsed"));
+            float xr = getField(WurmHelper.hud.getWorld().getPlayer(), "xRotUsed");
             float dx = (float)(d*Math.sin((double)xr/180*Math.PI));
             float dy = (float)(-d*Math.cos((double)xr/180*Math.PI));
             movePlayerBySteps(x+dx, y+dy, steps, duration);
@@ -179,13 +167,10 @@ public class Utils {
      */
     public static void stabilizeLook() {
         try{
-            float xRot = ReflectionUtil.getPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xRotUsed"));
+            float xRot = getField(WurmHelper.hud.getWorld().getPlayer(), "xRotUsed");
             xRot = Math.round(xRot/90)*90;
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xRotUsed"), xRot);
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "yRotUsed"), (float)0.0);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "xRotUsed", xRot);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "yRotUsed", (float)0.0);
         } catch (Exception e) {
             consolePrint("Unexpected error while turning - " + e.getMessage());
         }
@@ -197,10 +182,8 @@ public class Utils {
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
             x = (float)(Math.floor((double)x/4)*4 + 2);
             y = (float)(Math.floor((double)y/4)*4 + 2);
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xPosUsed"), x);
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "yPosUsed"), y);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "xPosUsed", x);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "yPosUsed", y);
 
         } catch (Exception e) {
             consolePrint("Unexpected error while moving - " + e.getMessage());
@@ -213,10 +196,8 @@ public class Utils {
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
             x = Math.round(x / 4) * 4;
             y = Math.round(y / 4) * 4;
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "xPosUsed"), x);
-            ReflectionUtil.setPrivateField(WurmHelper.hud.getWorld().getPlayer(),
-                    ReflectionUtil.getField(WurmHelper.hud.getWorld().getPlayer().getClass(), "yPosUsed"), y);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "xPosUsed", x);
+            setField(WurmHelper.hud.getWorld().getPlayer(), "yPosUsed", y);
         } catch(Exception e) {
             consolePrint("Error on moving to the corner");
         }
@@ -228,15 +209,12 @@ public class Utils {
     }
 
     private static Object getInventoryRootNode(InventoryListComponent ilc) throws NoSuchFieldException, IllegalAccessException {
-        WurmTreeList wtl = ReflectionUtil.getPrivateField(ilc,
-                ReflectionUtil.getField(ilc.getClass(), "itemList"));
-        return ReflectionUtil.getPrivateField(wtl,
-                ReflectionUtil.getField(wtl.getClass(), "rootNode"));
+        WurmTreeList wtl = getField(ilc, "itemList");
+        return getField(wtl, "rootNode");
     }
 
     private static List<Object> getNodeChildren(Object node) throws NoSuchFieldException, IllegalAccessException {
-        return new ArrayList<>(ReflectionUtil.getPrivateField(node,
-                ReflectionUtil.getField(node.getClass(), "children")));
+        return new ArrayList<>(getField(node, "children"));
     }
 
     public static List<InventoryMetaItem>  getSelectedItems() {
@@ -251,8 +229,8 @@ public class Utils {
             int lineNum = 1;
             int forEachIdx = 0;
             for (Object line : lines) {
-                Object item = ReflectionUtil.getPrivateField(line, ReflectionUtil.getField(line.getClass(), "item"));
-                String itemName = ReflectionUtil.getPrivateField(item, ReflectionUtil.getField(item.getClass(), "itemName"));
+                Object item = getField(line, "item");
+                String itemName = getField(item, "itemName");
                 if (itemName.equals("inventory"))
                     lineNum = forEachIdx;
                 forEachIdx++;
@@ -281,34 +259,42 @@ public class Utils {
         return selItems;
     }
     public static List<InventoryMetaItem> getSelectedItems(List nodes, boolean getAll, boolean recursive) {
+        Object event = JfrEvents.begin(JfrEvents.Type.INVENTORY_SCAN);
+        if (event == null)
+            return collectSelectedItems(nodes, getAll, recursive, null);
+        int[] visited = new int[1];
+        List<InventoryMetaItem> selItems = collectSelectedItems(nodes, getAll, recursive, visited);
+        JfrEvents.commit(event, visited[0], selItems.size());
+        return selItems;
+    }
+
+    /**
+     * @param visited counts the visited nodes if not null
+     */
+    private static List<InventoryMetaItem> collectSelectedItems(List nodes, boolean getAll, boolean recursive, int[] visited) {
         //List<WTreeListNode<InventoryListComponent.InventoryTreeListItem>> nodes
         List<InventoryMetaItem> selItems = new ArrayList<>();
         try {
             for (Object currentNode : nodes) {
-                boolean isSelected = ReflectionUtil.getPrivateField(currentNode,
-                        ReflectionUtil.getField(currentNode.getClass(), "isSelected"));
+                if (visited != null)
+                    visited[0]++;
+                boolean isSelected = getField(currentNode, "isSelected");
                 List children = getNodeChildren(currentNode);
-                Object lineItem = ReflectionUtil.getPrivateField(currentNode,
-                        ReflectionUtil.getField(currentNode.getClass(), "item"));
-                InventoryMetaItem item = ReflectionUtil.getPrivateField(lineItem,
-                        ReflectionUtil.getField(lineItem.getClass(), "item"));
+                Object lineItem = getField(currentNode, "item");
+                InventoryMetaItem item = getField(lineItem, "item");
                 if (item == null) continue;
-                boolean isContainer = ReflectionUtil.getPrivateField(lineItem,
-                        ReflectionUtil.getField(lineItem.getClass(), "isContainer"));
-                boolean isInventoryGroup = ReflectionUtil.getPrivateField(lineItem,
-                        ReflectionUtil.getField(lineItem.getClass(), "isInventoryGroup"));
+                boolean isContainer = getField(lineItem, "isContainer");
+                boolean isInventoryGroup = getField(lineItem, "isInventoryGroup");
                 if (children.size() > 0) {
                     if (isContainer && !isInventoryGroup && (getAll || isSelected)) {
-                        Object firstChildrenLineItem = ReflectionUtil.getPrivateField(children.get(0),
-                                ReflectionUtil.getField(children.get(0).getClass(), "item"));
-                        InventoryMetaItem firstChildrenItem = ReflectionUtil.getPrivateField(firstChildrenLineItem,
-                                ReflectionUtil.getField(firstChildrenLineItem.getClass(), "item"));
+                        Object firstChildrenLineItem = getField(children.get(0), "item");
+                        InventoryMetaItem firstChildrenItem = getField(firstChildrenLineItem, "item");
                         if (firstChildrenItem == null || firstChildrenItem.getId() != item.getId())
                             selItems.add(item);
                         if (recursive || getAll)
-                            selItems.addAll(getSelectedItems(children, true, true));
+                            selItems.addAll(collectSelectedItems(children, true, true, visited));
                     } else
-                        selItems.addAll(getSelectedItems(children, getAll || isSelected, recursive));
+                        selItems.addAll(collectSelectedItems(children, getAll || isSelected, recursive, visited));
                 } else if (!isInventoryGroup && (getAll || isSelected))
                     selItems.add(item);
             }
@@ -320,10 +306,14 @@ public class Utils {
     }
 
     public static InventoryMetaItem getInventoryItem(String itemName) {
+        if (InventoryIndex.isActive())
+            return getIndexedItem(itemName, true);
         List<InventoryMetaItem> allItems = getSelectedItems(true, true);
         return getInventoryItem(allItems, itemName);
     }
     public static InventoryMetaItem getInventoryItem(InventoryListComponent ilc, String itemName) {
+        if (isIndexedInventory(ilc))
+            return getIndexedItem(itemName, false);
         List<InventoryMetaItem> allItems = getSelectedItems(ilc, true, true);
         return getInventoryItem(allItems, itemName);
     }
@@ -333,20 +323,18 @@ public class Utils {
                 return null;
             }
 
-            // first try to find by startsWith 
+            // prefer the item found by startsWith, otherwise take the first one found by contains
+            Predicate<InventoryMetaItem> filter = nameFilter(itemName);
+            InventoryMetaItem firstContaining = null;
             for (InventoryMetaItem invItem : items) {
                 if (invItem.getBaseName().startsWith(itemName)) {
                     return invItem;
                 }
-            }
-
-            // if not found by startsWith lets try to find by contains
-            for (InventoryMetaItem invItem : items) {
-
-                if (invItem.getBaseName().contains(itemName) || itemName.contains("'") && invItem.getDisplayName().contains(itemName.replaceAll("'",""))) {
-                    return invItem;
+                if (firstContaining == null && filter.test(invItem)) {
+                    firstContaining = invItem;
                 }
             }
+            return firstContaining;
 
         } catch (Exception e) {
             consolePrint("Got error while searching for " + itemName + " in your inventory. Error - " + e.getMessage());
@@ -356,29 +344,59 @@ public class Utils {
     }
 
     public static List<InventoryMetaItem> getInventoryItems(String itemName) {
+        if (InventoryIndex.isActive())
+            return getIndexedItems(itemName, true);
         List<InventoryMetaItem> allItems = getSelectedItems(true, true);
         return getInventoryItems(allItems, itemName);
     }
     public static List<InventoryMetaItem> getInventoryItems(InventoryListComponent ilc, String itemName) {
+        if (isIndexedInventory(ilc))
+            return getIndexedItems(itemName, false);
         List<InventoryMetaItem> allItems = getSelectedItems(ilc, true, true);
         return getInventoryItems(allItems, itemName);
     }
     public static List<InventoryMetaItem> getInventoryItems(List<InventoryMetaItem> items, String itemName) {
-        return getInventoryItems(
-            items,
-            item ->
-                item.getBaseName().contains(itemName) ||
-                itemName.contains("'") &&
-                item.getDisplayName().contains(itemName.replaceAll("'",""))
-        );
+        return getInventoryItems(items, nameFilter(itemName));
+    }
+
+    private static Predicate<InventoryMetaItem> nameFilter(String itemName) {
+        if (!itemName.contains("'"))
+            return item -> item.getBaseName().contains(itemName);
+        String displayName = itemName.replace("'", "");
+        return item -> item.getBaseName().contains(itemName) || item.getDisplayName().contains(displayName);
+    }
+
+    /**
+     * The inventory index answers the lookups in the main inventory, no need to walk its tree
+     */
+    private static boolean isIndexedInventory(InventoryListComponent ilc) {
+        return InventoryIndex.isActive() && ilc != null && ilc == WurmHelper.hud.getInventoryWindow().getInventoryListComponent();
+    }
+
+    private static InventoryMetaItem getIndexedItem(String itemName, boolean inventoryOnly) {
+        // first try to find by startsWith, then by contains
+        List<InventoryMetaItem> items = InventoryIndex.getItemsStartingWith(itemName, inventoryOnly);
+        if (items.isEmpty())
+            items = getIndexedItems(itemName, inventoryOnly);
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    private static List<InventoryMetaItem> getIndexedItems(String itemName, boolean inventoryOnly) {
+        if (itemName.contains("'"))
+            return InventoryIndex.getItems(nameFilter(itemName), inventoryOnly);
+        return InventoryIndex.getItemsContaining(itemName, inventoryOnly);
     }
     
     public static List<InventoryMetaItem> getInventoryItems(Predicate<InventoryMetaItem> filter) {
+        if (InventoryIndex.isActive())
+            return InventoryIndex.getItems(filter, true);
         List<InventoryMetaItem> allItems = getSelectedItems(true, true);
         return getInventoryItems(allItems, filter);
     }
     
     public static List<InventoryMetaItem> getInventoryItems(InventoryListComponent ilc, Predicate<InventoryMetaItem> filter) {
+        if (isIndexedInventory(ilc))
+            return InventoryIndex.getItems(filter, false);
         List<InventoryMetaItem> allItems = getSelectedItems(ilc, true, true);
         return getInventoryItems(allItems, filter);
     }
@@ -407,20 +425,16 @@ public class Utils {
     public static List<InventoryMetaItem> getInventoryItemsAtPoint(InventoryListComponent ilc, int x, int y) {
         List<InventoryMetaItem> itemList = new ArrayList<>();
         try {
-            WurmTreeList wtl = ReflectionUtil.getPrivateField(ilc,
-                    ReflectionUtil.getField(ilc.getClass(), "itemList"));
+            WurmTreeList wtl = getField(ilc, "itemList");
             Method getNodeAt = ReflectionUtil.getMethod(wtl.getClass(), "getNodeAt");
             getNodeAt.setAccessible(true);
             Object hoveredNode = getNodeAt.invoke(wtl, x, y);
             if (hoveredNode != null) {
                 List childLines = getNodeChildren(hoveredNode);
                 itemList = Utils.getSelectedItems(childLines, true, true);
-                Object lineItem = ReflectionUtil.getPrivateField(hoveredNode,
-                        ReflectionUtil.getField(hoveredNode.getClass(), "item"));
-                InventoryMetaItem item = ReflectionUtil.getPrivateField(lineItem,
-                        ReflectionUtil.getField(lineItem.getClass(), "item"));
-                boolean isContainer = ReflectionUtil.getPrivateField(lineItem,
-                        ReflectionUtil.getField(lineItem.getClass(), "isContainer"));
+                Object lineItem = getField(hoveredNode, "item");
+                InventoryMetaItem item = getField(lineItem, "item");
+                boolean isContainer = getField(lineItem, "isContainer");
                 if (childLines.size() == 0 || isContainer)
                     itemList.add(item);
             }
@@ -435,10 +449,8 @@ public class Utils {
         try {
             Object rootNode = getInventoryRootNode(ilc);
             List lines = getNodeChildren(rootNode);
-            Object nodeLineItem = ReflectionUtil.getPrivateField(lines.get(1),
-                    ReflectionUtil.getField(lines.get(1).getClass(), "item"));
-            InventoryMetaItem nodeItem = ReflectionUtil.getPrivateField(nodeLineItem,
-                    ReflectionUtil.getField(nodeLineItem.getClass(), "item"));
+            Object nodeLineItem = getField(lines.get(1), "item");
+            InventoryMetaItem nodeItem = getField(nodeLineItem, "item");
             return new ArrayList<>(nodeItem.getChildren());
         } catch (Exception e) {
             Utils.consolePrint("getFirstLevelItems() has encountered an error - " + e.getMessage());
@@ -449,11 +461,13 @@ public class Utils {
     
     public static InventoryMetaItem locateToolItem(String toolName) {
         InventoryListComponent mainInventory = WurmHelper.hud.getInventoryWindow().getInventoryListComponent();
-        List<InventoryMetaItem> allItems = getSelectedItems(mainInventory, true, true);
-        Pattern regex = Pattern.compile(String.format("\\b%s\\b", toolName));
+        List<InventoryMetaItem> allItems = InventoryIndex.isActive()
+                ? InventoryIndex.getItemsContaining(toolName, false)
+                : getSelectedItems(mainInventory, true, true);
+        NameMatcher matcher = NameMatcher.compile(NameMatcher.Mode.WORD, toolName);
         List<InventoryMetaItem> items = getInventoryItems(
             allItems,
-            item -> regex.matcher(item.getBaseName()).find()
+            item -> matcher.matches(item.getBaseName())
         );
         
         if (items.size() == 0) {
@@ -467,10 +481,8 @@ public class Utils {
 
     public static InventoryMetaItem getRootItem(InventoryListComponent ilc) {
         try {
-            Object listRootItem = ReflectionUtil.getPrivateField(ilc,
-                    ReflectionUtil.getField(ilc.getClass(), "rootItem"));
-            return ReflectionUtil.getPrivateField(listRootItem,
-                    ReflectionUtil.getField(listRootItem.getClass(), "item"));
+            Object listRootItem = getField(ilc, "rootItem");
+            return getField(listRootItem, "item");
         } catch (IllegalAccessException | NoSuchFieldException e) {
             e.printStackTrace();
         }
@@ -485,14 +497,7 @@ public class Utils {
     
     public static WurmComponent getComponentAtPoint(int x, int y, Predicate<WurmComponent> filter) {
         try {
-            for (int i = 0; i < WurmHelper.getInstance().components.size(); i++) {
-                WurmComponent wurmComponent = WurmHelper.getInstance().components.get(i);
-                if (wurmComponent.contains(x, y)) {
-                    if (filter != null && !filter.test(wurmComponent))
-                        continue;
-                    return wurmComponent;
-                }
-            }
+            return WindowRegistry.getWindowAt(x, y, filter);
         } catch (Exception e) {
             Utils.consolePrint("Can't get target component! Error - " + e.getMessage());
             Utils.consolePrint( e.toString());
@@ -508,10 +513,7 @@ public class Utils {
         
         InventoryListComponent invComponent;
         try {
-            invComponent = ReflectionUtil.getPrivateField(
-                component,
-                ReflectionUtil.getField(component.getClass(), "component")
-            );
+            invComponent = getField(component, "component");
         } catch(Exception err) {
             Utils.consolePrint("Couldn't get container's ListComponent");
             err.printStackTrace();
@@ -598,10 +600,8 @@ public class Utils {
     public static float getTotalWeight() {
         PaperDollInventory paperDollInventory = WurmHelper.hud.getPaperDollInventory();
         try {
-            PaperDollSlot equippedWeightItem = ReflectionUtil.getPrivateField(paperDollInventory,
-                    ReflectionUtil.getField(paperDollInventory.getClass(), "equippedWeightItem"));
-            InventoryMetaItem inventoryItem = ReflectionUtil.getPrivateField(paperDollInventory,
-                    ReflectionUtil.getField(paperDollInventory.getClass(), "inventoryItem"));
+            PaperDollSlot equippedWeightItem = getField(paperDollInventory, "equippedWeightItem");
+            InventoryMetaItem inventoryItem = getField(paperDollInventory, "inventoryItem");
             return equippedWeightItem.getWeight() + inventoryItem.getWeight();
         } catch (IllegalAccessException | NoSuchFieldException e) {
             e.printStackTrace();
@@ -626,8 +626,7 @@ public class Utils {
     public static int getMaxActionNumber() {
         MindLogicCalculator mlc;
         try {
-            mlc = ReflectionUtil.getPrivateField(WurmHelper.hud,
-                    ReflectionUtil.getField(WurmHelper.hud.getClass(), "mindLogicCalculator"));
+            mlc = getField(WurmHelper.hud, "mindLogicCalculator");
         } catch (IllegalAccessException | NoSuchFieldException e) {
             e.printStackTrace();
             return 0;
@@ -642,8 +641,8 @@ public class Utils {
 
     public static void writeToConsoleInputLine(String s) {
         try {
-            Object consoleComponent = ReflectionUtil.getPrivateField(WurmHelper.hud, ReflectionUtil.getField(WurmHelper.hud.getClass(), "consoleComponent"));
-            Object inputField = ReflectionUtil.getPrivateField(consoleComponent, ReflectionUtil.getField(consoleComponent.getClass(), "inputField"));
+            Object consoleComponent = getField(WurmHelper.hud, "consoleComponent");
+            Object inputField = getField(consoleComponent, "inputField");
             Method method = inputField.getClass().getDeclaredMethod("setTextMoveToEnd", String.class);
             method.setAccessible(true);
             method.invoke(inputField, s);
@@ -698,20 +697,8 @@ public class Utils {
     public static List<CreatureCellRenderable> findCreatures(BiPredicate<CreatureCellRenderable, CreatureData> predicate) {
         List<CreatureCellRenderable> creatures = new ArrayList<>();
         try {
-            ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-            Map<Long, CreatureCellRenderable> creaturesMap = getField(sscc, "creatures");
-            for(CreatureCellRenderable creature: creaturesMap.values()) {
-                CreatureData data;
-                try {
-                    data = getField(creature, "creature");
-                } catch (Exception e) {
-                    consolePrint(e.toString());
-                    continue;
-                }
-                
-                if(predicate.test(creature, data))
-                    creatures.add(creature);
-            }
+            for(SpatialIndex.Creature creature: SpatialIndex.getCreatures(creature -> predicate.test(creature.renderable, creature.data)))
+                creatures.add(creature.renderable);
         } catch (Exception e) {
             Utils.consolePrint(e.toString());
         }
@@ -722,13 +709,14 @@ public class Utils {
     public static float sqdistFromPlayer(CellRenderable obj) {
         final float px = WurmHelper.hud.getWorld().getPlayerPosX();
         final float py = WurmHelper.hud.getWorld().getPlayerPosY();
-        return (float)(
-            Math.pow(px - obj.getXPos(), 2f) +
-            Math.pow(py - obj.getYPos(), 2f)
-        );
+        final float dx = px - obj.getXPos();
+        final float dy = py - obj.getYPos();
+        return dx * dx + dy * dy;
     }
     
-    private static final float maxActionSqDistance = 5 * 5;
+    /** The distance(in meters) from the player the actions can be done at. */
+    public static final float maxActionDistance = 5;
+    private static final float maxActionSqDistance = maxActionDistance * maxActionDistance;
     public static boolean isNearbyPlayer(CellRenderable obj) {
         return sqdistFromPlayer(obj) < maxActionSqDistance;
     }
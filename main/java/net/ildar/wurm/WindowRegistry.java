@@ -0,0 +1,197 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.*;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * The windows open in the HUD, kept up to date by the addComponent and setActiveWindow hooks of HeadsUpDisplay
+ * instead of copying the component list of the HUD on every change.
+ * The item list windows are indexed by the id of their root item, the BML windows by their titles.
+ * A changed window is only moved within the list when the HUD has put it to either end of its own list,
+ * the whole list is read again otherwise. The client has no hook for the closed windows,
+ * so the list is read again on the frame its size differs from the size of the HUD list.
+ * The HUD list is only read on the render thread, the lookups of the bot threads read the last published snapshot
+ */
+public class WindowRegistry {
+    //replaced as a whole by the render thread
+    private static volatile Snapshot snapshot = new Snapshot(new Builder());
+
+    /**
+     * Called from the render thread after the HUD has added or activated the component
+     */
+    public static void onComponentChanged(HeadsUpDisplay hud, WurmComponent component) {
+        try {
+            List<WurmComponent> live = getComponents(hud);
+            Snapshot current = snapshot;
+            if (component == null) {
+                if (live.size() != current.windows.size())
+                    snapshot = rebuild(live);
+                return;
+            }
+            Builder next = new Builder(current);
+            if (next.windows.remove(component))
+                next.unindex(component);
+            if (live.size() != next.windows.size() + 1) {
+                snapshot = rebuild(live);
+                return;
+            }
+            if (live.get(0) == component)
+                next.windows.add(0, component);
+            else if (live.get(live.size() - 1) == component)
+                next.windows.add(component);
+            else {
+                snapshot = rebuild(live);
+                return;
+            }
+            next.index(component);
+            snapshot = new Snapshot(next);
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't update the open windows - " + e.toString());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Called from the render thread on every frame. Reads the list again if some windows were closed,
+     * and indexes the item list windows that got their root items since they were added
+     */
+    public static void onGameTick(HeadsUpDisplay hud) {
+        if (hud == null)
+            return;
+        try {
+            List<WurmComponent> live = getComponents(hud);
+            Snapshot current = snapshot;
+            if (live.size() != current.windows.size())
+                snapshot = rebuild(live);
+            else if (!current.unindexed.isEmpty()) {
+                Builder next = new Builder(current);
+                new ArrayList<>(next.unindexed).forEach(next::index);
+                if (next.unindexed.size() != current.unindexed.size())
+                    snapshot = new Snapshot(next);
+            }
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't check the open windows - " + e.toString());
+        }
+    }
+
+    /**
+     * @param filter can be null
+     * @return the topmost window under the point accepted by the filter or null
+     */
+    public static WurmComponent getWindowAt(int x, int y, Predicate<WurmComponent> filter) {
+        for (WurmComponent window : snapshot.windows)
+            if (window.contains(x, y) && (filter == null || filter.test(window)))
+                return window;
+        return null;
+    }
+
+    /**
+     * @return the container or inventory window with provided root item or null
+     */
+    public static WurmComponent getItemListWindow(long rootItemId) {
+        return snapshot.itemListWindows.get(rootItemId);
+    }
+
+    /**
+     * @return the open container and inventory windows, the topmost first
+     */
+    public static List<WurmComponent> getItemListWindows() {
+        List<WurmComponent> found = new ArrayList<>();
+        for (WurmComponent window : snapshot.windows)
+            if (isItemListWindow(window))
+                found.add(window);
+        return found;
+    }
+
+    /**
+     * @return the BML window with provided title or null
+     */
+    public static BmlWindowComponent getBmlWindow(String title) {
+        return snapshot.bmlWindows.get(title);
+    }
+
+    private static boolean isItemListWindow(WurmComponent window) {
+        return window instanceof ItemListWindow || window instanceof InventoryWindow;
+    }
+
+    private static Snapshot rebuild(List<WurmComponent> live) {
+        Builder next = new Builder();
+        next.windows.addAll(live);
+        next.windows.forEach(next::index);
+        return new Snapshot(next);
+    }
+
+    private static List<WurmComponent> getComponents(HeadsUpDisplay hud) throws Exception {
+        List<WurmComponent> components = Utils.getField(hud, "components");
+        return components == null ? Collections.emptyList() : components;
+    }
+
+    /**
+     * The next snapshot, used by the render thread only
+     */
+    private static final class Builder {
+        //in the order of the HUD list, the topmost window first
+        private final List<WurmComponent> windows;
+        private final Map<Long, WurmComponent> itemListWindows;
+        private final Map<String, BmlWindowComponent> bmlWindows;
+        //the item list windows without a root item when they were indexed, indexed again on the next frames
+        private final Set<WurmComponent> unindexed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Builder() {
+            windows = new ArrayList<>();
+            itemListWindows = new HashMap<>();
+            bmlWindows = new HashMap<>();
+        }
+
+        private Builder(Snapshot snapshot) {
+            windows = new ArrayList<>(snapshot.windows);
+            itemListWindows = new HashMap<>(snapshot.itemListWindows);
+            bmlWindows = new HashMap<>(snapshot.bmlWindows);
+            unindexed.addAll(snapshot.unindexed);
+        }
+
+        private void index(WurmComponent window) {
+            try {
+                if (isItemListWindow(window)) {
+                    InventoryListComponent ilc = Utils.getField(window, "component");
+                    InventoryMetaItem rootItem = ilc == null ? null : Utils.getRootItem(ilc);
+                    if (rootItem == null)
+                        unindexed.add(window);
+                    else {
+                        unindexed.remove(window);
+                        itemListWindows.put(rootItem.getId(), window);
+                    }
+                } else if (window instanceof BmlWindowComponent) {
+                    String title = Utils.getField(window, "title");
+                    if (title != null)
+                        bmlWindows.put(title, (BmlWindowComponent) window);
+                }
+            } catch (Exception e) {
+                Utils.consolePrint("Couldn't index the window " + window.getClass().getSimpleName() + " - " + e.toString());
+            }
+        }
+
+        private void unindex(WurmComponent window) {
+            unindexed.remove(window);
+            itemListWindows.values().remove(window);
+            bmlWindows.values().remove(window);
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<WurmComponent> windows;
+        private final Map<Long, WurmComponent> itemListWindows;
+        private final Map<String, BmlWindowComponent> bmlWindows;
+        private final Set<WurmComponent> unindexed;
+
+        private Snapshot(Builder builder) {
+            windows = Collections.unmodifiableList(builder.windows);
+            itemListWindows = Collections.unmodifiableMap(builder.itemListWindows);
+            bmlWindows = Collections.unmodifiableMap(builder.bmlWindows);
+            unindexed = Collections.unmodifiableSet(builder.unindexed);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.comm.ServerConnectionListenerClass;
+import com.wurmonline.client.renderer.structures.StructureData;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the structures known to the client, shared by all bots.
+ * The copy is taken on demand and reused until it gets older than the max age,
+ * so the bots running together pay for the reflection and the copying of the server connection map once.
+ * The ground items and creatures are looked up in {@link SpatialIndex}
+ */
+public class WorldSnapshot {
+    private static final int COPY_ATTEMPTS = 3;
+    private static volatile long maxAge = 200;
+    private static volatile WorldSnapshot current;
+
+    private final long timestamp;
+    private final List<StructureData> structures;
+
+    private WorldSnapshot(List<StructureData> structures) {
+        this.timestamp = System.currentTimeMillis();
+        this.structures = Collections.unmodifiableList(structures);
+    }
+
+    /**
+     * @return the snapshot not older than the configured max age
+     */
+    public static WorldSnapshot get() {
+        return get(maxAge);
+    }
+
+    /**
+     * @return the snapshot not older than provided age in milliseconds
+     */
+    public static WorldSnapshot get(long maxAgeMillis) {
+        WorldSnapshot snapshot = current;
+        if (snapshot != null && System.currentTimeMillis() - snapshot.timestamp <= maxAgeMillis)
+            return snapshot;
+        synchronized (WorldSnapshot.class) {
+            snapshot = current;
+            //another bot could have refreshed the snapshot while we were waiting
+            if (snapshot == null || System.currentTimeMillis() - snapshot.timestamp > maxAgeMillis) {
+                snapshot = take(snapshot);
+                current = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    static void setMaxAge(long maxAge) {
+        WorldSnapshot.maxAge = maxAge;
+    }
+
+    private static WorldSnapshot take(WorldSnapshot previous) {
+        List<StructureData> structures = new ArrayList<>();
+        try {
+            ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
+            Map<Long, StructureData> liveStructures = Utils.getField(sscc, "structures");
+            structures.addAll(copyValues(liveStructures));
+        } catch (Exception e) {
+            Utils.consolePrint("Couldn't take a snapshot of the world - " + e.getMessage());
+            Utils.consolePrint(e.toString());
+            if (previous != null)
+                return previous;
+        }
+        return new WorldSnapshot(structures);
+    }
+
+    /**
+     * The maps are modified by the game thread, so the copy is retried if it was modified in the process
+     */
+    static <T> List<T> copyValues(Map<Long, T> map) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<T> values = new ArrayList<>(map.size());
+                for (T value : map.values())
+                    if (value != null)
+                        values.add(value);
+                return values;
+            } catch (ConcurrentModificationException e) {
+                if (attempt >= COPY_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<StructureData> getStructures() {
+        return structures;
+    }
+}
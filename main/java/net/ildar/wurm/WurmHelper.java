@@ -11,9 +11,12 @@ import com.wurmonline.client.util.Computer;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 import javassist.ClassPool;
+import javassist.CannotCompileException;
 import javassist.CtClass;
 import javassist.CtMethod;
 import javassist.CtNewMethod;
+import javassist.expr.ExprEditor;
+import javassist.expr.MethodCall;
 import net.ildar.wurm.bot.BulkItemGetterBot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 import org.gotti.wurmunlimited.modloader.classhooks.HookManager;
@@ -38,7 +41,6 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
     public static boolean hideStructures = false;
     public static boolean showTileCoords = false;
 
-    public List<WurmComponent> components;
     private Logger logger;
     private Map<ConsoleCommand, ConsoleCommandHandler> consoleCommandHandlers;
     private long lastBless = 0L;
@@ -65,6 +67,8 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
         consoleCommandHandlers.put(ConsoleCommand.hidemount, this::toggleHideMount);
         consoleCommandHandlers.put(ConsoleCommand.hidestructures, this::toggleHideStructures);
         consoleCommandHandlers.put(ConsoleCommand.showcoords, this::toggleShowCoords);
+        consoleCommandHandlers.put(ConsoleCommand.invindex, this::handleInvIndexCommand);
+        consoleCommandHandlers.put(ConsoleCommand.stats, this::handleStatsCommand);
         WurmHelper.instance = this;
     }
 
@@ -335,6 +339,80 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
         moveToSacrifice(input[0], favorLevel, coefficient);
     }
 
+    private void handleInvIndexCommand(String []input) {
+        if (input.length != 1) {
+            printConsoleCommandUsage(ConsoleCommand.invindex);
+            return;
+        }
+        switch (input[0]) {
+            case "verify":
+                InventoryIndex.verify(true);
+                break;
+            case "rebuild":
+                InventoryIndex.invalidate();
+                Utils.consolePrint("The inventory index will be rebuilt on the next lookup");
+                break;
+            case "check":
+                InventoryIndex.toggleCheckMode();
+                break;
+            default:
+                printConsoleCommandUsage(ConsoleCommand.invindex);
+        }
+    }
+
+    private void handleStatsCommand(String []input) {
+        if (input.length == 0) {
+            BotMetrics.printStats();
+            return;
+        }
+        switch (input[0]) {
+            case "on":
+                BotMetrics.setEnabled(true);
+                Utils.consolePrint("Bot metrics are on");
+                break;
+            case "off":
+                BotMetrics.setEnabled(false);
+                Utils.consolePrint("Bot metrics are off");
+                break;
+            case "jfr":
+                if (input.length != 2) {
+                    printConsoleCommandUsage(ConsoleCommand.stats);
+                    break;
+                }
+                if (JfrEvents.setEnabled(input[1].equals("on")))
+                    Utils.consolePrint("JFR events are " + (JfrEvents.isEnabled() ? "on" : "off"));
+                break;
+            case "reset":
+                BotMetrics.resetAll();
+                Utils.consolePrint("Bot metrics were reset");
+                break;
+            case "csv":
+                if (input.length == 2 && input[1].equals("off")) {
+                    BotMetrics.writeCsv(null, 0);
+                    Utils.consolePrint("Bot metrics are not written to a file anymore");
+                    break;
+                }
+                if (input.length != 3) {
+                    printConsoleCommandUsage(ConsoleCommand.stats);
+                    break;
+                }
+                try {
+                    long interval = Long.parseLong(input[2]);
+                    if (interval < 1) {
+                        Utils.consolePrint("The interval should be at least 1 second");
+                        break;
+                    }
+                    BotMetrics.writeCsv(input[1], interval);
+                    Utils.consolePrint("Bot metrics are written to " + input[1] + " every " + interval + " seconds");
+                } catch (NumberFormatException e) {
+                    Utils.consolePrint("Invalid interval value");
+                }
+                break;
+            default:
+                printConsoleCommandUsage(ConsoleCommand.stats);
+        }
+    }
+
     private void handleMoveCommand(String []input) {
         if (input.length == 1) {
             try {
@@ -433,11 +511,7 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
             Utils.consolePrint("No items to move");
             return;
         }
-        if (components == null) {
-            Utils.consolePrint("Components list is empty!");
-            return;
-        }
-        for(WurmComponent component : components) {
+        for(WurmComponent component : WindowRegistry.getItemListWindows()) {
             if (component instanceof ItemListWindow){
                 try {
                     ilc = ReflectionUtil.getPrivateField(component,
@@ -536,6 +610,32 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
         String noBlessings = properties.getProperty("NoBlessings", "false");
         this.noBlessings = noBlessings.equalsIgnoreCase("true");
         
+        String inventoryIndex = properties.getProperty("InventoryIndex", "true");
+        InventoryIndex.setEnabled(inventoryIndex.equalsIgnoreCase("true"));
+
+        String botScheduler = properties.getProperty("BotScheduler", "false");
+        BotScheduler.setEnabled(botScheduler.equalsIgnoreCase("true"));
+
+        String outboundBatching = properties.getProperty("OutboundBatching", "false");
+        OutboundBatcher.setEnabled(outboundBatching.equalsIgnoreCase("true"));
+
+        String botMetrics = properties.getProperty("BotMetrics", "false");
+        BotMetrics.setEnabled(botMetrics.equalsIgnoreCase("true"));
+
+        String jfrEvents = properties.getProperty("JfrEvents", "false");
+        if (jfrEvents.equalsIgnoreCase("true"))
+            JfrEvents.setEnabled(true);
+
+        String worldSnapshotMaxAge = properties.getProperty("WorldSnapshotMaxAge", "200");
+        try {
+            WorldSnapshot.setMaxAge(Long.parseLong(worldSnapshotMaxAge));
+        } catch(NumberFormatException err) {
+            Utils.consolePrint(
+                "%s: failed to parse WorldSnapshotMaxAge property, using default",
+                WurmHelper.class.getSimpleName()
+            );
+        }
+
         String consoleMsgColor = properties.getProperty("ConsoleMsgColor", "0.5,1.0,1.0");
         try {
             String[] bits = consoleMsgColor.split(",");
@@ -551,6 +651,22 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
         }
     }
 
+    /**
+     * @return true if the method calls another method of its class with the same name
+     */
+    private static boolean callsOverload(CtMethod method) throws CannotCompileException {
+        boolean[] found = {false};
+        method.instrument(new ExprEditor() {
+            @Override
+            public void edit(MethodCall call) {
+                if (call.getMethodName().equals(method.getName())
+                        && call.getClassName().equals(method.getDeclaringClass().getName()))
+                    found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
     @Override
     public void preInit() {
         try {
@@ -559,17 +675,33 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
             ctWurmConsole.getMethod("handleDevInput", "(Ljava/lang/String;[Ljava/lang/String;)Z").insertBefore("if (net.ildar.wurm.WurmHelper.getInstance().handleInput($1,$2)) return true;");
 
             final CtClass ctSocketConnection = classPool.getCtClass("com.wurmonline.communication.SocketConnection");
-            ctSocketConnection.getMethod("tickWriting", "(J)Z").insertBefore("net.ildar.wurm.Utils.serverCallLock.lock();");
-            ctSocketConnection.getMethod("tickWriting", "(J)Z").insertAfter("net.ildar.wurm.Utils.serverCallLock.unlock();");
-            ctSocketConnection.getMethod("getBuffer", "()Ljava/nio/ByteBuffer;").insertBefore("net.ildar.wurm.Utils.serverCallLock.lock();");
-            ctSocketConnection.getMethod("flush", "()V").insertAfter("net.ildar.wurm.Utils.serverCallLock.unlock();");
+            ctSocketConnection.getMethod("tickWriting", "(J)Z").insertBefore("net.ildar.wurm.OutboundBatcher.lock(); net.ildar.wurm.OutboundBatcher.drain();");
+            ctSocketConnection.getMethod("tickWriting", "(J)Z").insertAfter("net.ildar.wurm.OutboundBatcher.unlock();");
+            ctSocketConnection.getMethod("getBuffer", "()Ljava/nio/ByteBuffer;").insertBefore("net.ildar.wurm.OutboundBatcher.lock();");
+            ctSocketConnection.getMethod("flush", "()V").insertAfter("net.ildar.wurm.OutboundBatcher.unlock();");
+
+            try {
+                final CtClass ctServerConnection = classPool.getCtClass("com.wurmonline.client.comm.SimpleServerConnectionClass");
+                //only the overloads sending the packet themselves, the others would count the action twice
+                for (CtMethod method : ctServerConnection.getDeclaredMethods())
+                    if (method.getName().equals("sendAction") && !callsOverload(method))
+                        method.insertBefore("net.ildar.wurm.JfrEvents.onSendAction(); net.ildar.wurm.BotMetrics.onSendAction();"
+                                + " net.ildar.wurm.BotController.getInstance().getActionSlots().onSendAction();");
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Couldn't hook the sent actions, there will be no JFR events and bot metrics of them"
+                        + " and the action slots won't know the actions sent past them", e);
+            }
 
             final CtClass ctConsoleComponent = classPool.getCtClass("com.wurmonline.client.renderer.gui.ConsoleComponent");
             CtMethod consoleGameTickMethod = CtNewMethod.make(
                 "public void gameTick() {" +
                 "  javax.vecmath.Color3f c = net.ildar.wurm.WurmHelper.consoleColor;" +
-                "  while(!net.ildar.wurm.Utils.consoleMessages.isEmpty()) {" +
-                "    addLine((String)net.ildar.wurm.Utils.consoleMessages.poll(), c.x, c.y, c.z);" +
+                "  net.ildar.wurm.ConsoleBuffer.beginFrame();" +
+                "  net.ildar.wurm.WindowRegistry.onGameTick(net.ildar.wurm.WurmHelper.hud);" +
+                "  net.ildar.wurm.SpatialIndex.onGameTick(net.ildar.wurm.WurmHelper.hud);" +
+                "  String line;" +
+                "  while((line = net.ildar.wurm.ConsoleBuffer.poll()) != null) {" +
+                "    addLine(line, c.x, c.y, c.z);" +
                 "  }" +
                 "  super.gameTick();" +
                 "};",
@@ -577,6 +709,18 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
             );
             ctConsoleComponent.addMethod(consoleGameTickMethod);
 
+            try {
+                final CtClass ctInventoryListComponent = classPool.getCtClass("com.wurmonline.client.renderer.gui.InventoryListComponent");
+                final String itemEventSignature = "(Lcom/wurmonline/client/game/inventory/InventoryMetaItem;)V";
+                ctInventoryListComponent.getMethod("addInventoryItem", itemEventSignature).insertAfter("net.ildar.wurm.InventoryIndex.onItemAdded(this, $1);");
+                ctInventoryListComponent.getMethod("updateInventoryItem", itemEventSignature).insertAfter("net.ildar.wurm.InventoryIndex.onItemUpdated(this, $1);");
+                ctInventoryListComponent.getMethod("removeInventoryItem", itemEventSignature).insertAfter("net.ildar.wurm.InventoryIndex.onItemRemoved(this, $1);");
+                InventoryIndex.setHooked(true);
+            } catch (Exception e) {
+                //the index is optional, the inventory lookups will walk the inventory tree instead
+                logger.log(Level.WARNING, "Couldn't hook inventory item events, the inventory index is disabled", e);
+            }
+
             final CtClass ctWurmChat = classPool.getCtClass("com.wurmonline.client.renderer.gui.ChatPanelComponent");
             ctWurmChat.getMethod("addText", "(Ljava/lang/String;Ljava/util/List;Z)V").insertBefore("net.ildar.wurm.Chat.onMessage($1,$2,$3);");
             ctWurmChat.getMethod("addText", "(Ljava/lang/String;Ljava/lang/String;FFFZ)V").insertBefore("net.ildar.wurm.Chat.onMessage($1,$2,$6);");
@@ -584,11 +728,8 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
             CtClass itemCellRenderableClass = classPool.getCtClass("com.wurmonline.client.renderer.cell.GroundItemCellRenderable");
             itemCellRenderableClass.defrost();
             CtMethod itemCellRenderableInitializeMethod = CtNewMethod.make("public void initialize() {\n" +
-                    "                if (net.ildar.wurm.BotController.getInstance().isInstantiated(net.ildar.wurm.bot.GroundItemGetterBot.class)) {\n" +
-                    "                   net.ildar.wurm.bot.Bot gigBot = net.ildar.wurm.BotController.getInstance().getInstance(net.ildar.wurm.bot.GroundItemGetterBot.class);" +
-                    "                   ((net.ildar.wurm.bot.GroundItemGetterBot)gigBot).processNewItem(this);\n" +
-                    "                }\n" +
                     "        super.initialize();\n" +
+                    "        net.ildar.wurm.SpatialIndex.onGroundItemInitialized(this);\n" +
                     "    };", itemCellRenderableClass);
             itemCellRenderableClass.addMethod(itemCellRenderableInitializeMethod);
             
@@ -607,6 +748,8 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
                 "this == net.ildar.wurm.WurmHelper.hud.getWorld().getPlayer().getCarrierCreature())" +
                 "return false;"
             );
+
+            SpatialIndex.setHooked(true);
             
             CtClass tilePicker = classPool.getCtClass("com.wurmonline.client.renderer.TilePicker");
             tilePicker.getMethod("getHoverDescription", "(Lcom/wurmonline/client/renderer/PickData;)V").insertAfter(
@@ -664,14 +807,14 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
                 }
                 if (!notadd) {
                     Object o = method.invoke(proxy, args);
-                    components = new ArrayList<>(ReflectionUtil.getPrivateField(proxy, ReflectionUtil.getField(proxy.getClass(), "components")));
+                    WindowRegistry.onComponentChanged((HeadsUpDisplay) proxy, wc);
                     return o;
                 }
                 return (Object)true;
             });
             HookManager.getInstance().registerHook("com.wurmonline.client.renderer.gui.HeadsUpDisplay", "setActiveWindow", "(Lcom/wurmonline/client/renderer/gui/WurmComponent;)V", () -> (proxy, method, args) -> {
                 method.invoke(proxy, args);
-                components = new ArrayList<>(ReflectionUtil.getPrivateField(proxy, ReflectionUtil.getField(proxy.getClass(), "components")));
+                WindowRegistry.onComponentChanged((HeadsUpDisplay) proxy, (WurmComponent) args[0]);
                 return null;
             });
 
@@ -720,7 +863,14 @@ public class WurmHelper implements WurmClientMod, Initable, Configurable, PreIni
         getid("", "Copy the id of hovered object to the clipboard"),
         hidemount("", "Toggle hiding of mounted creature/vehicle, for easier terraforming (especially underwater)"),
         hidestructures("", "Toggle hiding of structures such as walls, fences, and bridges (for getting misrotated torches back out of stone walls)"),
-        showcoords("", "Toggle display of coordinates in tile/border/corner tooltips");
+        showcoords("", "Toggle display of coordinates in tile/border/corner tooltips"),
+        invindex("{verify|rebuild|check}", "Manage the index of inventory items. " +
+                "\"verify\" compares the index with the inventory tree, \"rebuild\" refills the index from the inventory tree, " +
+                "\"check\" toggles the comparison on every inventory lookup"),
+        stats("[on|off|reset|csv {file seconds|off}|jfr {on|off}]", "Prints the runtime metrics of the bots. " +
+                "\"on\" and \"off\" toggle the collection, \"reset\" clears the collected metrics, " +
+                "\"csv\" appends the metrics to provided file every number of seconds, " +
+                "\"jfr\" toggles the Java Flight Recorder events of the bots");
 
         private String usage;
         public String description;
@@ -0,0 +1,189 @@
+package net.ildar.wurm.bot;
+
+import net.ildar.wurm.ActionSlotArbiter;
+import net.ildar.wurm.Chat;
+import net.ildar.wurm.Utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the server action queue of the player full.
+ * The bot submits actions while there are free slots, and the finish events of the actions free the slots,
+ * so the next action is sent right after one finishes instead of after the whole batch and a bot timeout.
+ * The server finishes the queued actions in the order they were sent, so a finished action is the oldest one
+ * and a rejected("too busy", "too far away") action is the last sent one.
+ * When the finish events of some actions are unknown, the start of the next action finishes the action started before.
+ * The queue is considered lost and cleared if no action was submitted, finished or rejected for the stale timeout
+ * @param <T> the target of the actions, to skip the targets already queued
+ */
+class ActionPipeline<T> {
+    static final Chat.MatchRule REJECTED = Chat.MatchRule.contains("You're too busy", "You are too far away");
+
+    private final Bot bot;
+    private final Deque<T> queued = new ArrayDeque<>();
+    private int capacity;
+    private long staleTimeout = 30000;
+    private long lastChange;
+    private long changes;
+    //the oldest action is running
+    private boolean started;
+
+    ActionPipeline(Bot bot) {
+        this.bot = bot;
+        this.capacity = Utils.getMaxActionNumber();
+    }
+
+    /**
+     * Free the oldest slot on the events matching the rule
+     */
+    void finishOn(Chat.MatchRule rule) {
+        bot.registerEventProcessor(rule, this::finished);
+    }
+
+    /**
+     * Free the oldest slot on the events matching the rule if its action was started already.
+     * The rule should match only the starts of the actions of this pipeline, any other start of the player frees a slot too
+     */
+    void startOn(Chat.MatchRule rule) {
+        bot.registerEventProcessor(rule, this::started);
+    }
+
+    /**
+     * Free the last taken slot on the events matching the rule
+     */
+    void rejectOn(Chat.MatchRule rule) {
+        bot.registerEventProcessor(rule, this::rejected);
+    }
+
+    /**
+     * Take a slot for the target and send the action through the shared action slots as bulk work.
+     * The slot is taken under the lock, the action is handed over after releasing it,
+     * so the event processors of the render thread don't wait for the action slots.
+     * The caller should check for a free slot before
+     */
+    void submit(T target, Runnable sendAction) {
+        synchronized (this) {
+            queued.addLast(target);
+            lastChange = System.currentTimeMillis();
+        }
+        bot.submitAction(ActionSlotArbiter.Priority.BULK, target, sendAction);
+    }
+
+    /**
+     * Take a slot for the action the bot has sent itself
+     */
+    synchronized void add(T target) {
+        queued.addLast(target);
+        lastChange = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the target of the oldest action or null if nothing was queued
+     */
+    synchronized T finished() {
+        T target = queued.pollFirst();
+        started = false;
+        changed();
+        return target;
+    }
+
+    synchronized void started() {
+        //some other action of the player
+        if (queued.isEmpty())
+            return;
+        if (started)
+            queued.pollFirst();
+        started = true;
+        changed();
+    }
+
+    /**
+     * @return the target of the last sent action or null if nothing was queued
+     */
+    synchronized T rejected() {
+        T target = queued.pollLast();
+        changed();
+        return target;
+    }
+
+    synchronized T peekOldest() {
+        return queued.peekFirst();
+    }
+
+    synchronized T peekLast() {
+        return queued.peekLast();
+    }
+
+    synchronized boolean hasFreeSlot() {
+        return getFreeSlots() > 0;
+    }
+
+    synchronized int getFreeSlots() {
+        dropStale();
+        return Math.max(0, capacity - queued.size());
+    }
+
+    synchronized int size() {
+        dropStale();
+        return queued.size();
+    }
+
+    synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    synchronized boolean isQueued(T target) {
+        dropStale();
+        return queued.contains(target);
+    }
+
+    synchronized void clear() {
+        queued.clear();
+        started = false;
+        changed();
+    }
+
+    /**
+     * Use instead of the sleep between iterations. Returns as soon as an action is finished or rejected,
+     * so the freed slot is filled at once
+     * @param timeout in milliseconds
+     */
+    synchronized void awaitChange(long timeout) throws InterruptedException {
+        long changesBefore = changes;
+        long deadline = System.currentTimeMillis() + timeout;
+        long left = timeout;
+        while (left > 0 && changes == changesBefore) {
+            wait(left);
+            left = deadline - System.currentTimeMillis();
+        }
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        changed();
+    }
+
+    synchronized void setStaleTimeout(long staleTimeout) {
+        this.staleTimeout = staleTimeout;
+    }
+
+    synchronized long getLastChange() {
+        return lastChange;
+    }
+
+    private void changed() {
+        lastChange = System.currentTimeMillis();
+        changes++;
+        notifyAll();
+    }
+
+    private void dropStale() {
+        if (!queued.isEmpty() && System.currentTimeMillis() - lastChange > staleTimeout)
+            clear();
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -24,6 +25,7 @@ import com.wurmonline.client.renderer.gui.WurmComponent;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils.Vec2i;
@@ -39,6 +41,11 @@ public class ArcheoBot extends Bot {
 
 	static final Pattern unidentifiedRegex = Pattern.compile("unidentified .*fragment");
 	static final Pattern identifiedRegex = Pattern.compile("^.+ fragment \\[\\d+/\\d+\\]");
+	static final Chat.MatchRule investigatingDone = Chat.MatchRule.regex(
+		"(?i)the area looks picked clean" +
+		"|you pick out a fragment of some item" +
+		"|you can't find any traces of any abandoned settlements here"
+	);
 
 	boolean investigating = false;
 	boolean identifying = false;
@@ -54,8 +61,6 @@ public class ArcheoBot extends Bot {
 
 	AreaAssistant areaAssistant = new AreaAssistant(this);
 
-	boolean investigatingDone = false;
-
 	public ArcheoBot() {
 		registerInputHandler(InputKey.iv, this::toggleInvestigating);
 		registerInputHandler(InputKey.id, this::toggleIdentifying);
@@ -64,18 +69,6 @@ public class ArcheoBot extends Bot {
 		registerInputHandler(InputKey.at, this::setIdentifyInventory);
 		registerInputHandler(InputKey.ct, this::clearIdentifyInventory);
 
-		registerEventProcessor(
-			msg -> {
-				msg = msg.toLowerCase();
-				return
-					msg.contains("the area looks picked clean") ||
-					msg.contains("you pick out a fragment of some item") ||
-					msg.contains("you can't find any traces of any abandoned settlements here")
-				;
-			},
-			() -> investigatingDone = true
-		);
-
 		areaAssistant.setMoveAheadDistance(3);
 		areaAssistant.setMoveRightDistance(3);
 	}
@@ -101,7 +94,7 @@ public class ArcheoBot extends Bot {
 
 		final int maxActions = Utils.getMaxActionNumber();
 
-		outer: while(isActive()) {
+		outer: while(nextIteration()) {
 			waitOnPause();
 
 			boolean didWork = false;
@@ -129,22 +122,24 @@ public class ArcheoBot extends Bot {
 
 				if(!tilesToBeInvestigated.isEmpty()) {
 					didWork = true;
-					investigatingDone = false;
 					
 					final Vec2i tile = tilesToBeInvestigated.get(tilesToBeInvestigated.size() - 1);
 					if(Math.max(Math.abs(tile.x - curPos.x), Math.abs(tile.y - curPos.y)) > 1) {
 						tilesToBeInvestigated.remove(tilesToBeInvestigated.size() - 1);
 					} else {
 						final long tool = useShovel ? shovelId : trowelId;
+						final CompletableFuture<String> investigated = expectEvent(investigatingDone, 300_000);
 						WurmHelper.hud.getWorld().getServerConnection().sendAction(
 							tool,
 							new long[]{Tiles.getTileId(tile.x, tile.y, 0)},
 							PlayerAction.INVESTIGATE
 						);
 						
-						if(waitActionStarted(() -> investigatingDone))
+						if(waitActionStarted(() -> investigated.getNow(null) != null))
 						waitActionFinished();
-						if(investigatingDone) {
+						final boolean done = investigated.getNow(null) != null;
+						investigated.cancel(false);
+						if(done) {
 							tilesToBeInvestigated.remove(tilesToBeInvestigated.size() - 1);
 							tilesInvestigated.add(tile);
 						}
@@ -1,13 +1,13 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
-import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.client.renderer.gui.PaperDollInventory;
 import com.wurmonline.client.renderer.gui.PaperDollSlot;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -68,7 +68,7 @@ public class ArcherBot extends Bot {
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
@@ -85,13 +85,7 @@ public class ArcherBot extends Bot {
                 for (int i = 0; i < maxActions; i++)
                     WurmHelper.hud.getWorld().getServerConnection().sendAction(bow.getId(), new long[]{mobId}, (!isArcheryTarget ? PlayerAction.SHOOT : new PlayerAction("",(short) 134, PlayerAction.ANYTHING)));
 
-                ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-                Map<Long, CreatureCellRenderable> creatures = ReflectionUtil.getPrivateField(sscc,
-                        ReflectionUtil.getField(sscc.getClass(), "creatures"));
-                boolean mobAlive = false;
-                if (creatures!=null && !isArcheryTarget)
-                    for(Map.Entry<Long, CreatureCellRenderable> entry:creatures.entrySet())
-                        if (entry.getValue().getId() == mobId) mobAlive = true;
+                boolean mobAlive = !isArcheryTarget && SpatialIndex.getCreature(mobId) != null;
                 if (!mobAlive && !isArcheryTarget){
                     Utils.consolePrint("Mob dead or too far away!");
                     Utils.showOnScreenMessage("Deactivating archerbot!");
@@ -103,9 +97,9 @@ public class ArcherBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You string the "), () -> stringBreaks = false);
-        registerEventProcessor(message -> message.contains("The string breaks!"), () -> stringBreaks = true);
-        registerMessageProcessor(":Combat", message -> message.contains("The string breaks!"), () -> stringBreaks = true);
+        registerEventProcessor(Chat.MatchRule.contains("You string the "), () -> stringBreaks = false);
+        registerEventProcessor(Chat.MatchRule.contains("The string breaks!"), () -> stringBreaks = true);
+        registerMessageProcessor(":Combat", Chat.MatchRule.contains("The string breaks!"), () -> stringBreaks = true);
     }
 
     private void setStaminaThreshold(String input[]) {
@@ -7,13 +7,14 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.comm.SimpleServerConnectionClass;
 import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
@@ -30,6 +31,10 @@ import com.wurmonline.client.renderer.gui.TargetWindow;
 import com.wurmonline.mesh.Tiles.Tile;
 import com.wurmonline.shared.constants.PlayerAction;
 
+import net.ildar.wurm.ActionSlotArbiter;
+import net.ildar.wurm.Chat;
+import net.ildar.wurm.GroundItemEvents;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.annotations.BotInfo;
@@ -38,35 +43,57 @@ import net.ildar.wurm.annotations.BotInfo;
         "Assists player in various ways",
         abbreviation = "a")
 public class AssistantBot extends Bot {
+    private static final Chat.MatchRule CAST_START = Chat.MatchRule.contains("you will start dispelling",
+            "You start to cast ",
+            "you will start casting");
+    private static final Chat.MatchRule CAST_END = Chat.MatchRule.contains("You cast ",
+            "You fail to channel the ",
+            "You must not move ");
+    private static final Chat.MatchRule WOV_COOLDOWN = Chat.MatchRule.contains("until you can cast Wisdom of Vynora again.");
+    private static final Chat.MatchRule DRINKING_START = Chat.MatchRule.contains("you will start drinking");
+    private static final Chat.MatchRule DRINKING_END = Chat.MatchRule.contains("The water is refreshing and it cools you down",
+            "You are so bloated you cannot bring yourself to drink any thing");
+    private static final Chat.MatchRule LOCKPICKING_START = Chat.MatchRule.contains("You start to pick the lock",
+            "you will start picking lock");
+    private static final Chat.MatchRule LOCKPICKING_FAILED = Chat.MatchRule.contains("You fail to pick the lock");
+    private static final Chat.MatchRule LOCKPICKING_SUCCEEDED = Chat.MatchRule.contains("You pick the lock of");
+    private static final Chat.MatchRule LOCKED = Chat.MatchRule.contains("you will start attaching lock",
+            "You lock the ");
+    private static final Chat.MatchRule NOT_LOCKED = Chat.MatchRule.contains("is not locked.");
+    private static final Chat.MatchRule TRASH_CLEANING_START = Chat.MatchRule.contains("you will start cleaning.");
+    private static final Chat.MatchRule PRAYING_START = Chat.MatchRule.contains("You will start praying",
+            "You start to pray",
+            "you will start praying");
+    private static final Chat.MatchRule BURNING_START = Chat.MatchRule.contains("you will start burning",
+            "You fuel the");
+    private static final Chat.MatchRule SACRIFICING_START = Chat.MatchRule.contains("You start to sacrifice",
+            "you will start sacrificing");
+    //the combined rules of the waits, the cooldown message and an unlocked chest end both waits
+    private static final Chat.MatchRule WOV_START = CAST_START.or(WOV_COOLDOWN);
+    private static final Chat.MatchRule WOV_END = CAST_END.or(WOV_COOLDOWN);
+    private static final Chat.MatchRule DRINKING_STARTED_OR_ENDED = DRINKING_START.or(DRINKING_END);
+    private static final Chat.MatchRule LOCKPICKING_STARTED = LOCKPICKING_START.or(NOT_LOCKED);
+    private static final Chat.MatchRule LOCKPICKING_ENDED = LOCKPICKING_FAILED.or(LOCKPICKING_SUCCEEDED).or(NOT_LOCKED);
+
     private Enchant spellToCast = Enchant.DISPEL;
     private boolean casting;
     private long statuetteId;
     private long bodyId;
     private boolean wovCasting;
     private long lastWOV;
-    private boolean successfullCastStart;
-    private boolean successfullCasting;
-    private boolean needWaitWov;
 
     private boolean lockpicking;
     private long chestId;
     private long lastLockpicking;
     private long lockpickingTimeout;
-    private boolean successfullStartOfLockpicking;
-    private int lockpickingResult;
-    private boolean successfullLocking;
-    private boolean noLock;
 
     private boolean drinking;
     private long waterId;
-    private boolean successfullDrinkingStart;
-    private boolean successfullDrinking;
 
     private boolean trashCleaning;
     private long trashCleaningTimeout;
     private long lastTrashCleaning;
     private long trashBinId;
-    private boolean successfullStartTrashCleaning;
 
     private boolean praying;
     private long altarId;
@@ -74,13 +101,11 @@ public class AssistantBot extends Bot {
     private long prayingTimeout;
     private int prayCount = 0;
     private float prayStamina = 0.5f;
-    private boolean successfullStartOfPraying;
 
     private boolean sacrificing;
     private long sacrificeAltarId;
     private long lastSacrifice;
     private long sacrificeTimeout;
-    private boolean successfullStartOfSacrificing;
     
     private boolean butchering;
     private long butcheringKnife = -10;
@@ -91,13 +116,15 @@ public class AssistantBot extends Bot {
     private boolean buryAll;
     private long buryDelay = 2500;
     private HashMap<Long, Long> corpseTimes = new HashMap<>();
-    private HashSet<String> blacklistedCorpseNames = new HashSet<>();
+    private GroundItemEvents.Subscription corpses;
+    //the filter of the corpses depends on the butchering and the blacklist, the bot subscribes again when they change
+    private volatile boolean corpsesOutdated = false;
+    private Set<String> blacklistedCorpseNames = ConcurrentHashMap.newKeySet();
 
     private boolean kindlingBurning;
     private long forgeId;
     private long lastBurning;
     private long kindlingBurningTimeout;
-    private boolean successfullStartOfBurning;
     
     private boolean grooming;
     private long groomingBrush = -10;
@@ -162,6 +189,7 @@ public class AssistantBot extends Bot {
     @Override
     public void work() throws Exception {
         registerEventProcessors();
+        corpses = subscribeGroundItems(this::isWantedCorpse);
         
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = Utils.getField(creationWindow, "progressBar");
@@ -170,46 +198,55 @@ public class AssistantBot extends Bot {
         SimpleServerConnectionClass serverConnection = world.getServerConnection();
         final int maxActions = Utils.getMaxActionNumber();
         
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             final float progress = Utils.getField(progressBar, "progress");
             if (progress == 0f && creationWindow.getActionInUse() == 0){
                 if (casting) {
                     float favor = player.getSkillSet().getSkillValue("favor");
                     if (favor > spellToCast.favorCap) {
-                        successfullCasting = false;
-                        successfullCastStart = false;
+                        CompletableFuture<String> castStart = expectEvent(CAST_START, 50 * 500);
+                        CompletableFuture<String> castEnd = expectEvent(CAST_END, 50 * 500 + 100 * 2000);
                         int counter = 0;
-                        while (casting && !successfullCastStart && counter++ < 50 && favor > spellToCast.favorCap) {
-                            if (verbose) Utils.consolePrint("successfullCastStart counter=" + counter);
-                            serverConnection.sendAction(statuetteId, new long[]{bodyId}, spellToCast.playerAction);
+                        while (casting && !castStart.isDone() && favor > spellToCast.favorCap) {
+                            if (verbose) Utils.consolePrint("castStart counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.NORMAL, "cast",
+                                    () -> serverConnection.sendAction(statuetteId, new long[]{bodyId}, spellToCast.playerAction));
+                            awaitEvent(castStart, 500);
                             favor = player.getSkillSet().getSkillValue("favor");
-                            sleep(500);
                         }
                         counter = 0;
-                        while (casting && !successfullCasting && counter++ < 100 && favor > spellToCast.favorCap) {
-                            if (verbose) Utils.consolePrint("successfullCasting counter=" + counter);
-                            sleep(2000);
+                        while (casting && !castEnd.isDone() && favor > spellToCast.favorCap) {
+                            if (verbose) Utils.consolePrint("castEnd counter=" + ++counter);
+                            awaitEvent(castEnd, 2000);
                         }
+                        castStart.cancel(false);
+                        castEnd.cancel(false);
                     }
                 } else if (wovCasting && Math.abs(lastWOV - System.currentTimeMillis()) > 1810000) {
                     float favor = player.getSkillSet().getSkillValue("favor");
                     if (favor > 30) {
-                        successfullCasting = false;
-                        successfullCastStart = false;
-                        needWaitWov = false;
+                        CompletableFuture<String> castStart = expectEvent(WOV_START, 50 * 500);
+                        CompletableFuture<String> castEnd = expectEvent(WOV_END, 50 * 500 + 100 * 2000);
                         int counter = 0;
-                        while (wovCasting && !successfullCastStart && counter++ < 50 && !needWaitWov) {
-                            if (verbose) Utils.consolePrint("successfullCastStart counter=" + counter);
-                            serverConnection.sendAction(statuetteId, new long[]{bodyId}, PlayerAction.WISDOM_OF_VYNORA);
-                            sleep(500);
+                        while (wovCasting && !castStart.isDone()) {
+                            if (verbose) Utils.consolePrint("castStart counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.NORMAL, "wov",
+                                    () -> serverConnection.sendAction(statuetteId, new long[]{bodyId}, PlayerAction.WISDOM_OF_VYNORA));
+                            awaitEvent(castStart, 500);
                         }
-                        counter = 0;
-                        while (wovCasting && !successfullCasting && counter++ < 100 && !needWaitWov) {
-                            if (verbose) Utils.consolePrint("successfullCasting counter=" + counter);
-                            sleep(2000);
+                        String startLine = castStart.getNow(null);
+                        if (startLine == null || !WOV_COOLDOWN.matches(startLine)) {
+                            counter = 0;
+                            while (wovCasting && !castEnd.isDone()) {
+                                if (verbose) Utils.consolePrint("castEnd counter=" + ++counter);
+                                awaitEvent(castEnd, 2000);
+                            }
                         }
-                        if (needWaitWov)
+                        String endLine = castEnd.getNow(null);
+                        castStart.cancel(false);
+                        castEnd.cancel(false);
+                        if (endLine != null && WOV_COOLDOWN.matches(endLine))
                             lastWOV = lastWOV + 20000;
                         else
                             lastWOV = System.currentTimeMillis();
@@ -218,19 +255,22 @@ public class AssistantBot extends Bot {
                 if (drinking) {
                     float thirst = player.getThirst();
                     if (thirst > 0.1) {
-                        successfullDrinking = false;
-                        successfullDrinkingStart = false;
+                        CompletableFuture<String> drinkingStart = expectEvent(DRINKING_STARTED_OR_ENDED, 50 * 500);
+                        CompletableFuture<String> drinkingEnd = expectEvent(DRINKING_END, 50 * 500 + 100 * 2000);
                         int counter = 0;
-                        while (drinking && !successfullDrinkingStart && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullDrinkingStart counter=" + counter);
-                            WurmHelper.hud.sendAction(new PlayerAction("",(short) 183, PlayerAction.ANYTHING), waterId);
-                            sleep(500);
+                        while (drinking && !drinkingStart.isDone()) {
+                            if (verbose) Utils.consolePrint("drinkingStart counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.URGENT, "drink",
+                                    () -> WurmHelper.hud.sendAction(new PlayerAction("",(short) 183, PlayerAction.ANYTHING), waterId));
+                            awaitEvent(drinkingStart, 500);
                         }
                         counter = 0;
-                        while (drinking && !successfullDrinking && counter++ < 100) {
-                            if (verbose) Utils.consolePrint("successfullDrinking counter=" + counter);
-                            sleep(2000);
+                        while (drinking && !drinkingEnd.isDone()) {
+                            if (verbose) Utils.consolePrint("drinkingEnd counter=" + ++counter);
+                            awaitEvent(drinkingEnd, 2000);
                         }
+                        drinkingStart.cancel(false);
+                        drinkingEnd.cancel(false);
                     }
                 }
                 if (lockpicking && Math.abs(lastLockpicking - System.currentTimeMillis()) > lockpickingTimeout) {
@@ -244,22 +284,36 @@ public class AssistantBot extends Bot {
                         continue;
                     }
 
-                    successfullStartOfLockpicking = false;
-                    lockpickingResult = -1;
+                    CompletableFuture<String> lockpickingStart = expectEvent(LOCKPICKING_STARTED, 50 * 500);
+                    CompletableFuture<String> lockpickingEnd = expectEvent(LOCKPICKING_ENDED, 50 * 500 + 100 * 2000);
+                    final long lockpickItemId = lockpickId;
                     int counter = 0;
-                    while (lockpicking && !successfullStartOfLockpicking && counter++ < 50 && !noLock) {
-                        if (verbose) Utils.consolePrint("successfullStartOfLockpicking counter=" + counter);
-                        serverConnection.sendAction(lockpickId,
-                                new long[]{chestId}, new PlayerAction("",(short) 101, PlayerAction.ANYTHING));
-                        sleep(500);
+                    while (lockpicking && !lockpickingStart.isDone()) {
+                        if (verbose) Utils.consolePrint("lockpickingStart counter=" + ++counter);
+                        submitAction(ActionSlotArbiter.Priority.NORMAL, "lockpick", () -> serverConnection.sendAction(lockpickItemId,
+                                new long[]{chestId}, new PlayerAction("",(short) 101, PlayerAction.ANYTHING)));
+                        awaitEvent(lockpickingStart, 500);
                     }
-                    if (counter >= 50) continue;
-                    counter = 0;
-                    while (lockpicking && lockpickingResult == -1 && counter++ < 100 && !noLock) {
-                        if (verbose) Utils.consolePrint("lockpickingResult counter=" + counter);
-                        sleep(2000);
+                    String startLine = lockpickingStart.getNow(null);
+                    //lockpicking could be turned off before the start
+                    lockpickingStart.cancel(false);
+                    if (startLine == null) {
+                        lockpickingEnd.cancel(false);
+                        continue;
                     }
-                    if (noLock || lockpickingResult > 0) {
+                    boolean noLock = NOT_LOCKED.matches(startLine);
+                    if (!noLock) {
+                        counter = 0;
+                        while (lockpicking && !lockpickingEnd.isDone()) {
+                            if (verbose) Utils.consolePrint("lockpickingEnd counter=" + ++counter);
+                            awaitEvent(lockpickingEnd, 2000);
+                        }
+                    }
+                    String endLine = lockpickingEnd.getNow(null);
+                    lockpickingEnd.cancel(false);
+                    if (endLine != null)
+                        noLock |= NOT_LOCKED.matches(endLine);
+                    if (noLock || (endLine != null && LOCKPICKING_SUCCEEDED.matches(endLine))) {
                         long padlockId = 0;
                         InventoryMetaItem padlock = Utils.getInventoryItem("padlock");
                         if (padlock != null)
@@ -268,31 +322,32 @@ public class AssistantBot extends Bot {
                             sleep(1000);
                             continue;
                         }
-                        successfullLocking = false;
+                        final long padlockItemId = padlockId;
+                        CompletableFuture<String> locked = expectEvent(LOCKED, 50 * 500);
                         counter = 0;
-                        while (lockpicking && !successfullLocking && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullLocking lockingcounter=" + counter);
-                            serverConnection.sendAction(padlockId,
-                                    new long[]{chestId}, new PlayerAction("",(short) 161, PlayerAction.ANYTHING));
-                            sleep(500);
+                        while (lockpicking && !locked.isDone()) {
+                            if (verbose) Utils.consolePrint("locking counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.NORMAL, "lock", () -> serverConnection.sendAction(padlockItemId,
+                                    new long[]{chestId}, new PlayerAction("",(short) 161, PlayerAction.ANYTHING)));
+                            awaitEvent(locked, 500);
                         }
+                        locked.cancel(false);
                     }
-                    if (noLock)
-                        noLock = false;
-                    else
+                    if (!noLock)
                         lastLockpicking = System.currentTimeMillis();
                 }
                 if (trashCleaning) {
                     if (Math.abs(lastTrashCleaning - System.currentTimeMillis()) > trashCleaningTimeout) {
                         lastTrashCleaning = System.currentTimeMillis();
-                        successfullStartTrashCleaning = false;
+                        CompletableFuture<String> cleaningStart = expectEvent(TRASH_CLEANING_START, 30 * 1000);
                         int counter = 0;
-                        while (trashCleaning && !successfullStartTrashCleaning && counter++ < 30) {
-                            if (verbose) Utils.consolePrint("successfullStartTrashCleaning counter=" + counter);
-                            WurmHelper.hud.sendAction(new PlayerAction("",(short) 954, PlayerAction.ANYTHING), trashBinId);
-                            sleep(1000);
+                        while (trashCleaning && !cleaningStart.isDone()) {
+                            if (verbose) Utils.consolePrint("cleaningStart counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.NORMAL, "clean",
+                                    () -> WurmHelper.hud.sendAction(new PlayerAction("",(short) 954, PlayerAction.ANYTHING), trashBinId));
+                            awaitEvent(cleaningStart, 1000);
                         }
-                        successfullStartTrashCleaning = true;
+                        cleaningStart.cancel(false);
                     }
                 }
 
@@ -305,30 +360,30 @@ public class AssistantBot extends Bot {
                                 Math.max(1, maxActions - (sacrificing ? 1 : 0)) :
                                 prayCount
                         ;
-                        successfullStartOfPraying = false;
+                        CompletableFuture<String> prayingStart = expectEvent(PRAYING_START, 50 * 1000);
                         int counter = 0;
-                        while (praying && !successfullStartOfPraying && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullStartOfPraying counter=" + counter);
+                        while (praying && !prayingStart.isDone()) {
+                            if (verbose) Utils.consolePrint("prayingStart counter=" + ++counter);
                             for (int x = 0; x < numPrayers; x++) {
-                                WurmHelper.hud.sendAction(PlayerAction.PRAY, altarId);
+                                submitAction(ActionSlotArbiter.Priority.URGENT, "pray" + x, () -> WurmHelper.hud.sendAction(PlayerAction.PRAY, altarId));
                             }
-                            sleep(1000);
+                            awaitEvent(prayingStart, 1000);
                         }
-                        successfullStartOfPraying = true;
+                        prayingStart.cancel(false);
                     }
                 }
 
                 if (sacrificing) {
                     if (Math.abs(lastSacrifice - System.currentTimeMillis()) > sacrificeTimeout) {
                         lastSacrifice = System.currentTimeMillis();
-                        successfullStartOfSacrificing = false;
+                        CompletableFuture<String> sacrificingStart = expectEvent(SACRIFICING_START, 50 * 1000);
                         int counter = 0;
-                        while (sacrificing && !successfullStartOfSacrificing && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullStartOfSacrificing counter=" + counter);
-                            WurmHelper.hud.sendAction(PlayerAction.SACRIFICE, sacrificeAltarId);
-                            sleep(1000);
+                        while (sacrificing && !sacrificingStart.isDone()) {
+                            if (verbose) Utils.consolePrint("sacrificingStart counter=" + ++counter);
+                            submitAction(ActionSlotArbiter.Priority.NORMAL, "sacrifice", () -> WurmHelper.hud.sendAction(PlayerAction.SACRIFICE, sacrificeAltarId));
+                            awaitEvent(sacrificingStart, 1000);
                         }
-                        successfullStartOfSacrificing = true;
+                        sacrificingStart.cancel(false);
                     }
                 }
 
@@ -348,15 +403,15 @@ public class AssistantBot extends Bot {
                                 targetIds[i] = kindlings.get(i).getId();
                             serverConnection.sendAction(
                                     targetIds[0], targetIds, PlayerAction.COMBINE);
-                            successfullStartOfBurning = false;
+                            CompletableFuture<String> burningStart = expectEvent(BURNING_START, 50 * 300);
                             int counter = 0;
-                            while (kindlingBurning && !successfullStartOfBurning && counter++ < 50) {
-                                if (verbose) Utils.consolePrint("successfullStartOfBurning counter=" + counter);
-                                serverConnection.sendAction(
-                                        biggestKindling.getId(), new long[]{forgeId}, new PlayerAction("",(short) 117, PlayerAction.ANYTHING));
-                                sleep(300);
+                            while (kindlingBurning && !burningStart.isDone()) {
+                                if (verbose) Utils.consolePrint("burningStart counter=" + ++counter);
+                                submitAction(ActionSlotArbiter.Priority.NORMAL, "burn", () -> serverConnection.sendAction(
+                                        biggestKindling.getId(), new long[]{forgeId}, new PlayerAction("",(short) 117, PlayerAction.ANYTHING)));
+                                awaitEvent(burningStart, 300);
                             }
-                            successfullStartOfBurning = true;
+                            burningStart.cancel(false);
                         }
                     }
                 }
@@ -441,14 +496,17 @@ public class AssistantBot extends Bot {
                     groomingQueued.clear();
                     groomingFailed = false;
                     
-                    List<CreatureCellRenderable> creatures = Utils.findCreatures(
-                        (creature, data) ->
-                            Utils.isGroomableCreature(creature) &&
-                            Utils.isNearbyPlayer(creature) &&
+                    List<SpatialIndex.Creature> creatures = SpatialIndex.getCreaturesNear(
+                        world.getPlayerPosX(),
+                        world.getPlayerPosY(),
+                        Utils.maxActionDistance,
+                        creature ->
+                            Utils.isGroomableCreature(creature.renderable) &&
+                            Utils.isNearbyPlayer(creature.renderable) &&
                             !groomedCreatures.containsKey(creature.getId())
                     );
                     int actionsLeft = maxActions - creationWindow.getActionInUse();
-                    for (CreatureCellRenderable creature: creatures) {
+                    for (SpatialIndex.Creature creature: creatures) {
                         if(actionsLeft <= 0) break;
                         actionsLeft--;
                         final long id = creature.getId();
@@ -496,50 +554,9 @@ public class AssistantBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("you will start dispelling")
-                        || message.contains("You start to cast ")
-                        || message.contains("you will start casting"),
-                () -> successfullCastStart = true);
-        registerEventProcessor(message -> message.contains("You cast ")
-                        || message.contains("You fail to channel the ")
-                        || message.contains("You must not move "),
-                () -> successfullCasting = true);
-        registerEventProcessor(message -> message.contains("until you can cast Wisdom of Vynora again."),
-                () -> needWaitWov = true);
-        registerEventProcessor(message -> message.contains("you will start drinking"),
-                () -> successfullDrinkingStart = true);
-        registerEventProcessor(message -> message.contains("The water is refreshing and it cools you down")
-                        || message.contains("You are so bloated you cannot bring yourself to drink any thing"),
-                () -> successfullDrinking = successfullDrinkingStart = true);
-        registerEventProcessor(message -> message.contains("You start to pick the lock")
-                        || message.contains("you will start picking lock"),
-                () -> successfullStartOfLockpicking = true);
-        registerEventProcessor(message -> message.contains("You fail to pick the lock"),
-                () -> lockpickingResult = 0);
-        registerEventProcessor(message -> message.contains("You pick the lock of"),
-                () -> lockpickingResult = 1);
-        registerEventProcessor(message -> message.contains("you will start attaching lock")
-                        || message.contains("You lock the "),
-                () -> successfullLocking = true);
-        registerEventProcessor(message -> message.contains("is not locked."),
-                () -> noLock = true);
-        registerEventProcessor(message -> message.contains("you will start cleaning."),
-                () -> successfullStartTrashCleaning = true);
-        registerEventProcessor(message -> message.contains("You will start praying")
-                        || message.contains("You start to pray")
-                        || message.contains("you will start praying"),
-                () -> successfullStartOfPraying = true);
-        registerEventProcessor(message -> message.contains("you will start burning")
-                        || message.contains("You fuel the"),
-                () -> successfullStartOfBurning = true);
-        registerEventProcessor(message -> message.contains("You start to sacrifice")
-                        || message.contains("you will start sacrificing"),
-                () -> successfullStartOfSacrificing = true);
         registerEventProcessor(
-            message ->
-                message.contains("shys away") ||
-                message.contains("too far away to do that")
-            ,
+            Chat.MatchRule.contains("shys away",
+                "too far away to do that"),
             () -> groomingFailed = true
         );
     }
@@ -1008,6 +1025,7 @@ public class AssistantBot extends Bot {
     
     private void toggleButchering() {
         butchering ^= true;
+        corpsesOutdated = true;
         Utils.consolePrint(
             "Bot will%s butcher corpses",
             butchering ?
@@ -1097,6 +1115,7 @@ public class AssistantBot extends Bot {
             }
             
             blacklistedCorpseNames.add(keyword.toLowerCase());
+            corpsesOutdated = true;
             Utils.consolePrint(
                 "Bot will not bury corpses with names containing: %s",
                 blacklistedCorpseNames
@@ -1105,6 +1124,7 @@ public class AssistantBot extends Bot {
             );
         } else {
             blacklistedCorpseNames.clear();
+            corpsesOutdated = true;
             Utils.consolePrint("Bot will bury all corpses");
         }
     }
@@ -1151,37 +1171,41 @@ public class AssistantBot extends Bot {
     }
     
     private List<GroundItemCellRenderable> findCorpses(BiPredicate<GroundItemCellRenderable, GroundItemData> predicate) {
-        predicate = ((BiPredicate<GroundItemCellRenderable, GroundItemData>)this::isCorpse)
-            .and((item, data) -> Utils.isNearbyPlayer(item))
+        predicate = ((BiPredicate<GroundItemCellRenderable, GroundItemData>)(item, data) -> Utils.isNearbyPlayer(item))
             .and(predicate)
         ;
-        List<GroundItemCellRenderable> items = new ArrayList<>();
-        try {
-            ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-            Map<Long, GroundItemCellRenderable> groundItemsMap = ReflectionUtil.getPrivateField(sscc,
-                        ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-            
-            for(GroundItemCellRenderable item: groundItemsMap.values()) {
-                GroundItemData data;
-                try {
-                    data = ReflectionUtil.getPrivateField(item, ReflectionUtil.getField(item.getClass(), "item"));
-                } catch (Exception e) {
-                    Utils.consolePrint(e.toString());
-                    continue;
-                }
-                
-                if(predicate.test(item, data))
-                    items.add(item);
-            }
-        } catch (Exception e) {
-            Utils.consolePrint(e.toString());
+        final BiPredicate<GroundItemCellRenderable, GroundItemData> filter = predicate;
+        if (corpsesOutdated) {
+            corpsesOutdated = false;
+            unsubscribeGroundItems(corpses);
+            corpses = subscribeGroundItems(this::isWantedCorpse);
+            Set<Long> corpseIds = new HashSet<>();
+            for(GroundItemEvents.Event event: corpses.poll())
+                corpseIds.add(event.item.getId());
+            corpseTimes.keySet().retainAll(corpseIds);
         }
+        for(GroundItemEvents.Event event: corpses.poll())
+            if(!event.spawned)
+                corpseTimes.remove(event.item.getId());
+        List<GroundItemCellRenderable> items = new ArrayList<>();
+        final float px = WurmHelper.hud.getWorld().getPlayerPosX();
+        final float py = WurmHelper.hud.getWorld().getPlayerPosY();
+        for(SpatialIndex.GroundItem item: corpses.getItemsNear(px, py, Utils.maxActionDistance, item -> filter.test(item.renderable, item.data)))
+            items.add(item.renderable);
         return items;
     }
     
     private boolean isCorpse(GroundItemCellRenderable item, GroundItemData data) {
         return item.getHoverName().toLowerCase().startsWith("corpse of");
     }
+
+    //the blacklisted corpses are only butchered
+    private boolean isWantedCorpse(SpatialIndex.GroundItem item) {
+        if (!isCorpse(item.renderable, item.data))
+            return false;
+        final String displayName = item.renderable.getHoverName().toLowerCase();
+        return butchering || blacklistedCorpseNames.stream().noneMatch(displayName::contains);
+    }
     
     private boolean needsPickaxeToBury(GroundItemCellRenderable item) {
         if (item.getLayer() < 0)
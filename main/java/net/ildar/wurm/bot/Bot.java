@@ -4,7 +4,9 @@ import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public abstract class Bot extends Thread {
@@ -13,14 +15,51 @@ public abstract class Bot extends Thread {
      */
     long timeout = 1000;
     /**
-     * The bot implementation should register his input handlers with {@link #registerInputHandler(InputKey, InputHandler)}
+     * The bot implementation should register his input handlers with {@link #registerInputHandler(InputKey, InputHandler)}.
+     * The keys and the handlers are indexed by the name of the key
      */
-    private Map<InputKey, InputHandler> inputHandlers = new HashMap<>();
+    private Map<String, InputKey> inputKeys = new HashMap<>();
+    private Map<String, InputHandler> inputHandlers = new HashMap<>();
+    //built on the first use, dropped on every registration
+    private String usageString;
     /**
      * Store all registered message processors here to unregister them on bot deactivation to prevent memory leaks
      */
     private List<Chat.MessageProcessor> registeredMessageProcessors = new ArrayList<>();
+    /**
+     * The ground item subscriptions, cancelled on bot deactivation
+     */
+    private final List<GroundItemEvents.Subscription> groundItemSubscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * The futures of {@link #expectEvent(Chat.MatchRule, long)} not completed yet, cancelled on bot deactivation
+     */
+    private final Set<CompletableFuture<String>> expectedEvents = ConcurrentHashMap.newKeySet();
+    /**
+     * The futures of {@link #expectEvent(Chat.MatchRule, long)} of all bots waiting for each rule
+     */
+    private static final Map<Chat.MatchRule, PendingEvents> pendingEvents = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService eventTimer;
     private boolean paused = false;
+    //a paused bot on the scheduler checks for the resumption this often
+    private static final long PAUSED_STEP_DELAY = 250;
+    /**
+     * Set when the bot runs as steps on the shared {@link BotScheduler} instead of its own thread.
+     * The thread running its step is then kept in {@link #worker} and the interruption is forwarded there
+     */
+    private volatile boolean scheduled = false;
+    private volatile boolean running = false;
+    private volatile Thread worker;
+    //the next step on the scheduler, replaced by the deactivation so the bot doesn't wait for its time
+    private ScheduledFuture<?> nextStep;
+    //set by the deactivation, the interruption status of the thread can be cleared by the bot
+    private volatile boolean stopRequested = false;
+    private final Object workerLock = new Object();
+    private final BotMetrics metrics = BotMetrics.of(getClass().getSimpleName());
+    //the start of the current iteration for the metrics, 0 when the metrics are off. Used by the bot thread only
+    private long iterationStart;
+    private long iterationCpuStart;
+    //the JFR event of the current iteration. Used by the bot thread only
+    private Object iterationEvent;
 
     public Bot() {
         //register standard input handlers
@@ -33,8 +72,105 @@ public abstract class Bot extends Thread {
     //Bot implementations must do their stuff here
     abstract void work() throws Exception;
 
+    /**
+     * @return true if the bot implements {@link #step()} and can run on the shared {@link BotScheduler}
+     */
+    public boolean hasSteps() {
+        return false;
+    }
+
+    /**
+     * One iteration of a bot with steps. Runs on a thread of the shared scheduler, so it must not block.
+     * The steps go on after the deactivation, {@link #isActive()} is false then and the bot should finish its work
+     * @return the delay in milliseconds before the next step, a negative number when the bot is finished.
+     * The bot waiting for the deactivation only returns Long.MAX_VALUE, it is stepped right away when deactivated
+     */
+    long step() throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The work() loop of a bot with steps started on its own thread
+     */
+    final void workInSteps() throws Exception {
+        long delay;
+        while ((delay = step()) >= 0) {
+            try {
+                sleep(delay);
+            } catch (InterruptedException e) {
+                //deactivated, the next step finishes the bot
+            }
+        }
+    }
+
+    /**
+     * Start the steps of the bot on the shared scheduler instead of its own thread
+     */
+    public final void startScheduled() {
+        scheduled = true;
+        running = true;
+        synchronized (workerLock) {
+            nextStep = BotScheduler.schedule(this::runStep, 0);
+        }
+    }
+
+    private void runStep() {
+        synchronized (workerLock) {
+            worker = Thread.currentThread();
+        }
+        BotMetrics.bindThread(metrics);
+        long delay;
+        try {
+            if (paused && !stopRequested)
+                delay = PAUSED_STEP_DELAY;
+            else
+                delay = recordStep();
+        } catch (InterruptedException e) {
+            delay = -1;
+        } catch (Exception e) {
+            Utils.consolePrint(this.getClass().getSimpleName() + " has encountered an error - " + e.getMessage());
+            Utils.consolePrint(e.toString());
+            e.printStackTrace();
+            delay = -1;
+        } finally {
+            BotMetrics.bindThread(null);
+        }
+        synchronized (workerLock) {
+            worker = null;
+            //the scheduler thread goes to the next step, a late interruption must not reach it
+            Thread.interrupted();
+            if (delay >= 0) {
+                //deactivated while the step was running, the bot doesn't wait for the delay
+                nextStep = BotScheduler.schedule(this::runStep, stopRequested && delay == Long.MAX_VALUE ? 0 : delay);
+                return;
+            }
+            nextStep = null;
+        }
+        onStopped();
+    }
+
+    /**
+     * The step is one iteration for the metrics and the JFR events
+     */
+    private long recordStep() throws Exception {
+        long start = BotMetrics.isEnabled() ? System.nanoTime() : 0;
+        long cpuStart = start != 0 ? BotMetrics.cpuTimeOfCurrentThread() : 0;
+        Object event = JfrEvents.begin(JfrEvents.Type.BOT_ITERATION);
+        try {
+            return step();
+        } finally {
+            JfrEvents.commit(event, getClass().getSimpleName());
+            if (start != 0)
+                metrics.recordIteration(System.nanoTime() - start, BotMetrics.cpuTimeOfCurrentThread() - cpuStart);
+        }
+    }
+
     @Override
     public final void run() {
+        synchronized (workerLock) {
+            worker = Thread.currentThread();
+        }
+        BotMetrics.bindThread(metrics);
         try {
             work();
         } catch (InterruptedException ignored) {
@@ -42,12 +178,58 @@ public abstract class Bot extends Thread {
             Utils.consolePrint(this.getClass().getSimpleName() + " has encountered an error - " + e.getMessage());
             Utils.consolePrint(e.toString());
             e.printStackTrace();
+        } finally {
+            BotMetrics.bindThread(null);
+        }
+        synchronized (workerLock) {
+            worker = null;
         }
+        onStopped();
+    }
+
+    private void onStopped() {
+        //the bot is finished, nothing waits for the events anymore
+        new ArrayList<>(expectedEvents).forEach(event -> event.cancel(false));
         unregisterMessageProcessors();
+        groundItemSubscriptions.forEach(GroundItemEvents::unsubscribe);
+        groundItemSubscriptions.clear();
         BotController.getInstance().onBotInterruption(this);
+        running = false;
         Utils.consolePrint(this.getClass().getSimpleName() + " was stopped");
     }
 
+    @Override
+    public void interrupt() {
+        synchronized (workerLock) {
+            stopRequested = true;
+            if (!scheduled)
+                super.interrupt();
+            else if (worker != null)
+                worker.interrupt();
+            else if (nextStep != null && nextStep.cancel(false))
+                nextStep = BotScheduler.schedule(this::runStep, 0);
+        }
+    }
+
+    @Override
+    public boolean isInterrupted() {
+        if (!scheduled)
+            return stopRequested || super.isInterrupted();
+        Thread worker = this.worker;
+        return stopRequested || (worker != null && worker.isInterrupted());
+    }
+
+    public boolean isScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * @return true if the bot was started and has not stopped yet, on its own thread or on the scheduler
+     */
+    public boolean isRunning() {
+        return scheduled ? running : super.isAlive();
+    }
+
     /**
      * The bot is stopping by interruption(see {@link #deactivate()}.
      * Sometimes the interruption status of a thread is cleared(ignored,lost) in the bot(the bot developer should avoid that),
@@ -57,6 +239,60 @@ public abstract class Bot extends Thread {
         return BotController.getInstance().isActive(this) && !isInterrupted();
     }
 
+    /**
+     * The head of the work loop, called once per iteration: ends the iteration of the metrics and its JFR event
+     * and starts the next one.
+     * The iteration is only recorded on the thread running the bot, elsewhere it is the same as {@link #isActive()}
+     * @return {@link #isActive()}
+     */
+    final boolean nextIteration() {
+        if (Thread.currentThread() == worker) {
+            if (BotMetrics.isEnabled())
+                recordIteration();
+            else
+                iterationStart = 0;
+            if (JfrEvents.isEnabled()) {
+                JfrEvents.commit(iterationEvent, getClass().getSimpleName());
+                iterationEvent = JfrEvents.begin(JfrEvents.Type.BOT_ITERATION);
+            } else
+                iterationEvent = null;
+        }
+        return isActive();
+    }
+
+    /**
+     * The iteration of the bot is the time between the calls of {@link #nextIteration()}
+     */
+    private void recordIteration() {
+        long now = System.nanoTime();
+        long cpu = BotMetrics.cpuTimeOfCurrentThread();
+        if (iterationStart != 0)
+            metrics.recordIteration(now - iterationStart, cpu - iterationCpuStart);
+        iterationStart = now;
+        iterationCpuStart = cpu;
+    }
+
+    /**
+     * Hides {@link Thread#sleep(long)} in the bot implementations, so their sleeping is counted by the metrics
+     */
+    public static void sleep(long millis) throws InterruptedException {
+        BotMetrics botMetrics = BotMetrics.isEnabled() ? BotMetrics.getCurrent() : null;
+        if (botMetrics == null) {
+            Thread.sleep(millis);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(millis);
+        } finally {
+            botMetrics.recordSleep(System.nanoTime() - start);
+        }
+    }
+
+    public BotMetrics getMetrics() {
+        return metrics;
+    }
+
     synchronized void waitOnPause() throws InterruptedException {
         if (paused) {
             this.wait();
@@ -90,7 +326,7 @@ public abstract class Bot extends Thread {
     }
 
     public void deactivate() {
-        if (!super.isAlive()) {
+        if (!isRunning()) {
             BotController.getInstance().onBotInterruption(this);
             return;
         }
@@ -105,6 +341,12 @@ public abstract class Bot extends Thread {
     }
 
     public String getUsageString() {
+        if (usageString == null)
+            usageString = buildUsageString();
+        return usageString;
+    }
+
+    private String buildUsageString() {
         StringBuilder output = new StringBuilder();
         output
                 .append("Usage: ")
@@ -113,7 +355,7 @@ public abstract class Bot extends Thread {
                 .append(getAbbreviation())
                 .append(" {");
         boolean firstInputKeyString = true;
-        List<String> sortedInputKeys = inputHandlers.keySet().stream().map(InputKey::getName).sorted(Comparator.naturalOrder()).collect(Collectors.toList());
+        List<String> sortedInputKeys = inputKeys.keySet().stream().sorted(Comparator.naturalOrder()).collect(Collectors.toList());
         for (String inputKey : sortedInputKeys) {
             if (firstInputKeyString)
                 firstInputKeyString = false;
@@ -137,7 +379,7 @@ public abstract class Bot extends Thread {
     public void handleInput(String[] data) {
         if (data == null || data.length == 0)
             return;
-        InputHandler inputHandler = getInputHandler(data[0]);
+        InputHandler inputHandler = inputHandlers.get(data[0]);
         if (inputHandler == null) {
             Utils.consolePrint("Unknown key - " + data[0]);
             BotController.getInstance().printBotDescription(this.getClass());
@@ -154,7 +396,7 @@ public abstract class Bot extends Thread {
             printInputKeyUsageString(InputKeyBase.info);
             return;
         }
-        InputKey inputKey = getInputKey(input[0]);
+        InputKey inputKey = inputKeys.get(input[0]);
         if (inputKey == null) {
             Utils.consolePrint("Unknown key");
             Utils.consolePrint(getUsageString());
@@ -189,23 +431,9 @@ public abstract class Bot extends Thread {
      * The enumeration type of the key must have a usage and description string fields for each item
      */
     final void registerInputHandler(InputKey key, InputHandler inputHandler) {
-        InputKey oldKey = getInputKey(key.getName());
-        if (oldKey != null)
-            inputHandlers.remove(oldKey);
-        inputHandlers.put(key, inputHandler);
-    }
-
-    private InputKey getInputKey(String key) {
-        for (InputKey inputKey : inputHandlers.keySet())
-            if (inputKey.getName().equals(key))
-                return inputKey;
-        return null;
-    }
-
-    private InputHandler getInputHandler(String key) {
-        InputKey inputKey = getInputKey(key);
-        if (inputKey == null) return null;
-        return inputHandlers.get(inputKey);
+        inputKeys.put(key.getName(), key);
+        inputHandlers.put(key.getName(), inputHandler);
+        usageString = null;
     }
 
     final void registerEventProcessor(Function<String, Boolean> filter, Runnable callback) {
@@ -216,6 +444,106 @@ public abstract class Bot extends Thread {
         registeredMessageProcessors.add(Chat.registerMessageProcessor(tabName, filter, callback));
     }
 
+    final void registerEventProcessor(Chat.MatchRule rule, Runnable callback) {
+        registerMessageProcessor(":Event", rule, callback);
+    }
+
+    final void registerMessageProcessor(String tabName, Chat.MatchRule rule, Runnable callback) {
+        registeredMessageProcessors.add(Chat.registerMessageProcessor(tabName, rule, callback));
+    }
+
+    /**
+     * Get the spawns and despawns of the ground items accepted by the filter instead of polling the ground item map
+     * @see GroundItemEvents.Subscription#poll()
+     */
+    final GroundItemEvents.Subscription subscribeGroundItems(Predicate<SpatialIndex.GroundItem> filter) {
+        GroundItemEvents.Subscription subscription = GroundItemEvents.subscribe(filter);
+        groundItemSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    final void unsubscribeGroundItems(GroundItemEvents.Subscription subscription) {
+        if (groundItemSubscriptions.remove(subscription))
+            GroundItemEvents.unsubscribe(subscription);
+    }
+
+    /**
+     * Send the timed action through the {@link ActionSlotArbiter} shared by all bots, instead of sending it directly
+     * @param key the not yet sent submission of this bot with equal key is replaced, can be null
+     */
+    final void submitAction(ActionSlotArbiter.Priority priority, Object key, Runnable sendAction) {
+        BotController.getInstance().getActionSlots().submit(this, priority, key, sendAction);
+    }
+
+    /**
+     * Wait for the server feedback without polling. Arm the future before sending the action, so the answer can't be missed.
+     * One ":Event" processor is registered for each rule while any bot waits for it, the equal rules share it.
+     * The future is dropped from the pending ones of the rule as soon as it is completed or cancelled,
+     * and the processor is unregistered with the last pending future of the rule
+     * @param timeout in milliseconds
+     * @return the future completed with the first ":Event" line(without time) matching the rule, or with null on timeout
+     */
+    final CompletableFuture<String> expectEvent(Chat.MatchRule rule, long timeout) {
+        CompletableFuture<String> event = new CompletableFuture<>();
+        expectedEvents.add(event);
+        pendingEvents.compute(rule, (key, pending) -> {
+            if (pending == null)
+                pending = new PendingEvents(key);
+            pending.futures.add(event);
+            return pending;
+        });
+        ScheduledFuture<?> timer = getEventTimer().schedule(() -> event.complete(null), timeout, TimeUnit.MILLISECONDS);
+        event.whenComplete((line, e) -> {
+            pendingEvents.computeIfPresent(rule, (key, pending) -> {
+                pending.futures.remove(event);
+                if (!pending.futures.isEmpty())
+                    return pending;
+                Chat.unregisterMessageProcessor(pending.processor);
+                return null;
+            });
+            timer.cancel(false);
+            expectedEvents.remove(event);
+        });
+        return event;
+    }
+
+    /**
+     * @return the line of the event, or null if it timed out or was cancelled
+     */
+    static String awaitEvent(CompletableFuture<String> event) throws InterruptedException {
+        try {
+            return event.get();
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Wait for the event at most provided number of milliseconds, returns at once when it comes
+     * @return the line of the event, or null if it didn't come yet, timed out or was cancelled
+     */
+    static String awaitEvent(CompletableFuture<String> event, long timeout) throws InterruptedException {
+        try {
+            return event.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getEventTimer() {
+        if (eventTimer == null) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "bot-event-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            //most of the events come before their timeouts
+            timer.setRemoveOnCancelPolicy(true);
+            eventTimer = timer;
+        }
+        return eventTimer;
+    }
+
     private void unregisterMessageProcessors() {
         registeredMessageProcessors.forEach(Chat::unregisterMessageProcessor);
     }
@@ -266,4 +594,15 @@ public abstract class Bot extends Thread {
         String getUsage();
     }
 
+    /**
+     * The futures waiting for one rule and the processor completing them
+     */
+    private static final class PendingEvents {
+        private final List<CompletableFuture<String>> futures = new CopyOnWriteArrayList<>();
+        private final Chat.MessageProcessor processor;
+
+        private PendingEvents(Chat.MatchRule rule) {
+            processor = Chat.registerMessageProcessor(":Event", rule, line -> futures.forEach(future -> future.complete(line)));
+        }
+    }
 }
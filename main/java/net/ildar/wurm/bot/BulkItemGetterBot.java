@@ -8,6 +8,7 @@ import com.wurmonline.client.options.Options;
 import com.wurmonline.client.renderer.gui.InventoryListComponent;
 import com.wurmonline.shared.util.MaterialUtilities;
 
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.annotations.BotInfo;
@@ -44,11 +45,11 @@ public class BulkItemGetterBot extends Bot
         moveQuantity = -1;
         setTimeout(5000);
         registerEventProcessor(
-            message -> message.contains("That item is already busy"),
+            Chat.MatchRule.contains("That item is already busy"),
             () -> closeBMLWindow = false
         );
         
-        while(isActive())
+        while(nextIteration())
         {
             waitOnPause();
             while (specs.size() <= 0)
@@ -1,19 +1,15 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.GroundItemData;
-import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.GroundItemEvents;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
-import java.util.ConcurrentModificationException;
-import java.util.Map;
-
 @BotInfo(description =
         "Automatically chops felled trees near player",
         abbreviation = "ch")
@@ -49,39 +45,22 @@ public class ChopperBot extends Bot {
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
-        ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-        while (isActive()) {
+        GroundItemEvents.Subscription felledTrees = subscribeGroundItems(groundItem -> groundItem.getName().contains("felled tree"));
+        while (nextIteration()) {
             waitOnPause();
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
             float progress = ReflectionUtil.getPrivateField(progressBar,
                     ReflectionUtil.getField(progressBar.getClass(), "progress"));
             if ((stamina+damage) > staminaThreshold && progress == 0f) {
-                Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
-                        ReflectionUtil.getField(sscc.getClass(), "groundItems"));
                 float x = WurmHelper.hud.getWorld().getPlayerPosX();
                 float y = WurmHelper.hud.getWorld().getPlayerPosY();
-                boolean didSomething = false;
-                if (groundItems.size() > 0) {
-                    try {
-                        for (Map.Entry<Long, GroundItemCellRenderable> entry : groundItems.entrySet()) {
-                            GroundItemData groundItemData = ReflectionUtil.getPrivateField(entry.getValue(),
-                                    ReflectionUtil.getField(entry.getValue().getClass(), "item"));
-                            float itemX = groundItemData.getX();
-                            float itemY = groundItemData.getY();
-                            if (Math.sqrt(Math.pow(itemX - x, 2) + Math.pow(itemY - y, 2)) <= distance)
-                                if (groundItemData.getName().contains("felled tree")) {
-                                    for (int i = 0; i < clicks; i++)
-                                        WurmHelper.hud.getWorld().getServerConnection().sendAction(hatchetId, new long[]{groundItemData.getId()}, PlayerAction.CHOP_UP);
-                                    didSomething = true;
-                                    break;
-                                }
-                        }
-                    } catch (ConcurrentModificationException e) {
-                        Utils.consolePrint("Got concurrent modification exception!");
-                    }
-                }
-                if (!didSomething) {
+                felledTrees.poll();
+                SpatialIndex.GroundItem felledTree = felledTrees.getNearestItem(x, y, distance);
+                if (felledTree != null) {
+                    for (int i = 0; i < clicks; i++)
+                        WurmHelper.hud.getWorld().getServerConnection().sendAction(hatchetId, new long[]{felledTree.data.getId()}, PlayerAction.CHOP_UP);
+                } else {
                     areaAssistant.areaNextPosition();
                     continue;
                 }
@@ -43,7 +43,7 @@ public class ContainerItemGetterBot extends Bot
         long playerInvID = playerInvRoot.getId();
         
         List<InventoryMetaItem> srcItems = new ArrayList<>();
-        while(isActive())
+        while(nextIteration())
         {
             waitOnPause();
             
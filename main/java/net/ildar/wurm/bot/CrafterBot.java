@@ -3,6 +3,8 @@ package net.ildar.wurm.bot;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.gui.*;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlotArbiter;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -74,7 +76,7 @@ public class CrafterBot extends Bot {
         CreationFrame target = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "target"));
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
@@ -177,7 +179,13 @@ public class CrafterBot extends Bot {
             }
 
             if (source != null && target != null && (stamina+damage) > staminaThreshold && (creationWindow.getActionInUse() == 0 || withoutActionsInUse) && progress == 0f) {
-                sendCreateAction.invoke(creationWindow);
+                submitAction(ActionSlotArbiter.Priority.BULK, "create", () -> {
+                    try {
+                        sendCreateAction.invoke(creationWindow);
+                    } catch (ReflectiveOperationException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
             }
             if (source != null && target != null
                     && (stamina+damage) > staminaThreshold
@@ -192,10 +200,10 @@ public class CrafterBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You create")
-                || message.contains("you will start creating")
-                || message.contains("You attach")
-                || message.contains("you will start continuing"), () -> lastClick = System.currentTimeMillis());
+        registerEventProcessor(Chat.MatchRule.contains("You create",
+                "you will start creating",
+                "You attach",
+                "you will start continuing"), () -> lastClick = System.currentTimeMillis());
     }
 
     private void toggleActionNumberChecks() {
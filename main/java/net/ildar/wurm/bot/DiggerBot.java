@@ -6,6 +6,7 @@ import com.wurmonline.client.renderer.TilePicker;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Pair;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
@@ -60,23 +61,22 @@ public class DiggerBot extends Bot{
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message ->
-                        message.contains("is too steep for your skill level") ||
-                                message.contains("ground is flat here") ||
-                                message.contains("You finish levelling"),
+        registerEventProcessor(Chat.MatchRule.contains("is too steep for your skill level",
+                                "ground is flat here",
+                                "You finish levelling"),
                 () -> levellingDone = true);
-        registerEventProcessor(message -> message.contains("You can not dig in the solid rock") ||
-                message.contains("You hit the rock in a corner") ||
-                message.contains("The road would be too steep to traverse") ||
-                message.contains("The water is too deep or too shallow to dig using that tool") ||
-                message.contains("You are not skilled enough to dig in such steep slopes") ||
-                message.contains("You cannot dig in such terrain") ||
-                message.contains("You hit rock") ||
-                message.contains("Your shovel fails to penetrate the earth no matter what you try. Weird") ||
-                message.contains("You suddenly become very weak, and your arm muscles fail you. You just can not dig here it seems") ||
-                message.contains("You can't figure out how to remove the stone. You must become a bit better at digging first") ||
-                message.contains("You need to be stronger to dig on roads") ||
-                message.contains("The object nearby prevents digging further down"), this::handleInvalidCorner);
+        registerEventProcessor(Chat.MatchRule.contains("You can not dig in the solid rock",
+                "You hit the rock in a corner",
+                "The road would be too steep to traverse",
+                "The water is too deep or too shallow to dig using that tool",
+                "You are not skilled enough to dig in such steep slopes",
+                "You cannot dig in such terrain",
+                "You hit rock",
+                "Your shovel fails to penetrate the earth no matter what you try. Weird",
+                "You suddenly become very weak, and your arm muscles fail you. You just can not dig here it seems",
+                "You can't figure out how to remove the stone. You must become a bit better at digging first",
+                "You need to be stronger to dig on roads",
+                "The object nearby prevents digging further down"), this::handleInvalidCorner);
     }
 
     @Override
@@ -92,7 +92,7 @@ public class DiggerBot extends Bot{
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             if (toolRepairing) {
                 if (surfaceMiningMode && pickaxeItem.getDamage() > 10)
@@ -7,6 +7,7 @@ import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.FieldData;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -19,6 +20,10 @@ import java.util.stream.Collectors;
         "Tends the fields, plants the seeds, cultivates the ground, collects harvests",
         abbreviation = "f")
 public class FarmerBot extends Bot {
+    //the starts of the cultivating, tending, harvesting and sowing only
+    private static final Chat.MatchRule STARTED = Chat.MatchRule.regex("^You start (to )?(cultivat|farm|tend|harvest|sow)");
+    private static final Chat.MatchRule FINISHED = Chat.MatchRule.contains("The ground is cultivated and ready to sow now.");
+
     private float staminaThreshold;
     private AreaAssistant areaAssistant = new AreaAssistant(this);
     private boolean farmTending;
@@ -50,37 +55,48 @@ public class FarmerBot extends Bot {
     protected void work() throws Exception {
         setStaminaThreshold(0.9f);
         setTimeout(500);
-        int maxActions = Utils.getMaxActionNumber();
+        ActionPipeline<Long> pipeline = new ActionPipeline<>(this);
+        pipeline.startOn(STARTED);
+        pipeline.finishOn(FINISHED);
+        pipeline.rejectOn(ActionPipeline.REJECTED);
+        //the seeds are still in the inventory while their sowing is queued
+        Map<Long, Long> sowingTilesBySeed = new HashMap<>();
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         World world = WurmHelper.hud.getWorld();
         PlayerObj player = world.getPlayer();
         Set<String> cultivatedTiles = new HashSet<>(Arrays.asList(
                 Tiles.Tile.TILE_STEPPE.tilename, Tiles.Tile.TILE_MOSS.tilename, Tiles.Tile.TILE_DIRT_PACKED.tilename));
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = player.getStamina();
             float damage = player.getDamage();
             float progress = ReflectionUtil.getPrivateField(progressBar,
                     ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            if ((stamina + damage) > staminaThreshold && progress == 0f) {
+            if ((stamina + damage) > staminaThreshold && pipeline.hasFreeSlot()) {
                 int checkedtiles[][] = Utils.getAreaCoordinates();
                 int initiatedActions = 0;
                 int tileIndex = -1;
 
                 List<InventoryMetaItem> seeds = null;
                 int usedSeeds = 0;
-                if (planting)
+                if (planting) {
+                    sowingTilesBySeed.values().removeIf(tileId -> !pipeline.isQueued(tileId));
                     seeds = Utils.getInventoryItems(seedsName);
-                while(++tileIndex < checkedtiles.length && initiatedActions < maxActions) {
+                    if (seeds != null)
+                        seeds.removeIf(seed -> sowingTilesBySeed.containsKey(seed.getId()));
+                }
+                while(++tileIndex < checkedtiles.length && pipeline.hasFreeSlot()) {
+                    long tileId = Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0);
+                    if (pipeline.isQueued(tileId))
+                        continue;
                     Tiles.Tile tileType = world.getNearTerrainBuffer().getTileType(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     byte tileData = world.getNearTerrainBuffer().getData(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     if (cultivating) {
                         checkToolDamage(shovelItem);
                         if (!tileType.isTree() && !tileType.isBush() && (tileType.isGrass() || cultivatedTiles.contains(tileType.tilename))) {
-                            world.getServerConnection().sendAction(shovelItem.getId(),
-                                    new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
-                                    PlayerAction.CULTIVATE);
+                            pipeline.submit(tileId, () -> world.getServerConnection().sendAction(shovelItem.getId(),
+                                    new long[]{tileId}, PlayerAction.CULTIVATE));
                             initiatedActions++;
                             continue;
                         }
@@ -89,9 +105,8 @@ public class FarmerBot extends Bot {
                         checkToolDamage(rakeItem);
                         if (tileType == com.wurmonline.mesh.Tiles.Tile.TILE_FIELD || tileType == com.wurmonline.mesh.Tiles.Tile.TILE_FIELD2)
                             if (!com.wurmonline.mesh.FieldData.isTended(tileData)) {
-                                world.getServerConnection().sendAction(rakeItem.getId(),
-                                        new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
-                                        PlayerAction.FARM);
+                                pipeline.submit(tileId, () -> world.getServerConnection().sendAction(rakeItem.getId(),
+                                        new long[]{tileId}, PlayerAction.FARM));
                                 initiatedActions++;
                                 continue;
                             }
@@ -100,9 +115,8 @@ public class FarmerBot extends Bot {
                         checkToolDamage(scytheItem);
                         if (tileType == com.wurmonline.mesh.Tiles.Tile.TILE_FIELD || tileType == com.wurmonline.mesh.Tiles.Tile.TILE_FIELD2)
                             if (FieldData.getAgeName(tileData).equals("ripe")) {
-                                world.getServerConnection().sendAction(scytheItem.getId(),
-                                        new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
-                                        PlayerAction.HARVEST);
+                                pipeline.submit(tileId, () -> world.getServerConnection().sendAction(scytheItem.getId(),
+                                        new long[]{tileId}, PlayerAction.HARVEST));
                                 initiatedActions++;
                                 continue;
                             }
@@ -114,17 +128,22 @@ public class FarmerBot extends Bot {
                             else {
                                 if (usedSeeds > seeds.size() - 2)
                                     continue;
-                                world.getServerConnection().sendAction(seeds.get(usedSeeds++).getId(),
-                                        new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
-                                        PlayerAction.SOW);
+                                long seedId = seeds.get(usedSeeds++).getId();
+                                sowingTilesBySeed.put(seedId, tileId);
+                                pipeline.submit(tileId, () -> world.getServerConnection().sendAction(seedId,
+                                        new long[]{tileId}, PlayerAction.SOW));
                                 initiatedActions++;
                                 continue;
                             }
                         }
                     }
                 }
-                if (initiatedActions == 0)
+                //move on when the queued actions are done, the last one could have no finish event
+                if (initiatedActions == 0 && progress == 0f
+                        && (pipeline.isEmpty() || System.currentTimeMillis() - pipeline.getLastChange() > 2000)) {
+                    pipeline.clear();
                     areaAssistant.areaNextPosition();
+                }
             }
             if (dropping) {
                 List<InventoryMetaItem> droplist = new ArrayList<>();
@@ -142,7 +161,7 @@ public class FarmerBot extends Bot {
                         WurmHelper.hud.sendAction(PlayerAction.DROP, Utils.getItemIds(droplist));
                 }
             }
-            sleep(timeout);
+            pipeline.awaitChange(timeout);
         }
     }
 
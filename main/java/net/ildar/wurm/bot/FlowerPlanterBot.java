@@ -54,7 +54,7 @@ public class FlowerPlanterBot extends Bot {
         }
 
         BotState state = BotState.PLANT;
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
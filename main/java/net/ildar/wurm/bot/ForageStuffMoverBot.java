@@ -26,7 +26,7 @@ public class ForageStuffMoverBot extends Bot {
 
     @Override
     public void work() throws Exception{
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             List<InventoryMetaItem> foragables = Utils.getSelectedItems(WurmHelper.hud.getInventoryWindow().getInventoryListComponent(), true, true);
             List<InventoryMetaItem> moveList = foragables.stream()
@@ -6,6 +6,7 @@ import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.mesh.GrassData;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Pair;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
@@ -89,7 +90,7 @@ public class ForagerBot extends Bot {
         PlayerObj player = world.getPlayer();
         maxActions = Utils.getMaxActionNumber();
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = player.getStamina();
             float damage = player.getDamage();
@@ -105,7 +106,8 @@ public class ForagerBot extends Bot {
                 if (verbose)
                     Utils.consolePrint(getClass().getSimpleName() + " queue cleared");
             }
-            if ((stamina + damage) > staminaThreshold && queuedTiles.size() == 0) {
+            //the queued tiles are skipped, so the free slots are filled without waiting for the whole queue
+            if ((stamina + damage) > staminaThreshold && queuedTiles.size() < maxActions) {
                 int[][] checkedtiles = Utils.getAreaCoordinates();
                 int tileIndex = -1;
                 synchronized (queuedTiles) {
@@ -268,17 +270,17 @@ public class ForagerBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You are too far away"),
+        registerEventProcessor(Chat.MatchRule.contains("You are too far away"),
                 this::actionNotQueued);
-        registerEventProcessor(message -> message.contains("You're too busy"),
+        registerEventProcessor(Chat.MatchRule.contains("You're too busy"),
                 this::actionNotQueued);
         registerEventProcessor(message -> (message.contains("You gather") && message.contains("mixed grass")
                         || message.contains("You pick some flowers")
                         || message.contains("You try to cut some short grass but you fail to get any significant amount.")),
                 this::actionFinished);
-        registerEventProcessor(message -> (message.contains("You find")
-                        || message.contains("This area looks picked clean.")
-                        || message.contains("You fail to find")),
+        registerEventProcessor(Chat.MatchRule.contains("You find",
+                        "This area looks picked clean.",
+                        "You fail to find"),
                 this::fbFinished);
         registerEventProcessor(message -> (message.contains("inventory is full") && dropWhenFull),
                 this::dropItems);
@@ -7,6 +7,7 @@ import com.wurmonline.mesh.FoliageAge;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.mesh.TreeData;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Pair;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
@@ -33,7 +34,7 @@ public class ForesterBot extends Bot {
     private AreaAssistant areaAssistant = new AreaAssistant(this);
 
     private long hatchetId;
-    private List<Pair<Integer, Integer>> queuedTiles = new ArrayList<>();
+    private ActionPipeline<Pair<Integer, Integer>> pipeline;
 
     private long lastActionFinishedTime;
 
@@ -76,6 +77,9 @@ public class ForesterBot extends Bot {
         World world = WurmHelper.hud.getWorld();
         PlayerObj player = world.getPlayer();
         maxActions = Utils.getMaxActionNumber();
+        pipeline = new ActionPipeline<>(this);
+        pipeline.setCapacity(maxActions);
+        pipeline.setStaleTimeout(10000);
         InventoryMetaItem sickle = Utils.locateToolItem("sickle");
         InventoryMetaItem bucket = Utils.locateToolItem("bucket");
         lastActionFinishedTime = System.currentTimeMillis();
@@ -91,22 +95,21 @@ public class ForesterBot extends Bot {
         if (bucket != null)
             Utils.consolePrint(this.getClass().getSimpleName() + " will use " + bucket.getDisplayName() + " with QL:" + bucket.getQuality() + " DMG:" + bucket.getDamage());
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = player.getStamina();
             float damage = player.getDamage();
-            if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 10000 && (stamina + damage) > staminaThreshold)
-                queuedTiles.clear();
             if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 20000 && (stamina + damage) > staminaThreshold)
                 toHarvest = 0;
 
-            if ((stamina + damage) > staminaThreshold && queuedTiles.size() == 0 && toHarvest == 0) {
+            //the harvested tiles are not queued, so no new actions until their harvests are done
+            if ((stamina + damage) > staminaThreshold && pipeline.size() < maxActions && toHarvest == 0) {
                 int checkedtiles[][] = Utils.getAreaCoordinates();
                 int tileIndex = -1;
                 Set<Long> usedSprouts = new HashSet<>();
-                while (++tileIndex < 9 && queuedTiles.size() + toHarvest < maxActions && toHarvest <= maxActions) {
+                while (++tileIndex < 9 && pipeline.size() + toHarvest < maxActions && toHarvest <= maxActions) {
                     Pair<Integer, Integer> coordsPair = new Pair<>(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
-                    if (queuedTiles.contains(coordsPair))
+                    if (pipeline.isQueued(coordsPair))
                         continue;
                     Tiles.Tile tileType = world.getNearTerrainBuffer().getTileType(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     byte tileData = world.getNearTerrainBuffer().getData(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
@@ -139,19 +142,19 @@ public class ForesterBot extends Bot {
                                 world.getServerConnection().sendAction(hatchetId,
                                         new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                         PlayerAction.CUT_DOWN);
-                            queuedTiles.add(coordsPair);
+                            pipeline.add(coordsPair);
                             lastActionFinishedTime = System.currentTimeMillis();
                         } else if (fage.getAgeName().contains("sprouting") && shouldPickSprout(treeTypeName) && (cutAllSprouts || fage.getAgeName().contains("very old"))) {
                             world.getServerConnection().sendAction(sickleId,
                                     new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                     PlayerAction.PICK_SPROUT);
-                            queuedTiles.add(coordsPair);
+                            pipeline.add(coordsPair);
                             lastActionFinishedTime = System.currentTimeMillis();
                         } else if (deforesting || shriveledTreesChopping && fage.getAgeName().contains("shriveled")) {
                             world.getServerConnection().sendAction(hatchetId,
                                     new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                     PlayerAction.CUT_DOWN);
-                            queuedTiles.add(coordsPair);
+                            pipeline.add(coordsPair);
                             lastActionFinishedTime = System.currentTimeMillis();
                         }
                     }
@@ -167,7 +170,7 @@ public class ForesterBot extends Bot {
                                             new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                             PlayerAction.PLANT_CENTER);
                                     usedSprouts.add(sprout.getId());
-                                    queuedTiles.add(coordsPair);
+                                    pipeline.add(coordsPair);
                                     lastActionFinishedTime = System.currentTimeMillis();
                                     break;
                                 }
@@ -181,11 +184,11 @@ public class ForesterBot extends Bot {
                                     new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                     PlayerAction.CULTIVATE);
                             lastActionFinishedTime = System.currentTimeMillis();
-                            queuedTiles.add(coordsPair);
+                            pipeline.add(coordsPair);
                         }
                     }
                 }
-                if (queuedTiles.size() == 0 && toHarvest == 0 && areaAssistant.areaTourActivated())
+                if (pipeline.isEmpty() && toHarvest == 0 && areaAssistant.areaTourActivated())
                     areaAssistant.areaNextPosition();
 
                 List<InventoryMetaItem> sprouts =
@@ -209,7 +212,7 @@ public class ForesterBot extends Bot {
                             }
                 }
             }
-            sleep(timeout);
+            pipeline.awaitChange(timeout);
         }
     }
 
@@ -224,20 +227,20 @@ public class ForesterBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You are too far away") ,
+        registerEventProcessor(Chat.MatchRule.contains("You are too far away"),
                 this::actionNotQueued);
-        registerEventProcessor(message -> message.contains("You make a lot of errors and need to take a break"),
+        registerEventProcessor(Chat.MatchRule.contains("You make a lot of errors and need to take a break"),
                 this::actionFinished);
-        registerEventProcessor(message -> (message.contains("You cut a sprout")
-                        || message.contains("It does not make sense to prune")
-                        || message.contains("You prune the ") || message.contains("You stop pruning")
-                        || message.contains("You stop picking") || message.contains("has no sprout to pick")
-                        || message.contains("has no sprout to pick") || message.contains("You stop cutting down.")
-                        || message.contains("You cut down the ") || message.contains("You plant the sprout.")
-                        || message.contains("You chip away some wood")
-                        || message.contains("The ground is cultivated and ready to sow now.")),
+        registerEventProcessor(Chat.MatchRule.contains("You cut a sprout",
+                        "It does not make sense to prune",
+                        "You prune the ", "You stop pruning",
+                        "You stop picking", "has no sprout to pick",
+                        "has no sprout to pick", "You stop cutting down.",
+                        "You cut down the ", "You plant the sprout.",
+                        "You chip away some wood",
+                        "The ground is cultivated and ready to sow now."),
                 this::actionFinished);
-        registerEventProcessor(message -> message.contains("You harvest "),
+        registerEventProcessor(Chat.MatchRule.contains("You harvest "),
                 this::harvestedSomething);
     }
 
@@ -287,6 +290,8 @@ public class ForesterBot extends Bot {
         }
         try {
             maxActions = Integer.parseInt(input[0]);
+            if (pipeline != null)
+                pipeline.setCapacity(maxActions);
             Utils.consolePrint("Maximum actions was set " + maxActions);
         } catch (Exception e) {
             Utils.consolePrint("Wrong max actions value!");
@@ -327,17 +332,13 @@ public class ForesterBot extends Bot {
     }
 
     private void actionFinished() {
-        if (queuedTiles.size() > 0) {
-            queuedTiles.remove(0);
+        if (pipeline.finished() != null)
             lastActionFinishedTime = System.currentTimeMillis();
-        }
     }
 
     private void actionNotQueued() {
-        if (queuedTiles.size() > 0) {
-            queuedTiles.remove(queuedTiles.size()  - 1);
+        if (pipeline.rejected() != null)
             lastActionFinishedTime = System.currentTimeMillis();
-        }
         toHarvest = 0;
     }
 
@@ -1,14 +1,12 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
-import com.wurmonline.client.renderer.GroundItemData;
-import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
-import com.wurmonline.client.renderer.cell.StaticModelRenderable;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.GroundItemEvents;
+import net.ildar.wurm.NameMatcher;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
-import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.*;
 
@@ -17,61 +15,50 @@ import java.util.*;
         abbreviation = "gig")
 public class GroundItemGetterBot extends Bot {
     private Set <String> itemNames = new HashSet<>();
+    //recompiled on every change of item names, the bot subscribes again with the new one
+    private volatile NameMatcher itemMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING);
     private float distance = 4;
 
     public GroundItemGetterBot() {
         registerInputHandler(GroundItemGetterBot.InputKey.a, this::addNewItemName);
         registerInputHandler(GroundItemGetterBot.InputKey.d, this::setDistance);
     }
+    /**
+     * The items in reach are taken every timeout, the new ones are taken as soon as they appear
+     */
     @Override
     public void work() throws Exception{
         setTimeout(500);
-        while (isActive()) {
+        NameMatcher subscribedMatcher = itemMatcher;
+        GroundItemEvents.Subscription subscription = subscribe(subscribedMatcher);
+        long nextPass = 0;
+        while (nextIteration()) {
             waitOnPause();
-            if (itemNames.size() > 0) {
-                ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-                Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
-                        ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-                float x = WurmHelper.hud.getWorld().getPlayerPosX();
-                float y = WurmHelper.hud.getWorld().getPlayerPosY();
-                if (groundItems.size() > 0)
-                    try {
-                        for (Map.Entry<Long, GroundItemCellRenderable> entry : groundItems.entrySet()) {
-                            GroundItemData groundItemData = ReflectionUtil.getPrivateField(entry.getValue(),
-                                    ReflectionUtil.getField(entry.getValue().getClass(), "item"));
-                            float itemX = groundItemData.getX();
-                            float itemY = groundItemData.getY();
-                            if ((Math.sqrt(Math.pow(itemX - x, 2) + Math.pow(itemY - y, 2)) <= distance) && itemNames != null && itemNames.size() > 0)
-                                for (String item : itemNames)
-                                    if (groundItemData.getName().contains(item))
-                                        WurmHelper.hud.sendAction(PlayerAction.TAKE, groundItemData.getId());
-                        }
-                    } catch (ConcurrentModificationException ignored) {
-                    }
+            if (subscribedMatcher != itemMatcher) {
+                unsubscribeGroundItems(subscription);
+                subscribedMatcher = itemMatcher;
+                subscription = subscribe(subscribedMatcher);
+                nextPass = 0;
             }
-            sleep(timeout);
-        }
-    }
-
-    @SuppressWarnings("unused")
-    public void processNewItem(StaticModelRenderable staticModelRenderable) {
-        try {
+            List<GroundItemEvents.Event> events = subscription.await(Math.max(0, nextPass - System.currentTimeMillis()));
             float x = WurmHelper.hud.getWorld().getPlayerPosX();
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
-            float itemX = ReflectionUtil.getPrivateField(staticModelRenderable,
-                    ReflectionUtil.getField(StaticModelRenderable.class, "x"));
-            float itemY = ReflectionUtil.getPrivateField(staticModelRenderable,
-                    ReflectionUtil.getField(StaticModelRenderable.class, "y"));
-            if ((Math.sqrt(Math.pow(itemX-x, 2)+Math.pow(itemY-y, 2)) <= distance) && itemNames != null && itemNames.size() > 0)
-                for(String item:itemNames)
-                    if (staticModelRenderable.getHoverName().contains(item))
-                        WurmHelper.hud.sendAction(PlayerAction.TAKE, staticModelRenderable.getId());
-        }
-        catch(IllegalAccessException|NoSuchFieldException e) {
-            Utils.consolePrint("Got exception while processing new item in " + GroundItemGetterBot.class.getSimpleName());
+            if (System.currentTimeMillis() >= nextPass) {
+                for (SpatialIndex.GroundItem groundItem : subscription.getItemsNear(x, y, distance, null))
+                    WurmHelper.hud.sendAction(PlayerAction.TAKE, groundItem.getId());
+                nextPass = System.currentTimeMillis() + timeout;
+            } else {
+                for (GroundItemEvents.Event event : events)
+                    if (event.spawned && Math.hypot(event.item.x - x, event.item.y - y) <= distance)
+                        WurmHelper.hud.sendAction(PlayerAction.TAKE, event.item.getId());
+            }
         }
     }
 
+    private GroundItemEvents.Subscription subscribe(NameMatcher matcher) {
+        return subscribeGroundItems(item -> matcher.matches(item.getName()));
+    }
+
     private void addNewItemName(String []input) {
         if (input == null || input.length < 1) {
             printInputKeyUsageString(GroundItemGetterBot.InputKey.a);
@@ -100,6 +87,7 @@ public class GroundItemGetterBot extends Bot {
         if (itemNames == null)
             itemNames = new HashSet<>();
         itemNames.add(item);
+        itemMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING, itemNames);
         Utils.consolePrint("Current item set in " + this.getClass().getSimpleName() + " - " + itemNames.toString());
     }
 
@@ -35,7 +35,7 @@ public class GuardBot extends Bot {
     public void work() throws Exception{
         lastEvent = System.currentTimeMillis();
         setAlarmTimeout(300000);
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             if (Math.abs(lastEvent - System.currentTimeMillis()) > alarmTimeout) {
                 playSound();
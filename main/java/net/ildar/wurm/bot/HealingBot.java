@@ -3,6 +3,7 @@ package net.ildar.wurm.bot;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlotArbiter;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -26,7 +27,7 @@ public class HealingBot extends Bot {
         setTimeout(500);
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float progress = ReflectionUtil.getPrivateField(progressBar,
                     ReflectionUtil.getField(progressBar.getClass(), "progress"));
@@ -65,7 +66,8 @@ public class HealingBot extends Bot {
             int maxActionNumber = Utils.getMaxActionNumber();
             int i = 0;
             for (InventoryMetaItem wound : wounds) {
-                WurmHelper.hud.getWorld().getServerConnection().sendAction(cottonItem.getId(), new long[]{wound.getId()}, PlayerAction.FIRSTAID);
+                submitAction(ActionSlotArbiter.Priority.URGENT, wound.getId(),
+                        () -> WurmHelper.hud.getWorld().getServerConnection().sendAction(cottonItem.getId(), new long[]{wound.getId()}, PlayerAction.FIRSTAID));
                 if (++i >= maxActionNumber)
                     break;
             }
@@ -9,12 +9,14 @@ import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.*;
 import com.wurmonline.shared.constants.PlayerAction;
 import com.wurmonline.shared.util.MaterialUtilities;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @BotInfo(description =
         "Improves selected items in provided inventories. Tools searched from player's inventory. " +
@@ -25,10 +27,37 @@ import java.util.*;
                 "Use \"ci\" key to change the chosen instrument.",
         abbreviation = "i")
 public class ImproverBot extends Bot {
+    //the time to wait for the server to answer the improve action
+    private static final long IMPROVE_TIMEOUT = 2000;
+    private static final Chat.MatchRule IMPROVE_FINISHED = Chat.MatchRule.contains("You improve the",
+            "You damage the",
+            "You will want to polish the",
+            "You need to polish the",
+            "You must use a mallet on the ",
+            "You must use a file to smooth ",
+            "You notice some notches you must carve away",
+            "could be improved with",
+            "some irregularities that must be removed with a stone chisel",
+            "has some stains that must be washed away",
+            "has an open seam that must be backstitched with an iron needle to improve",
+            "has a seam that needs to be hidden by slipstitching with an iron needle",
+            "has some excess cloth that needs to be cut away with a scissors",
+            "has some excess leather that needs to be cut away with a leather knife",
+            "needs some holes punched with an awl",
+            "has some holes and must be tailored with an iron needle to improve",
+            "in order to smooth out a quirk",
+            "some flaws that must be fixed",
+            "some flaws that must be removed",
+            "needs water",
+            "needs to be sharpened",
+            "has some dents that must be flattened",
+            "dipping it in water",
+            "doesn't need repairing",
+            "You repair the");
+
     private List<Tool> tools = new ArrayList<>();
     private List<InventoryListComponent> targets = new ArrayList<>();
     private float staminaThreshold;
-    private boolean improveActionFinished;
     private boolean groundMode;
     private ToolSkill toolSkill = ToolSkill.UNKNOWN;
 
@@ -90,10 +119,9 @@ public class ImproverBot extends Bot {
     public void work() throws Exception{
         setStaminaThreshold(0.8f);
         setTimeout(300);
-        registerEventProcessors();
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             if (targets.size() == 0 && !groundMode) {
                 sleep(timeout);
@@ -103,6 +131,7 @@ public class ImproverBot extends Bot {
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
             boolean improveInitiated = false;
+            CompletableFuture<String> improveFinished = null;
             if ((stamina+damage) > staminaThreshold && progress == 0f && creationWindow.getActionInUse() == 0) {
                 if (!groundMode) {
                     List<InventoryMetaItem> selectedItems = new ArrayList<>();
@@ -140,7 +169,7 @@ public class ImproverBot extends Bot {
 
                         if (itemToImprove.getDamage() > 0)
                             WurmHelper.hud.sendAction(PlayerAction.REPAIR, itemToImprove.getId());
-                        improveActionFinished = false;
+                        improveFinished = expectEvent(IMPROVE_FINISHED, IMPROVE_TIMEOUT);
                         improveInitiated = true;
                         WurmHelper.hud.getWorld().getServerConnection().sendAction(tool.itemId,
                                 new long[]{itemToImprove.getId()}, PlayerAction.IMPROVE);
@@ -178,7 +207,7 @@ public class ImproverBot extends Bot {
 
                     toolSkill=(groundSkill!=ToolSkill.UNKNOWN && groundSkill!=toolSkill)?groundSkill:toolSkill;
 
-                    improveActionFinished = false;
+                    improveFinished = expectEvent(IMPROVE_FINISHED, IMPROVE_TIMEOUT);
                     WurmHelper.hud.sendAction(PlayerAction.REPAIR, pickableUnit.getId());
                     for (Tool tool : getToolsBySkill(toolSkill)) {
                         if (tool.itemId == 0 || !tool.fixed) {
@@ -197,14 +226,10 @@ public class ImproverBot extends Bot {
                     }
                 }
                 // wait for improve completion
-                if (improveInitiated) {
-                    int counter = 0;
-                    while (!improveActionFinished && counter++ < 10) {
-                        sleep(200);
-                    }
-                    if (!improveActionFinished)
-                        Utils.consolePrint("Improve action didn't finish!");
-                }
+                if (improveInitiated && awaitEvent(improveFinished) == null)
+                    Utils.consolePrint("Improve action didn't finish!");
+                if (improveFinished != null)
+                    improveFinished.cancel(false);
             }
             sleep(timeout);
         }
@@ -284,34 +309,6 @@ public class ImproverBot extends Bot {
         return true;
     }
 
-    private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You improve the")
-                        || message.contains("You damage the")
-                        || message.contains("You will want to polish the")
-                        || message.contains("You need to polish the")
-                        || message.contains("You must use a mallet on the ")
-                        || message.contains("You must use a file to smooth ")
-                        || message.contains("You notice some notches you must carve away")
-                        || message.contains("could be improved with")
-                        || message.contains("some irregularities that must be removed with a stone chisel")
-                        || message.contains("has some stains that must be washed away")
-                        || message.contains("has an open seam that must be backstitched with an iron needle to improve")
-                        || message.contains("has a seam that needs to be hidden by slipstitching with an iron needle")
-                        || message.contains("has some excess cloth that needs to be cut away with a scissors")
-                        || message.contains("has some excess leather that needs to be cut away with a leather knife")
-                        || message.contains("needs some holes punched with an awl")
-                        || message.contains("has some holes and must be tailored with an iron needle to improve")
-                        || message.contains("in order to smooth out a quirk")
-                        || message.contains("some flaws that must be fixed")
-                        || message.contains("some flaws that must be removed")
-                        || message.contains("needs water")
-                        || message.contains("needs to be sharpened")
-                        || message.contains("has some dents that must be flattened")
-                        || message.contains("dipping it in water")
-                        || message.contains("doesn't need repairing")
-                        || message.contains("You repair the"),
-                () -> improveActionFinished = true);
-    }
 
 
 
@@ -2,6 +2,7 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.gui.*;
+import net.ildar.wurm.OutboundBatcher;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -27,7 +28,7 @@ public class ItemMoverBot extends Bot {
     @Override
     public void work() throws Exception{
         setTimeout(15000);
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             if (itemNames != null && itemNames.size() > 0 && (target != 0 || targetComponent != null)) {
                 List<InventoryMetaItem> invItems;
@@ -47,31 +48,33 @@ public class ItemMoverBot extends Bot {
                     }
                 }
                 if (itemsToMove.size() > 0) {
-                    long [] sources = Utils.getItemIds(itemsToMove);
+                    final long[] sources = Utils.getItemIds(itemsToMove);
                     switch (targetType) {
                         case Item:
-                            WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(target, sources);
+                            OutboundBatcher.submit(() -> WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(target, sources));
                             break;
                         case ContainerRoot:
                             InventoryMetaItem rootItem = Utils.getRootItem(targetComponent);
                             if (rootItem != null)
-                                WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(rootItem.getId(), sources);
+                                OutboundBatcher.submit(() -> WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(rootItem.getId(), sources));
                             else
                                 Utils.consolePrint("Unable to move items to the target container");
                             break;
                         case Containers:
                             List<InventoryMetaItem> containers = Utils.getInventoryItems(targetComponent, containerName);
                             if (containers != null && containers.size() > 0) {
+                                long[] remaining = sources;
                                 for (InventoryMetaItem container : containers)
                                     if (container.getChildren().size() < containerVolume) {
-                                        int quantityToMove = Math.min(containerVolume - container.getChildren().size(), sources.length);
-                                        WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(
-                                                container.getId(), Arrays.copyOfRange(sources, 0, quantityToMove));
-                                        sources = Arrays.copyOfRange(sources, quantityToMove, sources.length);
-                                        if (sources.length == 0)
+                                        int quantityToMove = Math.min(containerVolume - container.getChildren().size(), remaining.length);
+                                        long[] containerSources = Arrays.copyOfRange(remaining, 0, quantityToMove);
+                                        OutboundBatcher.submit(() -> WurmHelper.hud.getWorld().getServerConnection().sendMoveSomeItems(
+                                                container.getId(), containerSources));
+                                        remaining = Arrays.copyOfRange(remaining, quantityToMove, remaining.length);
+                                        if (remaining.length == 0)
                                             break;
                                     }
-                                if (sources.length > 0)
+                                if (remaining.length > 0)
                                     Utils.consolePrint("All containers are full!");
                             } else
                                 Utils.consolePrint("Didn't find any \"" + containerName + "\" containers inside target container");
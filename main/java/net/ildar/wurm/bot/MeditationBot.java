@@ -3,20 +3,27 @@ package net.ildar.wurm.bot;
 import com.wurmonline.client.renderer.PickableUnit;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
+import java.util.concurrent.CompletableFuture;
+
 @BotInfo(description =
         "Meditates on the carpet. Assumes that there are no restrictions on meditation skill.",
         abbreviation = "md")
 public class MeditationBot extends Bot {
+    private static final Chat.MatchRule REPAIR_INITIATED = Chat.MatchRule.contains("You repair",
+            "You start repairing",
+            "doesn't need repairing",
+            "you will start repairing");
+
     private long lastRepair;
     private long repairTimeout;
     private float staminaThreshold;
     private int clicks = 3;
-    private volatile boolean repairInitiated;
     private volatile int clicked;
 
     public MeditationBot() {
@@ -43,16 +50,15 @@ public class MeditationBot extends Bot {
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         PlayerAction meditationAction = new PlayerAction("",(short) 384, PlayerAction.ANYTHING);
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             if (Math.abs(lastRepair - System.currentTimeMillis()) > repairTimeout) {
-                repairInitiated = false;
-                int count = 0;
-                while(!repairInitiated && count++ < 30) {
+                CompletableFuture<String> repairInitiated = expectEvent(REPAIR_INITIATED, 30 * 1000);
+                while(!repairInitiated.isDone()) {
                     WurmHelper.hud.sendAction(PlayerAction.REPAIR, carpetId);
-                    sleep(1000);
+                    awaitEvent(repairInitiated, 1000);
                 }
-                if (repairInitiated) {
+                if (repairInitiated.getNow(null) != null) {
                     lastRepair = System.currentTimeMillis();
                 } else
                     Utils.consolePrint("Couldn't repair a meditation rug!");
@@ -71,12 +77,8 @@ public class MeditationBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You repair")
-                || message.contains("You start repairing")
-                || message.contains("doesn't need repairing")
-                || message.contains("you will start repairing"), () -> repairInitiated = true);
-        registerEventProcessor(message -> message.contains("You start meditating.")
-                || message.contains("you will start meditating again."), () -> clicked++);
+        registerEventProcessor(Chat.MatchRule.contains("You start meditating.",
+                "you will start meditating again."), () -> clicked++);
     }
 
     private void setRepairTimeout(String []input){
@@ -1,14 +1,18 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.GroundItemData;
 import com.wurmonline.client.renderer.PickableUnit;
 import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.*;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlotArbiter;
+import net.ildar.wurm.Chat;
+import net.ildar.wurm.GroundItemEvents;
 import net.ildar.wurm.Pair;
+import net.ildar.wurm.TileGrid;
+import net.ildar.wurm.WindowRegistry;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -81,11 +85,13 @@ public class MinerBot extends Bot {
                 + " with QL:" + pickaxe.getQuality()
                 + " DMG:" + pickaxe.getDamage());
         registerEventProcessors();
-        while (isActive()) {
+        GroundItemEvents.Subscription groundPiles = subscribeGroundItems(item -> item.renderable.getHoverName().toLowerCase().contains("pile of "));
+        while (nextIteration()) {
             waitOnPause();
+            groundPiles.poll();
             if (shardsCombining) {
                 List<ItemListWindow> piles = new ArrayList<>();
-                for (WurmComponent wurmComponent : WurmHelper.getInstance().components)
+                for (WurmComponent wurmComponent : WindowRegistry.getItemListWindows())
                     if (wurmComponent instanceof ItemListWindow
                             && !(wurmComponent instanceof InventoryWindow)) {
                         if (Utils.getRootItem(ReflectionUtil.getPrivateField(wurmComponent,
@@ -93,32 +99,14 @@ public class MinerBot extends Bot {
                             piles.add((ItemListWindow) wurmComponent);
                     }
 
-                ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
-                Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
-                        ReflectionUtil.getField(sscc.getClass(), "groundItems"));
                 int tileX = WurmHelper.hud.getWorld().getPlayerCurrentTileX();
                 int tileY = WurmHelper.hud.getWorld().getPlayerCurrentTileY();
                 List<Long> closePileIds = new ArrayList<>();
-                for (Map.Entry<Long, GroundItemCellRenderable> entry : new HashSet<>(groundItems.entrySet())) {
-                    GroundItemCellRenderable groundItem = entry.getValue();
-                    GroundItemData groundItemData = ReflectionUtil.getPrivateField(groundItem,
-                            ReflectionUtil.getField(groundItem.getClass(), "item"));
-                    int itemX = (int) (groundItemData.getX()/4);
-                    int itemY = (int) (groundItemData.getY()/4);
-                    if (itemX == tileX && itemY == tileY && groundItem.getHoverName().toLowerCase().contains("pile of ")) {
+                for (SpatialIndex.GroundItem tileItem : groundPiles.getItems()) {
+                    GroundItemCellRenderable groundItem = tileItem.renderable;
+                    if (TileGrid.toTile(tileItem.x) == tileX && TileGrid.toTile(tileItem.y) == tileY) {
                         closePileIds.add(groundItem.getId());
-                        if (piles.stream().noneMatch(pile -> {
-                            try {
-                                InventoryListComponent ilc = ReflectionUtil.getPrivateField(pile,
-                                        ReflectionUtil.getField(pile.getClass(), "component"));
-                                InventoryMetaItem rootItem = Utils.getRootItem(ilc);
-                                if (rootItem != null)
-                                    return rootItem.getId() == groundItem.getId();
-                            } catch (IllegalAccessException | NoSuchFieldException e) {
-                                e.printStackTrace();
-                            }
-                            return false;
-                        })) {
+                        if (WindowRegistry.getItemListWindow(groundItem.getId()) == null) {
                             if (verbose)
                                 Utils.consolePrint("Opening " + groundItem.getHoverName() + " " + groundItem.getId());
                             WurmHelper.hud.sendAction(PlayerAction.OPEN, groundItem.getId());
@@ -535,25 +523,25 @@ public class MinerBot extends Bot {
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("The cave walls sound hollow")
-                || message.contains("Another tunnel is too close")
-                || message.contains("The cave walls look very unstable.")
-                || message.contains("The cave walls look very unstable and dirt flows in")
-                || message.contains("A dangerous crack is starting to form on the floor")
-                || message.contains("The ground is too steep to mine at here")
-                || message.contains("The ground sounds strangely hollow and brittle")
-                || message.contains("You fail to produce anything here.")
-                || message.contains("You hear falling rocks from the other side of the wall.")
-                || message.contains("You cannot keep mining here. The rock is unusually hard")
-                || message.contains("The roof sounds strangely hollow and you notice dirt flowing in, so you stop mining")
-                || message.contains("The roof sounds dangerously weak and you must abandon this attempt")
-                || message.contains("You are not allowed to mine here")
-                || message.contains("The rock is too hard to mine")
-                || message.contains("on the surface disturbs your operation")
-                || message.contains("This tile is protected by the gods. You can not mine here")
-                || message.contains("A felled tree on the surface disturbs your operation")
-                || message.contains("Lowering the floor further would make the cavern unstable"), MinerBot::tileError);
-        registerEventProcessor(message -> message.contains("You mine "), () -> lastMining = System.currentTimeMillis());
+        registerEventProcessor(Chat.MatchRule.contains("The cave walls sound hollow",
+                "Another tunnel is too close",
+                "The cave walls look very unstable.",
+                "The cave walls look very unstable and dirt flows in",
+                "A dangerous crack is starting to form on the floor",
+                "The ground is too steep to mine at here",
+                "The ground sounds strangely hollow and brittle",
+                "You fail to produce anything here.",
+                "You hear falling rocks from the other side of the wall.",
+                "You cannot keep mining here. The rock is unusually hard",
+                "The roof sounds strangely hollow and you notice dirt flowing in, so you stop mining",
+                "The roof sounds dangerously weak and you must abandon this attempt",
+                "You are not allowed to mine here",
+                "The rock is too hard to mine",
+                "on the surface disturbs your operation",
+                "This tile is protected by the gods. You can not mine here",
+                "A felled tree on the surface disturbs your operation",
+                "Lowering the floor further would make the cavern unstable"), MinerBot::tileError);
+        registerEventProcessor(Chat.MatchRule.contains("You mine "), () -> lastMining = System.currentTimeMillis());
     }
 
     private void sendMineActions(int coords[]) {
@@ -601,11 +589,12 @@ public class MinerBot extends Bot {
     private void sendMineActions(long tileId) {
         if (verbose) Utils.consolePrint("Mining tile " + tileId);
 
+        //the clicks not sent yet are replaced by the clicks on the next tile
         for (int i = 0; i < clicks; i++)
-            WurmHelper.hud.getWorld().getServerConnection().sendAction(
+            submitAction(ActionSlotArbiter.Priority.BULK, i, () -> WurmHelper.hud.getWorld().getServerConnection().sendAction(
                     pickaxe.getId(),
                     new long[]{tileId},
-                    direction.action);
+                    direction.action));
     }
 
     private void setStaminaThreshold(String input[]) {
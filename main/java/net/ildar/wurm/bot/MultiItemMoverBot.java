@@ -12,6 +12,7 @@ import com.wurmonline.client.renderer.gui.WurmComponent;
 
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
+import net.ildar.wurm.NameMatcher;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.annotations.BotInfo;
@@ -42,7 +43,7 @@ public class MultiItemMoverBot extends Bot
     {
         setTimeout(5000);
         
-        while(isActive())
+        while(nextIteration())
         {
             waitOnPause();
             while(itemSets.size() == 0)
@@ -58,13 +59,13 @@ public class MultiItemMoverBot extends Bot
                 inventoryItems = getInventoryItems();
                 
                 List<InventoryMetaItem> toMove = new ArrayList<>();
+                NameMatcher matcher = set.getMatcher();
                 for(InventoryMetaItem item: inventoryItems)
                 {
                     if(item.getRarity() != 0) continue;
                     
-                    for(String matchName: set.itemNames)
-                        if(item.getBaseName().contains(matchName))
-                            toMove.add(item);
+                    if(matcher.matches(item.getBaseName()))
+                        toMove.add(item);
                 }
                 
                 set.moveItems(toMove);
@@ -195,6 +196,7 @@ public class MultiItemMoverBot extends Bot
         ItemSet selected = itemSets.get(selectedSet);
         for(String name: itemNames)
             selected.itemNames.add(name);
+        selected.matcher = null;
         Utils.consolePrint(
             "Items for set %d now: %s",
             selectedSet,
@@ -211,17 +213,31 @@ public class MultiItemMoverBot extends Bot
         }
         
         itemSets.get(selectedSet).itemNames.clear();
+        itemSets.get(selectedSet).matcher = null;
         Utils.consolePrint("Cleared items for set %d", selectedSet);
     }
     
     static class ItemSet
     {
         HashSet<String> itemNames = new HashSet<>();
+        // compiled from itemNames on first use, reset when the names change
+        volatile NameMatcher matcher;
         boolean isRootTarget;
         long target;
         InventoryListComponent targetComponent;
         InventoryMetaItem targetRoot;
         
+        NameMatcher getMatcher()
+        {
+            NameMatcher current = matcher;
+            if(current == null)
+            {
+                current = NameMatcher.compile(NameMatcher.Mode.SUBSTRING, itemNames);
+                matcher = current;
+            }
+            return current;
+        }
+        
         boolean haveTarget()
         {
             return target > 0 || isRootTarget && targetComponent != null && targetRoot != null;
@@ -3,26 +3,31 @@ package net.ildar.wurm.bot;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.NearTerrainDataBuffer;
 import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.TerrainDataBuffer;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
+import com.wurmonline.client.renderer.CreatureData;
 import com.wurmonline.client.renderer.TilePicker;
 import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
 import com.wurmonline.client.renderer.gui.CreationWindow;
@@ -36,7 +41,12 @@ import com.wurmonline.math.Vector2f;
 import com.wurmonline.shared.constants.PlayerAction;
 import com.wurmonline.shared.constants.StructureTypeEnum;
 
+import net.ildar.wurm.Chat;
+import net.ildar.wurm.JfrEvents;
+import net.ildar.wurm.SpatialIndex;
+import net.ildar.wurm.TileGrid;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils.Cell;
 import net.ildar.wurm.Utils.Vec2i;
@@ -45,47 +55,58 @@ import net.ildar.wurm.annotations.BotInfo;
 @BotInfo(abbreviation = "pt", description = "Bot that can perform pathfinding to accomplish its various tasks")
 public class PathingBot extends Bot
 {
-	final ForkJoinPool pool = new ForkJoinPool(
-		4,
-		new ForkJoinPool.ForkJoinWorkerThreadFactory()
-		{
-			int counter = 0;
-			
-			public ForkJoinWorkerThread newThread(ForkJoinPool pool)
-			{
-				ForkJoinWorkerThread thread = new WorkerThread(pool);
-				thread.setName(String.format(
-					"%s-worker-%s",
-					PathingBot.class.getSimpleName(),
-					counter++
-				));
-				return thread;
-			}
-		},
-		(thread, err) -> {
-			StringWriter writer = new StringWriter();
-			err.printStackTrace(new PrintWriter(writer));
-			Utils.consolePrint(
-				"%s: uncaught exception in task:\n%s",
-				PathingBot.class.getSimpleName(),
-				writer.toString()
-			);
-		},
-		true
-	);
-	
 	final HeadsUpDisplay hud = WurmHelper.hud;
     final World world = hud.getWorld();
 	final PlayerObj player = world.getPlayer();
 	
-	boolean exiting = false;
+	volatile boolean exiting = false;
+	
+	// search state is kept between paths, it takes a few megabytes
+	final PathSearch pathSearch = new PathSearch();
+	final CollisionCache collisionCache = new CollisionCache();
+	final ClusterGraph clusterGraph = new ClusterGraph();
+	final PathCache pathCache = new PathCache();
+	// searches done again when the terrain on the found path has changed
+	static final int maxPathAttempts = 3;
 	
 	static final float tickDelta = 1 / 6f;
 	float topSpeedMPS = (15f * 1000) / 60 / 60;
 	
-	InputHandler inPool(InputHandler fn)
+	// the commands block for as long as the bot walks, so each runs on a thread of its own
+	// instead of the threads of the bot or the shared scheduler. Only one of them walks at a time
+	final AtomicInteger runningTasks = new AtomicInteger();
+	static final AtomicInteger taskCounter = new AtomicInteger();
+	
+	InputHandler inTask(InputHandler fn)
 	{
-		return args -> pool.execute(() -> fn.handle(args));
+		return args -> {
+			runningTasks.incrementAndGet();
+			Thread thread = new Thread(
+				() -> {
+					try
+					{
+						fn.handle(args);
+					}
+					catch(Exception err)
+					{
+						StringWriter writer = new StringWriter();
+						err.printStackTrace(new PrintWriter(writer));
+						Utils.consolePrint(
+							"%s: uncaught exception in task:\n%s",
+							PathingBot.class.getSimpleName(),
+							writer.toString()
+						);
+					}
+					finally
+					{
+						runningTasks.decrementAndGet();
+					}
+				},
+				String.format("%s-task-%s", PathingBot.class.getSimpleName(), taskCounter.getAndIncrement())
+			);
+			thread.setDaemon(true);
+			thread.start();
+		};
 	}
 	
 	boolean waitOnPauseFJ()
@@ -100,12 +121,13 @@ public class PathingBot extends Bot
 	
 	public PathingBot()
 	{
-		registerInputHandler(Inputs.speed, inPool(this::cmdSpeed));
-		registerInputHandler(Inputs.walkto, inPool(this::cmdWalkto));
-		registerInputHandler(Inputs.follow, inPool(this::cmdFollow));
-		registerInputHandler(Inputs.murder, inPool(this::cmdMurder));
-		registerInputHandler(Inputs.groom, inPool(this::cmdGroom));
-		registerInputHandler(Inputs.shear, inPool(this::cmdShear));
+		registerInputHandler(Inputs.speed, inTask(this::cmdSpeed));
+		registerInputHandler(Inputs.walkto, inTask(this::cmdWalkto));
+		registerInputHandler(Inputs.follow, inTask(this::cmdFollow));
+		registerInputHandler(Inputs.murder, inTask(this::cmdMurder));
+		registerInputHandler(Inputs.groom, inTask(this::cmdGroom));
+		registerInputHandler(Inputs.shear, inTask(this::cmdShear));
+		registerInputHandler(Inputs.pathcache, this::cmdPathCache);
 	}
 	
 	void cmdSpeed(String[] args)
@@ -169,7 +191,7 @@ public class PathingBot extends Bot
 		walking = true;
 		
 		Utils.consolePrint("Pathfinding to %d,%d", target.x, target.y);
-		if(walkPath(() -> target) != WalkStatus.complete)
+		if(walkRoute(target) != WalkStatus.complete)
 			Utils.consolePrint("Couldn't find a path/interrupted");
 		walking = false;
 	}
@@ -253,6 +275,20 @@ public class PathingBot extends Bot
 	
 	boolean murdering = false;
 	static final Pattern petItemRe = Pattern.compile("\\w's pet$", Pattern.CASE_INSENSITIVE);
+	
+	/** Nearest creature accepted by the predicate, within the area the pathing can reach */
+	static CreatureCellRenderable findNearestCreature(BiPredicate<CreatureCellRenderable, CreatureData> predicate)
+	{
+		World world = WurmHelper.hud.getWorld();
+		SpatialIndex.Creature nearest = SpatialIndex.getNearestCreature(
+			world.getPlayerPosX(),
+			world.getPlayerPosY(),
+			CollisionCache.pvsRadius * 4,
+			creature -> predicate.test(creature.renderable, creature.data)
+		);
+		return nearest == null ? null : nearest.renderable;
+	}
+	
 	void cmdMurder(String[] args)
 	{
 		if(murdering)
@@ -288,7 +324,6 @@ public class PathingBot extends Bot
 		
 		murdering = true;
 		HashSet<Long> ignoredCreatures = new HashSet<>();
-		List<CreatureCellRenderable> creatures;
 		TargetWindow targetWindow = Utils.rethrow(() -> Utils.getField(hud, "targetWindow"));
 		CreatureCellRenderable target = null;
 		outer: while(!exiting && murdering)
@@ -347,7 +382,7 @@ public class PathingBot extends Bot
 				if(exiting || !murdering) break outer;
 			}
 			
-			creatures = Utils.findCreatures((creature, data) ->
+			target = findNearestCreature((creature, data) ->
 				!ignoredCreatures.contains(creature.getId()) &&
 				!creature.isItem() &&
 				creature.getKingdomId() == 0 &&
@@ -355,9 +390,6 @@ public class PathingBot extends Bot
 				!creature.getHoverName().startsWith("preserved") &&
 				!petItemRe.matcher(data.getHoverText()).find()
 			);
-			creatures.sort((l, r) -> Float.compare(Utils.sqdistFromPlayer(l), Utils.sqdistFromPlayer(r)));
-			
-			target = creatures.stream().findFirst().orElse(null);
 			if(target == null)
 			{
 				Utils.consolePrint("Can't find any creatures to target");
@@ -396,7 +428,6 @@ public class PathingBot extends Bot
 
 		grooming = true;
 		final HashSet<Long> ignoredCreatures = new HashSet<>();
-		List<CreatureCellRenderable> creatures;
 		final Cell<CreatureCellRenderable> target = new Cell<>(null);
 		final Cell<Boolean> started = new Cell<>(false);
 		final Cell<Boolean> done = new Cell<>(false);
@@ -412,7 +443,7 @@ public class PathingBot extends Bot
 
 			if(target.val == null)
 			{
-				creatures = Utils.findCreatures((creature, data) ->
+				target.val = findNearestCreature((creature, data) ->
 					!ignoredCreatures.contains(creature.getId()) &&
 					!creature.isItem() &&
 					creature.getKingdomId() == 0 &&
@@ -421,9 +452,6 @@ public class PathingBot extends Bot
 					Utils.isGroomableCreature(creature) &&
 					!petItemRe.matcher(data.getHoverText()).find()
 				);
-				creatures.sort((l, r) -> Float.compare(Utils.sqdistFromPlayer(l), Utils.sqdistFromPlayer(r)));
-
-				target.val = creatures.stream().findFirst().orElse(null);
 				if(target.val == null)
 				{
 					Utils.consolePrint("Can't find any creatures to groom");
@@ -525,7 +553,6 @@ public class PathingBot extends Bot
 
 		shearing = true;
 		final HashSet<Long> ignoredCreatures = new HashSet<>();
-		List<CreatureCellRenderable> creatures;
 		final Cell<CreatureCellRenderable> target = new Cell<>(null);
 		final Cell<Boolean> started = new Cell<>(false);
 		final Cell<Boolean> done = new Cell<>(false);
@@ -541,7 +568,7 @@ public class PathingBot extends Bot
 
 			if(target.val == null)
 			{
-				creatures = Utils.findCreatures((creature, data) ->
+				target.val = findNearestCreature((creature, data) ->
 					!ignoredCreatures.contains(creature.getId()) &&
 					!creature.isItem() &&
 					creature.getKingdomId() == 0 &&
@@ -550,9 +577,6 @@ public class PathingBot extends Bot
 					(creature.getHoverName().endsWith("sheep") || creature.getHoverName().endsWith("ram")) &&
 					!petItemRe.matcher(data.getHoverText()).find()
 				);
-				creatures.sort((l, r) -> Float.compare(Utils.sqdistFromPlayer(l), Utils.sqdistFromPlayer(r)));
-
-				target.val = creatures.stream().findFirst().orElse(null);
 				if(target.val == null)
 				{
 					Utils.consolePrint("Can't find any creatures to shear");
@@ -632,60 +656,77 @@ public class PathingBot extends Bot
 	@Override
 	void work() throws Exception
 	{
-		registerEventProcessor(
-			line -> line.contains("You start to tend to"),
-			() -> {
-				if(onGroomingStart != null)
-					onGroomingStart.run();
-			}
-		);
-		registerEventProcessor(
-			line ->
-				line.contains("You have now tended to") ||
-				line.contains("is already well tended") ||
-				line.contains("That would be illegal here.")
-			,
-			() -> {
-				if(onGroomingDone != null)
-					onGroomingDone.run();
-			}
-		);
-
-		registerEventProcessor(
-			line -> line.contains("You start shearing"),
-			() -> {
-				if(onShearingStart != null)
-					onShearingStart.run();
-			}
-		);
-		registerEventProcessor(
-			line ->
-				line.contains("You finish shearing") ||
-				line.contains("is already sheared"),
-			() -> {
-				if(onShearingDone != null)
-					onShearingDone.run();
-			}
-		);
-
-		try
+		workInSteps();
+	}
+	
+	@Override
+	public boolean hasSteps()
+	{
+		return true;
+	}
+	
+	boolean started = false;
+	long exitDeadline = 0;
+	
+	// the commands run as tasks, so the steps only register the event processors
+	// and wait for the tasks on exit
+	@Override
+	long step()
+	{
+		if(!started)
 		{
-			while(isActive())
-				// doesn't seem to be a way to donate this thread to the pool
-				// so we just sleep I guess
-				Thread.sleep(Long.MAX_VALUE);
+			started = true;
+			registerEventProcessor(
+				Chat.MatchRule.contains("You start to tend to"),
+				() -> {
+					if(onGroomingStart != null)
+						onGroomingStart.run();
+				}
+			);
+			registerEventProcessor(
+				Chat.MatchRule.contains("You have now tended to",
+					"is already well tended",
+					"That would be illegal here."),
+				() -> {
+					if(onGroomingDone != null)
+						onGroomingDone.run();
+				}
+			);
+
+			registerEventProcessor(
+				Chat.MatchRule.contains("You start shearing"),
+				() -> {
+					if(onShearingStart != null)
+						onShearingStart.run();
+				}
+			);
+			registerEventProcessor(
+				Chat.MatchRule.contains("You finish shearing",
+					"is already sheared"),
+				() -> {
+					if(onShearingDone != null)
+						onShearingDone.run();
+				}
+			);
 		}
-		catch(InterruptedException err) {}
-		finally
+		
+		if(isActive())
+			return Long.MAX_VALUE;
+		
+		if(!exiting)
 		{
 			exiting = true;
-			pool.shutdown();
-			if(!pool.awaitTermination(10, TimeUnit.SECONDS))
-				Utils.consolePrint(
-					"%s: task pool did not shut down within 10 seconds",
-					PathingBot.class.getSimpleName()
-				);
+			exitDeadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
 		}
+		if(runningTasks.get() == 0)
+			return -1;
+		if(System.currentTimeMillis() < exitDeadline)
+			return 100;
+		Utils.consolePrint(
+			"%s: tasks did not finish within 10 seconds",
+			PathingBot.class.getSimpleName()
+		);
+		return -1;
 	}
 	
 	static enum WalkStatus
@@ -697,7 +738,7 @@ public class PathingBot extends Bot
 	}
 	
 	// move in straight line from current tile to given tile, without checking for collisions
-	WalkStatus walkLine(int tileX, int tileY)
+	WalkStatus walkLine(int tileX, int tileY, BooleanSupplier cancelled)
 	{
 		// always move from center to center
 		Utils.moveToCenter();
@@ -706,13 +747,19 @@ public class PathingBot extends Bot
 		Vector2f plyPos = new Vector2f(world.getPlayerPosX(), world.getPlayerPosY());
 		Vector2f totalMovement = dest.subtract(plyPos);
 		float dist = totalMovement.length();
+		if(dist > 0)
+		{
+			// legs of a smoothed path go at any angle, 0 is north
+			final float yaw = (float)Math.toDegrees(Math.atan2(totalMovement.x, -totalMovement.y));
+			Utils.turnPlayer(yaw < 0 ? yaw + 360 : yaw, Float.NaN);
+		}
 		
 		Vector2f direction = totalMovement.normalize();
 		Vector2f step = new Vector2f();
 		
 		while(!exiting && dist > 0)
 		{
-			if(!waitOnPauseFJ())
+			if(!waitOnPauseFJ() || cancelled.getAsBoolean())
 				return WalkStatus.interrupted;
 			
 			float toMove = Math.min(dist, topSpeedMPS * tickDelta);
@@ -735,23 +782,11 @@ public class PathingBot extends Bot
 			final Vec2i pathTarget = target.get();
 			final Collection<Vec2i> path = findPath(pathTarget.x, pathTarget.y);
 			if(path == null) return WalkStatus.noPath;
-			boolean startingTile = true;
+			// a leg can be long, so a moving target is checked on every step
+			final BooleanSupplier targetMoved = () -> !pathTarget.equals(target.get());
 			for(Vec2i tileCoords: path)
-			{
-				if(startingTile)
-					startingTile = false;
-				else
-				{
-					final Dir dir = Dir.of(new Vec2i(tileCoords.x - world.getPlayerCurrentTileX(), tileCoords.y - world.getPlayerCurrentTileY()));
-					Utils.turnPlayer(dir.yaw(), Float.NaN);
-				}
-				
-				if(walkLine(tileCoords.x, tileCoords.y) == WalkStatus.interrupted)
+				if(walkLine(tileCoords.x, tileCoords.y, targetMoved) == WalkStatus.interrupted)
 					return WalkStatus.interrupted;
-				
-				if(!pathTarget.equals(target.get()))
-					return WalkStatus.interrupted;
-			}
 			return WalkStatus.complete;
 		}
 		catch(Exception err)
@@ -762,149 +797,122 @@ public class PathingBot extends Bot
 		}
 	}
 	
+	// walks to a possibly distant tile in segments between clusters of the collision cache,
+	// a target out of the PVS is approached as close as the known terrain allows and then planned again
+	WalkStatus walkRoute(Vec2i target)
+	{
+		int bestEstimate = Integer.MAX_VALUE;
+		while(!exiting)
+		{
+			final Vec2i start = new Vec2i(world.getPlayerCurrentTileX(), world.getPlayerCurrentTileY());
+			if(start.equals(target))
+				return WalkStatus.complete;
+			
+			// final long startTime = System.nanoTime(); // perf logging
+			final ClusterGraph.Route route;
+			synchronized(collisionCache)
+			{
+				collisionCache.refresh();
+				clusterGraph.update(collisionCache);
+				route = clusterGraph.plan(collisionCache, start.x, start.y, target.x, target.y);
+			}
+			// final long endTime = System.nanoTime();
+			// Utils.consolePrint("Planned route in %.4fms", (endTime - startTime) / 1_000_000.0);
+			// clusters are only joined in the middle of the open stretches of their borders,
+			// so a narrow way through can be missed; the tile search will find it if there is one
+			if(route == null)
+				return walkPath(() -> target);
+			if(!route.complete)
+			{
+				// stop when the known terrain doesn't get us any closer
+				final int estimate = route.waypoints.isEmpty() ?
+					Integer.MAX_VALUE :
+					ClusterGraph.estimate(route.waypoints.get(route.waypoints.size() - 1), target.x, target.y);
+				if(estimate >= bestEstimate || route.waypoints.isEmpty())
+					return WalkStatus.noPath;
+				bestEstimate = estimate;
+			}
+			
+			for(Vec2i waypoint: route.waypoints)
+			{
+				final WalkStatus res = walkPath(() -> waypoint);
+				if(res != WalkStatus.complete)
+					return res;
+			}
+			if(route.complete)
+				return WalkStatus.complete;
+		}
+		return WalkStatus.interrupted;
+	}
+	
 	ArrayList<Vec2i> findPath(int tileX, int tileY)
 	{
 		// final long startTime = System.nanoTime(); // perf logging
-		final Vec2i startTile = new Vec2i(world.getPlayerCurrentTileX(), world.getPlayerCurrentTileY());
-		final Vec2i endTile = new Vec2i(tileX, tileY);
-		CollisionCache cache = new CollisionCache();
-		cache.refresh();
-		
-		// all nodes that have been created; nodes may be removed from path but added again later
-		// if a cheaper path through them has been found
-		HashMap<Vec2i, PathNode> populated = new HashMap<>();
-		
-		// set of coords in queue, to elide (linear) search
-		HashSet<Vec2i> enqueued = new HashSet<>();
-		
-		PriorityQueue<PathNode> queue = new PriorityQueue<>(PathNode::compare);
-		queue.add(new PathNode(startTile, 0, endTile, null));
-		PathNode endNode = null; // node for goal tile
-		while(!queue.isEmpty())
+		final Object event = JfrEvents.begin(JfrEvents.Type.PATH_SEARCH);
+		ArrayList<Vec2i> path;
+		int nodesExpanded = 0;
+		synchronized(collisionCache)
 		{
-			PathNode head = queue.poll();
-			if(head.pos.equals(endTile))
+			collisionCache.refresh();
+			final int startX = world.getPlayerCurrentTileX();
+			final int startY = world.getPlayerCurrentTileY();
+			path = pathCache.get(collisionCache, startX, startY, tileX, tileY);
+			if(path != null)
 			{
-				endNode = head;
-				break;
+				if(event != null)
+					JfrEvents.commit(event, 0, path.size(), true);
+				return path;
 			}
-			enqueued.remove(head.pos);
 			
-			for(Dir dir: Dir.values())
+			int attempts = 0;
+			do
 			{
-				if(dir == Dir.all)
-					continue;
-				
-				final Vec2i neighborTile = new Vec2i(head.pos.x + dir.offset.x, head.pos.y + dir.offset.y);
-				if(!cache.isPassable(neighborTile.x, neighborTile.y, Dir.all))
-					continue;
-				
-				final boolean edgePassable;
-				if(!dir.diagonal())
-					edgePassable = cache.isPassable(head.pos.x, head.pos.y, dir);
-				else
-				{
-					switch(dir)
-					{
-						// - north and east borders of current tile must be passable
-						// - both tiles to north and east must be passable
-						// - east border of north tile/north border of east tile must be passable
-						// similarly for other cases
-						case northeast:
-							edgePassable =
-								cache.isPassable(head.pos.x, head.pos.y, Dir.north) &&
-								cache.isPassable(head.pos.x, head.pos.y, Dir.east) &&
-								cache.isPassable(head.pos.x + Dir.east.offset.x, head.pos.y, Dir.all) &&
-								cache.isPassable(head.pos.x + Dir.east.offset.x, head.pos.y, Dir.north) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.north.offset.y, Dir.all) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.north.offset.y, Dir.east)
-							;
-							break;
-						case northwest:
-							edgePassable =
-								cache.isPassable(head.pos.x, head.pos.y, Dir.north) &&
-								cache.isPassable(head.pos.x, head.pos.y, Dir.west) &&
-								cache.isPassable(head.pos.x + Dir.west.offset.x, head.pos.y, Dir.all) &&
-								cache.isPassable(head.pos.x + Dir.west.offset.x, head.pos.y, Dir.north) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.north.offset.y, Dir.all) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.north.offset.y, Dir.west)
-							;
-							break;
-						case southeast:
-							edgePassable =
-								cache.isPassable(head.pos.x, head.pos.y, Dir.south) &&
-								cache.isPassable(head.pos.x, head.pos.y, Dir.east) &&
-								cache.isPassable(head.pos.x + Dir.east.offset.x, head.pos.y, Dir.all) &&
-								cache.isPassable(head.pos.x + Dir.east.offset.x, head.pos.y, Dir.south) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.south.offset.y, Dir.all) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.south.offset.y, Dir.east)
-							;
-							break;
-						case southwest:
-							edgePassable =
-								cache.isPassable(head.pos.x, head.pos.y, Dir.south) &&
-								cache.isPassable(head.pos.x, head.pos.y, Dir.west) &&
-								cache.isPassable(head.pos.x + Dir.west.offset.x, head.pos.y, Dir.all) &&
-								cache.isPassable(head.pos.x + Dir.west.offset.x, head.pos.y, Dir.south) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.south.offset.y, Dir.all) &&
-								cache.isPassable(head.pos.x, head.pos.y + Dir.south.offset.y, Dir.west)
-							;
-							break;
-						default:
-							throw new IllegalArgumentException(
-								String.format("Dir %s is not diagonal", dir)
-							);
-					}
-				}
-				
-				final int cost = edgePassable ? head.distFromStart + 1 : Integer.MAX_VALUE;
-				PathNode neighbor;
-				if(!populated.containsKey(neighborTile))
-				{
-					neighbor = new PathNode(neighborTile, cost, endTile, head);
-					populated.put(neighborTile, neighbor);
-					if(edgePassable)
-					{
-						queue.add(neighbor);
-						enqueued.add(neighbor.pos);
-					}
-				}
-				else
-					neighbor = populated.get(neighborTile);
-				
-				if(edgePassable && cost < neighbor.distFromStart)
-				{
-					neighbor.distFromStart = cost;
-					neighbor.previous = head;
-					if(!enqueued.contains(neighborTile))
-					{
-						queue.add(neighbor);
-						enqueued.add(neighborTile);
-					}
-				}
+				path = pathSearch.find(collisionCache, startX, startY, tileX, tileY);
+				nodesExpanded += pathSearch.expanded;
+			}
+			while(path != null && !collisionCache.verifyTerrain(path) && ++attempts < maxPathAttempts);
+			if(path != null)
+			{
+				final ArrayList<Vec2i> legs = PathSearch.smooth(collisionCache, path);
+				pathCache.put(collisionCache, path, legs);
+				path = legs;
 			}
 		}
-		
-		if(endNode == null)
+		if(event != null)
+			JfrEvents.commit(event, nodesExpanded, path == null ? 0 : path.size(), false);
+		if(path == null)
 		{
 			Utils.consolePrint("Couldn't find viable path");
 			return null;
 		}
-		
-		// trace path backwards from goal -> player
-		ArrayList<Vec2i> path = new ArrayList<>();
-		PathNode node = endNode;
-		while(node != null)
-		{
-			path.add(node.pos);
-			node = node.previous;
-		}
-		Collections.reverse(path); // needed path is player -> goal
 		// final long endTime = System.nanoTime();
 		// Utils.consolePrint("Found path in %.4fms", (endTime - startTime) / 1_000_000.0);
 		return path;
 	}
 	
+	void cmdPathCache(String[] args)
+	{
+		if(args != null && args.length > 0 && args[0].equals("clear"))
+		{
+			pathCache.clear();
+			Utils.consolePrint("Path cache cleared");
+			return;
+		}
+		
+		synchronized(pathCache)
+		{
+			final int lookups = pathCache.hits + pathCache.misses;
+			Utils.consolePrint(
+				"Path cache: %d paths, %d hits, %d misses (%d out of date), hit rate %.1f%%",
+				pathCache.entries.size(),
+				pathCache.hits,
+				pathCache.misses,
+				pathCache.stale,
+				lookups == 0 ? 0f : 100f * pathCache.hits / lookups
+			);
+		}
+	}
+	
 	static enum Inputs implements Bot.InputKey
 	{
 		speed("Set speed at which bot will move, in km/h", "real"),
@@ -913,6 +921,7 @@ public class PathingBot extends Bot
 		murder("Find and murder nearby creatures", ""),
 		groom("Find and groom nearby creatures", ""),
 		shear("Find and shear nearby sheep", ""),
+		pathcache("Print hit and miss counts of the path cache, or clear it", "[clear]"),
 		;
 		
 		String description;
@@ -939,15 +948,6 @@ public class PathingBot extends Bot
 	}
 }
 
-// unnecessarily protected ctor :facepalm:
-class WorkerThread extends ForkJoinWorkerThread
-{
-	public WorkerThread(ForkJoinPool pool)
-	{
-		super(pool);
-	}
-}
-
 // that this isn't in the stdlib is typical Java >:|
 class SleepBlocker implements ForkJoinPool.ManagedBlocker
 {
@@ -1051,46 +1051,810 @@ enum Dir
 	}
 }
 
-class PathNode
+// A* over the tiles of a collision cache. All per-tile state is kept in flat arrays indexed by
+// the position of the tile in the PVS, so a search doesn't allocate anything until the path is built.
+// The arrays are reused between searches, tiles stamped with an older generation count as unvisited.
+class PathSearch
 {
-	public Vec2i pos;
-	public int distFromStart;
-	public double distToEnd;
-	public PathNode previous = null;
+	static final int tileCount = CollisionCache.pvsDiameter * CollisionCache.pvsDiameter;
+	static final Dir[] neighborDirs = {
+		Dir.northeast, Dir.northwest, Dir.southeast, Dir.southwest,
+		Dir.north, Dir.east, Dir.south, Dir.west,
+	};
+	
+	final int[] generations = new int[tileCount];
+	final int[] distFromStart = new int[tileCount];
+	final int[] cost = new int[tileCount]; // distance from start + heuristic
+	final int[] previous = new int[tileCount];
+	final int[] heapIndex = new int[tileCount]; // -1 if not in queue
+	final int[] heap = new int[tileCount];
+	int heapSize;
+	int generation;
+	// nodes taken from the queue by the last search
+	int expanded;
+	
+	synchronized ArrayList<Vec2i> find(CollisionCache cache, int startX, int startY, int endX, int endY)
+	{
+		expanded = 0;
+		final int start = cache.indexInPVS(startX, startY);
+		if(start < 0)
+			return null;
+		
+		if(++generation <= 0)
+		{
+			Arrays.fill(generations, 0);
+			generation = 1;
+		}
+		heapSize = 0;
+		
+		final int goal = cache.indexInPVS(endX, endY);
+		populate(start, 0, -1, endX, endY, cache);
+		push(start);
+		while(heapSize > 0)
+		{
+			final int head = pop();
+			expanded++;
+			if(head == goal)
+				return tracePath(goal, cache);
+			
+			final int headX = cache.tileXOf(head);
+			final int headY = cache.tileYOf(head);
+			for(Dir dir: neighborDirs)
+			{
+				final int neighborX = headX + dir.offset.x;
+				final int neighborY = headY + dir.offset.y;
+				if(!cache.isPassable(neighborX, neighborY, Dir.all))
+					continue;
+				
+				final boolean edgePassable = isEdgePassable(cache, headX, headY, dir);
+				final int neighbor = cache.indexInPVS(neighborX, neighborY);
+				final int dist = edgePassable ? distFromStart[head] + 1 : Integer.MAX_VALUE;
+				if(generations[neighbor] != generation)
+				{
+					populate(neighbor, dist, head, endX, endY, cache);
+					if(edgePassable)
+						push(neighbor);
+				}
+				else if(edgePassable && dist < distFromStart[neighbor])
+				{
+					cost[neighbor] -= distFromStart[neighbor] - dist;
+					distFromStart[neighbor] = dist;
+					previous[neighbor] = head;
+					if(heapIndex[neighbor] < 0)
+						push(neighbor);
+					else
+						siftUp(heapIndex[neighbor]);
+				}
+			}
+		}
+		return null;
+	}
+	
+	static boolean isEdgePassable(CollisionCache cache, int x, int y, Dir dir)
+	{
+		if(!dir.diagonal())
+			return cache.isPassable(x, y, dir);
+		
+		// - north and east borders of current tile must be passable
+		// - both tiles to north and east must be passable
+		// - east border of north tile/north border of east tile must be passable
+		// similarly for other cases
+		final Dir vertical = dir.offset.y < 0 ? Dir.north : Dir.south;
+		final Dir horizontal = dir.offset.x > 0 ? Dir.east : Dir.west;
+		return
+			cache.isPassable(x, y, vertical) &&
+			cache.isPassable(x, y, horizontal) &&
+			cache.isPassable(x + horizontal.offset.x, y, Dir.all) &&
+			cache.isPassable(x + horizontal.offset.x, y, vertical) &&
+			cache.isPassable(x, y + vertical.offset.y, Dir.all) &&
+			cache.isPassable(x, y + vertical.offset.y, horizontal)
+		;
+	}
+	
+	// string pulling: keeps only the tiles of the path where it has to turn around an obstacle,
+	// every other tile is skipped by walking straight from the last kept one
+	static ArrayList<Vec2i> smooth(CollisionCache cache, ArrayList<Vec2i> path)
+	{
+		if(path.size() <= 2)
+			return path;
+		
+		final ArrayList<Vec2i> legs = new ArrayList<>();
+		Vec2i anchor = path.get(0);
+		legs.add(anchor);
+		for(int i = 2; i < path.size(); i++)
+		{
+			// the previous tile is always in sight, it is a step of the path
+			if(!isInSight(cache, anchor, path.get(i)))
+			{
+				anchor = path.get(i - 1);
+				legs.add(anchor);
+			}
+		}
+		legs.add(path.get(path.size() - 1));
+		return legs;
+	}
+	
+	static boolean isInSight(CollisionCache cache, Vec2i from, Vec2i to)
+	{
+		return traceLine(from, to, (x, y, dir) ->
+			isEdgePassable(cache, x, y, dir) &&
+			cache.isPassable(x + dir.offset.x, y + dir.offset.y, Dir.all)
+		);
+	}
+	
+	interface StepVisitor
+	{
+		// returns false to stop the trace
+		boolean visit(int x, int y, Dir dir);
+	}
+	
+	// visits the steps between all the tiles the line between the tile centers touches,
+	// a line going exactly through a corner makes a diagonal step
+	// returns false if the visitor stopped the trace
+	static boolean traceLine(Vec2i from, Vec2i to, StepVisitor visitor)
+	{
+		final int countX = Math.abs(to.x - from.x);
+		final int countY = Math.abs(to.y - from.y);
+		final int stepX = Integer.signum(to.x - from.x);
+		final int stepY = Integer.signum(to.y - from.y);
+		final Dir horizontal = Dir.of(new Vec2i(stepX, 0));
+		final Dir vertical = Dir.of(new Vec2i(0, stepY));
+		final Dir diagonal = Dir.of(new Vec2i(stepX, stepY));
+		int x = from.x;
+		int y = from.y;
+		for(int crossedX = 0, crossedY = 0; crossedX < countX || crossedY < countY;)
+		{
+			// which of the next vertical and horizontal tile borders the line crosses first
+			final long order = (long)(2 * crossedX + 1) * countY - (long)(2 * crossedY + 1) * countX;
+			final Dir dir;
+			if(order == 0)
+			{
+				dir = diagonal;
+				crossedX++;
+				crossedY++;
+			}
+			else if(order < 0)
+			{
+				dir = horizontal;
+				crossedX++;
+			}
+			else
+			{
+				dir = vertical;
+				crossedY++;
+			}
+			if(!visitor.visit(x, y, dir))
+				return false;
+			x += dir.offset.x;
+			y += dir.offset.y;
+		}
+		return true;
+	}
+	
+	void populate(int tile, int dist, int from, int endX, int endY, CollisionCache cache)
+	{
+		final int dx = cache.tileXOf(tile) - endX;
+		final int dy = cache.tileYOf(tile) - endY;
+		generations[tile] = generation;
+		distFromStart[tile] = dist;
+		// unreachable tiles never get to the queue, so their cost may overflow
+		cost[tile] = dist + dx * dx + dy * dy;
+		previous[tile] = from;
+		heapIndex[tile] = -1;
+	}
+	
+	ArrayList<Vec2i> tracePath(int goal, CollisionCache cache)
+	{
+		// trace path backwards from goal -> player
+		ArrayList<Vec2i> path = new ArrayList<>();
+		for(int tile = goal; tile >= 0; tile = previous[tile])
+			path.add(new Vec2i(cache.tileXOf(tile), cache.tileYOf(tile)));
+		Collections.reverse(path); // needed path is player -> goal
+		return path;
+	}
+	
+	void push(int tile)
+	{
+		heap[heapSize] = tile;
+		heapIndex[tile] = heapSize;
+		siftUp(heapSize++);
+	}
+	
+	int pop()
+	{
+		final int head = heap[0];
+		heapIndex[head] = -1;
+		final int last = heap[--heapSize];
+		if(heapSize > 0)
+		{
+			heap[0] = last;
+			heapIndex[last] = 0;
+			siftDown(0);
+		}
+		return head;
+	}
+	
+	void siftUp(int pos)
+	{
+		final int tile = heap[pos];
+		while(pos > 0)
+		{
+			final int parentPos = (pos - 1) >> 1;
+			final int parent = heap[parentPos];
+			if(cost[parent] <= cost[tile])
+				break;
+			heap[pos] = parent;
+			heapIndex[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = tile;
+		heapIndex[tile] = pos;
+	}
+	
+	void siftDown(int pos)
+	{
+		final int tile = heap[pos];
+		final int half = heapSize >> 1;
+		while(pos < half)
+		{
+			int childPos = 2 * pos + 1;
+			if(childPos + 1 < heapSize && cost[heap[childPos + 1]] < cost[heap[childPos]])
+				childPos++;
+			final int child = heap[childPos];
+			if(cost[tile] <= cost[child])
+				break;
+			heap[pos] = child;
+			heapIndex[child] = pos;
+			pos = childPos;
+		}
+		heap[pos] = tile;
+		heapIndex[tile] = pos;
+	}
+}
+
+// Recently found paths by their start and goal tiles, least recently used ones are dropped first.
+// A path is stored with the collision cache stamp it was found at and is dropped once any tile
+// it walks over, or any border it crosses, has changed after that.
+class PathCache
+{
+	static final int capacity = 64;
+	
+	final Map<Long, CachedPath> entries = new LinkedHashMap<Long, CachedPath>(capacity * 2, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest)
+		{
+			return size() > capacity;
+		}
+	};
+	int hits;
+	int misses;
+	// misses because the stored path was out of date
+	int stale;
+	
+	static class CachedPath
+	{
+		final ArrayList<Vec2i> tiles;
+		final ArrayList<Vec2i> legs;
+		final int stamp;
+		
+		CachedPath(ArrayList<Vec2i> tiles, ArrayList<Vec2i> legs, int stamp)
+		{
+			this.tiles = tiles;
+			this.legs = legs;
+			this.stamp = stamp;
+		}
+	}
+	
+	// 16 bits per coordinate is enough for the largest maps
+	static long key(int startX, int startY, int goalX, int goalY)
+	{
+		return
+			(long)(startX & 0xFFFF) << 48 |
+			(long)(startY & 0xFFFF) << 32 |
+			(long)(goalX & 0xFFFF) << 16 |
+			(long)(goalY & 0xFFFF)
+		;
+	}
+	
+	// returns the smoothed path, or null if there is none or it is out of date
+	// the cache must be refreshed and locked by the caller
+	synchronized ArrayList<Vec2i> get(CollisionCache cache, int startX, int startY, int goalX, int goalY)
+	{
+		final long key = key(startX, startY, goalX, goalY);
+		final CachedPath entry = entries.get(key);
+		if(entry == null)
+		{
+			misses++;
+			return null;
+		}
+		
+		// terrain has no change events, reading it again stamps the tiles that changed
+		cache.verifyTerrain(entry.tiles);
+		boolean valid = true;
+		for(int i = 1; i < entry.legs.size() && valid; i++)
+			valid = PathSearch.traceLine(entry.legs.get(i - 1), entry.legs.get(i), (x, y, dir) ->
+				// a step reads the bits of the tiles of its bounding box only
+				cache.isUnchangedSince(x, y, entry.stamp) &&
+				cache.isUnchangedSince(x + dir.offset.x, y, entry.stamp) &&
+				cache.isUnchangedSince(x, y + dir.offset.y, entry.stamp) &&
+				cache.isUnchangedSince(x + dir.offset.x, y + dir.offset.y, entry.stamp)
+			);
+		if(!valid)
+		{
+			entries.remove(key);
+			stale++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.legs;
+	}
+	
+	synchronized void put(CollisionCache cache, ArrayList<Vec2i> tiles, ArrayList<Vec2i> legs)
+	{
+		final Vec2i start = tiles.get(0);
+		final Vec2i goal = tiles.get(tiles.size() - 1);
+		entries.put(key(start.x, start.y, goal.x, goal.y), new CachedPath(tiles, legs, cache.stamp));
+	}
 	
-	public PathNode(Vec2i pos, int distFromStart, Vec2i goal, PathNode previous)
+	synchronized void clear()
 	{
-		this.pos = pos;
-		this.distFromStart = distFromStart;
-		this.distToEnd = Math.pow(pos.x - goal.x, 2) + Math.pow(pos.y - goal.y, 2);
-		this.previous = previous;
+		entries.clear();
 	}
+}
 
-	public double cost()
+// Coarse routes over 16x16 tile clusters of the collision cache, HPA* style.
+// Neighbouring clusters are connected at the middle of every open stretch of their shared border,
+// and the steps between the entrances of a cluster are precomputed, so a route is searched over
+// a few thousand entrances instead of every tile. Clusters are kept by their world coordinates
+// and built again only when their collision bits, or the bits of a neighbour, have changed.
+class ClusterGraph
+{
+	static final int clusterShift = 4;
+	static final int clusterSize = 1 << clusterShift;
+	static final Dir[] sides = { Dir.north, Dir.east, Dir.south, Dir.west };
+	// open stretches of a border this long get an entrance at both ends instead of the middle
+	static final int longStretch = 4;
+	
+	final Map<Long, Cluster> clusters = new HashMap<>();
+	// entrances by their tiles
+	final Map<Long, Entrance> entrances = new HashMap<>();
+	int searchId;
+	// tile bounds of the known clusters
+	Vec2i knownMins = new Vec2i();
+	Vec2i knownMaxs = new Vec2i();
+	
+	static class Cluster
+	{
+		final int clusterX;
+		final int clusterY;
+		// collision bits of every row the cluster was built from
+		final long[] bits = new long[clusterSize];
+		final ArrayList<Entrance> entrances = new ArrayList<>();
+		// the directions of PathSearch.neighborDirs that can be moved to from every tile, staying in the cluster
+		final byte[] moves = new byte[clusterSize * clusterSize];
+		// steps between the entrances inside the cluster, -1 if not reachable
+		int[][] distances;
+		
+		Cluster(int clusterX, int clusterY)
+		{
+			this.clusterX = clusterX;
+			this.clusterY = clusterY;
+		}
+	}
+	
+	static class Entrance
+	{
+		final Cluster cluster;
+		final int index;
+		final Vec2i tile;
+		// the tile across the border
+		final Vec2i exit;
+		// search state, valid while the search id matches the one of the current search
+		int searchId;
+		int distFromStart;
+		Entrance previous;
+		
+		Entrance(Cluster cluster, int index, Vec2i tile, Vec2i exit)
+		{
+			this.cluster = cluster;
+			this.index = index;
+			this.tile = tile;
+			this.exit = exit;
+		}
+	}
+	
+	static class Route
+	{
+		// tiles where the route enters the next cluster, ending with the target if the route is complete
+		final ArrayList<Vec2i> waypoints;
+		// false if the target is out of the collision cache and the route only gets closer to it
+		final boolean complete;
+		
+		Route(ArrayList<Vec2i> waypoints, boolean complete)
+		{
+			this.waypoints = waypoints;
+			this.complete = complete;
+		}
+	}
+	
+	static class Step
+	{
+		final Entrance entrance;
+		final int distFromStart;
+		final int cost;
+		
+		Step(Entrance entrance, int distFromStart, int cost)
+		{
+			this.entrance = entrance;
+			this.distFromStart = distFromStart;
+			this.cost = cost;
+		}
+	}
+	
+	static long key(int clusterX, int clusterY)
+	{
+		return TileGrid.pack(clusterX, clusterY);
+	}
+	
+	Cluster clusterOf(int tileX, int tileY)
+	{
+		return clusters.get(key(tileX >> clusterShift, tileY >> clusterShift));
+	}
+	
+	// brings the clusters in line with the collision cache, which must be refreshed already
+	void update(CollisionCache cache)
+	{
+		// only the clusters lying entirely in the PVS are used
+		final int minX = (cache.mins.x + clusterSize - 1) >> clusterShift;
+		final int minY = (cache.mins.y + clusterSize - 1) >> clusterShift;
+		final int maxX = ((cache.mins.x + CollisionCache.pvsDiameter) >> clusterShift) - 1;
+		final int maxY = ((cache.mins.y + CollisionCache.pvsDiameter) >> clusterShift) - 1;
+		
+		knownMins = new Vec2i(minX << clusterShift, minY << clusterShift);
+		knownMaxs = new Vec2i(((maxX + 1) << clusterShift) - 1, ((maxY + 1) << clusterShift) - 1);
+		
+		// clusters whose entrances or distances have to be built again
+		final Set<Long> changed = new HashSet<>();
+		clusters.values().removeIf(cluster -> {
+			if(cluster.clusterX >= minX && cluster.clusterX <= maxX && cluster.clusterY >= minY && cluster.clusterY <= maxY)
+				return false;
+			addWithNeighbors(changed, cluster.clusterX, cluster.clusterY);
+			for(Entrance entrance: cluster.entrances)
+				entrances.remove(TileGrid.pack(entrance.tile.x, entrance.tile.y));
+			return true;
+		});
+		for(int clusterY = minY; clusterY <= maxY; clusterY++)
+			for(int clusterX = minX; clusterX <= maxX; clusterX++)
+			{
+				final long key = key(clusterX, clusterY);
+				Cluster cluster = clusters.get(key);
+				if(cluster == null)
+				{
+					cluster = new Cluster(clusterX, clusterY);
+					clusters.put(key, cluster);
+					readBits(cache, cluster);
+					addWithNeighbors(changed, clusterX, clusterY);
+				}
+				else if(readBits(cache, cluster))
+					addWithNeighbors(changed, clusterX, clusterY);
+			}
+		
+		for(long key: changed)
+		{
+			final Cluster cluster = clusters.get(key);
+			if(cluster != null)
+				build(cache, cluster);
+		}
+	}
+	
+	static void addWithNeighbors(Set<Long> keys, int clusterX, int clusterY)
+	{
+		keys.add(key(clusterX, clusterY));
+		for(Dir side: sides)
+			keys.add(key(clusterX + side.offset.x, clusterY + side.offset.y));
+	}
+	
+	// returns true if the bits have changed
+	static boolean readBits(CollisionCache cache, Cluster cluster)
+	{
+		final int x = cluster.clusterX << clusterShift;
+		final int y = cluster.clusterY << clusterShift;
+		boolean changed = false;
+		for(int row = 0; row < clusterSize; row++)
+		{
+			final long bits = cache.rowBits(x, y + row);
+			if(bits != cluster.bits[row])
+			{
+				cluster.bits[row] = bits;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	void build(CollisionCache cache, Cluster cluster)
+	{
+		for(Entrance entrance: cluster.entrances)
+			entrances.remove(TileGrid.pack(entrance.tile.x, entrance.tile.y));
+		cluster.entrances.clear();
+		for(Dir side: sides)
+			addEntrances(cache, cluster, side);
+		readMoves(cache, cluster);
+		
+		final int count = cluster.entrances.size();
+		cluster.distances = new int[count][];
+		for(int i = 0; i < count; i++)
+		{
+			final Entrance entrance = cluster.entrances.get(i);
+			final int[] steps = stepsFrom(cache, cluster, entrance.tile.x, entrance.tile.y, false);
+			cluster.distances[i] = new int[count];
+			for(int j = 0; j < count; j++)
+				cluster.distances[i][j] = steps[localIndex(cluster, cluster.entrances.get(j).tile.x, cluster.entrances.get(j).tile.y)];
+			entrances.put(TileGrid.pack(entrance.tile.x, entrance.tile.y), entrance);
+		}
+	}
+	
+	// entrances on every stretch of the border that can be crossed
+	void addEntrances(CollisionCache cache, Cluster cluster, Dir side)
+	{
+		if(!clusters.containsKey(key(cluster.clusterX + side.offset.x, cluster.clusterY + side.offset.y)))
+			return;
+		
+		final int x = cluster.clusterX << clusterShift;
+		final int y = cluster.clusterY << clusterShift;
+		// border tiles are walked along x for north/south sides and along y for east/west
+		final int baseX = side == Dir.east ? x + clusterSize - 1 : x;
+		final int baseY = side == Dir.south ? y + clusterSize - 1 : y;
+		final int stepX = side.offset.x == 0 ? 1 : 0;
+		final int stepY = side.offset.y == 0 ? 1 : 0;
+		int stretchStart = -1;
+		for(int i = 0; i <= clusterSize; i++)
+		{
+			final int tileX = baseX + stepX * i;
+			final int tileY = baseY + stepY * i;
+			final boolean open =
+				i < clusterSize &&
+				cache.isPassable(tileX, tileY, Dir.all) &&
+				cache.isPassable(tileX + side.offset.x, tileY + side.offset.y, Dir.all) &&
+				cache.isPassable(tileX, tileY, side)
+			;
+			if(open && stretchStart < 0)
+				stretchStart = i;
+			else if(!open && stretchStart >= 0)
+			{
+				final int stretchEnd = i - 1;
+				if(stretchEnd - stretchStart + 1 >= longStretch)
+				{
+					addEntrance(cluster, side, baseX + stepX * stretchStart, baseY + stepY * stretchStart);
+					addEntrance(cluster, side, baseX + stepX * stretchEnd, baseY + stepY * stretchEnd);
+				}
+				else
+				{
+					final int middle = (stretchStart + stretchEnd) / 2;
+					addEntrance(cluster, side, baseX + stepX * middle, baseY + stepY * middle);
+				}
+				stretchStart = -1;
+			}
+		}
+	}
+	
+	static void readMoves(CollisionCache cache, Cluster cluster)
+	{
+		final int x = cluster.clusterX << clusterShift;
+		final int y = cluster.clusterY << clusterShift;
+		for(int tileY = y; tileY < y + clusterSize; tileY++)
+			for(int tileX = x; tileX < x + clusterSize; tileX++)
+				cluster.moves[localIndex(cluster, tileX, tileY)] = cache.isPassable(tileX, tileY, Dir.all) ?
+					(byte)movesOf(cache, cluster, tileX, tileY) :
+					0;
+	}
+	
+	// the moves are checked as in PathSearch, where the tile itself doesn't have to be passable
+	static int movesOf(CollisionCache cache, Cluster cluster, int tileX, int tileY)
+	{
+		final int x = cluster.clusterX << clusterShift;
+		final int y = cluster.clusterY << clusterShift;
+		int moves = 0;
+		for(int i = 0; i < PathSearch.neighborDirs.length; i++)
+		{
+			final Dir dir = PathSearch.neighborDirs[i];
+			final int neighborX = tileX + dir.offset.x;
+			final int neighborY = tileY + dir.offset.y;
+			if(neighborX < x || neighborX >= x + clusterSize || neighborY < y || neighborY >= y + clusterSize)
+				continue;
+			if(cache.isPassable(neighborX, neighborY, Dir.all) && PathSearch.isEdgePassable(cache, tileX, tileY, dir))
+				moves |= 1 << i;
+		}
+		return moves;
+	}
+	
+	static void addEntrance(Cluster cluster, Dir side, int tileX, int tileY)
+	{
+		final Vec2i tile = new Vec2i(tileX, tileY);
+		final Vec2i exit = new Vec2i(tileX + side.offset.x, tileY + side.offset.y);
+		cluster.entrances.add(new Entrance(cluster, cluster.entrances.size(), tile, exit));
+	}
+	
+	static int localIndex(Cluster cluster, int tileX, int tileY)
+	{
+		return ((tileY - (cluster.clusterY << clusterShift)) << clusterShift) | (tileX - (cluster.clusterX << clusterShift));
+	}
+	
+	// breadth first search inside the cluster, every move costs one step as in PathSearch;
+	// the player may stand on a tile that isn't passable, so that is allowed for the first tile
+	static int[] stepsFrom(CollisionCache cache, Cluster cluster, int tileX, int tileY, boolean anyFirstTile)
 	{
-		return distFromStart + distToEnd;
+		final int[] steps = new int[clusterSize * clusterSize];
+		Arrays.fill(steps, -1);
+		final boolean passable = cache.isPassable(tileX, tileY, Dir.all);
+		if(!passable && !anyFirstTile)
+			return steps;
+		
+		final int[] queue = new int[clusterSize * clusterSize];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = localIndex(cluster, tileX, tileY);
+		steps[queue[0]] = 0;
+		while(head < tail)
+		{
+			final int current = queue[head++];
+			final int moves = current == queue[0] && !passable ? movesOf(cache, cluster, tileX, tileY) : cluster.moves[current];
+			for(int i = 0; i < PathSearch.neighborDirs.length; i++)
+			{
+				if((moves & (1 << i)) == 0)
+					continue;
+				final Dir dir = PathSearch.neighborDirs[i];
+				final int neighbor = current + (dir.offset.y << clusterShift) + dir.offset.x;
+				if(steps[neighbor] >= 0)
+					continue;
+				steps[neighbor] = steps[current] + 1;
+				queue[tail++] = neighbor;
+			}
+		}
+		return steps;
 	}
 	
-	public static int compare(PathNode lhs, PathNode rhs)
+	static int estimate(Vec2i tile, int goalX, int goalY)
 	{
-		return Double.compare(lhs.cost(), rhs.cost());
+		return Math.max(Math.abs(tile.x - goalX), Math.abs(tile.y - goalY));
+	}
+	
+	// returns null if there is no route, or if the target is in the known clusters and can't be reached
+	Route plan(CollisionCache cache, int startX, int startY, int goalX, int goalY)
+	{
+		final Cluster startCluster = clusterOf(startX, startY);
+		if(startCluster == null)
+			return null;
+		final Cluster goalCluster = clusterOf(goalX, goalY);
+		
+		final int[] fromStart = stepsFrom(cache, startCluster, startX, startY, true);
+		final int[] toGoal = goalCluster == null ? null : stepsFrom(cache, goalCluster, goalX, goalY, false);
+		
+		int bestGoalDist = Integer.MAX_VALUE;
+		Entrance bestGoalVia = null;
+		if(goalCluster == startCluster && fromStart[localIndex(startCluster, goalX, goalY)] >= 0)
+			bestGoalDist = fromStart[localIndex(startCluster, goalX, goalY)];
+		// for the routes towards a target out of the known clusters
+		Entrance closest = null;
+		int closestEstimate = estimate(new Vec2i(startX, startY), goalX, goalY);
+		// no entrance can get closer than the edge of the known clusters
+		final int edgeEstimate = Math.max(
+			Math.max(knownMins.x - goalX, goalX - knownMaxs.x),
+			Math.max(knownMins.y - goalY, goalY - knownMaxs.y)
+		);
+		
+		searchId++;
+		final PriorityQueue<Step> queue = new PriorityQueue<>((l, r) -> Integer.compare(l.cost, r.cost));
+		for(Entrance entrance: startCluster.entrances)
+		{
+			final int dist = fromStart[localIndex(startCluster, entrance.tile.x, entrance.tile.y)];
+			if(dist >= 0)
+				relax(queue, null, entrance, dist, goalX, goalY);
+		}
+		
+		while(!queue.isEmpty())
+		{
+			final Step step = queue.poll();
+			final Entrance entrance = step.entrance;
+			if(step.distFromStart > entrance.distFromStart)
+				continue;
+			if(step.cost >= bestGoalDist)
+				break;
+			
+			if(entrance.cluster == goalCluster)
+			{
+				final int toGoalDist = toGoal[localIndex(goalCluster, entrance.tile.x, entrance.tile.y)];
+				if(toGoalDist >= 0 && step.distFromStart + toGoalDist < bestGoalDist)
+				{
+					bestGoalDist = step.distFromStart + toGoalDist;
+					bestGoalVia = entrance;
+				}
+			}
+			final int entranceEstimate = estimate(entrance.tile, goalX, goalY);
+			if(entranceEstimate < closestEstimate)
+			{
+				closest = entrance;
+				closestEstimate = entranceEstimate;
+			}
+			// the first entrance popped near the edge facing the target is on the shortest way there
+			if(goalCluster == null && entranceEstimate <= edgeEstimate + clusterSize)
+				break;
+			
+			final Cluster cluster = entrance.cluster;
+			for(Entrance other: cluster.entrances)
+			{
+				final int dist = cluster.distances[entrance.index][other.index];
+				if(other != entrance && dist >= 0)
+					relax(queue, entrance, other, step.distFromStart + dist, goalX, goalY);
+			}
+			final Entrance across = entrances.get(TileGrid.pack(entrance.exit.x, entrance.exit.y));
+			if(across != null)
+				relax(queue, entrance, across, step.distFromStart + 1, goalX, goalY);
+		}
+		
+		final boolean complete = bestGoalDist != Integer.MAX_VALUE;
+		if(!complete && goalCluster != null)
+			return null;
+		
+		final ArrayList<Vec2i> waypoints = new ArrayList<>();
+		final Entrance last = complete ? bestGoalVia : closest;
+		for(Entrance entrance = last; entrance != null; entrance = entrance.previous)
+		{
+			final Entrance from = entrance.previous;
+			// moves inside a cluster are left to the path search
+			if(entrance == last && !complete || from != null && from.cluster != entrance.cluster)
+				waypoints.add(entrance.tile);
+		}
+		Collections.reverse(waypoints);
+		if(complete)
+			waypoints.add(new Vec2i(goalX, goalY));
+		return new Route(waypoints, complete);
+	}
+	
+	void relax(PriorityQueue<Step> queue, Entrance from, Entrance to, int dist, int goalX, int goalY)
+	{
+		if(to.searchId == searchId && to.distFromStart <= dist)
+			return;
+		to.searchId = searchId;
+		to.distFromStart = dist;
+		to.previous = from;
+		queue.add(new Step(to, dist, dist + estimate(to.tile, goalX, goalY)));
 	}
 }
 
+// Passability of the tiles around the player, kept between path searches.
+// Tiles are stored modulo the PVS size, so when the player moves only the rows and columns
+// that entered the PVS are computed. Fences and house walls are compared with the previous refresh
+// and only the tiles of the added or removed ones are updated.
 class CollisionCache
 {
-	static final int pvsDiameter = 512;
+	static final int pvsShift = 9;
+	static final int pvsDiameter = 1 << pvsShift;
 	static final int pvsRadius = pvsDiameter >> 1;
-	static final byte flagNorth = 1 << 0;
-	static final byte flagWest = 1 << 1;
-	static final byte flagTile = 1 << 2;
+	static final int pvsMask = pvsDiameter - 1;
+	// there are no terrain change events, the whole PVS is computed again once it gets this old
+	static final long terrainMaxAgeMS = 60 * 1000;
 	
 	World world;
-	ServerConnectionListenerClass serverConnection;
-	Map<Long, StructureData> structures;
 	TerrainDataBuffer groundBuffer;
 	
-	byte[] cache;
+	// one bit per tile
+	final long[] terrainBlocked = new long[pvsDiameter * pvsDiameter / 64];
+	final long[] structureBlocked = new long[pvsDiameter * pvsDiameter / 64];
+	final long[] northBlocked = new long[pvsDiameter * pvsDiameter / 64];
+	final long[] westBlocked = new long[pvsDiameter * pvsDiameter / 64];
+	
+	// stamp of the last change of the bits of every tile, cached paths are valid while their tiles are older
+	final int[] tileStamps = new int[pvsDiameter * pvsDiameter];
+	int stamp;
+	// every tile counts as changed at the last full rebuild
+	int rebuildStamp;
+	
+	// fences and house walls by their structure data
+	Map<Object, Blocker> blockers = new IdentityHashMap<>();
+	long terrainTime;
 	Vec2i origin;
 	Vec2i mins;
 	Vec2i maxs;
@@ -1098,76 +1862,105 @@ class CollisionCache
 	public CollisionCache()
 	{
 		world = WurmHelper.hud.getWorld();
-		serverConnection = world.getServerConnection().getServerConnectionListener();
-		structures = Utils.rethrow(() -> Utils.getField(serverConnection, "structures"));
 		groundBuffer = world.getNearTerrainBuffer();	
-		
-		cache = new byte[pvsDiameter * pvsDiameter];
 	}
 	
 	public void refresh()
 	{
+		final Object event = JfrEvents.begin(JfrEvents.Type.COLLISION_REFRESH);
+		final Vec2i oldMins = mins;
+		final long now = System.currentTimeMillis();
 		origin = new Vec2i(world.getPlayerCurrentTileX(), world.getPlayerCurrentTileY());
 		mins = new Vec2i(origin.x - pvsRadius, origin.y - pvsRadius);
 		maxs = new Vec2i(origin.x + pvsRadius, origin.y + pvsRadius);
 		
-		for(int i = 0; i < cache.length; i++)
-			cache[i] = 0;
-		
-		for(int y = mins.y; y < maxs.y; y++)
-			for(int x = mins.x; x < maxs.x; x++)
-				if(!isTilePassable(x, y))
-					insert(x, y, -1);
-		
-		for(StructureData v: structures.values())
+		final boolean rebuild = oldMins == null || now - terrainTime > terrainMaxAgeMS;
+		if(rebuild)
 		{
-			if(v instanceof FenceData)
-				insert((FenceData)v);
-			else if(v instanceof HouseData)
-				insert((HouseData)v);
+			Arrays.fill(terrainBlocked, 0);
+			Arrays.fill(structureBlocked, 0);
+			Arrays.fill(northBlocked, 0);
+			Arrays.fill(westBlocked, 0);
+			blockers.clear();
+			terrainTime = now;
+			rebuildStamp = ++stamp;
+			for(int y = mins.y; y < maxs.y; y++)
+				for(int x = mins.x; x < maxs.x; x++)
+					updateTerrain(x, y);
 		}
+		else if(!oldMins.equals(mins))
+		{
+			for(int y = mins.y; y < maxs.y; y++)
+			{
+				final boolean rowEntered = !inWindow(oldMins, oldMins.x, y);
+				for(int x = mins.x; x < maxs.x; x++)
+				{
+					if(!rowEntered && inWindow(oldMins, x, oldMins.y))
+						continue;
+					final int index = index(x, y);
+					clear(structureBlocked, index);
+					clear(northBlocked, index);
+					clear(westBlocked, index);
+					touch(index);
+					updateTerrain(x, y);
+				}
+			}
+			for(Blocker blocker: blockers.values())
+				if(inWindow(mins, blocker.tileX, blocker.tileY) && !inWindow(oldMins, blocker.tileX, blocker.tileY))
+					apply(blocker);
+		}
+		
+		updateStructures();
+		if(event != null)
+			JfrEvents.commit(event, rebuild);
 	}
 	
-	public boolean isPassable(int tileX, int tileY, Dir direction)
+	void updateStructures()
 	{
-		final Vec2i pos;
-		try { pos  = posInPVS(tileX, tileY); }
-		catch(IllegalArgumentException e) { return false; }
+		Map<Object, Blocker> current = new IdentityHashMap<>(blockers.size() * 2);
+		for(StructureData v: WorldSnapshot.get().getStructures())
+		{
+			if(v instanceof FenceData)
+				add((FenceData)v, current);
+			else if(v instanceof HouseData)
+			{
+				Map<Long, HouseWallData> walls = Utils.rethrow(() -> Utils.getField(v, "walls"));
+				for(HouseWallData wall: walls.values())
+					add(wall, current);
+			}
+		}
 		
-		final int index = pos.y * pvsDiameter + pos.x;
-		final byte flags = cache[index];
-		switch(direction)
+		// the flags of a tile are shared by its blockers, so the tiles of removed ones are built again
+		Set<Long> changedTiles = new HashSet<>();
+		for(Map.Entry<Object, Blocker> entry: blockers.entrySet())
+			if(!current.containsKey(entry.getKey()))
+				changedTiles.add(TileGrid.pack(entry.getValue().tileX, entry.getValue().tileY));
+		final Map<Object, Blocker> previous = blockers;
+		blockers = current;
+		if(!changedTiles.isEmpty())
 		{
-			case all:
-				return (flags & flagTile) == 0;
-			case north:
-				return (flags & flagNorth) == 0;
-			case west:
-				return (flags & flagWest) == 0;
-			
-			// collision data is only recorded for north/west, east/south must check
-			// opposite borders of adjacent tile
-			case east:
-				try { return isPassable(tileX + Dir.east.offset.x, tileY, Dir.west); }
-				catch(IllegalArgumentException err)
-				{
-					Utils.consolePrint(err.getMessage());
-					return false;
-				}
-			case south:
-				try { return isPassable(tileX, tileY + Dir.south.offset.y, Dir.north); }
-				catch(IllegalArgumentException err)
-				{
-					Utils.consolePrint(err.getMessage());
-					return false;
-				}
-			
-			default:
-				throw new RuntimeException("unknown direction");
+			for(long tile: changedTiles)
+			{
+				final int tileX = (int)(tile >> 32);
+				final int tileY = (int)tile;
+				if(!inWindow(mins, tileX, tileY))
+					continue;
+				final int index = index(tileX, tileY);
+				clear(structureBlocked, index);
+				clear(northBlocked, index);
+				clear(westBlocked, index);
+				touch(index);
+			}
+			for(Blocker blocker: current.values())
+				if(changedTiles.contains(TileGrid.pack(blocker.tileX, blocker.tileY)))
+					apply(blocker);
 		}
+		for(Map.Entry<Object, Blocker> entry: current.entrySet())
+			if(!previous.containsKey(entry.getKey()))
+				apply(entry.getValue());
 	}
 	
-	void insert(FenceData fence)
+	void add(FenceData fence, Map<Object, Blocker> current)
 	{
 		// for now pathing is restricted to layer 0
 		if(fence.getRealHeight() != 0)
@@ -1176,7 +1969,8 @@ class CollisionCache
 		if(isPassableStructure(fence.getType().type))
 			return;
 		
-		insert(fence.getTileX(), fence.getTileY(), fence.getDir());
+		Blocker blocker = blockers.get(fence);
+		current.put(fence, blocker != null ? blocker : new Blocker(fence.getTileX(), fence.getTileY(), fence.getDir()));
 		
 		// for debugging
 		/* final Vec2i pos = new Vec2i(fence.getTileX(), fence.getTileY());
@@ -1189,14 +1983,7 @@ class CollisionCache
 		); */
 	}
 	
-	void insert(HouseData house)
-	{
-		Map<Long, HouseWallData> walls = Utils.rethrow(() -> Utils.getField(house, "walls"));
-		for(HouseWallData wall: walls.values())
-			insert(wall);
-	}
-	
-	void insert(HouseWallData wall)
+	void add(HouseWallData wall, Map<Object, Blocker> current)
 	{
 		// for now pathing is restricted to layer 0
 		if(wall.getRealHeight() != 0)
@@ -1205,7 +1992,8 @@ class CollisionCache
 		if(isPassableStructure(wall.getType().type))
 			return;
 		
-		insert(wall.getTileX(), wall.getTileY(), wall.getDir());
+		Blocker blocker = blockers.get(wall);
+		current.put(wall, blocker != null ? blocker : new Blocker(wall.getTileX(), wall.getTileY(), wall.getDir()));
 		
 		// for debugging
 		/* final Vec2i pos = new Vec2i(wall.getTileX(), wall.getTileY());
@@ -1218,40 +2006,162 @@ class CollisionCache
 		); */
 	}
 	
-	void insert(int tileX, int tileY, int wurmDirection)
+	void apply(Blocker blocker)
 	{
-		if(wurmDirection < 0)
-		{
-			setFlags(tileX, tileY, flagTile);
+		if(!inWindow(mins, blocker.tileX, blocker.tileY))
 			return;
+		
+		final int index = index(blocker.tileX, blocker.tileY);
+		touch(index);
+		if(blocker.wurmDirection < 0)
+			set(structureBlocked, index);
+		else if(blocker.wurmDirection == 0)
+			set(northBlocked, index);
+		else
+			set(westBlocked, index);
+	}
+	
+	void updateTerrain(int tileX, int tileY)
+	{
+		final int index = index(tileX, tileY);
+		final boolean wasBlocked = get(terrainBlocked, index);
+		if(isTilePassable(tileX, tileY))
+			clear(terrainBlocked, index);
+		else
+			set(terrainBlocked, index);
+		if(wasBlocked != get(terrainBlocked, index))
+			touch(index);
+	}
+	
+	void touch(int index)
+	{
+		tileStamps[index] = ++stamp;
+	}
+	
+	// false if the tile is out of the PVS or its bits may have changed after the given stamp
+	boolean isUnchangedSince(int tileX, int tileY, int since)
+	{
+		final int index = indexInPVS(tileX, tileY);
+		return index >= 0 && rebuildStamp <= since && tileStamps[index] <= since;
+	}
+	
+	// terrain is not watched, so the tiles of a found path are checked again before it is used
+	// returns false if any of them changed
+	boolean verifyTerrain(Collection<Vec2i> path)
+	{
+		boolean unchanged = true;
+		for(Vec2i tile: path)
+		{
+			final int index = indexInPVS(tile.x, tile.y);
+			if(index < 0)
+				continue;
+			final boolean wasBlocked = get(terrainBlocked, index);
+			updateTerrain(tile.x, tile.y);
+			if(wasBlocked != get(terrainBlocked, index))
+				unchanged = false;
 		}
+		return unchanged;
+	}
+	
+	public boolean isPassable(int tileX, int tileY, Dir direction)
+	{
+		final int index = indexInPVS(tileX, tileY);
+		if(index < 0)
+			return false;
 		
-		final boolean north = wurmDirection == 0;
-		setFlags(tileX, tileY, north ? flagNorth : flagWest);
+		switch(direction)
+		{
+			case all:
+				return !get(terrainBlocked, index) && !get(structureBlocked, index);
+			case north:
+				return !get(northBlocked, index);
+			case west:
+				return !get(westBlocked, index);
+			
+			// collision data is only recorded for north/west, east/south must check
+			// opposite borders of adjacent tile
+			case east:
+				return isPassable(tileX + Dir.east.offset.x, tileY, Dir.west);
+			case south:
+				return isPassable(tileX, tileY + Dir.south.offset.y, Dir.north);
+			
+			default:
+				throw new RuntimeException("unknown direction");
+		}
+	}
+	
+	static boolean inWindow(Vec2i mins, int tileX, int tileY)
+	{
+		return
+			tileX - mins.x >= 0 && tileX - mins.x < pvsDiameter &&
+			tileY - mins.y >= 0 && tileY - mins.y < pvsDiameter
+		;
+	}
+	
+	// terrain, structure, north and west bits of 16 tiles starting at a multiple of 16, 16 bits each
+	long rowBits(int tileX, int tileY)
+	{
+		final int index = index(tileX, tileY);
+		final int word = index >>> 6;
+		final int shift = index & 63;
+		return
+			((terrainBlocked[word] >>> shift) & 0xFFFF) |
+			((structureBlocked[word] >>> shift) & 0xFFFF) << 16 |
+			((northBlocked[word] >>> shift) & 0xFFFF) << 32 |
+			((westBlocked[word] >>> shift) & 0xFFFF) << 48
+		;
+	}
+	
+	static int index(int tileX, int tileY)
+	{
+		return ((tileY & pvsMask) << pvsShift) | (tileX & pvsMask);
+	}
+	
+	// index of the tile in the cache, or -1 if it is out of the PVS
+	int indexInPVS(int tileX, int tileY)
+	{
+		if(!inWindow(mins, tileX, tileY))
+			return -1;
+		return index(tileX, tileY);
 	}
 	
-	void setFlags(int tileX, int tileY, int newFlags)
+	int tileXOf(int index)
 	{
-		final Vec2i pos = posInPVS(tileX, tileY);
-		final int index = pos.y * pvsDiameter + pos.x;
-		byte flags = cache[index];
-		flags |= newFlags;
-		cache[index] = flags;
+		return mins.x + (((index & pvsMask) - mins.x) & pvsMask);
 	}
 	
-	Vec2i posInPVS(int tileX, int tileY)
+	int tileYOf(int index)
 	{
-		Vec2i pos = new Vec2i((tileX - origin.x) + pvsRadius, (tileY - origin.y) + pvsRadius);
-		if(pos.x < 0 || pos.x >= pvsDiameter || pos.y < 0 || pos.y >= pvsDiameter)
-			throw new IllegalArgumentException(String.format(
-				"Trying to get position %s (local %s) that is out of bounds for PVS at %s (from %s to %s)",
-				new Vec2i(tileX, tileY),
-				pos,
-				origin,
-				mins,
-				maxs
-			));
-		return pos;
+		return mins.y + (((index >>> pvsShift) - mins.y) & pvsMask);
+	}
+	
+	static boolean get(long[] bits, int index)
+	{
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	static void set(long[] bits, int index)
+	{
+		bits[index >>> 6] |= 1L << index;
+	}
+	
+	static void clear(long[] bits, int index)
+	{
+		bits[index >>> 6] &= ~(1L << index);
+	}
+	
+	static class Blocker
+	{
+		final int tileX;
+		final int tileY;
+		final int wurmDirection;
+		
+		Blocker(int tileX, int tileY, int wurmDirection)
+		{
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.wurmDirection = wurmDirection;
+		}
 	}
 	
 	boolean isPassableStructure(StructureTypeEnum type)
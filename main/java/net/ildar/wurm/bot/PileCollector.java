@@ -1,25 +1,24 @@
 package net.ildar.wurm.bot;
 
-import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.GroundItemData;
-import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.InventoryListComponent;
-import com.wurmonline.client.renderer.gui.InventoryWindow;
 import com.wurmonline.client.renderer.gui.ItemListWindow;
 import com.wurmonline.client.renderer.gui.WurmComponent;
 import com.wurmonline.shared.constants.PlayerAction;
 
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
+import net.ildar.wurm.GroundItemEvents;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WindowRegistry;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.annotations.BotInfo;
 
@@ -35,6 +34,8 @@ public class PileCollector extends Bot {
     private String targetItemName = "dirt";
     private float minQuality = 0;
     private String customContainer = null;
+    //the names of the items were changed, the ground items are filtered again
+    private volatile boolean subscriptionOutdated = false;
     
     // items picked up from ground that failed predicates and were dropped back to ground
     private Set<Long> ignoredItems = new HashSet<>();
@@ -50,42 +51,36 @@ public class PileCollector extends Bot {
     @Override
     protected void work() throws Exception {
         setTimeout(500);
-        ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
         Set<Long> pickedUpItems = new HashSet<>();
-        while (isActive()) {
+        GroundItemEvents.Subscription subscription = subscribeGroundItems(this::isWanted);
+        while (nextIteration()) {
             waitOnPause();
-            Map<Long, GroundItemCellRenderable> groundItemsMap = ReflectionUtil.getPrivateField(sscc,
-                    ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-            List<GroundItemCellRenderable> groundItems = groundItemsMap.entrySet().stream().map(Map.Entry::getValue).collect(Collectors.toList());
+            if (subscriptionOutdated) {
+                subscriptionOutdated = false;
+                unsubscribeGroundItems(subscription);
+                subscription = subscribeGroundItems(this::isWanted);
+            }
+            subscription.poll();
             float x = WurmHelper.hud.getWorld().getPlayerPosX();
             float y = WurmHelper.hud.getWorld().getPlayerPosY();
-            if (groundItems.size() > 0 && targetLc != null) {
-                try {
-                    for (GroundItemCellRenderable groundItem : groundItems) {
-                        GroundItemData groundItemData = ReflectionUtil.getPrivateField(groundItem,
-                                ReflectionUtil.getField(groundItem.getClass(), "item"));
-                        float itemX = groundItemData.getX();
-                        float itemY = groundItemData.getY();
-                        long itemID = groundItemData.getId();
-                        if ((Math.sqrt(Math.pow(itemX - x, 2) + Math.pow(itemY - y, 2)) <= MAX_DISTANCE)) {
-                            final boolean isContainer = shouldSearch(groundItemData.getName().toLowerCase());
-                            if (isContainer && !openedPiles.contains(itemID))
-                                WurmHelper.hud.sendAction(PlayerAction.OPEN, itemID);
-                            else if (!isContainer && groundItemData.getName().contains(targetItemName) && !ignoredItems.contains(itemID)) {
-                                // we can't get quality of items on the ground (not synced with client)
-                                // so they have to be temporarily moved into player inventory
-                                // (not sure why this was also done previously, moving ground items directly works?)
-                                WurmHelper.hud.sendAction(PlayerAction.TAKE, itemID);
-                                pickedUpItems.add(itemID);
-                            }
-                        }
+            if (!subscription.getItems().isEmpty() && targetLc != null) {
+                for (SpatialIndex.GroundItem groundItem : subscription.getItemsNear(x, y, MAX_DISTANCE, null)) {
+                    GroundItemData groundItemData = groundItem.data;
+                    long itemID = groundItemData.getId();
+                    final boolean isContainer = shouldSearch(groundItemData.getName().toLowerCase());
+                    if (isContainer && !openedPiles.contains(itemID))
+                        WurmHelper.hud.sendAction(PlayerAction.OPEN, itemID);
+                    else if (!isContainer && groundItemData.getName().contains(targetItemName) && !ignoredItems.contains(itemID)) {
+                        // we can't get quality of items on the ground (not synced with client)
+                        // so they have to be temporarily moved into player inventory
+                        // (not sure why this was also done previously, moving ground items directly works?)
+                        WurmHelper.hud.sendAction(PlayerAction.TAKE, itemID);
+                        pickedUpItems.add(itemID);
                     }
-                } catch (ConcurrentModificationException ignored) {}
+                }
                 
-                for(WurmComponent wurmComponent : WurmHelper.getInstance().components) {
+                for(WurmComponent wurmComponent : WindowRegistry.getItemListWindows()) {
                     final boolean isContainerWindow = wurmComponent instanceof ItemListWindow;
-                    if (!(isContainerWindow || wurmComponent instanceof InventoryWindow))
-                        continue;
                     
                     List<InventoryMetaItem> targetItems;
                     if (isContainerWindow) {
@@ -135,6 +130,10 @@ public class PileCollector extends Bot {
         }
     }
     
+    private boolean isWanted(SpatialIndex.GroundItem item) {
+        return shouldSearch(item.getName().toLowerCase()) || item.getName().contains(targetItemName);
+    }
+
     private boolean shouldSearch(String itemName) {
         return
             itemName.contains("pile of ") ||
@@ -182,6 +181,7 @@ public class PileCollector extends Bot {
         this.targetItemName = targetName.toString();
         Utils.consolePrint("New name for target items is \"" + this.targetItemName + "\"");
         ignoredItems.clear(); // items that didn't match previously may match now
+        subscriptionOutdated = true;
     }
 
     private void setTargetInventoryName(String []input) {
@@ -247,6 +247,7 @@ public class PileCollector extends Bot {
             customContainer = null;
         else
             customContainer = String.join(" ", input).toLowerCase();
+        subscriptionOutdated = true;
         Utils.consolePrint(
             customContainer == null ?
                 "Only piles of items will be searched" :
@@ -47,7 +47,7 @@ public class ProspectorBot extends Bot {
                 ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         setStaminaThreshold(0.9f);
         setClicks(3);
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float stamina = WurmHelper.hud.getWorld().getPlayer().getStamina();
             float damage = WurmHelper.hud.getWorld().getPlayer().getDamage();
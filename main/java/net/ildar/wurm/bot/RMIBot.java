@@ -164,6 +164,16 @@ public class RMIBot extends Bot implements BotServer, BotClient, Executor
         notify();
     }
     
+    long nextTaskTime()
+    {
+        return scheduledTasks
+            .stream()
+            .map(task -> task.triggerTime)
+            .min(Comparator.comparingLong(x -> x))
+            .orElse(Long.MAX_VALUE)
+        ;
+    }
+    
     @Override
     void work() throws Exception
     {
@@ -171,7 +181,7 @@ public class RMIBot extends Bot implements BotServer, BotClient, Executor
         {
             ArrayList<ScheduledTask> expiredTasks = new ArrayList<>();
             
-            while(isActive())
+            while(nextIteration())
             {
                 try
                 {
@@ -197,21 +207,17 @@ public class RMIBot extends Bot implements BotServer, BotClient, Executor
                         while(oneshotsToRun-- > 0)
                             oneshotTasks.remove().run();
                         
-                        final long nextTaskTime = scheduledTasks
-                            .stream()
-                            .map(task -> task.triggerTime)
-                            .min(Comparator.comparingLong(x -> x))
-                            .orElse(Long.MAX_VALUE)
-                        ;
                         now = System.currentTimeMillis();
+                        long nextTaskTime = nextTaskTime();
                         while(
                             oneshotTasks.size() == 0 && // don't sleep if there are pending oneshots
                             nextTaskTime - now > 0
                         )
                         {
-                            // there should probably be a synchronized block around here
                             wait(Math.max(0, nextTaskTime - now));
                             now = System.currentTimeMillis();
+                            // a task may have been scheduled by another thread while waiting
+                            nextTaskTime = nextTaskTime();
                         }
                     }
                 }
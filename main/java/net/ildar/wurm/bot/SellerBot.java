@@ -12,6 +12,7 @@ import com.wurmonline.shared.constants.PlayerAction;
 
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
+import net.ildar.wurm.NameMatcher;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.annotations.BotInfo;
@@ -21,6 +22,8 @@ public class SellerBot extends Bot
 {
     HashSet<String> items = new HashSet<>();
     HashSet<String> blacklist = new HashSet<>();
+    volatile NameMatcher itemMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING);
+    volatile NameMatcher blacklistMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING);
     long targetToken = -1;
     int maxSellActions = 3;
     
@@ -55,7 +58,7 @@ public class SellerBot extends Bot
         setTimeout(5000);
         
         List<InventoryMetaItem> toSell = new ArrayList<>();
-        while(isActive())
+        while(nextIteration())
         {
             waitOnPause();
             
@@ -64,19 +67,11 @@ public class SellerBot extends Bot
             if(!isActive()) break;
             
             toSell.clear();
-            for(String itemName: items)
-            {
-                List<InventoryMetaItem> matches = Utils.getInventoryItems(itemName);
-                
-                matches:
-                for(InventoryMetaItem item: matches)
-                {
-                    for(String blacklistName: blacklist)
-                        if(item.getBaseName().contains(blacklistName))
-                            continue matches;
-                    toSell.add(item);
-                }
-            }
+            NameMatcher itemMatcher = this.itemMatcher;
+            NameMatcher blacklistMatcher = this.blacklistMatcher;
+            toSell.addAll(Utils.getInventoryItems(
+                item -> itemMatcher.matches(item) && !blacklistMatcher.matches(item.getBaseName())
+            ));
             
             int queued = 0;
             long[] actionArgs = new long[]{targetToken};
@@ -112,6 +107,7 @@ public class SellerBot extends Bot
         String[] itemNames = String.join(" ", args).split("\\s*,\\s*");
         for(String name: itemNames)
             items.add(name);
+        itemMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING, items);
         Utils.consolePrint(
             "Selling: %s",
             String.join(", ", items)
@@ -121,6 +117,7 @@ public class SellerBot extends Bot
     void clearItems()
     {
         items.clear();
+        itemMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING);
         Utils.consolePrint("List of items to sell cleared");
     }
     
@@ -133,6 +130,7 @@ public class SellerBot extends Bot
         }
         
         blacklist.add(String.join(" ", args));
+        blacklistMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING, blacklist);
         Utils.consolePrint(
             "Selling blacklist: %s",
             String.join(", ", blacklist)
@@ -142,6 +140,7 @@ public class SellerBot extends Bot
     void clearBlacklist()
     {
         blacklist.clear();
+        blacklistMatcher = NameMatcher.compile(NameMatcher.Mode.SUBSTRING);
         Utils.consolePrint("List of blacklisted items cleared");
     }
     
@@ -1,17 +1,16 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.GroundItemData;
-import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.FoliageAge;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.mesh.TreeData;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.Chat;
 import net.ildar.wurm.Pair;
+import net.ildar.wurm.SpatialIndex;
 import net.ildar.wurm.WurmHelper;
 import net.ildar.wurm.Utils;
 import net.ildar.wurm.annotations.BotInfo;
@@ -20,8 +19,6 @@ import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @BotInfo(description =
         "Cuts trees",
@@ -83,9 +80,8 @@ public class TreeCutterBot extends Bot{
         CreationWindow creationWindow = WurmHelper.hud.getCreationWindow();
         Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
 
-        ServerConnectionListenerClass sscc = WurmHelper.hud.getWorld().getServerConnection().getServerConnectionListener();
         registerEventProcessors();
-        while (isActive()) {
+        while (nextIteration()) {
             waitOnPause();
             float progress = ReflectionUtil.getPrivateField(progressBar, ReflectionUtil.getField(progressBar.getClass(), "progress"));
 
@@ -104,17 +100,6 @@ public class TreeCutterBot extends Bot{
                     if (queuedTiles.contains(coordsPair))
                         continue;
 
-                    Map<Long, GroundItemCellRenderable> beeItems = ReflectionUtil.getPrivateField(sscc,
-                            ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-                    beeItems = beeItems.entrySet().stream().filter(entry -> {
-                        try {
-                            GroundItemData groundItemData = ReflectionUtil.getPrivateField(entry.getValue(), ReflectionUtil.getField(entry.getValue().getClass(), "item"));
-                            return groundItemData.getName().contains("hive");
-                        } catch (Exception e) {
-                            Utils.consolePrint(e.getMessage());
-                        }
-                        return false;
-                    }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
                     Tiles.Tile tileType = world.getNearTerrainBuffer().getTileType(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     byte tileData = world.getNearTerrainBuffer().getData(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
 
@@ -125,16 +110,10 @@ public class TreeCutterBot extends Bot{
                         boolean isRightAge=fage.getAgeId() >= minTreeAge.id;
                         boolean isCutSprouts = sproutingTreeCutting || !Arrays.asList(sproutingAgeId).contains(fage.getAgeId());
                         boolean isRightType = treeType.equals("") || treeType.contains(TreeData.TreeType.fromInt(ttype.getTypeId()).toString().toLowerCase());
-                        boolean isHive = false;
-                        if (beeItems.size() > 0) {
-                            for (Map.Entry<Long, GroundItemCellRenderable> entry : beeItems.entrySet()) {
-                                Long beeTile = Tiles.getTileId((int) (entry.getValue().getXPos() / 4.0f), (int) (entry.getValue().getYPos() / 4.0f), 0);
-                                if (Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0) == beeTile) {
-                                    isHive = true;
-                                    break;
-                                }
-                            }
-                        }
+                        boolean isHive = SpatialIndex
+                                .getGroundItemsOnTile(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1])
+                                .stream()
+                                .anyMatch(groundItem -> groundItem.getName().contains("hive"));
                         if(isRightAge && isCutSprouts && isRightType && !isHive){
                             world.getServerConnection().sendAction(hatchetId,
                                     new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
@@ -153,11 +132,11 @@ public class TreeCutterBot extends Bot{
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You are too far away") ,
+        registerEventProcessor(Chat.MatchRule.contains("You are too far away"),
                 this::actionNotQueued);
-        registerEventProcessor(message -> (message.contains("You stop cutting down.")
-                        || message.contains("You cut down the ")
-                        || message.contains("You chip away some wood")),
+        registerEventProcessor(Chat.MatchRule.contains("You stop cutting down.",
+                        "You cut down the ",
+                        "You chip away some wood"),
                 this::actionFinished);
     }
 